@@ -0,0 +1,379 @@
+package com.softmotions.runner
+
+import com.softmotions.kotlin.loggerFor
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.CharsetDecoder
+import java.nio.charset.CodingErrorAction
+import java.util.ArrayDeque
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Single thread pumping output of all running processes.
+ *
+ * Process pipes are not selectable channels, so the pump polls
+ * them with non blocking reads of `available()` bytes, parking
+ * progressively longer while all streams are idle, process exit
+ * wakes the pump up. Bytes are decoded as UTF-8 into a buffer
+ * shared by all streams and split into lines.
+ *
+ * Lines are delivered to [OutputHandler]s through bounded per stream
+ * queues on a shared executor with a thread per processor.
+ * A stream of a slow handler is not read until its queue drains,
+ * so the process is held by the pipe buffer rather than
+ * lines piling up in memory.
+ *
+ * Stream end is detected once the process is terminated and its
+ * pipe is empty, output written after that by orphaned child
+ * processes holding the pipe is not read.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+internal object OutputPump {
+
+    private val log = loggerFor()
+
+    /**
+     * Max lines waiting for a handler before the stream reading is suspended.
+     */
+    const val MAX_QUEUED_LINES = 1024
+
+    private const val READ_BUFFER_SIZE = 8192
+
+    private const val MAX_POOLED_BUFFERS = 64
+
+    private val MIN_IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50)
+
+    private val MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10)
+
+    /**
+     * Time the pump thread stays alive without streams.
+     */
+    private val LINGER_MILLIS = TimeUnit.SECONDS.toMillis(5)
+
+    private val lock = ReentrantLock()
+
+    /**
+     * Signalled when a stream is registered while the pump thread lingers without streams.
+     */
+    private val registered = lock.newCondition()
+
+    private val pending = ConcurrentLinkedQueue<PumpStream>()
+
+    @Volatile
+    private var pumpThread: Thread? = null
+
+    /**
+     * Max line batches delivered by a single drain before
+     * it yields the handlers thread to other streams.
+     */
+    private const val MAX_DRAIN_BATCHES = 16
+
+    private val handlersExecutor: ExecutorService = Runtime.getRuntime().availableProcessors().let { n ->
+        ThreadPoolExecutor(
+                n, n, 30L, TimeUnit.SECONDS, LinkedBlockingQueue(),
+                object : ThreadFactory {
+                    private val counter = AtomicInteger()
+                    override fun newThread(r: Runnable) = Thread(r, "ProcessOutput-${counter.incrementAndGet()}").apply {
+                        isDaemon = true
+                    }
+                }).apply {
+            allowCoreThreadTimeOut(true)
+        }
+    }
+
+    // Owned by the pump thread
+
+    private val active = ArrayList<PumpStream>()
+
+    private val buffers = ArrayDeque<ByteBuffer>()
+
+    private val chars = CharBuffer.allocate(READ_BUFFER_SIZE)
+
+    /**
+     * Registers process output stream.
+     * @return Future completed when all output lines are handled
+     */
+    fun register(process: Process, input: InputStream, handler: OutputHandler, name: String): CompletableFuture<Unit> {
+        val s = PumpStream(process, input, handler, name)
+        // Wake up the idle pump to read the rest of output
+        process.onExit().thenRun { pumpThread?.let(LockSupport::unpark) }
+        lock.withLock {
+            pending += s
+            val t = pumpThread
+            if (t == null) {
+                pumpThread = Thread(::pump, "ProcessOutputPump").apply {
+                    isDaemon = true
+                    start()
+                }
+            } else {
+                registered.signalAll()
+                LockSupport.unpark(t)
+            }
+        }
+        return s.done
+    }
+
+    private fun pump() {
+        var parkNanos = MIN_IDLE_PARK_NANOS
+        while (true) {
+            while (true) {
+                active += pending.poll() ?: break
+            }
+            if (active.isEmpty()) {
+                lock.withLock {
+                    if (pending.isEmpty()) {
+                        registered.await(LINGER_MILLIS, TimeUnit.MILLISECONDS)
+                    }
+                    if (pending.isEmpty()) {
+                        pumpThread = null
+                        buffers.clear()
+                        return
+                    }
+                }
+                continue
+            }
+            var progress = false
+            val it = active.iterator()
+            while (it.hasNext()) {
+                val s = it.next()
+                try {
+                    progress = s.pump() or progress
+                } catch (e: Throwable) {
+                    log.error("Failed to read process output: {}", s.name, e)
+                    s.finish(e)
+                }
+                if (s.finished) {
+                    s.release()
+                    it.remove()
+                }
+            }
+            if (progress) {
+                parkNanos = MIN_IDLE_PARK_NANOS
+            } else {
+                LockSupport.parkNanos(this, parkNanos)
+                parkNanos = minOf(parkNanos * 2, MAX_IDLE_PARK_NANOS)
+            }
+        }
+    }
+
+    private fun acquireBuffer(): ByteBuffer = buffers.pollFirst() ?: ByteBuffer.allocate(READ_BUFFER_SIZE)
+
+    private fun releaseBuffer(b: ByteBuffer) {
+        if (buffers.size < MAX_POOLED_BUFFERS) {
+            b.clear()
+            buffers.addFirst(b)
+        }
+    }
+
+    private class PumpStream(val process: Process,
+                             val input: InputStream,
+                             val handler: OutputHandler,
+                             val name: String) {
+
+        val done = CompletableFuture<Unit>()
+
+        var finished = false
+
+        private var bytes: ByteBuffer? = null
+
+        private val decoder: CharsetDecoder = Charsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+
+        private val line = StringBuilder()
+
+        private var lastCR = false
+
+        /**
+         * Lines decoded by a single read.
+         */
+        private var batch = ArrayList<String>()
+
+        private val queue = ConcurrentLinkedQueue<List<String>>()
+
+        private val queued = AtomicInteger()
+
+        private val scheduled = AtomicBoolean()
+
+        @Volatile
+        private var eof = false
+
+        @Volatile
+        private var failed = false
+
+        /**
+         * Reads available bytes.
+         * @return `true` if some data was read
+         */
+        fun pump(): Boolean {
+            if (queued.get() >= MAX_QUEUED_LINES) {
+                return false
+            }
+            // Liveness is checked before the pipe so bytes written
+            // by the process right before its exit are not lost:
+            // the stream is finished only once the pipe of the exited process is empty
+            val alive = process.isAlive
+            val avail = try {
+                input.available()
+            } catch (e: IOException) {
+                -1
+            }
+            if (avail > 0) {
+                val b = bytes ?: acquireBuffer().also { bytes = it }
+                val n = input.read(b.array(), b.position(), minOf(avail, b.remaining()))
+                if (n < 0) {
+                    finish(null)
+                    return true
+                }
+                b.position(b.position() + n)
+                decode(false)
+                flushBatch()
+                return true
+            }
+            if (avail < 0 || !alive) {
+                finish(null)
+            }
+            return false
+        }
+
+        private fun decode(endOfInput: Boolean) {
+            val b = bytes ?: return
+            b.flip()
+            while (true) {
+                chars.clear()
+                val res = decoder.decode(b, chars, endOfInput)
+                if (endOfInput && res.isUnderflow) {
+                    decoder.flush(chars)
+                }
+                chars.flip()
+                split(chars)
+                if (!res.isOverflow) break
+            }
+            b.compact()
+        }
+
+        /**
+         * Splits chars into lines the same way as [java.io.BufferedReader.readLine].
+         */
+        private fun split(cb: CharBuffer) {
+            val arr = cb.array()
+            var start = cb.position()
+            val end = cb.limit()
+            var i = start
+            if (lastCR && i < end && arr[i] == '\n') {
+                start = ++i
+            }
+            lastCR = false
+            while (i < end) {
+                val c = arr[i]
+                if (c == '\n' || c == '\r') {
+                    line.append(arr, start, i - start)
+                    enqueue(line.toString())
+                    line.setLength(0)
+                    if (c == '\r') {
+                        if (i + 1 < end) {
+                            if (arr[i + 1] == '\n') ++i
+                        } else {
+                            lastCR = true
+                        }
+                    }
+                    start = i + 1
+                }
+                ++i
+            }
+            line.append(arr, start, end - start)
+        }
+
+        fun finish(error: Throwable?) {
+            if (finished) return
+            finished = true
+            if (error == null) {
+                decode(true)
+                if (line.isNotEmpty()) {
+                    enqueue(line.toString())
+                    line.setLength(0)
+                }
+                flushBatch()
+            } else {
+                failed = true
+                done.completeExceptionally(error)
+            }
+            try {
+                input.close()
+            } catch (ignored: IOException) {
+            }
+            eof = true
+            schedule()
+        }
+
+        fun release() {
+            bytes?.let(::releaseBuffer)
+            bytes = null
+        }
+
+        private fun enqueue(l: String) {
+            if (!failed) batch.add(l)
+        }
+
+        private fun flushBatch() {
+            if (batch.isEmpty()) return
+            queued.addAndGet(batch.size)
+            queue += batch
+            batch = ArrayList(batch.size)
+            schedule()
+        }
+
+        private fun schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                handlersExecutor.execute(::drain)
+            }
+        }
+
+        /**
+         * Delivers queued lines to the handler, at most one drain runs at a time.
+         * Drain of a busy stream is rescheduled after [MAX_DRAIN_BATCHES]
+         * so streams share the bounded handlers pool.
+         */
+        private fun drain() {
+            val thread = Thread.currentThread()
+            val oldName = thread.name
+            thread.name = name
+            try {
+                var batches = 0
+                while (batches++ < MAX_DRAIN_BATCHES) {
+                    val lines = queue.poll() ?: break
+                    queued.addAndGet(-lines.size)
+                    if (failed) continue
+                    try {
+                        for (l in lines) handler(l)
+                    } catch (e: Throwable) {
+                        failed = true
+                        done.completeExceptionally(e)
+                    }
+                }
+            } finally {
+                thread.name = oldName
+                scheduled.set(false)
+            }
+            if (queue.isNotEmpty()) {
+                schedule()
+            } else if (eof) {
+                done.complete(Unit)
+            }
+        }
+    }
+}
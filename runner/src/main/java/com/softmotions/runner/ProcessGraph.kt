@@ -0,0 +1,292 @@
+package com.softmotions.runner
+
+import com.softmotions.kotlin.loggerFor
+import com.softmotions.kotlin.toMinutes
+import java.util.*
+import java.util.concurrent.CompletionException
+import java.util.concurrent.LinkedBlockingQueue
+
+/**
+ * Graph of processes executed in dependency order.
+ *
+ * Node is started once all its dependencies are succeeded,
+ * at most [maxConcurrency] nodes run at once and at most
+ * [groupLimit] nodes of the same group. Ready nodes are started
+ * by descending [node] priority, then the ones heading the longest
+ * chain of dependents go first.
+ *
+ * Node is failed if its process is exited with non zero code
+ * or the run is failed by exception, all the nodes depending
+ * on the failed one are cancelled, independent nodes keep running.
+ *
+ * Graph definition is not thread safe, [run] may be called
+ * many times, every call runs all the nodes.
+ *
+ * ```
+ * val res = ProcessGraph(maxConcurrency = 4)
+ *         .groupLimit("db", 1)
+ *         .node("fetch", ProcessSpec(cmdLine = "git fetch"))
+ *         .node("build", ProcessSpec(cmdLine = "make"), listOf("fetch"))
+ *         .node("migrate", ProcessSpec(cmdLine = "./migrate.sh"), listOf("build"), group = "db")
+ *         .run()
+ * ```
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+class ProcessGraph
+@JvmOverloads
+constructor(val maxConcurrency: Int = Math.max(Runtime.getRuntime().availableProcessors(), 2),
+            val verbose: Boolean = false,
+            val name: String = "graph") {
+
+    private val log = loggerFor()
+
+    private val nodes = LinkedHashMap<String, Node>()
+
+    private val groupLimits = HashMap<String, Int>()
+
+    init {
+        require(maxConcurrency > 0) { "maxConcurrency must be positive" }
+    }
+
+    /**
+     * Sets max number of concurrently running nodes of the group.
+     */
+    fun groupLimit(group: String, limit: Int): ProcessGraph {
+        require(limit > 0) { "Group limit must be positive" }
+        groupLimits[group] = limit
+        return this
+    }
+
+    /**
+     * Adds the node.
+     *
+     * @param name Unique node name
+     * @param dependsOn Names of the nodes must be succeeded before this one is started,
+     *                  nodes can be declared in any order
+     * @param group Optional group limited by [groupLimit]
+     * @param priority Nodes with greater priority are started first
+     */
+    @JvmOverloads
+    fun node(name: String,
+             spec: ProcessSpec,
+             dependsOn: Collection<String> = emptyList(),
+             group: String? = null,
+             priority: Int = 0,
+             stdout: OutputHandler? = null,
+             stderr: OutputHandler? = null): ProcessGraph {
+        require(!nodes.containsKey(name)) { "Duplicated node: '$name'" }
+        nodes[name] = Node(nodes.size, name, spec, dependsOn.toList(), group, priority, stdout, stderr)
+        return this
+    }
+
+    /**
+     * Runs the graph and waits for all its nodes.
+     *
+     * @throws IllegalArgumentException if a dependency is not declared
+     * @throws IllegalStateException if the graph has a cycle
+     */
+    fun run(): ProcessGraphResult {
+        val order = plan()
+        val n = order.size
+        val states = arrayOfNulls<NodeState>(nodes.size)
+        order.forEach { states[it.index] = NodeState(it) }
+        val state = { node: Node -> states[node.index]!! }
+        for (node in order) {
+            val s = state(node)
+            for (d in node.dependsOn) {
+                state(nodes[d]!!).dependents += s
+            }
+            s.pending = node.dependsOn.size
+        }
+        for (node in order.asReversed()) {
+            val s = state(node)
+            s.height = 1 + (s.dependents.maxOfOrNull { it.height } ?: 0)
+        }
+
+        val ready = TreeSet<NodeState>(compareByDescending<NodeState> { it.node.priority }
+                                               .thenByDescending { it.height }
+                                               .thenBy { it.node.index })
+        val events = LinkedBlockingQueue<NodeState>()
+        val groupRunning = HashMap<String, Int>()
+        var running = 0
+        var done = 0
+
+        fun cancel(s: NodeState) {
+            if (s.status != null) return
+            s.status = ProcessGraphResult.Status.CANCELLED
+            ++done
+            if (verbose) {
+                log.info("Graph {}: node '{}' cancelled", name, s.node.name)
+            }
+            s.dependents.forEach(::cancel)
+        }
+
+        order.filter { it.dependsOn.isEmpty() }.mapTo(ready, state)
+        val startNanos = System.nanoTime()
+        val runner = ProcessRunners.parallel(verbose, name, maxConcurrency)
+        var completed = false
+        try {
+            while (done < n) {
+                val it = ready.iterator()
+                while (running < maxConcurrency && it.hasNext()) {
+                    val s = it.next()
+                    val group = s.node.group
+                    if (group != null && (groupRunning[group] ?: 0) >= (groupLimits[group] ?: Int.MAX_VALUE)) {
+                        continue
+                    }
+                    it.remove()
+                    ++running
+                    if (group != null) {
+                        groupRunning.merge(group, 1, Int::plus)
+                    }
+                    start(s, runner, events)
+                }
+                val s = events.take()
+                --running
+                s.node.group?.let { groupRunning.merge(it, -1, Int::plus) }
+                ++done
+                if (s.status == ProcessGraphResult.Status.OK) {
+                    for (d in s.dependents) {
+                        if (--d.pending == 0 && d.status == null) {
+                            ready += d
+                        }
+                    }
+                } else {
+                    log.warn("Graph {}: node '{}' failed, exit code: {}",
+                             name, s.node.name, s.exitCode, s.error)
+                    s.dependents.forEach(::cancel)
+                }
+            }
+            completed = true
+        } finally {
+            if (completed) {
+                runner.close()
+            } else {
+                runner.halt(1.toMinutes(), UnixSignal.SIGTERM)
+            }
+        }
+        val res = ProcessGraphResult(name, System.nanoTime() - startNanos, order.map { state(it).toEntry(startNanos) })
+        if (verbose) {
+            log.info(res.report())
+        }
+        return res
+    }
+
+    private fun start(s: NodeState, runner: ProcessRunner, events: LinkedBlockingQueue<NodeState>) {
+        if (verbose) {
+            log.info("Graph {}: starting node '{}'", name, s.node.name)
+        }
+        s.startNanos = System.nanoTime()
+        val run = try {
+            runner.spec(s.node.spec, s.node.stdout, s.node.stderr)
+        } catch (e: Exception) {
+            s.finish(null, e)
+            events += s
+            return
+        }
+        run.completion.whenComplete { _, e ->
+            s.finish(run, e)
+            events += s
+        }
+    }
+
+    /**
+     * Nodes in topological order.
+     */
+    private fun plan(): List<Node> {
+        val pending = HashMap<String, Int>()
+        val dependents = HashMap<String, MutableList<Node>>()
+        for (node in nodes.values) {
+            for (d in node.dependsOn) {
+                require(nodes.containsKey(d)) { "Node '${node.name}' depends on unknown node: '$d'" }
+                dependents.getOrPut(d, ::ArrayList) += node
+            }
+            pending[node.name] = node.dependsOn.size
+        }
+        val order = ArrayList<Node>(nodes.size)
+        nodes.values.filterTo(order) { it.dependsOn.isEmpty() }
+        var i = 0
+        while (i < order.size) {
+            dependents[order[i++].name]?.forEach {
+                if (pending.merge(it.name, -1, Int::plus) == 0) {
+                    order += it
+                }
+            }
+        }
+        if (order.size < nodes.size) {
+            throw IllegalStateException("Process graph '$name' has a cycle: " +
+                                        nodes.keys.filter { pending[it]!! > 0 })
+        }
+        return order
+    }
+
+    private class Node(val index: Int,
+                       val name: String,
+                       val spec: ProcessSpec,
+                       val dependsOn: List<String>,
+                       val group: String?,
+                       val priority: Int,
+                       val stdout: OutputHandler?,
+                       val stderr: OutputHandler?)
+
+    private class NodeState(val node: Node) {
+
+        val dependents = ArrayList<NodeState>()
+
+        /**
+         * Number of dependencies not yet succeeded.
+         */
+        var pending = 0
+
+        /**
+         * Number of nodes in the longest chain started by this one.
+         */
+        var height = 0
+
+        @Volatile
+        var status: ProcessGraphResult.Status? = null
+
+        @Volatile
+        var exitCode: Int? = null
+
+        @Volatile
+        var error: Throwable? = null
+
+        @Volatile
+        var startNanos = 0L
+
+        @Volatile
+        var endNanos = 0L
+
+        fun finish(run: ProcessRun?, e: Throwable?) {
+            endNanos = System.nanoTime()
+            error = (if (e is CompletionException) e.cause else e)
+            if (run != null) {
+                exitCode = try {
+                    run.exitCode
+                } catch (ignored: IllegalThreadStateException) {
+                    null // Process is not terminated, the run is interrupted
+                }
+            }
+            status = if (error == null && exitCode == 0) {
+                ProcessGraphResult.Status.OK
+            } else {
+                ProcessGraphResult.Status.FAILED
+            }
+        }
+
+        fun toEntry(graphStartNanos: Long): ProcessGraphResult.Entry {
+            val executed = status != ProcessGraphResult.Status.CANCELLED
+            return ProcessGraphResult.Entry(
+                    node.name,
+                    node.group,
+                    node.dependsOn,
+                    status!!,
+                    exitCode,
+                    error,
+                    if (executed) startNanos - graphStartNanos else -1L,
+                    if (executed) endNanos - startNanos else 0L)
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.softmotions.runner
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Result of [ProcessGraph] run: timings and statuses of every node
+ * and the critical path, the longest chain of nodes each waiting
+ * for the previous one, which bounds the total time.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+class ProcessGraphResult internal constructor(val name: String,
+                                              private val totalNanos: Long,
+                                              topoEntries: List<Entry>) {
+
+    enum class Status {
+        OK,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * Executed entries ordered by start time followed by cancelled ones.
+     */
+    val entries: List<Entry>
+
+    /**
+     * Entries of the critical path in execution order.
+     */
+    val criticalPath: List<Entry>
+
+    /**
+     * `true` if all nodes are succeeded.
+     */
+    val ok: Boolean
+        get() = entries.all { it.status == Status.OK }
+
+    val failed: List<Entry>
+        get() = entries.filter { it.status == Status.FAILED }
+
+    val cancelled: List<Entry>
+        get() = entries.filter { it.status == Status.CANCELLED }
+
+    init {
+        val byName = topoEntries.associateBy { it.name }
+        val path = HashMap<String, Long>()
+        val pred = HashMap<String, Entry>()
+        var last: Entry? = null
+        for (e in topoEntries) {
+            var p: Entry? = null
+            for (d in e.dependsOn) {
+                val de = byName.getValue(d)
+                if (p == null || path.getValue(de.name) > path.getValue(p.name)) {
+                    p = de
+                }
+            }
+            path[e.name] = e.durationNanos + (p?.let { path.getValue(it.name) } ?: 0L)
+            if (p != null) {
+                pred[e.name] = p
+            }
+            if (last == null || path.getValue(e.name) > path.getValue(last.name)) {
+                last = e
+            }
+        }
+        val cpath = ArrayList<Entry>()
+        while (last != null) {
+            if (last.status != Status.CANCELLED) {
+                cpath.add(last)
+            }
+            last = pred[last.name]
+        }
+        cpath.reverse()
+        criticalPath = cpath
+        entries = topoEntries.sortedWith(compareBy<Entry> { it.status == Status.CANCELLED }
+                                                 .thenBy { it.startNanos })
+    }
+
+    operator fun get(name: String): Entry? = entries.find { it.name == name }
+
+    fun getTotalTime(unit: TimeUnit): Long = unit.convert(totalNanos, TimeUnit.NANOSECONDS)
+
+    fun getCriticalPathTime(unit: TimeUnit): Long =
+            unit.convert(criticalPath.sumOf { it.durationNanos }, TimeUnit.NANOSECONDS)
+
+    /**
+     * Human readable report, critical path entries are marked with `*`.
+     */
+    fun report(): String {
+        val sb = StringBuilder(128 + entries.size * 96)
+        sb.append(String.format("Process graph %s: total %d ms, critical path %d ms%n",
+                                name, getTotalTime(TimeUnit.MILLISECONDS),
+                                getCriticalPathTime(TimeUnit.MILLISECONDS)))
+        sb.append(String.format("  %10s %10s %-9s %5s  %s%n", "start ms", "time ms", "status", "exit", "node"))
+        for (e in entries) {
+            sb.append(String.format("%s %10s %10d %-9s %5s  %s%s%n",
+                                    if (e in criticalPath) " *" else "  ",
+                                    if (e.startNanos >= 0) TimeUnit.NANOSECONDS.toMillis(e.startNanos) else "-",
+                                    TimeUnit.NANOSECONDS.toMillis(e.durationNanos),
+                                    e.status,
+                                    e.exitCode ?: "-",
+                                    e.name,
+                                    e.group?.let { " [$it]" } ?: ""))
+        }
+        return sb.toString()
+    }
+
+    override fun toString(): String = report()
+
+    /**
+     * @property startNanos Start time relative to the graph start, `-1` if not started
+     * @property durationNanos Wall time of the node process
+     * @property exitCode Process exit code, `null` if not started or not terminated
+     * @property error Error failed the node
+     */
+    class Entry internal constructor(val name: String,
+                                     val group: String?,
+                                     val dependsOn: List<String>,
+                                     val status: Status,
+                                     val exitCode: Int?,
+                                     val error: Throwable?,
+                                     val startNanos: Long,
+                                     val durationNanos: Long) {
+
+        fun getDuration(unit: TimeUnit): Long = unit.convert(durationNanos, TimeUnit.NANOSECONDS)
+
+        override fun toString(): String {
+            return "Entry(name='$name', status=$status, exitCode=$exitCode, " +
+                   "durationMs=${TimeUnit.NANOSECONDS.toMillis(durationNanos)})"
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.softmotions.runner
 
 import com.softmotions.kotlin.TimeSpec
+import java.util.concurrent.CompletionStage
 
 /**
  * Running process interface.
@@ -30,6 +31,13 @@ interface ProcessRun {
     val failed: Boolean
         get() = exitCode != 0
 
+    /**
+     * Completed when the process is terminated and its output is handled.
+     * Completed exceptionally if the run is failed,
+     * eg: by [ProcessExitCodeException] if [ProcessSpec.failOnExitCode] is set.
+     */
+    val completion: CompletionStage<Void>
+
     /**
      * Wait for this process run termination.
      */
@@ -5,7 +5,6 @@ import com.softmotions.kotlin.TimeSpec
 import com.softmotions.kotlin.loggerFor
 import com.softmotions.kotlin.toMinutes
 import java.io.File
-import java.io.InputStream
 import java.util.concurrent.*
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.properties.Delegates
@@ -17,23 +16,28 @@ object ProcessRunners {
 
     private val log = loggerFor()
 
-    private val outputTasksPool = Executors.newCachedThreadPool()
-
     @JvmOverloads
     fun serial(verbose: Boolean = false, group: String? = null): ProcessRunner {
         return ProcessRunnerImpl(verbose, "serial", group)
     }
 
+    /**
+     * @param threads Max number of processes awaited at once,
+     *                number of available processors by default
+     */
     @JvmOverloads
-    fun parallel(verbose: Boolean = false, group: String? = null): ProcessRunner {
-        return ProcessRunnerImpl(verbose, "parallel", group)
+    fun parallel(verbose: Boolean = false,
+                 group: String? = null,
+                 threads: Int = Math.max(Runtime.getRuntime().availableProcessors(), 2)): ProcessRunner {
+        return ProcessRunnerImpl(verbose, "parallel", group, threads)
     }
 
 
     @Suppress("PLATFORM_CLASS_MAPPED_TO_KOTLIN")
     private class ProcessRunnerImpl(val verbose: Boolean = false,
                                     val type: String,
-                                    val group: String?) : ProcessRunner {
+                                    val group: String?,
+                                    val threads: Int = 1) : ProcessRunner {
 
         private val tasks = mutableListOf<ProcessTask>()
         private val startMon = AtomicBoolean(false)
@@ -49,10 +53,13 @@ object ProcessRunners {
         }
 
         private fun newParallelThreadExecutor(): ExecutorService {
-            Executors.newCachedThreadPool()
-            return ThreadPoolExecutor(0, Math.max(Runtime.getRuntime().availableProcessors(), 2),
+            // Core size equals to max size, otherwise the unbounded
+            // queue keeps the pool at a single thread
+            return ThreadPoolExecutor(threads, threads,
                                       5L, TimeUnit.SECONDS,
-                                      LinkedBlockingQueue<Runnable>(1024 * 1024))
+                                      LinkedBlockingQueue<Runnable>(1024 * 1024)).apply {
+                allowCoreThreadTimeOut(true)
+            }
         }
 
         private fun newSingleThreadExecutor(): ExecutorService {
@@ -165,6 +172,9 @@ object ProcessRunners {
 
             internal var selfFuture: CompletableFuture<Void> by Delegates.notNull()
 
+            override val completion: CompletionStage<Void>
+                get() = selfFuture
+
             private val outputTasks = mutableListOf<CompletableFuture<*>>()
 
             private val clist: List<String>
@@ -300,14 +310,11 @@ object ProcessRunners {
                     if (stdout != null && process.inputStream != null) {
                         val ttype = if (spec.redirectErrorStream) "STDALL" else "STDOUT"
                         val tname = "${Thread.currentThread().name}-$ttype:${clist.firstOrNull()}"
-                        outputTasks += CompletableFuture.runAsync(
-                                OutputLineHandler(stdout, process.inputStream, tname),
-                                outputTasksPool)
+                        outputTasks += OutputPump.register(process, process.inputStream, stdout, tname)
                     }
                     if (stderr != null && !spec.redirectErrorStream && process.errorStream != null) {
-                        outputTasks += CompletableFuture.runAsync(
-                                OutputLineHandler(stderr, process.errorStream, "${Thread.currentThread().name}-STDERR:${clist.firstOrNull()}"),
-                                outputTasksPool)
+                        outputTasks += OutputPump.register(process, process.errorStream, stderr,
+                                                           "${Thread.currentThread().name}-STDERR:${clist.firstOrNull()}")
                     }
                     synchronized(startMon) {
                         startMon.set(true)
@@ -356,24 +363,6 @@ object ProcessRunners {
                     }
                 }
             }
-
-            inner class OutputLineHandler(val handler: OutputHandler,
-                                          val istream: InputStream,
-                                          val tname: String) : Runnable {
-
-                override fun run() {
-                    val oldThreadName = Thread.currentThread().name
-                    try {
-                        Thread.currentThread().name = tname
-                        val reader = istream.bufferedReader()
-                        for (line in reader.lines()) {
-                            handler(line)
-                        }
-                    } finally {
-                        Thread.currentThread().name = oldThreadName
-                    }
-                }
-            }
         }
     }
 }
@@ -0,0 +1,137 @@
+package com.softmotions.runner;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.softmotions.kotlin.TimeSpec;
+
+import kotlin.Unit;
+
+/**
+ * Spawning {@code procs} concurrent {@code seq} processes
+ * and reading their output by the shared {@link OutputPump}
+ * versus a thread per output stream. {@code runnerPump} measures
+ * {@link ProcessRunners#parallel} end to end, it runs at most
+ * {@code availableProcessors} processes at once.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.runner.ProcessOutputBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessOutputBenchmark {
+
+    @Param({"16", "128"})
+    private int procs;
+
+    @Param({"10", "10000"})
+    private int lines;
+
+    private static ProcessSpec spec(String cmd) {
+        return new ProcessSpec(null, cmd, new String[0], Collections.emptyMap(), null,
+                               false, false, false, false, TimeSpec.Companion.getZERO());
+    }
+
+    @Benchmark
+    public long runnerPump() throws Exception {
+        LongAdder counter = new LongAdder();
+        OutputHandler out = new OutputHandlerFnAdapter(l -> {
+            counter.increment();
+            return Unit.INSTANCE;
+        });
+        ProcessRunner runner = ProcessRunners.INSTANCE.parallel(false, null);
+        try {
+            List<ProcessRun> runs = new ArrayList<>(procs);
+            for (int i = 0; i < procs; ++i) {
+                runs.add(runner.spec(spec("seq 1 " + lines), out, out));
+            }
+            for (ProcessRun r : runs) {
+                r.waitFor(null, null);
+            }
+        } finally {
+            runner.close();
+        }
+        if (counter.sum() != (long) procs * lines) {
+            throw new AssertionError("Lost lines: " + counter.sum());
+        }
+        return counter.sum();
+    }
+
+    @Benchmark
+    public long sharedPump() throws Exception {
+        LongAdder counter = new LongAdder();
+        OutputHandler out = new OutputHandlerFnAdapter(l -> {
+            counter.increment();
+            return Unit.INSTANCE;
+        });
+        List<CompletableFuture<Unit>> done = new ArrayList<>(procs * 2);
+        for (int i = 0; i < procs; ++i) {
+            Process p = new ProcessBuilder("seq", "1", String.valueOf(lines)).start();
+            done.add(OutputPump.INSTANCE.register(p, p.getInputStream(), out, "out"));
+            done.add(OutputPump.INSTANCE.register(p, p.getErrorStream(), out, "err"));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture<?>[0])).join();
+        return counter.sum();
+    }
+
+    @Benchmark
+    public long threadPerStream() throws Exception {
+        LongAdder counter = new LongAdder();
+        List<Thread> threads = new ArrayList<>(procs * 2);
+        List<Process> processes = new ArrayList<>(procs);
+        for (int i = 0; i < procs; ++i) {
+            Process p = new ProcessBuilder("seq", "1", String.valueOf(lines)).start();
+            processes.add(p);
+            for (InputStream is : new InputStream[]{p.getInputStream(), p.getErrorStream()}) {
+                Thread t = new Thread(() -> {
+                    try (BufferedReader r = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                        r.lines().forEach(l -> counter.increment());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                t.start();
+                threads.add(t);
+            }
+        }
+        for (Process p : processes) {
+            p.waitFor();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return counter.sum();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(ProcessOutputBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
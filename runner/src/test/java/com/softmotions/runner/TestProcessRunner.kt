@@ -9,6 +9,7 @@ import org.testng.Assert.*
 import org.testng.annotations.Test
 import java.nio.file.Paths
 import java.util.*
+import java.util.concurrent.TimeUnit
 
 /**
  * @author Adamansky Anton (adamansky@gmail.com)
@@ -269,4 +270,93 @@ class TestProcessRunner {
         }
         assertEquals(msg, "Process wait timeout: '/bin/sh -c sleep 1'")
     }
-}
\ No newline at end of file
+
+    private fun maxOverlap(entries: List<ProcessGraphResult.Entry>): Int {
+        return entries.filter { it.startNanos >= 0 }.map { e ->
+            entries.count { it.startNanos >= 0 && it.startNanos <= e.startNanos && it.startNanos + it.durationNanos > e.startNanos }
+        }.maxOrNull() ?: 0
+    }
+
+    @Test
+    fun testLastLineOnExit() {
+        val runner = ProcessRunners.parallel(threads = 8)
+        val runs = (1..40).map {
+            val last = arrayOfNulls<String>(1)
+            val count = intArrayOf(0)
+            val run = runner.spec(ProcessSpec("seq", args = arrayOf("1", "100000")),
+                                  OutputHandlerFnAdapter({
+                                      last[0] = it
+                                      count[0]++
+                                  }))
+            Triple(run, last, count)
+        }
+        runs.forEach { (run, last, count) ->
+            run.waitFor()
+            assertEquals(count[0], 100000)
+            assertEquals(last[0], "100000")
+        }
+        assertTrue(runner.halt(1.toMinutes()))
+    }
+
+    @Test
+    fun testGraph() {
+        val order = Collections.synchronizedList(ArrayList<String>())
+        fun sh(name: String, sleep: String) = ProcessSpec("/bin/sh", args = arrayOf("-c", "sleep $sleep; echo $name"))
+        val out = OutputHandlerFnAdapter({ order += it })
+        val res = ProcessGraph(maxConcurrency = 3, name = "testGraph")
+                .groupLimit("db", 1)
+                .node("end", sh("end", "0"), listOf("b", "c", "d1", "d2"), stdout = out)
+                .node("a", sh("a", "0.1"), stdout = out)
+                .node("b", sh("b", "0.5"), listOf("a"), stdout = out)
+                .node("c", sh("c", "0.1"), listOf("a"), stdout = out)
+                .node("d1", sh("d1", "0.2"), listOf("a"), group = "db", stdout = out)
+                .node("d2", sh("d2", "0.2"), listOf("a"), group = "db", stdout = out)
+                .run()
+        log.info(res.report())
+        assertTrue(res.ok)
+        assertEquals(order.first(), "a")
+        assertEquals(order.last(), "end")
+        assertEquals(res.criticalPath.map { it.name }, listOf("a", "b", "end"))
+        assertTrue(maxOverlap(res.entries) <= 3)
+        assertTrue(maxOverlap(listOf(res["d1"]!!, res["d2"]!!)) <= 1)
+        assertTrue(res["b"]!!.getDuration(TimeUnit.MILLISECONDS) >= 500)
+        assertTrue(res.getTotalTime(TimeUnit.MILLISECONDS) >= res.getCriticalPathTime(TimeUnit.MILLISECONDS))
+    }
+
+    @Test
+    fun testGraphFailure() {
+        val res = ProcessGraph(name = "testGraphFailure")
+                .node("a", ProcessSpec(cmdLine = "/bin/sh -c 'exit 3'"))
+                .node("b", ProcessSpec(cmdLine = "/bin/sh -c 'exit 0'"), listOf("a"))
+                .node("c", ProcessSpec(cmdLine = "/bin/sh -c 'exit 0'"), listOf("b"))
+                .node("d", ProcessSpec(cmdLine = "/bin/sh -c 'exit 0'"))
+                .node("e", ProcessSpec(cmdLine = "/bin/sh -c 'exit 0'", failOnExitCode = true), listOf("d"))
+                .node("f", ProcessSpec(cmdLine = "/bin/sh -c 'exit 1'", failOnExitCode = true), listOf("d"))
+                .node("g", ProcessSpec(cmdLine = "/bin/sh -c 'exit 0'"), listOf("e", "f"))
+                .node("h", ProcessSpec(exec = "/nonexistent-3b1c6d0e"))
+                .run()
+        assertFalse(res.ok)
+        assertEquals(res.failed.map { it.name }.toSet(), setOf("a", "f", "h"))
+        assertEquals(res.cancelled.map { it.name }.toSet(), setOf("b", "c", "g"))
+        assertEquals(res["a"]!!.exitCode, 3)
+        assertTrue(res["f"]!!.error is ProcessExitCodeException)
+        assertNotNull(res["h"]!!.error)
+        assertEquals(res["e"]!!.status, ProcessGraphResult.Status.OK)
+
+        try {
+            ProcessGraph()
+                    .node("a", ProcessSpec(cmdLine = "true"), listOf("b"))
+                    .node("b", ProcessSpec(cmdLine = "true"), listOf("a"))
+                    .run()
+            fail()
+        } catch (e: IllegalStateException) {
+            log.info(e.message)
+        }
+        try {
+            ProcessGraph().node("a", ProcessSpec(cmdLine = "true"), listOf("x")).run()
+            fail()
+        } catch (e: IllegalArgumentException) {
+            log.info(e.message)
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package com.softmotions.commons;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Carrier of a context value bound to the current execution,
+ * replacement of {@link ThreadLocal} friendly to virtual threads.
+ * <p/>
+ * Values are bound in two ways:
+ * <ul>
+ * <li>{@link #run(Object, Runnable)}, {@link #call(Object, Callable)} and {@link #supply(Object, Supplier)}
+ * bind the value for the dynamic extent of the call. If the runtime
+ * provides {@code java.lang.ScopedValue} it is used for the binding,
+ * so nothing is stored in the thread and nothing has to be cleaned.</li>
+ * <li>{@link #set(Object)} and {@link #remove()} manage the value
+ * of the current thread for code which opens and closes the context
+ * in different methods. Such values must be removed explicitly.</li>
+ * </ul>
+ * The latest binding wins: a value set by {@link #set(Object)} shadows
+ * the scoped one until removed, scoped binding made while a thread value
+ * is set replaces the thread value for the call.
+ * <p/>
+ * Values are never inherited by new threads. Values of carriers created
+ * as {@link #create(String, boolean) inheritable} are passed explicitly
+ * by {@link #wrap(Runnable)}, {@link #wrap(Callable)} or {@link #propagating(Executor)},
+ * other carriers are thread confined, eg: carriers of non thread safe
+ * sessions and transactions must never be passed to other threads.
+ * <p/>
+ * Carriers are registered weakly, carrier of a short lived
+ * component is dropped from propagation once it is garbage collected
+ * or {@link #unregister() unregistered}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class ContextCarrier<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextCarrier.class);
+
+    private static final List<CarrierRef> carriers = new CopyOnWriteArrayList<>();
+
+    private static final ReferenceQueue<ContextCarrier<?>> collected = new ReferenceQueue<>();
+
+    /**
+     * Bound instead of {@code null} values.
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * {@code ScopedValue} bindings, {@code null} if not available.
+     */
+    @Nullable
+    private static final ScopedBindings SCOPED = ScopedBindings.probe();
+
+    private final String name;
+
+    private final boolean inheritable;
+
+    /**
+     * Value set by {@link #set(Object)}.
+     */
+    private final ThreadLocal<T> slot = new ThreadLocal<>();
+
+    /**
+     * {@code ScopedValue} instance or {@code null} if not available.
+     */
+    @Nullable
+    private final Object scoped;
+
+    /**
+     * Scoped bindings if {@code ScopedValue} is not available.
+     */
+    @Nullable
+    private final ThreadLocal<Object> scopedSlot;
+
+    @Nullable
+    private volatile CarrierRef ref;
+
+    private ContextCarrier(String name, boolean inheritable) {
+        this.name = name;
+        this.inheritable = inheritable;
+        this.scoped = (SCOPED != null) ? SCOPED.newInstance() : null;
+        this.scopedSlot = (scoped == null) ? new ThreadLocal<>() : null;
+    }
+
+    public static <T> ContextCarrier<T> create() {
+        return create(null, false);
+    }
+
+    /**
+     * Creates thread confined carrier,
+     * its values are not passed by {@link #wrap(Runnable)}.
+     *
+     * @param name Name used in diagnostics
+     */
+    public static <T> ContextCarrier<T> create(@Nullable String name) {
+        return create(name, false);
+    }
+
+    /**
+     * Creates the carrier.
+     *
+     * @param name        Name used in diagnostics
+     * @param inheritable If {@code true} values of the carrier
+     *                    are passed by {@link #wrap(Runnable)} propagation
+     */
+    public static <T> ContextCarrier<T> create(@Nullable String name, boolean inheritable) {
+        expunge();
+        ContextCarrier<T> c = new ContextCarrier<>(name, inheritable);
+        c.ref = new CarrierRef(c);
+        carriers.add(c.ref);
+        return c;
+    }
+
+    /**
+     * Excludes the carrier from {@link #wrap(Runnable)} propagation
+     * and {@link #removeAll()}. Carrier can be used further
+     * for bindings made in the current thread.
+     */
+    public void unregister() {
+        CarrierRef r = ref;
+        if (r != null) {
+            ref = null;
+            carriers.remove(r);
+        }
+    }
+
+    /**
+     * Removes references to the garbage collected carriers.
+     */
+    private static void expunge() {
+        boolean removed = false;
+        while (collected.poll() != null) {
+            removed = true;
+        }
+        if (removed) {
+            carriers.removeIf(r -> r.get() == null);
+        }
+    }
+
+    /**
+     * Returns {@code true} if scoped bindings are backed by {@code java.lang.ScopedValue}.
+     */
+    public static boolean isScopedValueBacked() {
+        return SCOPED != null;
+    }
+
+    /**
+     * Removes values set by {@link #set(Object)} of all carriers
+     * in the current thread.
+     */
+    public static void removeAll() {
+        for (CarrierRef r : carriers) {
+            ContextCarrier<?> c = r.get();
+            if (c == null) {
+                continue;
+            }
+            c.slot.remove();
+            if (c.scopedSlot != null) {
+                c.scopedSlot.remove();
+            }
+        }
+    }
+
+    @Nullable
+    public String getName() {
+        return name;
+    }
+
+    public boolean isInheritable() {
+        return inheritable;
+    }
+
+    /**
+     * Returns the current value or {@code null} if not bound.
+     */
+    @Nullable
+    public T get() {
+        T v = slot.get();
+        if (v != null) {
+            return v;
+        }
+        if (scoped != null) {
+            return SCOPED.get(scoped);
+        }
+        Object sv = scopedSlot.get();
+        @SuppressWarnings("unchecked")
+        T res = (sv != null && sv != NULL) ? (T) sv : null;
+        return res;
+    }
+
+    public boolean isBound() {
+        return get() != null;
+    }
+
+    /**
+     * Sets the value of the current thread,
+     * it must be cleaned by {@link #remove()}.
+     */
+    public void set(@Nullable T value) {
+        if (value == null) {
+            slot.remove();
+        } else {
+            slot.set(value);
+        }
+    }
+
+    public void remove() {
+        slot.remove();
+    }
+
+    /**
+     * Runs the action with the value bound.
+     */
+    public void run(@Nullable T value, Runnable action) {
+        T prev = slot.get();
+        if (prev != null) {
+            set(value);
+            try {
+                action.run();
+            } finally {
+                set(prev);
+            }
+        } else if (scoped != null) {
+            SCOPED.run(scoped, value, action);
+        } else {
+            Object sprev = scopedSlot.get();
+            scopedSlot.set(value != null ? value : NULL);
+            try {
+                action.run();
+            } finally {
+                if (sprev != null) {
+                    scopedSlot.set(sprev);
+                } else {
+                    scopedSlot.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Calls the action with the value bound,
+     * a variant of {@link #call(Object, Callable)} without checked exceptions.
+     */
+    public <R> R supply(@Nullable T value, Supplier<R> action) {
+        Object[] res = new Object[1];
+        run(value, () -> res[0] = action.get());
+        @SuppressWarnings("unchecked")
+        R r = (R) res[0];
+        return r;
+    }
+
+    /**
+     * Calls the action with the value bound.
+     */
+    public <R> R call(@Nullable T value, Callable<R> action) throws Exception {
+        Object[] res = new Object[1];
+        Exception[] err = new Exception[1];
+        run(value, () -> {
+            try {
+                res[0] = action.call();
+            } catch (Exception e) {
+                err[0] = e;
+            }
+        });
+        if (err[0] != null) {
+            throw err[0];
+        }
+        @SuppressWarnings("unchecked")
+        R r = (R) res[0];
+        return r;
+    }
+
+    /**
+     * Wraps the task to run with the values of all inheritable carriers
+     * bound at the moment of this call.
+     */
+    public static Runnable wrap(Runnable task) {
+        Snapshot s = capture();
+        return (s.isEmpty()) ? task : () -> s.run(task);
+    }
+
+    /**
+     * Wraps the task to run with the values of all inheritable carriers
+     * bound at the moment of this call.
+     */
+    public static <R> Callable<R> wrap(Callable<R> task) {
+        Snapshot s = capture();
+        return (s.isEmpty()) ? task : () -> s.call(task);
+    }
+
+    /**
+     * Executor passing current values of all inheritable carriers to submitted tasks.
+     */
+    public static Executor propagating(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * Captures current values of all inheritable carriers.
+     */
+    public static Snapshot capture() {
+        List<ContextCarrier<?>> cs = null;
+        List<Object> vs = null;
+        for (CarrierRef r : carriers) {
+            ContextCarrier<?> c = r.get();
+            if (c == null || !c.inheritable) {
+                continue;
+            }
+            Object v = c.get();
+            if (v != null) {
+                if (cs == null) {
+                    cs = new ArrayList<>(4);
+                    vs = new ArrayList<>(4);
+                }
+                cs.add(c);
+                vs.add(v);
+            }
+        }
+        return new Snapshot(cs, vs);
+    }
+
+    public String toString() {
+        return "ContextCarrier[" + (name != null ? name : Integer.toHexString(hashCode())) + ']';
+    }
+
+    private static final class CarrierRef extends WeakReference<ContextCarrier<?>> {
+
+        private CarrierRef(ContextCarrier<?> carrier) {
+            super(carrier, collected);
+        }
+    }
+
+    /**
+     * Values of carriers captured by {@link #capture()}.
+     */
+    public static final class Snapshot {
+
+        @Nullable
+        private final List<ContextCarrier<?>> carriers;
+
+        @Nullable
+        private final List<Object> values;
+
+        private Snapshot(@Nullable List<ContextCarrier<?>> carriers, @Nullable List<Object> values) {
+            this.carriers = carriers;
+            this.values = values;
+        }
+
+        public boolean isEmpty() {
+            return carriers == null;
+        }
+
+        /**
+         * Runs the action with captured values bound.
+         */
+        public void run(Runnable action) {
+            if (carriers == null) {
+                action.run();
+                return;
+            }
+            bind(0, action);
+        }
+
+        public <R> R call(Callable<R> action) throws Exception {
+            Object[] res = new Object[1];
+            Exception[] err = new Exception[1];
+            run(() -> {
+                try {
+                    res[0] = action.call();
+                } catch (Exception e) {
+                    err[0] = e;
+                }
+            });
+            if (err[0] != null) {
+                throw err[0];
+            }
+            @SuppressWarnings("unchecked")
+            R r = (R) res[0];
+            return r;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void bind(int idx, Runnable action) {
+            if (idx == carriers.size()) {
+                action.run();
+                return;
+            }
+            ((ContextCarrier<Object>) carriers.get(idx)).run(values.get(idx), () -> bind(idx + 1, action));
+        }
+    }
+
+    /**
+     * Reflective access to {@code java.lang.ScopedValue},
+     * the library is compiled for the runtimes without it.
+     */
+    private static final class ScopedBindings {
+
+        private final MethodHandle newInstance;
+
+        private final MethodHandle where;
+
+        private final MethodHandle run;
+
+        private final MethodHandle isBound;
+
+        private final MethodHandle get;
+
+        private ScopedBindings(MethodHandle newInstance, MethodHandle where, MethodHandle run,
+                               MethodHandle isBound, MethodHandle get) {
+            this.newInstance = newInstance;
+            this.where = where;
+            this.run = run;
+            this.isBound = isBound;
+            this.get = get;
+        }
+
+        @Nullable
+        static ScopedBindings probe() {
+            if (Boolean.getBoolean("softmotions.context.noScopedValue")) {
+                return null;
+            }
+            try {
+                Class<?> sv = Class.forName("java.lang.ScopedValue");
+                Class<?> carrier = Class.forName("java.lang.ScopedValue$Carrier");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                ScopedBindings b = new ScopedBindings(
+                        lookup.findStatic(sv, "newInstance", MethodType.methodType(sv))
+                              .asType(MethodType.methodType(Object.class)),
+                        lookup.findStatic(sv, "where", MethodType.methodType(carrier, sv, Object.class))
+                              .asType(MethodType.methodType(Object.class, Object.class, Object.class)),
+                        lookup.findVirtual(carrier, "run", MethodType.methodType(void.class, Runnable.class))
+                              .asType(MethodType.methodType(void.class, Object.class, Runnable.class)),
+                        lookup.findVirtual(sv, "isBound", MethodType.methodType(boolean.class))
+                              .asType(MethodType.methodType(boolean.class, Object.class)),
+                        lookup.findVirtual(sv, "get", MethodType.methodType(Object.class))
+                              .asType(MethodType.methodType(Object.class, Object.class)));
+                // Preview API may be present but disabled
+                Object key = b.newInstance();
+                Object[] check = new Object[1];
+                b.run(key, Boolean.TRUE, () -> check[0] = b.get(key));
+                return (check[0] == Boolean.TRUE) ? b : null;
+            } catch (ClassNotFoundException ignored) {
+                return null;
+            } catch (Throwable e) {
+                log.debug("ScopedValue is not usable, falling back to thread locals", e);
+                return null;
+            }
+        }
+
+        Object newInstance() {
+            try {
+                return newInstance.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Nullable
+        @SuppressWarnings("unchecked")
+        <T> T get(Object key) {
+            try {
+                if (!(boolean) isBound.invokeExact(key)) {
+                    return null;
+                }
+                Object v = get.invokeExact(key);
+                return (v != NULL) ? (T) v : null;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void run(Object key, @Nullable Object value, Runnable action) {
+            Object c;
+            try {
+                c = where.invokeExact(key, (value != null) ? value : NULL);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            try {
+                run.invokeExact(c, action);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.softmotions.commons.io.DirUtils;
 import com.softmotions.commons.io.Loader;
+import com.softmotions.commons.io.watcher.XConfigWatcher;
 import com.softmotions.xconfig.XConfig;
 import com.softmotions.xconfig.XConfigBuilder;
 
@@ -46,6 +47,11 @@ public class ServicesConfiguration implements Module {
 
     protected volatile File sessionTmpDir;
 
+    /**
+     * Reloads configuration on file changes if {@code watch-config} is enabled.
+     */
+    protected XConfigWatcher xcfgWatcher;
+
     public ServicesConfiguration() {
     }
 
@@ -95,18 +101,34 @@ public class ServicesConfiguration implements Module {
             rl.setLevel(Level.INFO);
         }
         try {
-            xcfg = new XConfigBuilder(cfgUrl)
+            XConfigBuilder builder = new XConfigBuilder(cfgUrl)
                     .substitutor(key -> {
                         String v = substituteConfigKey(key);
                         return v != null ? v : XConfigBuilder.Companion.basicSubstitutor(key);
-                    })
-                    .create();
+                    });
+            File cacheDir = getConfigCacheDir();
+            if (cacheDir != null) {
+                log.info("Using configuration cache: {}", cacheDir);
+                builder.cache(cacheDir);
+            }
+            xcfg = builder.create();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
         init(cfgUrl);
     }
 
+    /**
+     * Directory of the parsed configuration cache
+     * set by the {@code softmotions.xconfig.cache} system property.
+     * Cache is disabled if {@code null}.
+     */
+    @Nullable
+    protected File getConfigCacheDir() {
+        String dir = System.getProperty("softmotions.xconfig.cache");
+        return dir != null && !dir.isBlank() ? new File(dir) : null;
+    }
+
     @Nullable
     protected String substituteConfigKey(String key) {
         switch (key) {
@@ -163,6 +185,11 @@ public class ServicesConfiguration implements Module {
                 StatusPrinter.printInCaseOfErrorsOrWarnings(context);
             }
 
+            if (xcfg.boolPattern("watch-config", false)) {
+                log.info("Watching configuration changes: {}", cfgUrl);
+                xcfgWatcher = new XConfigWatcher(xcfg);
+            }
+
             log.info("Using TMP dir: {}", tmpdir.getAbsolutePath());
             DirUtils.ensureDir(tmpdir, true);
 
@@ -218,6 +245,13 @@ public class ServicesConfiguration implements Module {
     }
 
     public void dispose() {
+        if (xcfgWatcher != null) {
+            try {
+                xcfgWatcher.close();
+            } catch (IOException e) {
+                log.error("", e);
+            }
+        }
         synchronized (ServicesConfiguration.class) {
             if (sessionTmpDir != null) {
                 try {
@@ -10,12 +10,21 @@ public class ThreadUtils {
 
     static final List<ThreadLocal> locals = new CopyOnWriteArrayList<>();
 
+    /**
+     * @deprecated Use {@link ContextCarrier#create(String)}
+     */
+    @Deprecated
     public static <T> ThreadLocal<T> createThreadLocal() {
         ThreadLocal<T> tl = new ThreadLocal<>();
         locals.add(tl);
         return tl;
     }
 
+    /**
+     * @deprecated Use {@link ContextCarrier#create(String, boolean)},
+     * values are passed to other threads by {@link ContextCarrier#wrap(Runnable)}
+     */
+    @Deprecated
     public static <T> ThreadLocal<T> createInheritableThreadLocal() {
         ThreadLocal<T> tl = new InheritableThreadLocal<>();
         locals.add(tl);
@@ -26,6 +35,7 @@ public class ThreadUtils {
         for (ThreadLocal tl : locals) {
             tl.remove();
         }
+        ContextCarrier.removeAll();
     }
 
     public void cleanRefs() {
@@ -0,0 +1,218 @@
+package com.softmotions.commons.bean;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.commons.lang3.ClassUtils;
+
+/**
+ * Registry of compiled bean property accessors.
+ * <p>
+ * Each (class, property) pair is resolved once, missing properties are cached as well.
+ * Accessors are spun by {@link LambdaMetafactory}, if the class is not accessible
+ * for it {@link MethodHandle} or reflection are used. Accessors are kept
+ * in {@link ClassValue} so they do not prevent class unloading.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class BeanAccessors {
+
+    private static final BeanGetter MISSING_GETTER = new BeanGetter(null, null, null);
+
+    private static final BeanSetter MISSING_SETTER = new BeanSetter(null, null, null);
+
+    /**
+     * Key of setter accepting {@code null} value.
+     */
+    private static final Class<?> ANY_TYPE = Void.class;
+
+    private static final ClassValue<ClassAccessors> ACCESSORS = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            return new ClassAccessors();
+        }
+    };
+
+    private BeanAccessors() {
+    }
+
+    /**
+     * Returns getter of the property ({@code getName()} or {@code isName()} public method)
+     * or {@code null} if the class has no such getter.
+     */
+    public static BeanGetter getGetter(Class<?> clazz, String property) {
+        BeanGetter g = ACCESSORS.get(clazz).getters.computeIfAbsent(property, p -> resolveGetter(clazz, p));
+        return (g != MISSING_GETTER) ? g : null;
+    }
+
+    /**
+     * Returns public single argument setter of the property
+     * or {@code null} if the class has no such setter.
+     *
+     * @param valueType Exact type of the setter argument,
+     *                  if {@code null} the only setter of the property is returned,
+     *                  overloaded setters are ambiguous and not returned
+     */
+    public static BeanSetter getSetter(Class<?> clazz, String property, Class<?> valueType) {
+        ConcurrentMap<Class<?>, BeanSetter> byType =
+                ACCESSORS.get(clazz).setters.computeIfAbsent(property, p -> new ConcurrentHashMap<>(2));
+        BeanSetter s = byType.computeIfAbsent(valueType != null ? valueType : ANY_TYPE,
+                                              t -> resolveSetter(clazz, property, valueType));
+        return (s != MISSING_SETTER) ? s : null;
+    }
+
+    private static BeanGetter resolveGetter(Class<?> clazz, String property) {
+        String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Method m;
+        try {
+            m = clazz.getMethod("get" + suffix);
+        } catch (NoSuchMethodException ignored) {
+            try {
+                m = clazz.getMethod("is" + suffix);
+            } catch (NoSuchMethodException ignored2) {
+                return MISSING_GETTER;
+            }
+        }
+        if (m.getReturnType() == void.class) {
+            return MISSING_GETTER;
+        }
+        return new BeanGetter(property, m, compileGetter(m));
+    }
+
+    private static BeanSetter resolveSetter(Class<?> clazz, String property, Class<?> valueType) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        Method m = null;
+        if (valueType != null) {
+            try {
+                m = clazz.getMethod(name, valueType);
+            } catch (NoSuchMethodException ignored) {
+            }
+        } else {
+            for (Method cm : clazz.getMethods()) {
+                if (cm.getName().equals(name) && cm.getParameterCount() == 1 && !cm.isBridge()) {
+                    if (m != null) {
+                        return MISSING_SETTER;
+                    }
+                    m = cm;
+                }
+            }
+        }
+        return (m != null) ? new BeanSetter(property, m, compileSetter(m)) : MISSING_SETTER;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Function<Object, Object> compileGetter(Method m) {
+        Class<?> owner = m.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle mh = lookup.unreflect(m);
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    mh,
+                    MethodType.methodType(ClassUtils.primitiveToWrapper(m.getReturnType()), owner));
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable ignored) {
+        }
+        MethodHandle mh = unreflect(m);
+        if (mh != null) {
+            MethodHandle h = mh.asType(MethodType.methodType(Object.class, Object.class));
+            return bean -> {
+                try {
+                    return h.invokeExact(bean);
+                } catch (Throwable t) {
+                    throw BeanAccessors.<RuntimeException>sneakyThrow(t);
+                }
+            };
+        }
+        return bean -> {
+            try {
+                return m.invoke(bean);
+            } catch (InvocationTargetException e) {
+                throw BeanAccessors.<RuntimeException>sneakyThrow(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw BeanAccessors.<RuntimeException>sneakyThrow(e);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static BiConsumer<Object, Object> compileSetter(Method m) {
+        Class<?> owner = m.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            MethodHandle mh = lookup.unreflect(m);
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    mh,
+                    MethodType.methodType(void.class, owner, ClassUtils.primitiveToWrapper(m.getParameterTypes()[0])));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable ignored) {
+        }
+        MethodHandle mh = unreflect(m);
+        if (mh != null) {
+            MethodHandle h = mh.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return (bean, value) -> {
+                try {
+                    h.invokeExact(bean, value);
+                } catch (Throwable t) {
+                    throw BeanAccessors.<RuntimeException>sneakyThrow(t);
+                }
+            };
+        }
+        return (bean, value) -> {
+            try {
+                m.invoke(bean, value);
+            } catch (InvocationTargetException e) {
+                throw BeanAccessors.<RuntimeException>sneakyThrow(e.getCause());
+            } catch (IllegalAccessException e) {
+                throw BeanAccessors.<RuntimeException>sneakyThrow(e);
+            }
+        };
+    }
+
+    private static MethodHandle unreflect(Method m) {
+        try {
+            return MethodHandles.publicLookup().unreflect(m);
+        } catch (IllegalAccessException ignored) {
+        }
+        // Public method of non public class
+        if (Modifier.isPublic(m.getModifiers())) {
+            try {
+                m.setAccessible(true);
+                return MethodHandles.lookup().unreflect(m);
+            } catch (RuntimeException | IllegalAccessException ignored) {
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T sneakyThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    private static final class ClassAccessors {
+
+        private final ConcurrentMap<String, BeanGetter> getters = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<String, ConcurrentMap<Class<?>, BeanSetter>> setters = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,62 @@
+package com.softmotions.commons.bean;
+
+import java.lang.reflect.Method;
+import java.util.function.Function;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Compiled getter of the bean property.
+ * Instances are obtained from {@link BeanAccessors}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+public final class BeanGetter {
+
+    private final String name;
+
+    private final Method method;
+
+    private final Function<Object, Object> fn;
+
+    BeanGetter(String name, Method method, Function<Object, Object> fn) {
+        this.name = name;
+        this.method = method;
+        this.fn = fn;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Type of the property.
+     */
+    public Class<?> getType() {
+        return method.getReturnType();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Reads property value from the bean.
+     *
+     * @throws BeanException If getter throws an exception
+     */
+    public Object get(Object bean) throws BeanException {
+        try {
+            return fn.apply(bean);
+        } catch (Throwable t) {
+            if (t instanceof IllegalAccessException) {
+                throw new BeanException("Property '" + name + "' could not be accessed for given bean from class " + bean.getClass().getName() + ".", t);
+            }
+            throw new BeanException("Property '" + name + "' could not be evaluated for given bean from class " + bean.getClass().getName() + ".", t);
+        }
+    }
+
+    public String toString() {
+        return "BeanGetter[" + method + ']';
+    }
+}
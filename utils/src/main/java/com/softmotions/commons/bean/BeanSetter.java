@@ -0,0 +1,62 @@
+package com.softmotions.commons.bean;
+
+import java.lang.reflect.Method;
+import java.util.function.BiConsumer;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Compiled setter of the bean property.
+ * Instances are obtained from {@link BeanAccessors}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+public final class BeanSetter {
+
+    private final String name;
+
+    private final Method method;
+
+    private final BiConsumer<Object, Object> fn;
+
+    BeanSetter(String name, Method method, BiConsumer<Object, Object> fn) {
+        this.name = name;
+        this.method = method;
+        this.fn = fn;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Type of the setter argument.
+     */
+    public Class<?> getType() {
+        return method.getParameterTypes()[0];
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * Sets property value of the bean.
+     *
+     * @throws BeanException If setter throws an exception
+     */
+    public void set(Object bean, Object value) throws BeanException {
+        try {
+            fn.accept(bean, value);
+        } catch (Throwable t) {
+            if (t instanceof IllegalAccessException) {
+                throw new BeanException("Property '" + name + "' could not be accessed for given bean from class " + bean.getClass().getName() + ".", t);
+            }
+            throw new BeanException("Property '" + name + "' could not be set for given bean from class " + bean.getClass().getName() + ".", t);
+        }
+    }
+
+    public String toString() {
+        return "BeanSetter[" + method + ']';
+    }
+}
@@ -30,6 +30,7 @@ import java.lang.reflect.Method;
 /**
  * Name: BeanUtils<br>
  * Description: Class providing common utility methods for java bean access.
+ * Property accessors are resolved once and cached by {@link BeanAccessors}.
  *
  * @author lauerc
  */
@@ -73,24 +74,12 @@ public class BeanUtils {
      */
     public static Class getPropertyType(Class clazz, String propertyName, boolean lenient)
             throws BeanException {
-
-        try {
-            // getting property object from bean using "getNnnn", where nnnn is parameter name
-            Method getterMethod = null;
-            try {
-                // first trying form getPropertyNaae for regular value
-                String getterName = "get" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
-                getterMethod = clazz.getMethod(getterName, GETTER_ARG_TYPES);
-            } catch (NoSuchMethodException ex) {
-                // next trying isPropertyNaae for possible boolean
-                String getterName = "is" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
-                getterMethod = clazz.getMethod(getterName, GETTER_ARG_TYPES);
-            }
-            return getterMethod.getReturnType();
-        } catch (NoSuchMethodError | NoSuchMethodException ex) {
-            if (!lenient) {
-                throw new BeanException("Property '" + propertyName + "' is undefined for given bean from class " + clazz.getName() + ".");
-            }
+        BeanGetter getter = BeanAccessors.getGetter(clazz, propertyName);
+        if (getter != null) {
+            return getter.getType();
+        }
+        if (!lenient) {
+            throw new BeanException("Property '" + propertyName + "' is undefined for given bean from class " + clazz.getName() + ".");
         }
         return null;
     }
@@ -108,34 +97,12 @@ public class BeanUtils {
      */
     public static Object getProperty(Object bean, String propertyName, boolean lenient)
             throws BeanException {
-
-        try {
-            // getting property object from bean using "getNnnn", where nnnn is parameter name
-            Method getterMethod = null;
-            try {
-                // first trying form getPropertyNaae for regular value
-                String getterName = "get" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
-                Class paramClass = bean.getClass();
-                getterMethod = paramClass.getMethod(getterName, GETTER_ARG_TYPES);
-            } catch (NoSuchMethodException ignored) {
-                // next trying isPropertyNaae for possible boolean
-                String getterName = "is" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
-                Class paramClass = bean.getClass();
-                getterMethod = paramClass.getMethod(getterName, GETTER_ARG_TYPES);
-            }
-            return getterMethod.invoke(bean, GETTER_ARGS);
-        } catch (NoSuchMethodError ex) {
-            if (!lenient) {
-                throw new BeanException("Property '" + propertyName + "' is undefined for given bean from class " + bean.getClass().getName() + ".", ex);
-            }
-        } catch (NoSuchMethodException ignored) {
-            if (!lenient) {
-                throw new BeanException("Property '" + propertyName + "' is undefined for given bean from class " + bean.getClass().getName() + ".");
-            }
-        } catch (InvocationTargetException ex) {
-            throw new BeanException("Property '" + propertyName + "' could not be evaluated for given bean from class " + bean.getClass().getName() + ".", ex);
-        } catch (IllegalAccessException ex) {
-            throw new BeanException("Property '" + propertyName + "' could not be accessed for given bean from class " + bean.getClass().getName() + ".", ex);
+        BeanGetter getter = BeanAccessors.getGetter(bean.getClass(), propertyName);
+        if (getter != null) {
+            return getter.get(bean);
+        }
+        if (!lenient) {
+            throw new BeanException("Property '" + propertyName + "' is undefined for given bean from class " + bean.getClass().getName() + ".");
         }
         return null;
     }
@@ -171,39 +138,14 @@ public class BeanUtils {
      */
     public static void setProperty(Object bean, String propertyName, Object value)
             throws BeanException {
-        Class valueClass = null;
-        try {
-            // getting property object from bean using "setNnnn", where nnnn is parameter name
-            Method setterMethod = null;
-            // first trying form getPropertyNaae for regular value
+        Class valueClass = (value != null) ? value.getClass() : null;
+        BeanSetter setter = BeanAccessors.getSetter(bean.getClass(), propertyName, valueClass);
+        if (setter == null) {
             String setterName = "set" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
-            Class paramClass = bean.getClass();
-            if (value != null) {
-                valueClass = value.getClass();
-                Class[] setterArgTypes = new Class[]{valueClass};
-                setterMethod = paramClass.getMethod(setterName, setterArgTypes);
-            } else {
-                Method[] methods = paramClass.getMethods();
-                for (int i = 0; i < methods.length; i++) {
-                    Method m = methods[i];
-                    if (m.getName().equals(setterName) && (m.getParameterTypes().length == 1)) {
-                        setterMethod = m;
-                        break;
-                    }
-                }
-            }
-            if (setterMethod == null) {
-                throw new NoSuchMethodException(setterName);
-            }
-            Object[] setterArgs = new Object[]{value};
-            setterMethod.invoke(bean, setterArgs);
-        } catch (NoSuchMethodError | NoSuchMethodException ex) {
-            throw new BeanException("No setter method found for property '" + propertyName + "' and type " + valueClass + " at given bean from class " + bean.getClass().getName() + ".", ex);
-        } catch (InvocationTargetException ex) {
-            throw new BeanException("Property '" + propertyName + "' could not be set for given bean from class " + bean.getClass().getName() + ".", ex);
-        } catch (IllegalAccessException ex) {
-            throw new BeanException("Property '" + propertyName + "' could not be accessed for given bean from class " + bean.getClass().getName() + ".", ex);
+            throw new BeanException("No setter method found for property '" + propertyName + "' and type " + valueClass + " at given bean from class " + bean.getClass().getName() + ".",
+                                    new NoSuchMethodException(setterName));
         }
+        setter.set(bean, value);
     }
 
     /**
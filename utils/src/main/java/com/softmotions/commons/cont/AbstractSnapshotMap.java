@@ -0,0 +1,137 @@
+package com.softmotions.commons.cont;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Base class of concurrent map wrappers which iterate over snapshots.
+ * <p>
+ * Iterators of {@link #entrySet()}, {@link #keySet()} and {@link #values()}
+ * traverse a snapshot of the map taken when iterator is created,
+ * they never throw {@link java.util.ConcurrentModificationException}
+ * and never block writers. {@link Iterator#remove()} removes the
+ * current key from the backing map. Entries are immutable.
+ * <p>
+ * Compound operations ({@code putIfAbsent}, {@code replace}, {@code compute*},
+ * {@code merge}) must be implemented atomically by subclasses,
+ * {@link Map} defaults perform separate get and put calls.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+abstract class AbstractSnapshotMap<K, V> extends AbstractMap<K, V> {
+
+    private Set<Entry<K, V>> entrySet;
+
+    /**
+     * Iterator over immutable snapshot of map entries.
+     */
+    protected abstract Iterator<Entry<K, V>> snapshotIterator();
+
+    @Override
+    public abstract V putIfAbsent(K key, V value);
+
+    @Override
+    public abstract boolean remove(Object key, Object value);
+
+    @Override
+    public abstract V replace(K key, V value);
+
+    @Override
+    public abstract boolean replace(K key, V oldValue, V newValue);
+
+    @Override
+    public abstract V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    @Override
+    public abstract V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    @Override
+    public abstract V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction);
+
+    @Override
+    public abstract void replaceAll(BiFunction<? super K, ? super V, ? extends V> function);
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> es = entrySet;
+        if (es == null) {
+            es = new EntrySet();
+            entrySet = es;
+        }
+        return es;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            Iterator<Entry<K, V>> it = snapshotIterator();
+            return new Iterator<>() {
+
+                private Entry<K, V> last;
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    last = it.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    AbstractSnapshotMap.this.remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return AbstractSnapshotMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            V v = get(e.getKey());
+            return v != null ? v.equals(e.getValue()) : (e.getValue() == null && containsKey(e.getKey()));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return AbstractSnapshotMap.this.remove(e.getKey(), e.getValue());
+        }
+
+        @Override
+        public void clear() {
+            AbstractSnapshotMap.this.clear();
+        }
+    }
+
+    static <K, V> Entry<K, V> immutableEntry(Entry<K, V> e) {
+        return new SimpleImmutableEntry<>(e);
+    }
+
+    static <V> boolean eq(Object v1, V v2) {
+        return Objects.equals(v1, v2);
+    }
+}
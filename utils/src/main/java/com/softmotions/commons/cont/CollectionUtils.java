@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * Convenient collection methods
@@ -97,6 +98,35 @@ public class CollectionUtils {
         return new FastSynchronizedList(list, new ReentrantReadWriteLock());
     }
 
+    /**
+     * Creates map partitioned into independently locked segments.
+     * Scales better than {@link #fastSynchronizedMap(Map)} when
+     * many threads access different keys.
+     *
+     * @param factory Segment map factory, eg: {@code HashMap::new}
+     * @param stripes Number of segments
+     */
+    public static <K, V> StripedSynchronizedMap<K, V> stripedSynchronizedMap(Supplier<? extends Map<K, V>> factory,
+                                                                             int stripes) {
+        return new StripedSynchronizedMap<>(factory, stripes);
+    }
+
+    /**
+     * Creates synchronized wrapper for map with atomic compound operations,
+     * point reads are lock free only if wrapped map is {@link java.util.concurrent.ConcurrentHashMap}.
+     */
+    public static <K, V> StampedSynchronizedMap<K, V> stampedSynchronizedMap(Map<K, V> m) {
+        return new StampedSynchronizedMap<>(m);
+    }
+
+    /**
+     * Creates copy-on-write map for read-mostly data
+     * initialized by the given map content.
+     */
+    public static <K, V> CopyOnWriteMap<K, V> copyOnWriteMap(Map<? extends K, ? extends V> m) {
+        return new CopyOnWriteMap<>(m);
+    }
+
     private CollectionUtils() {
     }
 
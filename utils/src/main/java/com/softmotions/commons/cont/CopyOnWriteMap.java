@@ -0,0 +1,256 @@
+package com.softmotions.commons.cont;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Copy-on-write map for read-mostly data.
+ * <p>
+ * Reads are served lock-free from an immutable snapshot,
+ * every modification copies the snapshot under a lock
+ * and publishes it atomically, compound operations and their functions
+ * are performed under the lock. Iteration traverses the snapshot
+ * current at the moment iterator is created.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class CopyOnWriteMap<K, V> extends AbstractSnapshotMap<K, V> {
+
+    private final Object lock = new Object();
+
+    private volatile Map<K, V> snapshot;
+
+    public CopyOnWriteMap() {
+        this.snapshot = Collections.emptyMap();
+    }
+
+    public CopyOnWriteMap(Map<? extends K, ? extends V> m) {
+        this.snapshot = new HashMap<>(m);
+    }
+
+    /**
+     * Returns immutable view of current map state.
+     */
+    public Map<K, V> getSnapshot() {
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return snapshot.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return snapshot.get(key);
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        return snapshot.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        synchronized (lock) {
+            Map<K, V> m = new HashMap<>(snapshot);
+            V old = m.put(key, value);
+            snapshot = m;
+            return old;
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        V v = snapshot.get(key);
+        if (v != null) {
+            return v;
+        }
+        synchronized (lock) {
+            v = snapshot.get(key);
+            if (v != null) {
+                return v;
+            }
+            Map<K, V> m = new HashMap<>(snapshot);
+            m.put(key, value);
+            snapshot = m;
+            return null;
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V v = snapshot.get(key);
+        if (v != null) {
+            return v;
+        }
+        synchronized (lock) {
+            v = snapshot.get(key);
+            if (v != null) {
+                return v;
+            }
+            v = mappingFunction.apply(key);
+            if (v != null) {
+                Map<K, V> m = new HashMap<>(snapshot);
+                m.put(key, v);
+                snapshot = m;
+            }
+            return v;
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        if (!snapshot.containsKey(key)) {
+            return null;
+        }
+        synchronized (lock) {
+            if (!snapshot.containsKey(key)) {
+                return null;
+            }
+            Map<K, V> m = new HashMap<>(snapshot);
+            V old = m.put(key, value);
+            snapshot = m;
+            return old;
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        synchronized (lock) {
+            Map<K, V> s = snapshot;
+            if (!s.containsKey(key) || !eq(oldValue, s.get(key))) {
+                return false;
+            }
+            Map<K, V> m = new HashMap<>(s);
+            m.put(key, newValue);
+            snapshot = m;
+            return true;
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        synchronized (lock) {
+            Map<K, V> m = new HashMap<>(snapshot);
+            V v = m.compute(key, remappingFunction);
+            snapshot = m;
+            return v;
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        if (snapshot.get(key) == null) {
+            return null;
+        }
+        synchronized (lock) {
+            if (snapshot.get(key) == null) {
+                return null;
+            }
+            Map<K, V> m = new HashMap<>(snapshot);
+            V v = m.computeIfPresent(key, remappingFunction);
+            snapshot = m;
+            return v;
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        synchronized (lock) {
+            Map<K, V> m = new HashMap<>(snapshot);
+            V v = m.merge(key, value, remappingFunction);
+            snapshot = m;
+            return v;
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        synchronized (lock) {
+            Map<K, V> m = new HashMap<>(snapshot);
+            m.replaceAll(function);
+            snapshot = m;
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        synchronized (lock) {
+            if (!snapshot.containsKey(key)) {
+                return null;
+            }
+            Map<K, V> m = new HashMap<>(snapshot);
+            V old = m.remove(key);
+            snapshot = m;
+            return old;
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        synchronized (lock) {
+            Map<K, V> s = snapshot;
+            if (!s.containsKey(key) || !eq(value, s.get(key))) {
+                return false;
+            }
+            Map<K, V> m = new HashMap<>(s);
+            m.remove(key);
+            snapshot = m;
+            return true;
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> src) {
+        synchronized (lock) {
+            Map<K, V> m = new HashMap<>(snapshot);
+            m.putAll(src);
+            snapshot = m;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            snapshot = Collections.emptyMap();
+        }
+    }
+
+    @Override
+    protected Iterator<Entry<K, V>> snapshotIterator() {
+        Iterator<Entry<K, V>> it = snapshot.entrySet().iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                return immutableEntry(it.next());
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package com.softmotions.commons.cont;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Counterpart of {@link AbstractIndexedCollection} with primitive {@code long} keys.
+ * Index is kept in {@link LongObjectHashMap} so no boxed keys
+ * and map entries are allocated per element.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public abstract class LongIndexedCollection<V> implements Collection<V> {
+
+    private final Collection<V> wrappedCollection;
+
+    private final LongObjectHashMap<V> index;
+
+    /**
+     * {@code false} until elements of the wrapped collection are indexed.
+     */
+    private boolean indexed;
+
+    protected LongIndexedCollection() {
+        this.wrappedCollection = new ArrayList<>();
+        this.index = new LongObjectHashMap<>();
+        this.indexed = true;
+    }
+
+    protected LongIndexedCollection(int size) {
+        this.wrappedCollection = new ArrayList<>(size);
+        this.index = new LongObjectHashMap<>(size);
+        this.indexed = true;
+    }
+
+    /**
+     * Elements of the given collection are indexed on the first access to the index,
+     * {@link #getElementKey(Object)} is not called before the subclass is initialized.
+     */
+    protected LongIndexedCollection(Collection<V> wrappedCollection) {
+        this.wrappedCollection = wrappedCollection;
+        this.index = new LongObjectHashMap<>(wrappedCollection.size());
+    }
+
+    public LongObjectHashMap<V> getIndex() {
+        return index();
+    }
+
+    private LongObjectHashMap<V> index() {
+        if (!indexed) {
+            for (V v : wrappedCollection) {
+                index.put(getElementKey(v), v);
+            }
+            indexed = true;
+        }
+        return index;
+    }
+
+    /**
+     * Returns element by its key or {@code null}.
+     */
+    public V getByKey(long key) {
+        return index().get(key);
+    }
+
+    public boolean containsKey(long key) {
+        return index().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return wrappedCollection.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return wrappedCollection.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return wrappedCollection.contains(o);
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return wrappedCollection.iterator();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return wrappedCollection.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return wrappedCollection.toArray(a);
+    }
+
+    @Override
+    public boolean add(V v) {
+        index().put(getElementKey(v), v);
+        return wrappedCollection.add(v);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        V to = (V) o;
+        index().remove(getElementKey(to));
+        return wrappedCollection.remove(to);
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        return wrappedCollection.containsAll(c);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends V> c) {
+        for (V v : c) {
+            index().put(getElementKey(v), v);
+        }
+        return wrappedCollection.addAll(c);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean removeAll(Collection<?> c) {
+        for (Object o : c) {
+            index().remove(getElementKey((V) o));
+        }
+        return wrappedCollection.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        boolean res = wrappedCollection.retainAll(c);
+        index.clear();
+        indexed = false;
+        return res;
+    }
+
+    @Override
+    public void clear() {
+        wrappedCollection.clear();
+        index.clear();
+        indexed = true;
+    }
+
+    public String toString() {
+        return wrappedCollection.toString();
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LongIndexedCollection<?> that = (LongIndexedCollection<?>) o;
+        if (!wrappedCollection.equals(that.wrappedCollection)) return false;
+        return true;
+    }
+
+    public int hashCode() {
+        return wrappedCollection.hashCode();
+    }
+
+    protected abstract long getElementKey(V el);
+}
@@ -0,0 +1,331 @@
+package com.softmotions.commons.cont;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open addressing hash map with primitive {@code long} keys.
+ * <p>
+ * Keys and values are stored in two parallel arrays with linear probing,
+ * no key boxing and no per-entry objects are allocated.
+ * {@code null} values are not allowed, {@code null} slot marks free slot.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@NotThreadSafe
+public class LongObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.6f;
+
+    private final float loadFactor;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    private int threshold;
+
+    private int mask;
+
+    private int modCount;
+
+    private Collection<V> valuesView;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public LongObjectHashMap(int expectedSize, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) {
+            throw new IllegalArgumentException("Load factor must be in range (0, 1)");
+        }
+        this.loadFactor = loadFactor;
+        allocate(tableSizeFor(expectedSize, loadFactor));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long[] k = keys;
+        Object[] v = values;
+        int m = mask;
+        for (int i = slot(key, m); ; i = (i + 1) & m) {
+            Object val = v[i];
+            if (val == null) {
+                return null;
+            }
+            if (k[i] == key) {
+                return (V) val;
+            }
+        }
+    }
+
+    public V getOrDefault(long key, V defaultValue) {
+        V v = get(key);
+        return v != null ? v : defaultValue;
+    }
+
+    /**
+     * Associates value with the key.
+     *
+     * @return Previous value or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not allowed");
+        }
+        int m = mask;
+        for (int i = slot(key, m); ; i = (i + 1) & m) {
+            Object val = values[i];
+            if (val == null) {
+                keys[i] = key;
+                values[i] = value;
+                ++modCount;
+                if (++size > threshold) {
+                    rehash(keys.length << 1);
+                }
+                return null;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) val;
+            }
+        }
+    }
+
+    public V putIfAbsent(long key, V value) {
+        V v = get(key);
+        if (v == null) {
+            put(key, value);
+        }
+        return v;
+    }
+
+    /**
+     * Removes mapping for the key.
+     *
+     * @return Removed value or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int m = mask;
+        for (int i = slot(key, m); ; i = (i + 1) & m) {
+            Object val = values[i];
+            if (val == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                shiftKeys(i);
+                --size;
+                ++modCount;
+                return (V) val;
+            }
+        }
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    /**
+     * Array of keys in table order.
+     */
+    public long[] keys() {
+        long[] res = new long[size];
+        for (int i = 0, j = 0; i < values.length && j < size; ++i) {
+            if (values[i] != null) {
+                res[j++] = keys[i];
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Live read-only view of map values.
+     */
+    public Collection<V> values() {
+        Collection<V> vv = valuesView;
+        if (vv == null) {
+            vv = new ValuesView();
+            valuesView = vv;
+        }
+        return vv;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> action) {
+        int mc = modCount;
+        for (int i = 0; i < values.length; ++i) {
+            Object val = values[i];
+            if (val != null) {
+                action.accept(keys[i], (V) val);
+            }
+        }
+        if (mc != modCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((k, v) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(k).append('=').append(v);
+        });
+        return sb.append('}').toString();
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(int expectedSize, float loadFactor) {
+        long need = (long) Math.ceil(Math.max(expectedSize, 2) / (double) loadFactor);
+        if (need > (1 << 30)) {
+            throw new IllegalArgumentException("Map is too large: " + expectedSize);
+        }
+        int n = Integer.highestOneBit((int) need);
+        return (n < need) ? n << 1 : n;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+    }
+
+    private void rehash(int capacity) {
+        if (capacity > (1 << 30)) {
+            throw new IllegalStateException("Map is too large");
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int m = mask;
+        for (int j = 0; j < oldValues.length; ++j) {
+            Object val = oldValues[j];
+            if (val == null) {
+                continue;
+            }
+            long key = oldKeys[j];
+            int i = slot(key, m);
+            while (values[i] != null) {
+                i = (i + 1) & m;
+            }
+            keys[i] = key;
+            values[i] = val;
+        }
+    }
+
+    /**
+     * Backward shift deletion, keeps probe sequences intact without tombstones.
+     */
+    private void shiftKeys(int pos) {
+        int m = mask;
+        int last;
+        for (; ; ) {
+            last = pos;
+            pos = (pos + 1) & m;
+            Object val;
+            for (; ; ) {
+                val = values[pos];
+                if (val == null) {
+                    values[last] = null;
+                    return;
+                }
+                int s = slot(keys[pos], m);
+                // Move entry to `last` if its home slot is not within (last, pos]
+                if (last <= pos ? (last >= s || s > pos) : (last >= s && s > pos)) {
+                    break;
+                }
+                pos = (pos + 1) & m;
+            }
+            keys[last] = keys[pos];
+            values[last] = val;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer<V> {
+
+        void accept(long key, V value);
+    }
+
+    private final class ValuesView extends AbstractCollection<V> {
+
+        @Override
+        public Iterator<V> iterator() {
+            return new Iterator<>() {
+
+                private int next = advance(0);
+
+                private int expectedModCount = modCount;
+
+                private int advance(int i) {
+                    while (i < values.length && values[i] == null) {
+                        ++i;
+                    }
+                    return i;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next < values.length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public V next() {
+                    if (expectedModCount != modCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (next >= values.length) {
+                        throw new NoSuchElementException();
+                    }
+                    int i = next;
+                    next = advance(next + 1);
+                    return (V) values[i];
+                }
+
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
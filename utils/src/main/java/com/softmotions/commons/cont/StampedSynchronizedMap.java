@@ -0,0 +1,254 @@
+package com.softmotions.commons.cont;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Synchronized map wrapper guarded by {@link StampedLock}.
+ * <p>
+ * Point reads ({@link #get(Object)}, {@link #containsKey(Object)}, {@link #size()})
+ * of the wrapped {@link ConcurrentHashMap} take no lock at all since it is safe
+ * for concurrent readers, the lock only makes compound operations atomic.
+ * Other wrapped maps are always read under read lock: a plain {@link java.util.HashMap}
+ * may be resized by a writer and reads of some maps modify them
+ * (e.g. access-ordered {@link java.util.LinkedHashMap}).
+ * Compound operations are performed under write lock.
+ * Iteration traverses a copy of entries taken under read lock.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class StampedSynchronizedMap<K, V> extends AbstractSnapshotMap<K, V> {
+
+    private final StampedLock lock = new StampedLock();
+
+    private final Map<K, V> map;
+
+    /**
+     * {@code true} if wrapped map is safe for concurrent readers.
+     */
+    private final boolean lockFreeReads;
+
+    /**
+     * Creates wrapper of {@link ConcurrentHashMap} with lock free point reads,
+     * {@code null} keys and values are not supported.
+     */
+    public StampedSynchronizedMap() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    public StampedSynchronizedMap(Map<K, V> map) {
+        this.map = map;
+        this.lockFreeReads = (map instanceof ConcurrentHashMap);
+    }
+
+    @Override
+    public int size() {
+        if (lockFreeReads) {
+            return map.size();
+        }
+        long stamp = lock.readLock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (lockFreeReads) {
+            return map.containsKey(key);
+        }
+        long stamp = lock.readLock();
+        try {
+            return map.containsKey(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        long stamp = lock.readLock();
+        try {
+            return map.containsValue(value);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        if (lockFreeReads) {
+            return map.get(key);
+        }
+        long stamp = lock.readLock();
+        try {
+            return map.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.put(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.putIfAbsent(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        V v = get(key);
+        if (v != null) {
+            return v;
+        }
+        long stamp = lock.writeLock();
+        try {
+            return map.computeIfAbsent(key, mappingFunction);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.replace(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        long stamp = lock.writeLock();
+        try {
+            return map.replace(key, oldValue, newValue);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        long stamp = lock.writeLock();
+        try {
+            return map.compute(key, remappingFunction);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        long stamp = lock.writeLock();
+        try {
+            return map.computeIfPresent(key, remappingFunction);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        long stamp = lock.writeLock();
+        try {
+            return map.merge(key, value, remappingFunction);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        long stamp = lock.writeLock();
+        try {
+            map.replaceAll(function);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        long stamp = lock.writeLock();
+        try {
+            return map.remove(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.remove(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        long stamp = lock.writeLock();
+        try {
+            map.putAll(m);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            map.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    protected Iterator<Entry<K, V>> snapshotIterator() {
+        List<Entry<K, V>> entries;
+        long stamp = lock.readLock();
+        try {
+            entries = new ArrayList<>(map.size());
+            for (Entry<K, V> e : map.entrySet()) {
+                entries.add(immutableEntry(e));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return entries.iterator();
+    }
+}
@@ -0,0 +1,326 @@
+package com.softmotions.commons.cont;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Map partitioned into independently locked segments.
+ * <p>
+ * Every key is stored in one of the segments selected by key hash,
+ * each segment owns its map and read-write lock, so threads working
+ * with different segments do not contend on shared lock state.
+ * Single key compound operations are atomic under the segment write lock.
+ * Bulk operations ({@link #size()}, {@link #clear()}, {@link #putAll(Map)}, {@link #replaceAll(BiFunction)})
+ * and iteration lock segments one by one and are not atomic
+ * across the whole map. Iteration traverses per-segment copies of entries.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class StripedSynchronizedMap<K, V> extends AbstractSnapshotMap<K, V> {
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final Segment<K, V>[] segments;
+
+    private final int mask;
+
+    public StripedSynchronizedMap(Supplier<? extends Map<K, V>> factory) {
+        this(factory, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param factory Segment map factory
+     * @param stripes Number of segments, rounded up to power of two
+     */
+    public StripedSynchronizedMap(Supplier<? extends Map<K, V>> factory, int stripes) {
+        int n = 1;
+        while (n < stripes && n < (1 << 16)) {
+            n <<= 1;
+        }
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segs = (Segment<K, V>[]) new Segment<?, ?>[n];
+        segments = segs;
+        for (int i = 0; i < n; ++i) {
+            segments[i] = new Segment<>(factory.get());
+        }
+        mask = n - 1;
+    }
+
+    private Segment<K, V> segment(Object key) {
+        int h = (key == null) ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x9E3779B9;
+        return segments[(h >>> 16) & mask];
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment<K, V> s : segments) {
+            s.lock.readLock().lock();
+            try {
+                size += s.map.size();
+            } finally {
+                s.lock.readLock().unlock();
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment<K, V> s : segments) {
+            s.lock.readLock().lock();
+            try {
+                if (!s.map.isEmpty()) {
+                    return false;
+                }
+            } finally {
+                s.lock.readLock().unlock();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Segment<K, V> s = segment(key);
+        s.lock.readLock().lock();
+        try {
+            return s.map.containsKey(key);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (Segment<K, V> s : segments) {
+            s.lock.readLock().lock();
+            try {
+                if (s.map.containsValue(value)) {
+                    return true;
+                }
+            } finally {
+                s.lock.readLock().unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public V get(Object key) {
+        Segment<K, V> s = segment(key);
+        s.lock.readLock().lock();
+        try {
+            return s.map.get(key);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.put(key, value);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.putIfAbsent(key, value);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.computeIfAbsent(key, mappingFunction);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.replace(key, value);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.replace(key, oldValue, newValue);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.compute(key, remappingFunction);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.computeIfPresent(key, remappingFunction);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.merge(key, value, remappingFunction);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+        for (Segment<K, V> s : segments) {
+            s.lock.writeLock().lock();
+            try {
+                s.map.replaceAll(function);
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.remove(key);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Segment<K, V> s = segment(key);
+        s.lock.writeLock().lock();
+        try {
+            return s.map.remove(key, value);
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        for (Entry<? extends K, ? extends V> e : m.entrySet()) {
+            put(e.getKey(), e.getValue());
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> s : segments) {
+            s.lock.writeLock().lock();
+            try {
+                s.map.clear();
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected Iterator<Entry<K, V>> snapshotIterator() {
+        return new Iterator<>() {
+
+            private int next;
+
+            private Iterator<Entry<K, V>> current = CollectionUtils.EMPTY_ITERATOR;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (next >= segments.length) {
+                        return false;
+                    }
+                    current = segments[next++].snapshot();
+                }
+                return true;
+            }
+
+            @Override
+            public Entry<K, V> next() {
+                hasNext();
+                return current.next();
+            }
+        };
+    }
+
+    private static final class Segment<K, V> {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<K, V> map;
+
+        private Segment(Map<K, V> map) {
+            this.map = map;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Iterator<Entry<K, V>> snapshot() {
+            lock.readLock().lock();
+            try {
+                if (map.isEmpty()) {
+                    return CollectionUtils.EMPTY_ITERATOR;
+                }
+                List<Entry<K, V>> entries = new ArrayList<>(map.size());
+                for (Entry<K, V> e : map.entrySet()) {
+                    entries.add(immutableEntry(e));
+                }
+                return entries.iterator();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
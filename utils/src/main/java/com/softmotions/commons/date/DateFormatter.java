@@ -0,0 +1,313 @@
+package com.softmotions.commons.date;
+
+import javax.annotation.concurrent.Immutable;
+import java.text.ParseException;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Immutable thread safe date formatter compiled from
+ * {@link java.text.SimpleDateFormat} compatible pattern.
+ * <p>
+ * Instances are obtained from {@link DateFormatters} registry
+ * and can be freely shared between threads.
+ * Parsing is lenient like {@link java.text.SimpleDateFormat}: text fields
+ * accept both full and short forms, two digit years are resolved
+ * within 80 years before and 20 years after the current date.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+public final class DateFormatter {
+
+    private final String pattern;
+
+    private final Locale locale;
+
+    private final ZoneId zone;
+
+    private final DateTimeFormatter formatter;
+
+    DateFormatter(String pattern, Locale locale, ZoneId zone) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.zone = zone;
+        this.formatter = appendPattern(new DateTimeFormatterBuilder().parseCaseInsensitive().parseLenient(), pattern)
+                .toFormatter(locale)
+                .withZone(zone);
+    }
+
+    /**
+     * Original {@link java.text.SimpleDateFormat} pattern.
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    public DateTimeFormatter getFormatter() {
+        return formatter;
+    }
+
+    public String format(Date date) {
+        return formatter.format(date.toInstant());
+    }
+
+    public String format(long epochMillis) {
+        return formatter.format(Instant.ofEpochMilli(epochMillis));
+    }
+
+    /**
+     * Appends formatted date to the given builder
+     * without creating intermediate strings.
+     */
+    public StringBuilder formatTo(Date date, StringBuilder sb) {
+        formatter.formatTo(date.toInstant(), sb);
+        return sb;
+    }
+
+    /**
+     * Appends formatted date to the given builder
+     * without creating intermediate strings.
+     */
+    public StringBuilder formatTo(long epochMillis, StringBuilder sb) {
+        formatter.formatTo(Instant.ofEpochMilli(epochMillis), sb);
+        return sb;
+    }
+
+    /**
+     * Appends formatted date to the given appendable.
+     *
+     * @throws DateTimeException If appendable throws {@link java.io.IOException}
+     */
+    public <T extends Appendable> T formatTo(Date date, T out) {
+        formatter.formatTo(date.toInstant(), out);
+        return out;
+    }
+
+    /**
+     * Parses the whole text. Date and time fields missing
+     * in the pattern are defaulted to {@code 1970-01-01 00:00}
+     * like {@link java.text.SimpleDateFormat} does.
+     *
+     * @throws ParseException If text cannot be parsed
+     */
+    public Date parse(String text) throws ParseException {
+        ParsePosition pos = new ParsePosition(0);
+        Date date = parse(text, pos);
+        if (date == null || pos.getIndex() != text.length()) {
+            throw new ParseException("Unparseable date: \"" + text + '"',
+                                     pos.getErrorIndex() >= 0 ? pos.getErrorIndex() : pos.getIndex());
+        }
+        return date;
+    }
+
+    /**
+     * Parses text starting at the given position,
+     * returns {@code null} and sets error index if text cannot be parsed.
+     */
+    public Date parse(String text, ParsePosition pos) {
+        int start = pos.getIndex();
+        TemporalAccessor ta;
+        try {
+            ta = formatter.parse(text, pos);
+        } catch (DateTimeException e) {
+            pos.setIndex(start);
+            if (pos.getErrorIndex() < 0) {
+                pos.setErrorIndex(start);
+            }
+            return null;
+        }
+        try {
+            return Date.from(toInstant(ta));
+        } catch (DateTimeException | ArithmeticException e) {
+            pos.setIndex(start);
+            pos.setErrorIndex(start);
+            return null;
+        }
+    }
+
+    /**
+     * Parses the whole text, returns {@code null} if text cannot be parsed.
+     */
+    public Date parseOrNull(String text) {
+        ParsePosition pos = new ParsePosition(0);
+        Date date = parse(text, pos);
+        return (date != null && pos.getIndex() == text.length()) ? date : null;
+    }
+
+    private Instant toInstant(TemporalAccessor ta) {
+        if (ta.isSupported(ChronoField.INSTANT_SECONDS)) {
+            return Instant.from(ta);
+        }
+        LocalDate date = ta.query(TemporalQueries.localDate());
+        if (date == null) {
+            date = LocalDate.of(
+                    ta.isSupported(ChronoField.YEAR) ? ta.get(ChronoField.YEAR) : 1970,
+                    ta.isSupported(ChronoField.MONTH_OF_YEAR) ? ta.get(ChronoField.MONTH_OF_YEAR) : 1,
+                    ta.isSupported(ChronoField.DAY_OF_MONTH) ? ta.get(ChronoField.DAY_OF_MONTH) : 1);
+        }
+        LocalTime time = ta.query(TemporalQueries.localTime());
+        if (time == null) {
+            time = LocalTime.MIDNIGHT;
+        }
+        ZoneId z = ta.query(TemporalQueries.zone());
+        return ZonedDateTime.of(date, time, z != null ? z : zone).toInstant();
+    }
+
+    /**
+     * Appends {@link java.text.SimpleDateFormat} pattern
+     * to the builder translating it into {@link DateTimeFormatter} semantics.
+     */
+    static DateTimeFormatterBuilder appendPattern(DateTimeFormatterBuilder builder, String sdfPattern) {
+        // SimpleDateFormat uses standalone month names if pattern has no day of month
+        boolean standalone = true;
+        boolean quoted = false;
+        for (int i = 0, l = sdfPattern.length(); i < l; ++i) {
+            char c = sdfPattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == 'd') {
+                standalone = false;
+                break;
+            }
+        }
+        StringBuilder sb = new StringBuilder(sdfPattern.length() + 8);
+        quoted = false;
+        for (int i = 0, l = sdfPattern.length(); i < l; ) {
+            char c = sdfPattern.charAt(i);
+            if (c == '\'') {
+                sb.append(c);
+                quoted = !quoted;
+                ++i;
+                continue;
+            }
+            if (quoted) {
+                sb.append(c);
+                ++i;
+                continue;
+            }
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                if (c == '[' || c == ']' || c == '{' || c == '}' || c == '#') {
+                    // Reserved by DateTimeFormatter, literals in SimpleDateFormat
+                    sb.append('\'').append(c).append('\'');
+                } else {
+                    sb.append(c);
+                }
+                ++i;
+                continue;
+            }
+            int cnt = 1;
+            while (i + cnt < l && sdfPattern.charAt(i + cnt) == c) {
+                ++cnt;
+            }
+            i += cnt;
+            switch (c) {
+                case 'M':
+                    if (standalone && cnt >= 4) {
+                        c = 'L';
+                    }
+                    cnt = Math.min(cnt, 4);
+                    break;
+                case 'E':
+                case 'L':
+                case 'z':
+                    // Any count >= 4 means full form, 5 is narrow form in java.time
+                    cnt = Math.min(cnt, 4);
+                    break;
+                case 'a':
+                case 'G':
+                case 'Z':
+                    cnt = 1;
+                    break;
+                case 'u':
+                    // ISO day number of week (1 = Monday), 'e' is localized in java.time
+                    builder.appendPattern(sb.toString());
+                    sb.setLength(0);
+                    appendNumber(builder, ChronoField.DAY_OF_WEEK, cnt);
+                    continue;
+                case 'S':
+                    // Milliseconds, 'S' is fraction of second in java.time
+                    builder.appendPattern(sb.toString());
+                    sb.setLength(0);
+                    appendNumber(builder, ChronoField.MILLI_OF_SECOND, cnt);
+                    continue;
+                case 'y':
+                    if (cnt == 2) {
+                        // Two digit years are resolved within 80 years before and 20 years after now
+                        builder.appendPattern(sb.toString());
+                        sb.setLength(0);
+                        builder.appendValueReduced(ChronoField.YEAR_OF_ERA, 2, 2, LocalDate.now().minusYears(80));
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            for (int j = 0; j < cnt; ++j) {
+                sb.append(c);
+            }
+        }
+        return builder.appendPattern(sb.toString());
+    }
+
+    /**
+     * Appends number field padded to the given count of digits
+     * like {@link java.text.SimpleDateFormat} does.
+     * Field is fixed width if the count covers all its digits,
+     * so it can be parsed adjacent to other numbers, eg: {@code HHmmssSSS}.
+     */
+    private static void appendNumber(DateTimeFormatterBuilder builder, ChronoField field, int cnt) {
+        int digits = Long.toString(field.range().getMaximum()).length();
+        cnt = Math.min(cnt, 19);
+        if (cnt >= digits) {
+            builder.appendValue(field, cnt);
+        } else {
+            builder.appendValue(field, cnt, digits, SignStyle.NOT_NEGATIVE);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DateFormatter that = (DateFormatter) o;
+        return pattern.equals(that.pattern) &&
+               locale.equals(that.locale) &&
+               zone.equals(that.zone);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pattern, locale, zone);
+    }
+
+    public String toString() {
+        return "DateFormatter{" +
+               "pattern='" + pattern + '\'' +
+               ", locale=" + locale +
+               ", zone=" + zone +
+               '}';
+    }
+}
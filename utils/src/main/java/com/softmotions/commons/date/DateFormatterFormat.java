@@ -0,0 +1,62 @@
+package com.softmotions.commons.date;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Thread safe {@link DateFormat} backed by immutable {@link DateFormatter}.
+ * Drop-in replacement of {@link SynchronizedSDF} for code
+ * which needs {@link DateFormat} API. Formatting and parsing
+ * do not take locks, {@link #setTimeZone(TimeZone)},
+ * {@link #setLenient(boolean)} and other mutators have no effect on results.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public final class DateFormatterFormat extends DateFormat {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient DateFormatter formatter;
+
+    public DateFormatterFormat(DateFormatter formatter) {
+        this.formatter = formatter;
+        this.calendar = Calendar.getInstance(TimeZone.getTimeZone(formatter.getZone()), formatter.getLocale());
+        this.numberFormat = NumberFormat.getIntegerInstance(formatter.getLocale());
+    }
+
+    public DateFormatter getFormatter() {
+        return formatter;
+    }
+
+    @Override
+    public StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition fieldPosition) {
+        formatter.getFormatter().formatTo(date.toInstant(), toAppendTo);
+        return toAppendTo;
+    }
+
+    @Override
+    public Date parse(String source, ParsePosition pos) {
+        return formatter.parse(source, pos);
+    }
+
+    @Override
+    public Object clone() {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return (obj instanceof DateFormatterFormat)
+               && formatter.equals(((DateFormatterFormat) obj).formatter);
+    }
+
+    @Override
+    public int hashCode() {
+        return formatter.hashCode();
+    }
+}
@@ -0,0 +1,109 @@
+package com.softmotions.commons.date;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.time.ZoneId;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Shared registry of compiled {@link DateFormatter}s.
+ * <p>
+ * Formatters are cached by (pattern, locale, zone) in a bounded cache,
+ * so a pattern is compiled once and reused by all threads
+ * instead of per-thread or per-call {@link java.text.SimpleDateFormat} instances.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public final class DateFormatters {
+
+    public static final int MAX_CACHED_FORMATTERS = 1024;
+
+    private static final LoadingCache<Key, DateFormatter> CACHE =
+            CacheBuilder.newBuilder()
+                        .maximumSize(MAX_CACHED_FORMATTERS)
+                        .build(new CacheLoader<>() {
+                            @Override
+                            public DateFormatter load(Key key) {
+                                return new DateFormatter(key.pattern, key.locale, key.zone);
+                            }
+                        });
+
+    private DateFormatters() {
+    }
+
+    /**
+     * Formatter for default locale and system default time zone.
+     */
+    public static DateFormatter get(String pattern) {
+        return get(pattern, Locale.getDefault(), ZoneId.systemDefault());
+    }
+
+    /**
+     * Formatter for the given locale and system default time zone.
+     */
+    public static DateFormatter get(String pattern, Locale locale) {
+        return get(pattern, locale, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param pattern {@link java.text.SimpleDateFormat} compatible pattern
+     * @throws IllegalArgumentException If pattern is invalid
+     */
+    public static DateFormatter get(String pattern, Locale locale, ZoneId zone) {
+        Key key = new Key(Objects.requireNonNull(pattern),
+                          locale != null ? locale : Locale.getDefault(),
+                          zone != null ? zone : ZoneId.systemDefault());
+        try {
+            return CACHE.getUnchecked(key);
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@link java.text.DateFormat} facade for code expecting {@code java.text} API.
+     */
+    public static DateFormatterFormat getFormat(String pattern, Locale locale) {
+        return new DateFormatterFormat(get(pattern, locale));
+    }
+
+    private static final class Key {
+
+        private final String pattern;
+
+        private final Locale locale;
+
+        private final ZoneId zone;
+
+        private final int hash;
+
+        private Key(String pattern, Locale locale, ZoneId zone) {
+            this.pattern = pattern;
+            this.locale = locale;
+            this.zone = zone;
+            this.hash = 31 * (31 * pattern.hashCode() + locale.hashCode()) + zone.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return pattern.equals(key.pattern) &&
+                   locale.equals(key.locale) &&
+                   zone.equals(key.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
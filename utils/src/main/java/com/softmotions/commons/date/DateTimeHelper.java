@@ -11,12 +11,30 @@ import org.jetbrains.annotations.Contract;
  */
 public class DateTimeHelper {
 
+    /**
+     * @deprecated Use {@link #DD_MM_YYYY}
+     */
+    @Deprecated
     public static final SimpleDateFormat DD_MM_YYYY_SDF = new SynchronizedSDF("dd.MM.yyyy");
 
+    /**
+     * @deprecated Use {@link #DD__MM__YYYY}
+     */
+    @Deprecated
     public static final SimpleDateFormat DD__MM__YYYY__SDF = new SynchronizedSDF("dd MMMM yyyy");
-    
+
+    /**
+     * @deprecated Use {@link #HH_mm__DD__MM__YYYY}
+     */
+    @Deprecated
     public static final SimpleDateFormat HH_mm__DD__MM__YYYY__SDF = new SynchronizedSDF("HH:mm dd MMMM yyyy");
 
+    public static final DateFormatter DD_MM_YYYY = DateFormatters.get("dd.MM.yyyy");
+
+    public static final DateFormatter DD__MM__YYYY = DateFormatters.get("dd MMMM yyyy");
+
+    public static final DateFormatter HH_mm__DD__MM__YYYY = DateFormatters.get("HH:mm dd MMMM yyyy");
+
     private DateTimeHelper() {
     }
 
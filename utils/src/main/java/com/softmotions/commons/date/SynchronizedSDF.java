@@ -16,7 +16,11 @@ import java.util.TimeZone;
  * Synchronized thread safe wrapper for SimpleDateFormat.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
+ * @deprecated All formatting and parsing is serialized on one monitor.
+ * Use lock-free {@link DateFormatter} from {@link DateFormatters}
+ * or {@link DateFormatterFormat} where {@link java.text.DateFormat} is required.
  */
+@Deprecated
 @SuppressWarnings({"SynchronizeOnThis"})
 public final class SynchronizedSDF extends SimpleDateFormat {
 
@@ -0,0 +1,18 @@
+package com.softmotions.commons.db;
+
+/**
+ * Notified when a connection is held longer than
+ * {@link JdbcConnectionPool#getLeakDetectionThresholdMillis()}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@FunctionalInterface
+public interface JdbcConnectionLeakListener {
+
+    /**
+     * @param pool          Connection pool
+     * @param heldMillis    Time connection is held at the moment of detection
+     * @param checkoutTrace Stack trace of the connection checkout
+     */
+    void connectionLeaked(JdbcConnectionPool pool, long heldMillis, Throwable checkoutTrace);
+}
@@ -11,13 +11,33 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
  * Connection pool datasource wrapper.
+ * <p>
+ * Idle connections are kept in a lock-free LIFO stack,
+ * callers waiting for a connection are queued on a fair semaphore
+ * so every returned connection is handed off to the longest waiting caller.
+ * Connections idle longer than {@link #getValidationBypassMillis()}
+ * are validated before checkout, connections idle longer than
+ * {@link #getIdleTimeoutMillis()} are evicted.
+ * <p>
+ * Pool statistics are available through {@link #getMetrics()}.
+ * When {@link #setLeakDetectionThresholdMillis(long)} is set
+ * connections held longer than the threshold are reported
+ * to the {@link JdbcConnectionLeakListener} along with checkout stack trace.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
@@ -27,24 +47,55 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
 
     public static final int DEFAULT_MAX_CONNECTIONS = 20;
 
-    private final ArrayList<PooledConnection> recycledConnections = new ArrayList<>();
+    public static final int DEFAULT_VALIDATION_TIMEOUT_SEC = 5;
+
+    public static final long DEFAULT_VALIDATION_BYPASS_MS = 500L;
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Idle connections stack, head is the most recently used connection.
+     */
+    private final ConcurrentLinkedDeque<PoolEntry> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * All physical connections owned by this pool.
+     */
+    private final Map<PooledConnection, PoolEntry> entries = new ConcurrentHashMap<>();
 
     private final ConnectionPoolDataSource dataSource;
 
-    private final Set<PooledConnection> invalidConnections = new HashSet<>();
+    private final PoolSemaphore permits;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    private final AtomicLong nextEvictionTime = new AtomicLong();
+
+    private final JdbcConnectionPoolMetrics metrics = new JdbcConnectionPoolMetrics(this);
 
     private final Object lock = new Object();
 
-    private int loginTimeout = DEFAULT_LOGIN_TIMEOUT_SEC;
+    private volatile int loginTimeout = DEFAULT_LOGIN_TIMEOUT_SEC;
 
-    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private volatile int validationTimeout = DEFAULT_VALIDATION_TIMEOUT_SEC;
 
-    private int activeConnections;
+    private volatile long validationBypassMillis = DEFAULT_VALIDATION_BYPASS_MS;
 
-    private boolean closed;
+    private volatile long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MS;
+
+    private volatile long leakDetectionThresholdMillis;
+
+    private volatile JdbcConnectionLeakListener leakListener;
+
+    private ScheduledFuture<?> leakDetector;
+
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    private volatile boolean closed;
 
     public JdbcConnectionPool(ConnectionPoolDataSource dataSource) throws SQLException {
         this.dataSource = dataSource;
+        this.permits = new PoolSemaphore(maxConnections);
     }
 
     public void setMaxConnections(int val) {
@@ -52,8 +103,13 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
             val = DEFAULT_MAX_CONNECTIONS;
         }
         synchronized (lock) {
-            this.maxConnections = val;
-            lock.notifyAll();
+            int delta = val - maxConnections;
+            maxConnections = val;
+            if (delta > 0) {
+                permits.release(delta);
+            } else if (delta < 0) {
+                permits.reducePermits(-delta);
+            }
         }
     }
 
@@ -63,6 +119,104 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
         }
     }
 
+    /**
+     * Number of connections currently checked out.
+     */
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    /**
+     * Number of connections kept in the idle stack.
+     */
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * Approximate number of callers waiting for a connection.
+     */
+    public int getPendingConnections() {
+        return permits.getQueueLength();
+    }
+
+    public JdbcConnectionPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * Timeout in seconds used by {@link Connection#isValid(int)}
+     * when validating an idle connection before checkout.
+     */
+    public void setValidationTimeout(int seconds) {
+        if (seconds < 1) {
+            seconds = DEFAULT_VALIDATION_TIMEOUT_SEC;
+        }
+        this.validationTimeout = seconds;
+    }
+
+    public long getValidationBypassMillis() {
+        return validationBypassMillis;
+    }
+
+    /**
+     * Connections used within the given period
+     * are handed out without validation.
+     * Negative value disables validation.
+     */
+    public void setValidationBypassMillis(long millis) {
+        this.validationBypassMillis = millis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Idle connections unused for the given period are closed.
+     * Zero or negative value disables idle eviction.
+     */
+    public void setIdleTimeoutMillis(long millis) {
+        this.idleTimeoutMillis = millis;
+        this.nextEvictionTime.set(System.nanoTime());
+    }
+
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * Connections held longer than the given period are reported
+     * to the leak listener. Zero or negative value disables leak detection.
+     * Checkout stack traces are captured only while leak detection is enabled.
+     */
+    public void setLeakDetectionThresholdMillis(long millis) {
+        synchronized (lock) {
+            leakDetectionThresholdMillis = Math.max(millis, 0);
+            if (leakDetector != null) {
+                leakDetector.cancel(false);
+                leakDetector = null;
+            }
+            if (leakDetectionThresholdMillis > 0 && !closed) {
+                long period = Math.max(leakDetectionThresholdMillis / 2, 100L);
+                leakDetector = LeakDetectorHolder.EXECUTOR.scheduleWithFixedDelay(
+                        this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    public JdbcConnectionLeakListener getLeakListener() {
+        return leakListener;
+    }
+
+    public void setLeakListener(JdbcConnectionLeakListener leakListener) {
+        this.leakListener = leakListener;
+    }
+
     @Override
     public void close() throws IOException {
         synchronized (lock) {
@@ -70,10 +224,16 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
                 return;
             }
             closed = true;
-            invalidConnections.clear();
-            for (PooledConnection pc : recycledConnections) {
-                closeConnection(pc);
+            if (leakDetector != null) {
+                leakDetector.cancel(false);
+                leakDetector = null;
             }
+            // Wake up all waiting callers, they will fail fast on closed pool
+            permits.release(maxConnections);
+        }
+        PoolEntry e;
+        while ((e = idle.pollFirst()) != null) {
+            discardConnection(e);
         }
     }
 
@@ -98,19 +258,15 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
 
     @Override
     public void setLoginTimeout(int seconds) throws SQLException {
-        synchronized (lock) {
-            if (seconds < 1) {
-                seconds = DEFAULT_LOGIN_TIMEOUT_SEC;
-            }
-            this.loginTimeout = seconds;
+        if (seconds < 1) {
+            seconds = DEFAULT_LOGIN_TIMEOUT_SEC;
         }
+        this.loginTimeout = seconds;
     }
 
     @Override
     public int getLoginTimeout() throws SQLException {
-        synchronized (lock) {
-            return loginTimeout;
-        }
+        return loginTimeout;
     }
 
     @Override
@@ -120,47 +276,46 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
 
     @Override
     public Connection getConnection() throws SQLException {
-        long max = System.currentTimeMillis() + loginTimeout * 1000;
-        do {
-            synchronized (this) {
-                if (closed) {
-                    throw new IllegalStateException("Connection pool has been disposed");
-                }
-                if (activeConnections < maxConnections) {
-                    Connection conn;
-                    PooledConnection pc;
-                    if (!recycledConnections.isEmpty()) {
-                        pc = recycledConnections.remove(recycledConnections.size() - 1);
-                    } else {
-                        pc = dataSource.getPooledConnection();
-                    }
-                    conn = pc.getConnection();
-                    activeConnections++;
-                    pc.addConnectionEventListener(this);
-                    return conn;
-                }
-                try {
-                    wait(100);
-                } catch (InterruptedException e) {
-                    // ignore
-                }
+        checkClosed();
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(loginTimeout, TimeUnit.SECONDS)) {
+                metrics.timeouts.increment();
+                throw new SQLException("Login timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for connection", e);
+        }
+        boolean acquired = false;
+        try {
+            checkClosed();
+            Connection conn = checkout(start);
+            acquired = true;
+            return conn;
+        } finally {
+            if (!acquired) {
+                permits.release();
             }
-        } while (System.currentTimeMillis() <= max);
-        throw new SQLException("Login timeout");
+        }
     }
 
     @Override
     public void connectionClosed(ConnectionEvent event) {
         PooledConnection pc = (PooledConnection) event.getSource();
-        pc.removeConnectionEventListener(this);
         recycleConnection(pc);
     }
 
     @Override
     public void connectionErrorOccurred(ConnectionEvent event) {
         PooledConnection pc = (PooledConnection) event.getSource();
-        if (pc != null && !invalidConnections.contains(pc)) {
-            invalidConnections.add(pc);
+        if (pc == null) {
+            return;
+        }
+        PoolEntry e = entries.get(pc);
+        if (e != null && !e.invalid) {
+            e.invalid = true;
+            metrics.invalidations.increment();
         }
     }
 
@@ -183,6 +338,85 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
     //                        Private staff                                  //
     ///////////////////////////////////////////////////////////////////////////
 
+    private void checkClosed() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool has been disposed");
+        }
+    }
+
+    /**
+     * Takes connection from the idle stack or opens a new one.
+     * Caller must hold a pool permit.
+     */
+    private Connection checkout(long start) throws SQLException {
+        PoolEntry e;
+        while ((e = idle.pollFirst()) != null) {
+            if (e.invalid) {
+                discardConnection(e);
+                continue;
+            }
+            Connection conn;
+            try {
+                conn = e.pc.getConnection();
+            } catch (SQLException ex) {
+                metrics.invalidations.increment();
+                discardConnection(e);
+                continue;
+            }
+            if (!validate(e, conn)) {
+                metrics.invalidations.increment();
+                discardConnection(e);
+                continue;
+            }
+            onCheckout(e, start);
+            return conn;
+        }
+        PooledConnection pc = dataSource.getPooledConnection();
+        metrics.created.increment();
+        e = new PoolEntry(pc);
+        entries.put(pc, e);
+        pc.addConnectionEventListener(this);
+        Connection conn;
+        try {
+            conn = pc.getConnection();
+        } catch (SQLException ex) {
+            discardConnection(e);
+            throw ex;
+        }
+        onCheckout(e, start);
+        return conn;
+    }
+
+    private void onCheckout(PoolEntry e, long start) {
+        long now = System.nanoTime();
+        e.lastAccessNanos = now;
+        e.checkoutNanos = now;
+        e.checkedOut.set(true);
+        if (leakDetectionThresholdMillis > 0) {
+            e.checkoutTrace = new Throwable("Connection checkout by thread: " + Thread.currentThread().getName());
+        }
+        activeConnections.incrementAndGet();
+        metrics.checkouts.increment();
+        metrics.waitTime.record(now - start);
+    }
+
+    private boolean validate(PoolEntry e, Connection conn) {
+        long bypass = validationBypassMillis;
+        if (bypass < 0 || System.nanoTime() - e.lastAccessNanos <= TimeUnit.MILLISECONDS.toNanos(bypass)) {
+            return true;
+        }
+        try {
+            return conn.isValid(validationTimeout);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void discardConnection(PoolEntry e) {
+        entries.remove(e.pc);
+        e.pc.removeConnectionEventListener(this);
+        closeConnection(e.pc);
+    }
 
     private void closeConnection(PooledConnection pc) {
         try {
@@ -196,21 +430,149 @@ public class JdbcConnectionPool implements DataSource, ConnectionEventListener,
     }
 
     void recycleConnection(PooledConnection pc) {
-        synchronized (lock) {
-            if (activeConnections <= 0) {
-                throw new AssertionError();
+        PoolEntry e = entries.get(pc);
+        if (e == null) {
+            // Not owned by this pool
+            pc.removeConnectionEventListener(this);
+            return;
+        }
+        if (!e.checkedOut.compareAndSet(true, false)) {
+            // Duplicate close event of the returned connection
+            return;
+        }
+        if (activeConnections.getAndDecrement() <= 0) {
+            throw new AssertionError();
+        }
+        long now = System.nanoTime();
+        e.lastAccessNanos = now;
+        metrics.holdTime.record(now - e.checkoutNanos);
+        e.checkoutNanos = 0;
+        e.checkoutTrace = null;
+        e.leakReported = false;
+        if (e.invalid || closed) {
+            discardConnection(e);
+        } else {
+            idle.offerFirst(e);
+            if (closed && idle.remove(e)) {
+                discardConnection(e);
             }
-            activeConnections--;
-            if (invalidConnections.remove(pc)) {
-                closeConnection(pc);
-            } else if (!closed && activeConnections < maxConnections) {
-                recycledConnections.add(pc);
-            } else {
-                closeConnection(pc);
+        }
+        permits.release();
+        evictIdle(now);
+    }
+
+    /**
+     * Closes connections idle longer than {@link #getIdleTimeoutMillis()}.
+     * Piggybacks on connection returns, runs at most once per half of idle timeout.
+     */
+    private void evictIdle(long now) {
+        long timeout = idleTimeoutMillis;
+        if (timeout <= 0) {
+            return;
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        long next = nextEvictionTime.get();
+        if (now - next < 0 || !nextEvictionTime.compareAndSet(next, now + timeoutNanos / 2)) {
+            return;
+        }
+        PoolEntry e;
+        // Tail of the stack holds least recently used connections
+        while ((e = idle.peekLast()) != null && now - e.lastAccessNanos > timeoutNanos) {
+            if (idle.removeLastOccurrence(e)) {
+                metrics.evictions.increment();
+                discardConnection(e);
             }
-            if (activeConnections >= maxConnections - 1) {
-                notifyAll();
+        }
+    }
+
+    private void detectLeaks() {
+        long threshold = leakDetectionThresholdMillis;
+        if (threshold <= 0 || closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+        for (PoolEntry e : entries.values()) {
+            long checkout = e.checkoutNanos;
+            Throwable trace = e.checkoutTrace;
+            if (checkout == 0 || trace == null || e.leakReported || now - checkout <= thresholdNanos) {
+                continue;
+            }
+            e.leakReported = true;
+            metrics.leaks.increment();
+            JdbcConnectionLeakListener l = leakListener;
+            if (l != null) {
+                try {
+                    l.connectionLeaked(this, TimeUnit.NANOSECONDS.toMillis(now - checkout), trace);
+                } catch (RuntimeException ex) {
+                    PrintWriter lw = getLogWriterSilent();
+                    if (lw != null) {
+                        ex.printStackTrace(lw);
+                    }
+                }
+            } else {
+                PrintWriter lw = getLogWriterSilent();
+                if (lw != null) {
+                    trace.printStackTrace(lw);
+                }
             }
         }
     }
+
+    private static final class PoolEntry {
+
+        private final PooledConnection pc;
+
+        private volatile long lastAccessNanos;
+
+        private volatile boolean invalid;
+
+        /**
+         * Checkout time, zero if connection is not checked out.
+         */
+        private volatile long checkoutNanos;
+
+        /**
+         * Guards against returning the connection twice.
+         */
+        private final AtomicBoolean checkedOut = new AtomicBoolean();
+
+        private volatile Throwable checkoutTrace;
+
+        private volatile boolean leakReported;
+
+        private PoolEntry(PooledConnection pc) {
+            this.pc = pc;
+            this.lastAccessNanos = System.nanoTime();
+        }
+    }
+
+    private static final class LeakDetectorHolder {
+
+        private static final ScheduledExecutorService EXECUTOR;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "JdbcConnectionPool-leak-detector");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            EXECUTOR = executor;
+        }
+    }
+
+    private static final class PoolSemaphore extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private PoolSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
 }
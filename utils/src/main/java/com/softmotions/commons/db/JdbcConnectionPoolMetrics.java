@@ -0,0 +1,133 @@
+package com.softmotions.commons.db;
+
+import com.softmotions.commons.perf.ConcurrentHistogram;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of {@link JdbcConnectionPool}.
+ * Times are reported in nanoseconds.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class JdbcConnectionPoolMetrics {
+
+    private final JdbcConnectionPool pool;
+
+    final LongAdder checkouts = new LongAdder();
+
+    final LongAdder created = new LongAdder();
+
+    final LongAdder timeouts = new LongAdder();
+
+    final LongAdder invalidations = new LongAdder();
+
+    final LongAdder evictions = new LongAdder();
+
+    final LongAdder leaks = new LongAdder();
+
+    final ConcurrentHistogram waitTime = new ConcurrentHistogram();
+
+    final ConcurrentHistogram holdTime = new ConcurrentHistogram();
+
+    JdbcConnectionPoolMetrics(JdbcConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public int getActive() {
+        return pool.getActiveConnections();
+    }
+
+    public int getIdle() {
+        return pool.getIdleConnections();
+    }
+
+    public int getPending() {
+        return pool.getPendingConnections();
+    }
+
+    /**
+     * Total number of successful checkouts.
+     */
+    public long getCheckouts() {
+        return checkouts.sum();
+    }
+
+    /**
+     * Number of physical connections opened.
+     */
+    public long getCreated() {
+        return created.sum();
+    }
+
+    /**
+     * Number of checkouts failed by login timeout.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Number of connections discarded due to errors or failed validation.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Number of connections closed by idle timeout.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of detected connection leaks.
+     */
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    /**
+     * Time callers wait for a connection.
+     */
+    public ConcurrentHistogram.Snapshot getWaitTime() {
+        return waitTime.snapshot();
+    }
+
+    /**
+     * Time connections are held by callers.
+     */
+    public ConcurrentHistogram.Snapshot getHoldTime() {
+        return holdTime.snapshot();
+    }
+
+    public void reset() {
+        checkouts.reset();
+        created.reset();
+        timeouts.reset();
+        invalidations.reset();
+        evictions.reset();
+        leaks.reset();
+        waitTime.reset();
+        holdTime.reset();
+    }
+
+    public String toString() {
+        return "JdbcConnectionPoolMetrics{" +
+               "active=" + getActive() +
+               ", idle=" + getIdle() +
+               ", pending=" + getPending() +
+               ", checkouts=" + getCheckouts() +
+               ", created=" + getCreated() +
+               ", timeouts=" + getTimeouts() +
+               ", invalidations=" + getInvalidations() +
+               ", evictions=" + getEvictions() +
+               ", leaks=" + getLeaks() +
+               ", waitTime={" + getWaitTime() + '}' +
+               ", holdTime={" + getHoldTime() + '}' +
+               '}';
+    }
+}
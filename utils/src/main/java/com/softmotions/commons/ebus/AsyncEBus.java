@@ -0,0 +1,464 @@
+package com.softmotions.commons.ebus;
+
+import com.google.common.eventbus.Subscribe;
+import com.google.common.reflect.TypeToken;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous {@link EBus} implementation.
+ * <p>
+ * Subscribers are methods annotated by {@link Subscribe}
+ * and optionally by {@link SubscriberOptions}.
+ * Every subscriber has its own bounded queue drained by at most one
+ * executor task at a time, so events are delivered to a subscriber
+ * in the order they were fired. Subscriber set for every event class
+ * is resolved once and cached until the next {@link #register(Object)}
+ * or {@link #unregister(Object)} call.
+ * <p>
+ * Note: {@link OverflowPolicy#BLOCK} subscribers must not fire events
+ * which are delivered back to themselves.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public class AsyncEBus implements EBus, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncEBus.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Max number of deliveries done by one drain task
+     * before it yields executor thread to other subscribers.
+     */
+    private static final int DRAIN_QUOTA = 64;
+
+    private static final Subscriber[] EMPTY = new Subscriber[0];
+
+    private static final ClassValue<List<Method>> SUBSCRIBE_METHODS = new ClassValue<>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+            return findSubscribeMethods(type);
+        }
+    };
+
+    private final Object lock = new Object();
+
+    private final Executor executor;
+
+    private final boolean ownExecutor;
+
+    private final int defaultCapacity;
+
+    private final OverflowPolicy defaultOverflow;
+
+    private final Map<Object, List<Subscriber>> registry = new IdentityHashMap<>();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile List<Subscriber> subscribers = Collections.emptyList();
+
+    private volatile ConcurrentHashMap<Class<?>, Subscriber[]> dispatchCache = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    public AsyncEBus() {
+        this(createDefaultExecutor(), true, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    public AsyncEBus(Executor executor) {
+        this(executor, DEFAULT_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    public AsyncEBus(Executor executor, int defaultCapacity, OverflowPolicy defaultOverflow) {
+        this(executor, false, defaultCapacity, defaultOverflow);
+    }
+
+    private AsyncEBus(Executor executor, boolean ownExecutor, int defaultCapacity, OverflowPolicy defaultOverflow) {
+        this.executor = Objects.requireNonNull(executor);
+        this.ownExecutor = ownExecutor;
+        this.defaultCapacity = defaultCapacity > 0 ? defaultCapacity : DEFAULT_CAPACITY;
+        this.defaultOverflow = defaultOverflow != null ? defaultOverflow : OverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Number of events dropped due to {@link OverflowPolicy#DROP}.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void fire(Object event) {
+        if (closed) {
+            throw new IllegalStateException("Event bus is closed");
+        }
+        Class<?> type = event.getClass();
+        ConcurrentHashMap<Class<?>, Subscriber[]> cache = dispatchCache;
+        Subscriber[] subs = cache.get(type);
+        if (subs == null) {
+            subs = cache.computeIfAbsent(type, this::resolveSubscribers);
+        }
+        for (Subscriber s : subs) {
+            s.enqueue(event);
+        }
+    }
+
+    @Override
+    public void register(Object object) {
+        register(object, executor);
+    }
+
+    /**
+     * Registers all subscriber methods of the object,
+     * events will be delivered using the given executor.
+     */
+    public void register(Object object, Executor subscriberExecutor) {
+        Objects.requireNonNull(subscriberExecutor);
+        List<Method> methods = SUBSCRIBE_METHODS.get(object.getClass());
+        if (methods.isEmpty()) {
+            return;
+        }
+        List<Subscriber> created = new ArrayList<>(methods.size());
+        for (Method m : methods) {
+            created.add(new Subscriber(object, m, subscriberExecutor));
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Event bus is closed");
+            }
+            registry.computeIfAbsent(object, k -> new ArrayList<>()).addAll(created);
+            publishSubscribers();
+        }
+    }
+
+    @Override
+    public void unregister(Object object) {
+        List<Subscriber> removed;
+        synchronized (lock) {
+            removed = registry.remove(object);
+            if (removed == null) {
+                return;
+            }
+            publishSubscribers();
+        }
+        for (Subscriber s : removed) {
+            s.deactivate();
+        }
+    }
+
+    /**
+     * Stops delivery of events. Pending events are discarded.
+     * Executor is shut down if it was created by this bus.
+     */
+    @Override
+    public void close() {
+        List<Subscriber> all;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            all = subscribers;
+            registry.clear();
+            publishSubscribers();
+        }
+        for (Subscriber s : all) {
+            s.deactivate();
+        }
+        if (ownExecutor) {
+            ((ExecutorService) executor).shutdown();
+        }
+    }
+
+    private void publishSubscribers() {
+        List<Subscriber> all = new ArrayList<>();
+        for (List<Subscriber> l : registry.values()) {
+            all.addAll(l);
+        }
+        subscribers = all;
+        // Cache is published after subscribers,
+        // so entries computed against a stale list die with the old cache
+        dispatchCache = new ConcurrentHashMap<>();
+    }
+
+    private Subscriber[] resolveSubscribers(Class<?> type) {
+        List<Subscriber> res = new ArrayList<>();
+        for (Subscriber s : subscribers) {
+            if (s.eventType.isAssignableFrom(type)) {
+                res.add(s);
+            }
+        }
+        return res.isEmpty() ? EMPTY : res.toArray(EMPTY);
+    }
+
+    private static List<Method> findSubscribeMethods(Class<?> type) {
+        Map<String, Method> methods = new HashMap<>();
+        for (Class<?> c : TypeToken.of(type).getTypes().rawTypes()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (!m.isAnnotationPresent(Subscribe.class) || m.isSynthetic()) {
+                    continue;
+                }
+                if (m.getParameterCount() != 1) {
+                    throw new IllegalArgumentException(
+                            "Subscriber method " + m + " must have exactly one parameter");
+                }
+                methods.putIfAbsent(m.getName() + '#' + m.getParameterTypes()[0].getName(), m);
+            }
+        }
+        return List.copyOf(methods.values());
+    }
+
+    private static ExecutorService createDefaultExecutor() {
+        AtomicInteger cnt = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "AsyncEBus-" + cnt.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static final class Slot {
+
+        private Object event;
+
+        private final Object key;
+
+        private Slot(Object event, Object key) {
+            this.event = event;
+            this.key = key;
+        }
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final Object target;
+
+        private final Method method;
+
+        private final MethodHandle handle;
+
+        private final Executor executor;
+
+        private final Class<?> eventType;
+
+        private final boolean batch;
+
+        private final int maxBatchSize;
+
+        private final int capacity;
+
+        private final OverflowPolicy overflow;
+
+        private final ReentrantLock qlock = new ReentrantLock();
+
+        private final Condition notFull = qlock.newCondition();
+
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+
+        private final Map<Object, Slot> pending;
+
+        private boolean scheduled;
+
+        private boolean active = true;
+
+        private Subscriber(Object target, Method method, Executor executor) {
+            this.target = target;
+            this.method = method;
+            this.executor = executor;
+            SubscriberOptions opts = method.getAnnotation(SubscriberOptions.class);
+            if (opts != null) {
+                this.capacity = opts.capacity() > 0 ? opts.capacity() : defaultCapacity;
+                this.overflow = opts.overflow();
+                this.maxBatchSize = Math.max(opts.maxBatchSize(), 1);
+            } else {
+                this.capacity = defaultCapacity;
+                this.overflow = defaultOverflow;
+                this.maxBatchSize = 256;
+            }
+            this.pending = (overflow == OverflowPolicy.COALESCE) ? new HashMap<>() : null;
+            Class<?> ptype = method.getParameterTypes()[0];
+            if (List.class.equals(ptype)) {
+                Type gtype = method.getGenericParameterTypes()[0];
+                Class<?> etype = Object.class;
+                if (gtype instanceof ParameterizedType) {
+                    etype = TypeToken.of(((ParameterizedType) gtype).getActualTypeArguments()[0]).getRawType();
+                }
+                this.eventType = etype;
+                this.batch = true;
+            } else {
+                this.eventType = ptype;
+                this.batch = false;
+            }
+            try {
+                method.setAccessible(true);
+                this.handle = MethodHandles.lookup()
+                                           .unreflect(method)
+                                           .bindTo(target)
+                                           .asType(MethodType.methodType(void.class, Object.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Subscriber method " + method + " is not accessible", e);
+            }
+        }
+
+        void enqueue(Object event) {
+            boolean submit = false;
+            qlock.lock();
+            try {
+                if (!active) {
+                    return;
+                }
+                Object item = event;
+                if (pending != null && event instanceof CoalescingEvent) {
+                    Object key = ((CoalescingEvent) event).getCoalescingKey();
+                    Slot slot = pending.get(key);
+                    if (slot != null) {
+                        slot.event = event;
+                        return;
+                    }
+                    slot = new Slot(event, key);
+                    item = slot;
+                }
+                while (queue.size() >= capacity) {
+                    if (overflow == OverflowPolicy.DROP) {
+                        dropped.increment();
+                        return;
+                    }
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (!active) {
+                        return;
+                    }
+                }
+                if (item instanceof Slot) {
+                    Slot slot = (Slot) item;
+                    pending.put(slot.key, slot);
+                }
+                queue.addLast(item);
+                if (!scheduled) {
+                    scheduled = true;
+                    submit = true;
+                }
+            } finally {
+                qlock.unlock();
+            }
+            if (submit) {
+                schedule();
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                log.error("Event delivery rejected for subscriber: {}", method, e);
+                qlock.lock();
+                try {
+                    scheduled = false;
+                    queue.clear();
+                    if (pending != null) {
+                        pending.clear();
+                    }
+                    notFull.signalAll();
+                } finally {
+                    qlock.unlock();
+                }
+            }
+        }
+
+        void deactivate() {
+            qlock.lock();
+            try {
+                active = false;
+                queue.clear();
+                if (pending != null) {
+                    pending.clear();
+                }
+                notFull.signalAll();
+            } finally {
+                qlock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            int quota = DRAIN_QUOTA;
+            List<Object> events = new ArrayList<>();
+            while (quota-- > 0) {
+                qlock.lock();
+                try {
+                    if (queue.isEmpty() || !active) {
+                        scheduled = false;
+                        return;
+                    }
+                    int n = batch ? maxBatchSize : 1;
+                    Object item;
+                    while (n-- > 0 && (item = queue.pollFirst()) != null) {
+                        if (item instanceof Slot) {
+                            Slot slot = (Slot) item;
+                            pending.remove(slot.key);
+                            item = slot.event;
+                        }
+                        events.add(item);
+                    }
+                    notFull.signalAll();
+                } finally {
+                    qlock.unlock();
+                }
+                if (batch) {
+                    deliver(events);
+                    events = new ArrayList<>();
+                } else {
+                    deliver(events.get(0));
+                    events.clear();
+                }
+            }
+            // Quota exhausted, let other tasks run
+            schedule();
+        }
+
+        private void deliver(Object event) {
+            try {
+                handle.invokeExact(event);
+            } catch (Throwable e) {
+                log.error("Subscriber {} failed to handle event: {}", method, event, e);
+            }
+        }
+
+        public String toString() {
+            return "Subscriber{" + method + " of " + target + '}';
+        }
+    }
+}
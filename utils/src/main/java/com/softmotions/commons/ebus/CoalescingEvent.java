@@ -0,0 +1,12 @@
+package com.softmotions.commons.ebus;
+
+/**
+ * Event which can replace a pending event with the same key
+ * for subscribers using {@link OverflowPolicy#COALESCE}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public interface CoalescingEvent {
+
+    Object getCoalescingKey();
+}
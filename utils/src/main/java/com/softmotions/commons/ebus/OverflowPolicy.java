@@ -0,0 +1,25 @@
+package com.softmotions.commons.ebus;
+
+/**
+ * Behaviour of {@link AsyncEBus} when subscriber queue is full.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Firing thread waits until subscriber queue has free space.
+     */
+    BLOCK,
+
+    /**
+     * Event is dropped for the subscriber.
+     */
+    DROP,
+
+    /**
+     * Pending {@link CoalescingEvent} with the same key
+     * is replaced by the new event. Other events are handled as {@link #BLOCK}.
+     */
+    COALESCE
+}
@@ -0,0 +1,37 @@
+package com.softmotions.commons.ebus;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Options of {@link com.google.common.eventbus.Subscribe} method
+ * registered in {@link AsyncEBus}.
+ * <p>
+ * Subscriber method accepting {@link java.util.List} of events
+ * receives events in batches up to {@link #maxBatchSize()} elements.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SubscriberOptions {
+
+    /**
+     * Maximum number of pending events, {@code 0} means bus default.
+     */
+    int capacity() default 0;
+
+    /**
+     * Queue overflow policy.
+     */
+    OverflowPolicy overflow() default OverflowPolicy.BLOCK;
+
+    /**
+     * Maximum number of events delivered in one batch.
+     */
+    int maxBatchSize() default 256;
+}
@@ -0,0 +1,169 @@
+package com.softmotions.commons.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Pool of direct byte buffers of the same size.
+ * <p/>
+ * Buffers returned by {@link #release(ByteBuffer)} are kept
+ * for reuse up to {@code maxPooled} buffers, so the steady state
+ * of buffer consumers does not allocate off-heap memory
+ * and does not produce garbage.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public class ByteBufferPool {
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    public static final int DEFAULT_MAX_POOLED = 256;
+
+    private static final ByteBufferPool DEFAULT = new ByteBufferPool(DEFAULT_CHUNK_SIZE, DEFAULT_MAX_POOLED);
+
+    private final int chunkSize;
+
+    private final int maxPooled;
+
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final AtomicLong acquireCount = new AtomicLong();
+
+    private final AtomicLong allocateCount = new AtomicLong();
+
+    private final AtomicLong discardCount = new AtomicLong();
+
+    public ByteBufferPool(int chunkSize, int maxPooled) {
+        if (chunkSize < 1 || maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid pool configuration");
+        }
+        this.chunkSize = chunkSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Shared pool of {@link #DEFAULT_CHUNK_SIZE} buffers.
+     */
+    public static ByteBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getMaxPooled() {
+        return maxPooled;
+    }
+
+    /**
+     * Returns cleared direct buffer of {@link #getChunkSize()} capacity.
+     */
+    public ByteBuffer acquire() {
+        acquireCount.incrementAndGet();
+        inUse.incrementAndGet();
+        ByteBuffer b = free.poll();
+        if (b != null) {
+            pooled.decrementAndGet();
+            b.clear();
+            return b;
+        }
+        allocateCount.incrementAndGet();
+        return ByteBuffer.allocateDirect(chunkSize);
+    }
+
+    /**
+     * Returns buffer acquired from this pool.
+     * The buffer must not be used after that.
+     */
+    public void release(ByteBuffer b) {
+        if (b == null || !b.isDirect() || b.capacity() != chunkSize) {
+            return;
+        }
+        inUse.decrementAndGet();
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(b);
+        } else {
+            pooled.decrementAndGet();
+            discardCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of buffers acquired and not released yet.
+     */
+    public int getInUseCount() {
+        return inUse.get();
+    }
+
+    /**
+     * Number of buffers ready for reuse.
+     */
+    public int getPooledCount() {
+        return pooled.get();
+    }
+
+    /**
+     * Off-heap memory held by acquired and pooled buffers.
+     */
+    public long getAllocatedBytes() {
+        return ((long) inUse.get() + pooled.get()) * chunkSize;
+    }
+
+    /**
+     * Share of held buffers being in use, from {@code 0.0} to {@code 1.0}.
+     */
+    public double getUtilization() {
+        int u = inUse.get();
+        int total = u + pooled.get();
+        return (total > 0) ? (double) u / total : 0.0;
+    }
+
+    /**
+     * Total number of {@link #acquire()} calls.
+     */
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+
+    /**
+     * Number of {@link #acquire()} calls not served from the pool.
+     */
+    public long getAllocateCount() {
+        return allocateCount.get();
+    }
+
+    /**
+     * Number of released buffers dropped since the pool was full.
+     */
+    public long getDiscardCount() {
+        return discardCount.get();
+    }
+
+    /**
+     * Share of {@link #acquire()} calls served from the pool.
+     */
+    public double getHitRate() {
+        long a = acquireCount.get();
+        return (a > 0) ? 1.0 - (double) allocateCount.get() / a : 0.0;
+    }
+
+    public String toString() {
+        return "ByteBufferPool{" +
+               "chunkSize=" + chunkSize +
+               ", inUse=" + getInUseCount() +
+               ", pooled=" + getPooledCount() +
+               ", acquired=" + getAcquireCount() +
+               ", allocated=" + getAllocateCount() +
+               ", discarded=" + getDiscardCount() +
+               '}';
+    }
+}
@@ -0,0 +1,151 @@
+package com.softmotions.commons.io;
+
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Writer encoding characters as UTF-8 directly
+ * into the given {@link ByteBuffer}.
+ * <p/>
+ * No intermediate buffers or encoders are involved.
+ * {@link BufferOverflowException} is thrown if the buffer
+ * has not enough space, the buffer position is left
+ * after the last fully written character.
+ * Unpaired surrogates are written as {@code '?'}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@NotThreadSafe
+public class ByteBufferWriter extends Writer {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * High surrogate waiting for its pair.
+     */
+    private char pending;
+
+    public ByteBufferWriter(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public void write(int c) {
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        ByteBuffer b = buffer;
+        for (int i = off, end = off + len; i < end; ++i) {
+            char c = cbuf[i];
+            if (c < 0x80 && pending == 0 && b.hasRemaining()) {
+                b.put((byte) c);
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        ByteBuffer b = buffer;
+        for (int i = off, end = off + len; i < end; ++i) {
+            char c = str.charAt(i);
+            if (c < 0x80 && pending == 0 && b.hasRemaining()) {
+                b.put((byte) c);
+            } else {
+                encode(c);
+            }
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq, int start, int end) {
+        if (csq == null) {
+            csq = "null";
+        }
+        if (csq instanceof String) {
+            write((String) csq, start, end - start);
+        } else {
+            for (int i = start; i < end; ++i) {
+                encode(csq.charAt(i));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Writer append(CharSequence csq) {
+        if (csq == null) {
+            csq = "null";
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    private void encode(char c) {
+        ByteBuffer b = buffer;
+        if (pending != 0) {
+            char h = pending;
+            pending = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(h, c);
+                ensure(4);
+                b.put((byte) (0xF0 | (cp >> 18)));
+                b.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                b.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                b.put((byte) (0x80 | (cp & 0x3F)));
+                return;
+            }
+            ensure(1);
+            b.put((byte) '?');
+        }
+        if (c < 0x80) {
+            ensure(1);
+            b.put((byte) c);
+        } else if (c < 0x800) {
+            ensure(2);
+            b.put((byte) (0xC0 | (c >> 6)));
+            b.put((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c)) {
+            pending = c;
+        } else if (Character.isLowSurrogate(c)) {
+            ensure(1);
+            b.put((byte) '?');
+        } else {
+            ensure(3);
+            b.put((byte) (0xE0 | (c >> 12)));
+            b.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            b.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void ensure(int n) {
+        if (buffer.remaining() < n) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    /**
+     * Writes unpaired high surrogate left at the end of input.
+     */
+    @Override
+    public void flush() {
+        if (pending != 0) {
+            ensure(1);
+            pending = 0;
+            buffer.put((byte) '?');
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
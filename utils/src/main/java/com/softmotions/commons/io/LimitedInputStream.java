@@ -3,12 +3,15 @@ package com.softmotions.commons.io;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 public class LimitedInputStream extends FilterInputStream {
 
+    private static final int TRANSFER_BUFFER_SIZE = 0x10000;
+
     private long count;
     private long mark = -1L;
     private final long limit;
@@ -37,7 +40,7 @@ public class LimitedInputStream extends FilterInputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        int result = this.in.read(b, off, len);
+        int result = this.in.read(b, off, cap(len));
         if (result != -1) {
             checkLimits(result);
             this.count += (long) result;
@@ -48,12 +51,30 @@ public class LimitedInputStream extends FilterInputStream {
 
     @Override
     public long skip(long n) throws IOException {
-        long result = this.in.skip(n);
+        long result = this.in.skip(cap(n));
         checkLimits(result);
         this.count += result;
         return result;
     }
 
+    /**
+     * Copies data in bulk reads of this stream straight to {@code out},
+     * data read is checked against the limit before it is written.
+     * Wrapped stream's own {@link InputStream#transferTo(OutputStream)}
+     * is not used since every transferred byte must be counted.
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        byte[] buf = new byte[TRANSFER_BUFFER_SIZE];
+        long n = 0;
+        int read;
+        while ((read = read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, read);
+            n += read;
+        }
+        return n;
+    }
+
     @Override
     public synchronized void mark(int readlimit) {
         this.in.mark(readlimit);
@@ -72,6 +93,19 @@ public class LimitedInputStream extends FilterInputStream {
         }
     }
 
+    /**
+     * Caps requested length to one byte over the limit, enough to detect overflow.
+     */
+    private int cap(int len) {
+        long max = limit - count + 1;
+        return (max > 0 && len > max) ? (int) max : len;
+    }
+
+    private long cap(long n) {
+        long max = limit - count + 1;
+        return (max > 0 && n > max) ? max : n;
+    }
+
     private void checkLimits(long add) throws LimitationIOException {
         if (count + add > limit) {
             throw new LimitationIOException(limit, exceptionMessage);
@@ -0,0 +1,67 @@
+package com.softmotions.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel counterpart of {@link LimitedInputStream}:
+ * {@link LimitationIOException} is thrown once more
+ * than {@code limit} bytes are read.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class LimitedReadableByteChannel extends ReadableByteChannelWrapper {
+
+    private final long limit;
+
+    private final String exceptionMessage;
+
+    private long count;
+
+    public LimitedReadableByteChannel(long limit, String exceptionMessage, ReadableByteChannel ch) {
+        super(ch);
+        this.limit = limit;
+        this.exceptionMessage = exceptionMessage;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        // Read at most one byte over the limit, enough to detect overflow
+        long max = limit - count + 1;
+        int n;
+        if (max > 0 && dst.remaining() > max) {
+            ByteBuffer view = dst.duplicate();
+            view.limit(view.position() + (int) max);
+            n = getWrapped().read(view);
+            dst.position(view.position());
+        } else {
+            n = getWrapped().read(dst);
+        }
+        if (n > 0) {
+            checkLimits(n);
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    protected void beforeTransfer(long n) throws IOException {
+        checkLimits(n);
+    }
+
+    @Override
+    protected void afterTransfer(long n) {
+        count += n;
+    }
+
+    private void checkLimits(long add) throws LimitationIOException {
+        if (count + add > limit) {
+            throw new LimitationIOException(limit, exceptionMessage);
+        }
+    }
+}
@@ -1,40 +1,66 @@
 package com.softmotions.commons.io
 
 import java.io.ByteArrayInputStream
-import java.io.ByteArrayOutputStream
+import java.io.InputStream
 import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
+import java.nio.channels.WritableByteChannel
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
 
-class OverflowOutputStream(
-        val memoryThreshold: Long,
-        val overflowStreamSupplier: (() -> OutputStream)) : OutputStream() {
+/**
+ * Output stream keeping written data in pooled direct buffers
+ * until [memoryThreshold] is exceeded, after that data is spilled
+ * to a temp file deleted on [close]. Spilled data is written
+ * through a single pooled buffer.
+ *
+ * Written data can be drained by [transferTo] or [toInputStream]
+ * without intermediate heap buffers, drain must be done before [close].
+ * Stream is reusable after [close].
+ */
+class OverflowOutputStream
+private constructor(val memoryThreshold: Long,
+                    val pool: ByteBufferPool,
+                    /**
+                     * Legacy mode: data exceeding [memoryThreshold] is copied
+                     * to the stream created by this supplier,
+                     * drain methods are not available once spilled.
+                     */
+                    val overflowStreamSupplier: (() -> OutputStream)?) : OutputStream() {
 
-    private val memoryOutput = MemoryOutput()
+    @JvmOverloads
+    constructor(memoryThreshold: Long,
+                pool: ByteBufferPool = ByteBufferPool.getDefault()) : this(memoryThreshold, pool, null)
 
-    private var counter = 0L
+    constructor(memoryThreshold: Long,
+                overflowStreamSupplier: (() -> OutputStream)) :
+            this(memoryThreshold, ByteBufferPool.getDefault(), overflowStreamSupplier)
 
-    private var overflowOutput: OutputStream? = null
+    /**
+     * Pooled chunks before spill, buffer positions mark written data.
+     */
+    private val segments = ArrayList<ByteBuffer>()
 
     /**
-     * memory output used before memoryThreshold is exceeded
-     * if memoryThreshold is exceeded used overflowOutput
+     * Last chunk before spill or the pooled buffer
+     * of data not yet written to the spill file.
      */
-    private val out: OutputStream
-        get() {
-            if (overflowOutput == null && counter > memoryThreshold) {
-                overflowOutput = overflowStreamSupplier().apply {
-                    write(memoryOutput.buffer, 0, memoryOutput.length)
-                    memoryOutput.reset()
-                    flush()
-                }
-            }
-            return overflowOutput ?: memoryOutput
-        }
+    private var current: ByteBuffer? = null
+
+    private var spillChannel: FileChannel? = null
+
+    private var overflowOutput: OutputStream? = null
+
+    private var counter = 0L
 
     val length: Long
         get() = counter
 
     val isInMemory: Boolean
-        get() = (overflowOutput == null)
+        get() = (spillChannel == null && overflowOutput == null)
 
     /**
      * write memory buffer to OutputStream
@@ -42,47 +68,397 @@ class OverflowOutputStream(
      */
     fun copyMemoryBytes(os: OutputStream) {
         if (!isInMemory) throw IllegalStateException("Overflow stream created")
-        os.write(memoryOutput.buffer, 0, memoryOutput.length)
+        writeSegments(Channels.newChannel(os))
     }
 
     /**
      * creates ByteArrayInputStream from memory buffer
      */
+    @Deprecated("Copies data to the heap", ReplaceWith("toInputStream()"))
     fun memoryToByteArrayInputStream(): ByteArrayInputStream {
-        return ByteArrayInputStream(memoryOutput.buffer, 0, memoryOutput.length)
+        if (!isInMemory) throw IllegalStateException("Overflow stream created")
+        val data = ByteArray(counter.toInt())
+        var off = 0
+        for (b in views()) {
+            val n = b.remaining()
+            b.get(data, off, n)
+            off += n
+        }
+        return ByteArrayInputStream(data)
+    }
+
+    /**
+     * Writes all data to the channel. Spilled data is sent by
+     * [FileChannel.transferTo] so the kernel may copy it directly.
+     * @return number of bytes written
+     */
+    fun transferTo(target: WritableByteChannel): Long {
+        checkDrainable()
+        val ch = spillChannel
+        if (ch != null) {
+            flushSpill(ch)
+            var pos = 0L
+            while (pos < counter) {
+                pos += ch.transferTo(pos, counter - pos, target)
+            }
+            return counter
+        }
+        writeSegments(target)
+        return counter
     }
 
+    /**
+     * Input stream reading written data straight from the pooled buffers
+     * or from the spill file. Supports mark/reset, valid until [close].
+     */
+    fun toInputStream(): InputStream {
+        checkDrainable()
+        val ch = spillChannel ?: return SegmentsInputStream(views())
+        flushSpill(ch)
+        return SpillInputStream(ch, counter)
+    }
+
+    /**
+     * Reads the channel to the end directly into the stream buffers.
+     * @return number of bytes read
+     */
+    fun readFrom(src: ReadableByteChannel): Long {
+        var total = 0L
+        while (true) {
+            val os = overflowOutput
+            if (os != null) {
+                val buf = pool.acquire()
+                val ch = Channels.newChannel(os)
+                try {
+                    while (true) {
+                        buf.clear()
+                        val n = src.read(buf)
+                        if (n < 0) return total
+                        buf.flip()
+                        while (buf.hasRemaining()) ch.write(buf)
+                        counter += n
+                        total += n
+                    }
+                } finally {
+                    pool.release(buf)
+                }
+            }
+            val n = src.read(writable())
+            if (n < 0) return total
+            counter += n
+            total += n
+            if (counter > memoryThreshold && isInMemory) {
+                spill()
+            }
+        }
+    }
 
     override fun write(b: Int) {
         ++counter
-        out.write(b)
+        val os = prepare()
+        if (os != null) {
+            os.write(b)
+        } else {
+            writable().put(b.toByte())
+        }
     }
 
-    override fun write(b: ByteArray) {
-        counter += b.size
-        out.write(b)
-    }
+    override fun write(b: ByteArray) = write(b, 0, b.size)
 
     override fun write(b: ByteArray, off: Int, len: Int) {
         counter += len
-        out.write(b, off, len)
+        val os = prepare()
+        if (os != null) {
+            os.write(b, off, len)
+            return
+        }
+        val ch = spillChannel
+        if (ch != null && len >= current!!.capacity()) {
+            // Large arrays are written to the file bypassing the buffer
+            flushSpill(ch)
+            val v = ByteBuffer.wrap(b, off, len)
+            while (v.hasRemaining()) ch.write(v)
+            return
+        }
+        var o = off
+        var l = len
+        while (l > 0) {
+            val buf = writable()
+            val n = minOf(l, buf.remaining())
+            buf.put(b, o, n)
+            o += n
+            l -= n
+        }
     }
 
-    override fun flush() = out.flush()
+    override fun flush() {
+        overflowOutput?.flush()
+    }
 
     override fun close() {
-        out.close()
-        counter = 0
-        memoryOutput.reset()
-        overflowOutput = null
+        try {
+            overflowOutput?.close()
+            spillChannel?.close()
+        } finally {
+            segments.forEach(pool::release)
+            if (spillChannel != null) {
+                pool.release(current)
+            }
+            segments.clear()
+            current = null
+            spillChannel = null
+            overflowOutput = null
+            counter = 0
+        }
     }
 
-    private class MemoryOutput : ByteArrayOutputStream() {
-        internal val buffer: ByteArray get() = buf
-        internal val length: Int get() = count
+    /**
+     * Spills data if [memoryThreshold] is exceeded.
+     * @return legacy overflow stream if any
+     */
+    private fun prepare(): OutputStream? {
+        if (counter > memoryThreshold && isInMemory) {
+            spill()
+        }
+        return overflowOutput
+    }
+
+    private fun spill() {
+        val chunks = ArrayList(segments)
+        segments.clear()
+        current = null
+        try {
+            val supplier = overflowStreamSupplier
+            if (supplier != null) {
+                val os = supplier()
+                val ch = Channels.newChannel(os)
+                for (c in chunks) {
+                    val v = c.duplicate().flip()
+                    while (v.hasRemaining()) ch.write(v)
+                }
+                os.flush()
+                overflowOutput = os
+                return
+            }
+            val file = Files.createTempFile("ovf-", null)
+            val ch = FileChannel.open(file,
+                                      StandardOpenOption.READ,
+                                      StandardOpenOption.WRITE,
+                                      StandardOpenOption.DELETE_ON_CLOSE)
+            spillChannel = ch
+            for (c in chunks) {
+                val v = c.duplicate().flip()
+                while (v.hasRemaining()) ch.write(v)
+            }
+            current = pool.acquire()
+        } finally {
+            chunks.forEach(pool::release)
+        }
+    }
+
+    /**
+     * Writes buffered data to the spill file.
+     */
+    private fun flushSpill(ch: FileChannel) {
+        val c = current ?: return
+        c.flip()
+        while (c.hasRemaining()) ch.write(c)
+        c.clear()
+    }
+
+    /**
+     * Buffer having free space: the current one, a new pooled chunk
+     * or the spill buffer emptied to the spill file.
+     */
+    private fun writable(): ByteBuffer {
+        val c = current
+        if (c != null && c.hasRemaining()) {
+            return c
+        }
+        val ch = spillChannel
+        if (ch != null) {
+            flushSpill(ch)
+            return c!!
+        }
+        val b = pool.acquire()
+        segments.add(b)
+        current = b
+        return b
+    }
+
+    private fun views(): List<ByteBuffer> = segments.map { it.duplicate().flip() }
+
+    private fun writeSegments(target: WritableByteChannel) {
+        for (v in views()) {
+            while (v.hasRemaining()) target.write(v)
+        }
+    }
+
+    private fun checkDrainable() {
+        if (overflowOutput != null) throw IllegalStateException("Data is written to the overflow stream")
+    }
+
+    /**
+     * Reads spill file by positional reads, so file is not memory mapped
+     * and every stream has its own position.
+     */
+    private class SpillInputStream(private val ch: FileChannel,
+                                   private val length: Long) : InputStream() {
+
+        private val buf = ByteBuffer.allocate(8192).limit(0)
+
+        /**
+         * File position of the data following the buffered one.
+         */
+        private var pos = 0L
+
+        private var markPos = 0L
+
+        private val position: Long
+            get() = pos - buf.remaining()
+
+        private fun fill(): Boolean {
+            buf.clear()
+            buf.limit(minOf(buf.capacity().toLong(), length - pos).toInt())
+            while (buf.hasRemaining()) {
+                val n = ch.read(buf, pos + buf.position())
+                if (n < 0) break
+            }
+            buf.flip()
+            pos += buf.remaining()
+            return buf.hasRemaining()
+        }
+
+        override fun read(): Int {
+            if (!buf.hasRemaining() && !fill()) return -1
+            return buf.get().toInt() and 0xFF
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) return 0
+            if (!buf.hasRemaining()) {
+                if (pos >= length) return -1
+                if (len >= buf.capacity()) {
+                    // Large reads bypass the buffer
+                    val v = ByteBuffer.wrap(b, off, minOf(len.toLong(), length - pos).toInt())
+                    val n = ch.read(v, pos)
+                    if (n < 0) return -1
+                    pos += n
+                    return n
+                }
+                if (!fill()) return -1
+            }
+            val n = minOf(len, buf.remaining())
+            buf.get(b, off, n)
+            return n
+        }
+
+        override fun skip(n: Long): Long {
+            if (n <= 0) return 0
+            val s = minOf(n, length - position)
+            pos = position + s
+            buf.limit(0)
+            return s
+        }
+
+        override fun available(): Int = minOf(length - position, Int.MAX_VALUE.toLong()).toInt()
+
+        /**
+         * Sends remaining data by [FileChannel.transferTo].
+         */
+        override fun transferTo(out: OutputStream): Long {
+            val v = buf.duplicate()
+            val target = Channels.newChannel(out)
+            var n = v.remaining().toLong()
+            while (v.hasRemaining()) target.write(v)
+            buf.limit(0)
+            while (pos < length) {
+                val t = ch.transferTo(pos, length - pos, target)
+                pos += t
+                n += t
+            }
+            return n
+        }
+
+        override fun markSupported() = true
+
+        @Synchronized
+        override fun mark(readlimit: Int) {
+            markPos = position
+        }
+
+        @Synchronized
         override fun reset() {
-            super.reset()
-            buf = ByteArray(0)
+            pos = markPos
+            buf.limit(0)
+        }
+    }
+
+    private class SegmentsInputStream(private val views: List<ByteBuffer>) : InputStream() {
+
+        private var idx = 0
+
+        private var markIdx = 0
+
+        private val markPos = IntArray(views.size)
+
+        private fun buffer(): ByteBuffer? {
+            while (idx < views.size) {
+                val b = views[idx]
+                if (b.hasRemaining()) return b
+                ++idx
+            }
+            return null
+        }
+
+        override fun read(): Int {
+            val b = buffer() ?: return -1
+            return b.get().toInt() and 0xFF
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            if (len == 0) return 0
+            val buf = buffer() ?: return -1
+            val n = minOf(len, buf.remaining())
+            buf.get(b, off, n)
+            return n
+        }
+
+        override fun skip(n: Long): Long {
+            var left = n
+            while (left > 0) {
+                val buf = buffer() ?: break
+                val s = minOf(left, buf.remaining().toLong()).toInt()
+                buf.position(buf.position() + s)
+                left -= s
+            }
+            return n - maxOf(left, 0)
+        }
+
+        override fun available(): Int {
+            var sum = 0L
+            for (i in idx until views.size) {
+                sum += views[i].remaining()
+            }
+            return minOf(sum, Int.MAX_VALUE.toLong()).toInt()
+        }
+
+        override fun markSupported() = true
+
+        @Synchronized
+        override fun mark(readlimit: Int) {
+            markIdx = idx
+            for (i in views.indices) {
+                markPos[i] = views[i].position()
+            }
+        }
+
+        @Synchronized
+        override fun reset() {
+            idx = markIdx
+            for (i in views.indices) {
+                views[i].position(markPos[i])
+            }
         }
     }
-}
\ No newline at end of file
+}
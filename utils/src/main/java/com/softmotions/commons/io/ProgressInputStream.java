@@ -2,33 +2,50 @@ package com.softmotions.commons.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * An {@link InputStream} that can report the progress of reading from another
  * InputStream.
+ * <p/>
+ * Notifications can be throttled by number of bytes and time,
+ * the final progress is always reported at the end of the stream.
  */
 public class ProgressInputStream extends InputStream {
 
+    private static final int TRANSFER_BUFFER_SIZE = 0x10000;
+
     private final InputStream stream;
-    private final ProgressListener listener;
+    private final ProgressNotifier notifier;
 
-    private long total;
-    private long totalRead;
+    private long mark = -1L;
 
     public ProgressInputStream(InputStream stream, ProgressListener listener, long total) {
+        this(stream, listener, total, 0, 0);
+    }
+
+    /**
+     * @param total      Total number of bytes or -1 if unknown
+     * @param stepBytes  Min number of bytes between notifications
+     * @param intervalMs Max time between notifications while reading, zero to disable
+     */
+    public ProgressInputStream(InputStream stream, ProgressListener listener,
+                               long total, long stepBytes, long intervalMs) {
         this.stream = stream;
-        this.listener = listener;
-        this.total = total;
+        this.notifier = new ProgressNotifier(listener, total, stepBytes, intervalMs);
     }
 
     public long getTotal() {
-        return this.total;
+        return notifier.getTotal();
     }
 
     public void setTotal(long total) {
-        this.total = total;
+        notifier.setTotal(total);
     }
 
+    public long getTotalRead() {
+        return notifier.getCount();
+    }
 
     @Override
     public void close() throws IOException {
@@ -38,22 +55,47 @@ public class ProgressInputStream extends InputStream {
     @Override
     public int read() throws IOException {
         int read = this.stream.read();
-        this.totalRead++;
-        this.listener.onProgressChanged(this.totalRead, this.total);
+        if (read == -1) {
+            notifier.flush();
+        } else {
+            notifier.add(1);
+        }
         return read;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
         int read = this.stream.read(b, off, len);
-        this.totalRead += read;
-        this.listener.onProgressChanged(this.totalRead, this.total);
+        if (read == -1) {
+            notifier.flush();
+        } else {
+            notifier.add(read);
+        }
         return read;
     }
 
     @Override
     public long skip(long n) throws IOException {
-        return stream.skip(n);
+        long skipped = stream.skip(n);
+        notifier.add(skipped);
+        return skipped;
+    }
+
+    /**
+     * Copies data in bulk reads of this stream straight to {@code out}.
+     * Wrapped stream's own {@link InputStream#transferTo(OutputStream)}
+     * is not used since progress of every transferred byte is reported.
+     */
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+        byte[] buf = new byte[TRANSFER_BUFFER_SIZE];
+        long n = 0;
+        int read;
+        while ((read = read(buf, 0, buf.length)) != -1) {
+            out.write(buf, 0, read);
+            n += read;
+        }
+        return n;
     }
 
     @Override
@@ -64,6 +106,7 @@ public class ProgressInputStream extends InputStream {
     @Override
     public synchronized void mark(int readlimit) {
         stream.mark(readlimit);
+        mark = notifier.getCount();
     }
 
     @Override
@@ -74,5 +117,8 @@ public class ProgressInputStream extends InputStream {
     @Override
     public synchronized void reset() throws IOException {
         stream.reset();
+        if (mark != -1L) {
+            notifier.rewind(mark);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package com.softmotions.commons.io;
+
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Counts transferred bytes and notifies {@link ProgressListener}
+ * not more often than every {@code stepBytes} bytes
+ * or every {@code intervalMs} milliseconds, whichever comes first.
+ * Zero step notifies on every change.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@NotThreadSafe
+final class ProgressNotifier {
+
+    private final ProgressListener listener;
+
+    private final long stepBytes;
+
+    private final long intervalNanos;
+
+    private long total;
+
+    private long count;
+
+    private long lastCount;
+
+    private long lastNanos;
+
+    ProgressNotifier(ProgressListener listener, long total, long stepBytes, long intervalMs) {
+        if (stepBytes < 0 || intervalMs < 0) {
+            throw new IllegalArgumentException("Negative progress step");
+        }
+        this.listener = listener;
+        this.total = total;
+        this.stepBytes = stepBytes;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.lastNanos = (intervalNanos > 0) ? System.nanoTime() : 0;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    void add(long n) {
+        if (n <= 0) {
+            return;
+        }
+        count += n;
+        if (count - lastCount >= stepBytes) {
+            fire();
+        } else if (intervalNanos > 0 && System.nanoTime() - lastNanos >= intervalNanos) {
+            fire();
+        }
+    }
+
+    /**
+     * Sets count back, used by stream reset.
+     */
+    void rewind(long n) {
+        if (count != n) {
+            count = n;
+            fire();
+        }
+    }
+
+    /**
+     * Reports pending progress, called at the end of data.
+     */
+    void flush() {
+        if (count != lastCount) {
+            fire();
+        }
+    }
+
+    private void fire() {
+        lastCount = count;
+        if (intervalNanos > 0) {
+            lastNanos = System.nanoTime();
+        }
+        listener.onProgressChanged(count, total);
+    }
+}
@@ -0,0 +1,62 @@
+package com.softmotions.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channel counterpart of {@link ProgressInputStream}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class ProgressReadableByteChannel extends ReadableByteChannelWrapper {
+
+    private final ProgressNotifier notifier;
+
+    /**
+     * @param total      Total number of bytes or -1 if unknown
+     * @param stepBytes  Min number of bytes between notifications
+     * @param intervalMs Max time between notifications while reading, zero to disable
+     */
+    public ProgressReadableByteChannel(ReadableByteChannel ch, ProgressListener listener,
+                                       long total, long stepBytes, long intervalMs) {
+        super(ch);
+        this.notifier = new ProgressNotifier(listener, total, stepBytes, intervalMs);
+    }
+
+    public long getTotal() {
+        return notifier.getTotal();
+    }
+
+    public void setTotal(long total) {
+        notifier.setTotal(total);
+    }
+
+    public long getCount() {
+        return notifier.getCount();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        int n = getWrapped().read(dst);
+        if (n == -1) {
+            notifier.flush();
+        } else {
+            notifier.add(n);
+        }
+        return n;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long n = super.transferTo(target);
+        notifier.flush();
+        return n;
+    }
+
+    @Override
+    protected void afterTransfer(long n) {
+        notifier.add(n);
+    }
+}
@@ -0,0 +1,106 @@
+package com.softmotions.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class ReadableByteChannelWrapper implements ReadableByteChannel {
+
+    /**
+     * Max bytes sent by single {@link FileChannel#transferTo(long, long, WritableByteChannel)} call.
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    private final ReadableByteChannel ch;
+
+    public ReadableByteChannelWrapper(ReadableByteChannel ch) {
+        this.ch = ch;
+    }
+
+    protected ReadableByteChannel getWrapped() {
+        return ch;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return ch.read(dst);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return ch.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    /**
+     * Reads all remaining data into the target channel.
+     * <p/>
+     * If the wrapped channel is a {@link FileChannel} data is sent by
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}
+     * so the kernel may copy it without user space buffers, otherwise
+     * data goes through {@link #read(ByteBuffer)} and a pooled direct buffer.
+     *
+     * @return number of bytes transferred
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        if (ch instanceof FileChannel) {
+            FileChannel fc = (FileChannel) ch;
+            long start = fc.position();
+            long pos = start;
+            long end = fc.size();
+            try {
+                while (pos < end) {
+                    long n = Math.min(end - pos, TRANSFER_CHUNK_SIZE);
+                    beforeTransfer(n);
+                    n = fc.transferTo(pos, n, target);
+                    if (n <= 0) {
+                        break;
+                    }
+                    pos += n;
+                    afterTransfer(n);
+                }
+            } finally {
+                fc.position(pos);
+            }
+            return pos - start;
+        }
+        ByteBufferPool pool = ByteBufferPool.getDefault();
+        ByteBuffer buf = pool.acquire();
+        long total = 0;
+        try {
+            while (read(buf) != -1) {
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    total += target.write(buf);
+                }
+                buf.clear();
+            }
+        } finally {
+            pool.release(buf);
+        }
+        return total;
+    }
+
+    /**
+     * Called by {@link #transferTo(WritableByteChannel)} before
+     * sending {@code n} bytes directly from the wrapped {@link FileChannel}.
+     */
+    protected void beforeTransfer(long n) throws IOException {
+    }
+
+    /**
+     * Called by {@link #transferTo(WritableByteChannel)} after
+     * {@code n} bytes are sent directly from the wrapped {@link FileChannel}.
+     */
+    protected void afterTransfer(long n) throws IOException {
+    }
+}
@@ -0,0 +1,140 @@
+package com.softmotions.commons.io.scanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of matched files (relative path, size, modification time)
+ * used to compute delta between directory scans.
+ * Can be persisted to disk to survive application restarts.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+final class DirectoryScanSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryScanSnapshot.class);
+
+    private static final int MAGIC = 0x53444e53;
+
+    private static final int VERSION = 1;
+
+    private final Map<String, Entry> entries;
+
+    DirectoryScanSnapshot() {
+        this(16);
+    }
+
+    private DirectoryScanSnapshot(int expectedSize) {
+        entries = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    Entry get(String path) {
+        return entries.get(path);
+    }
+
+    void put(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Loads snapshot from the file.
+     * Returns empty snapshot if file does not exist, has incompatible format
+     * or cannot be read (eg: truncated or corrupted file), so full scan will be performed.
+     */
+    static DirectoryScanSnapshot load(Path file) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 0x10000))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignored incompatible directory snapshot file: {}", file);
+                return new DirectoryScanSnapshot();
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                log.warn("Ignored corrupted directory snapshot file: {}", file);
+                return new DirectoryScanSnapshot();
+            }
+            DirectoryScanSnapshot snapshot = new DirectoryScanSnapshot(count);
+            for (int i = 0; i < count; ++i) {
+                String path = in.readUTF();
+                snapshot.entries.put(path, new Entry(in.readLong(), in.readLong()));
+            }
+            return snapshot;
+        } catch (NoSuchFileException e) {
+            return new DirectoryScanSnapshot();
+        } catch (IOException e) {
+            // EOFException, UTFDataFormatException for truncated or corrupted file
+            log.warn("Ignored unreadable directory snapshot file: {}", file, e);
+            return new DirectoryScanSnapshot();
+        }
+    }
+
+    /**
+     * Atomically replaces the given file with this snapshot.
+     */
+    void save(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 0x10000))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().size);
+                    out.writeLong(e.getValue().mtime);
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static final class Entry {
+
+        final long size;
+
+        final long mtime;
+
+        Entry(long size, long mtime) {
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        boolean same(Entry e) {
+            return size == e.size && mtime == e.mtime;
+        }
+    }
+}
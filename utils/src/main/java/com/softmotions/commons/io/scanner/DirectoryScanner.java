@@ -13,6 +13,8 @@ import java.nio.file.Path;
  * {@link com.softmotions.commons.io.scanner.DirectoryScannerFactory}.
  * <p/>
  * Implementation may not be thread-safe.
+ * If scanner is parallel visitor methods are called
+ * from pool threads but never concurrently.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
@@ -22,6 +24,16 @@ public interface DirectoryScanner extends Closeable, UserDataStore {
 
     void scan(DirectoryScannerVisitor visitor) throws IOException;
 
+    /**
+     * Scans directory and reports only files created, modified or deleted
+     * since the previous call. The first call (or the call without
+     * persistent snapshot file) reports all matched files as created.
+     * Files are compared by size and last modification time.
+     *
+     * @see DirectoryScannerFactory#setSnapshotFile(Path)
+     */
+    void scanDelta(DirectoryScannerDeltaVisitor visitor) throws IOException;
+
     FSWatcher activateFileSystemWatcher(FSWatcherEventHandler handler) throws IOException;
 
     FSWatcher activateFileSystemWatcher(FSWatcherEventHandler handler,
@@ -0,0 +1,23 @@
+package com.softmotions.commons.io.scanner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Receives changes of matched files
+ * since the previous {@link DirectoryScanner#scanDelta(DirectoryScannerDeltaVisitor)}.
+ * All paths are relative to the scanner base directory.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public interface DirectoryScannerDeltaVisitor {
+
+    void created(Path file, BasicFileAttributes attrs) throws IOException;
+
+    void modified(Path file, BasicFileAttributes attrs) throws IOException;
+
+    void deleted(Path file) throws IOException;
+
+    void error(Path file, IOException exc) throws IOException;
+}
@@ -1,22 +1,22 @@
 package com.softmotions.commons.io.scanner;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.annotation.concurrent.ThreadSafe;
 
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,8 +25,8 @@ import com.softmotions.commons.io.watcher.FSWatcherCreateEvent;
 import com.softmotions.commons.io.watcher.FSWatcherDeleteEvent;
 import com.softmotions.commons.io.watcher.FSWatcherEventHandler;
 import com.softmotions.commons.io.watcher.FSWatcherModifyEvent;
+import com.softmotions.commons.io.watcher.FSWatcherOverflowEvent;
 import com.softmotions.commons.io.watcher.FSWatcherRegisterEvent;
-import com.softmotions.commons.re.RegexpHelper;
 
 /**
  * Factory for directory scanners.
@@ -34,6 +34,13 @@ import com.softmotions.commons.re.RegexpHelper;
  * This implementation is thread-safe but
  * scanner instances produces by {@link #createScanner()}
  * may not be thread-safe.
+ * <p/>
+ * Include and exclude patterns are compiled into a single
+ * matcher which skips directories cannot contain matched files.
+ * Directory tree can be traversed in parallel on a {@link ForkJoinPool}
+ * (see {@link #setParallel(boolean)}) and scanners can report only changes
+ * since the previous scan (see {@link DirectoryScanner#scanDelta(DirectoryScannerDeltaVisitor)}),
+ * optionally persisted in the {@link #setSnapshotFile(Path) snapshot file}.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
@@ -88,6 +95,12 @@ public class DirectoryScannerFactory {
 
     private boolean useDefaultExcludes;
 
+    private boolean parallel;
+
+    private ForkJoinPool forkJoinPool;
+
+    private Path snapshotFile;
+
     public Path getBasedir() {
         return basedir;
     }
@@ -168,17 +181,76 @@ public class DirectoryScannerFactory {
         return this;
     }
 
+    public boolean isParallel() {
+        synchronized (lock) {
+            return parallel;
+        }
+    }
+
+    /**
+     * Traverse directories in parallel.
+     * {@link ForkJoinPool#commonPool()} is used
+     * unless pool is set by {@link #setForkJoinPool(ForkJoinPool)}.
+     */
+    public DirectoryScannerFactory setParallel(boolean val) {
+        synchronized (lock) {
+            parallel = val;
+        }
+        return this;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        synchronized (lock) {
+            return forkJoinPool;
+        }
+    }
+
+    /**
+     * Pool used for parallel traversal, also turns parallel traversal on.
+     */
+    public DirectoryScannerFactory setForkJoinPool(ForkJoinPool pool) {
+        synchronized (lock) {
+            forkJoinPool = pool;
+            if (pool != null) {
+                parallel = true;
+            }
+        }
+        return this;
+    }
+
+    public Path getSnapshotFile() {
+        synchronized (lock) {
+            return snapshotFile;
+        }
+    }
+
+    /**
+     * File where scanners keep the index of matched files
+     * between {@link DirectoryScanner#scanDelta(DirectoryScannerDeltaVisitor)} calls.
+     * If not set the index is kept only in the scanner memory.
+     */
+    public DirectoryScannerFactory setSnapshotFile(Path file) {
+        synchronized (lock) {
+            snapshotFile = file;
+        }
+        return this;
+    }
+
     public DirectoryScanner createScanner() throws IOException {
         return new DirectoryScannerImpl();
     }
 
     @NotThreadSafe
     private class DirectoryScannerImpl
-            implements DirectoryScanner, FileVisitor<Path>, FSWatcherEventHandler {
+            implements DirectoryScanner, FSWatcherEventHandler {
+
+        private final ScanPatternMatcher matcher;
+
+        private final ForkJoinPool pool;
 
-        private final AntPatternMatcher matcher;
+        private final Path snapshotFile;
 
-        private DirectoryScannerVisitor visitor;
+        private DirectoryScanSnapshot snapshot;
 
         private FSWatcher watcher;
 
@@ -195,11 +267,13 @@ public class DirectoryScannerFactory {
                 if (useDefaultExcludes) {
                     eList.addAll(Arrays.asList(DEFAULT_EXCLUDES));
                 }
+                pool = parallel ? (forkJoinPool != null ? forkJoinPool : ForkJoinPool.commonPool()) : null;
+                snapshotFile = DirectoryScannerFactory.this.snapshotFile;
             }
             if (iList.isEmpty()) {
                 iList.add("**/*");
             }
-            matcher = new AntPatternMatcher(iList, eList);
+            matcher = new ScanPatternMatcher(iList, eList);
         }
 
 
@@ -213,45 +287,6 @@ public class DirectoryScannerFactory {
             userData = data;
         }
 
-        @Override
-        public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
-            path = basedir.relativize(path);
-            String spath = path.toString();
-            if (spath.isEmpty() || accept(path, attrs)) {
-                return FileVisitResult.CONTINUE;
-            } else {
-                return FileVisitResult.SKIP_SUBTREE;
-            }
-        }
-
-        @Override
-        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) throws IOException {
-            path = basedir.relativize(path);
-            if (accept(path, attrs)) {
-                visitor.visit(path, attrs);
-            }
-            return FileVisitResult.CONTINUE;
-        }
-
-        @Override
-        public FileVisitResult visitFileFailed(Path path, IOException exc) throws IOException {
-            visitor.error(path, exc);
-            return FileVisitResult.CONTINUE;
-        }
-
-        @Override
-        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-            return FileVisitResult.CONTINUE;
-        }
-
-        private boolean accept(Path path, BasicFileAttributes attrs) {
-            final String[] segments = new String[path.getNameCount()];
-            for (int i = 0; i < segments.length; ++i) {
-                segments[i] = path.getName(i).toString();
-            }
-            return matcher.voteAll(segments, (attrs != null && attrs.isDirectory()));
-        }
-
         @Override
         public void init(FSWatcher w) {
         }
@@ -290,10 +325,16 @@ public class DirectoryScannerFactory {
             }
         }
 
+        @Override
+        public void handleOverflowEvent(FSWatcherOverflowEvent e) throws Exception {
+            Path rel = basedir.relativize(e.getFullPath());
+            if (rel.toString().isEmpty() || matcher.canDescend(rel)) {
+                handler.handleOverflowEvent(e);
+            }
+        }
+
         private boolean acceptWatcherEvent(Path path) {
-            path = basedir.relativize(path);
-            String spath = path.toString();
-            return !spath.isEmpty() && accept(path, null);
+            return matcher.matchFile(basedir.relativize(path));
         }
 
         @Override
@@ -301,7 +342,6 @@ public class DirectoryScannerFactory {
             if (watcher != null) {
                 watcher.close();
             }
-            visitor = null;
         }
 
         @Override
@@ -330,122 +370,191 @@ public class DirectoryScannerFactory {
 
         @Override
         public void scan(DirectoryScannerVisitor visitor) throws IOException {
-            this.visitor = visitor;
-            Files.walkFileTree(basedir, this);
-        }
-    }
-
-    private static final class AntPatternMatcher {
+            walk(new ScanContext() {
+                @Override
+                void file(Path rel, BasicFileAttributes attrs) throws IOException {
+                    visitor.visit(rel, attrs);
+                }
 
-        private Pattern[][] includes;
+                @Override
+                void error(Path rel, IOException exc) throws IOException {
+                    visitor.error(rel, exc);
+                }
+            });
+        }
 
-        private Pattern[][] excludes;
+        @Override
+        public void scanDelta(DirectoryScannerDeltaVisitor visitor) throws IOException {
+            DirectoryScanSnapshot prev = snapshot;
+            if (prev == null) {
+                prev = (snapshotFile != null) ? DirectoryScanSnapshot.load(snapshotFile) : new DirectoryScanSnapshot();
+            }
+            DirectoryScanSnapshot old = prev;
+            DirectoryScanSnapshot cur = new DirectoryScanSnapshot();
+            List<String> failed = new ArrayList<>();
+            walk(new ScanContext() {
+                @Override
+                void file(Path rel, BasicFileAttributes attrs) throws IOException {
+                    String key = rel.toString();
+                    DirectoryScanSnapshot.Entry e =
+                            new DirectoryScanSnapshot.Entry(attrs.size(), attrs.lastModifiedTime().toMillis());
+                    cur.put(key, e);
+                    DirectoryScanSnapshot.Entry oe = old.get(key);
+                    if (oe == null) {
+                        visitor.created(rel, attrs);
+                    } else if (!oe.same(e)) {
+                        visitor.modified(rel, attrs);
+                    }
+                }
 
-        private AntPatternMatcher(List<String> includes, List<String> excludes) {
-            this.includes = new Pattern[includes.size()][];
-            this.excludes = new Pattern[excludes.size()][];
-            for (int i = 0, l = includes.size(); i < l; ++i) {
-                this.includes[i] = normalizePattern(includes.get(i));
+                @Override
+                void error(Path rel, IOException exc) throws IOException {
+                    failed.add(rel.toString());
+                    visitor.error(rel, exc);
+                }
+            });
+            String sep = basedir.getFileSystem().getSeparator();
+            for (Map.Entry<String, DirectoryScanSnapshot.Entry> e : old.getEntries().entrySet()) {
+                String key = e.getKey();
+                if (cur.get(key) != null) {
+                    continue;
+                }
+                if (isUnder(key, failed, sep)) {
+                    // Keep entries of unreadable directories until they become available
+                    cur.put(key, e.getValue());
+                } else {
+                    visitor.deleted(basedir.getFileSystem().getPath(key));
+                }
             }
-            for (int i = 0, l = excludes.size(); i < l; ++i) {
-                this.excludes[i] = normalizePattern(excludes.get(i));
+            snapshot = cur;
+            if (snapshotFile != null) {
+                try {
+                    cur.save(snapshotFile);
+                } catch (IOException e) {
+                    log.warn("Failed to save directory snapshot: {}", snapshotFile, e);
+                }
             }
         }
 
-        private Pattern[] normalizePattern(String pattern) {
-            if (StringUtils.isBlank(pattern)) {
-                pattern = "**";
-            }
-            ArrayList<Pattern> parts = new ArrayList<>();
-            pattern = pattern.replace('\\', '/');
-            if ('/' != File.separatorChar) {
-                pattern = pattern.replace(File.separatorChar, '/');
-            }
-            pattern = StringUtils.strip(pattern, "/ ");
-            boolean inmd = false;
-            StringTokenizer st = new StringTokenizer(pattern, "/");
-
-            while (st.hasMoreElements()) {
-                String pitem = st.nextToken().trim();
-                if ("**".equals(pitem)) {
-                    if (inmd) {
-                        continue;
-                    }
-                    inmd = true;
-                    parts.add(null);
-                } else if ("*".equals(pitem) && inmd) {
-                    ;//noop
-                } else {
-                    inmd = false;
-                    parts.add(Pattern.compile(RegexpHelper.convertGlobToRegEx(pitem)));
+        private boolean isUnder(String key, List<String> dirs, String sep) {
+            for (String d : dirs) {
+                if (d.isEmpty() || key.equals(d) || (key.startsWith(d) && key.startsWith(sep, d.length()))) {
+                    return true;
                 }
             }
-            return parts.toArray(new Pattern[parts.size()]);
+            return false;
         }
 
-        private boolean matchSegment(String val, Pattern pattern) {
-            return (pattern == null || pattern.matcher(val).matches());
+        private void walk(ScanContext ctx) throws IOException {
+            ScanTask root = new ScanTask(basedir, basedir.relativize(basedir), matcher.root(), ctx);
+            if (pool == null) {
+                root.compute();
+            } else {
+                pool.invoke(root);
+            }
+            if (ctx.failure != null) {
+                throw ctx.failure;
+            }
         }
 
-        private boolean vote(String[] val, Pattern[] match, boolean prefixOnly) {
-            if (val.length == 0 || match.length == 0) {
-                return false;
+        private final class ScanTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final Path dir;
+
+            private final Path rel;
+
+            private final ScanPatternMatcher.State state;
+
+            private final ScanContext ctx;
+
+            private ScanTask(Path dir, Path rel, ScanPatternMatcher.State state, ScanContext ctx) {
+                this.dir = dir;
+                this.rel = rel;
+                this.state = state;
+                this.ctx = ctx;
             }
-            int mind = 0;
-            int expectNextInd = -1;
-            Pattern mv;
-            Pattern expectNext = null;
-
-            for (final String el : val) {
-                if (mind >= match.length) {
-                    return false;
+
+            @Override
+            protected void compute() {
+                if (ctx.failure != null) {
+                    return;
                 }
-                mv = match[mind];
-                if (mv == null) {  // '**'
-                    if (expectNextInd == -1 && match.length > mind + 1) {
-                        expectNextInd = mind + 1;
-                        expectNext = match[expectNextInd];
+                List<ScanTask> subtasks = null;
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                    for (Path p : ds) {
+                        String name = p.getFileName().toString();
+                        BasicFileAttributes attrs;
+                        try {
+                            attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        } catch (IOException e) {
+                            ctx.onError(rel.resolve(name), e);
+                            continue;
+                        }
+                        if (attrs.isDirectory()) {
+                            ScanPatternMatcher.State cs = matcher.enter(state, name);
+                            if (!cs.canDescend()) {
+                                continue;
+                            }
+                            ScanTask t = new ScanTask(p, rel.resolve(name), cs, ctx);
+                            if (pool == null) {
+                                t.compute();
+                            } else {
+                                if (subtasks == null) {
+                                    subtasks = new ArrayList<>();
+                                }
+                                subtasks.add(t);
+                            }
+                        } else if (matcher.matchFile(state, name)) {
+                            ctx.onFile(rel.resolve(name), attrs);
+                        }
                     }
+                } catch (IOException e) {
+                    ctx.onError(rel, e);
+                } catch (DirectoryIteratorException e) {
+                    ctx.onError(rel, e.getCause());
                 }
-                if (!matchSegment(el, mv)) {
-                    return false;
-                }
-                if (expectNextInd != -1) {
-                    if (matchSegment(el, expectNext)) {
-                        expectNext = null;
-                        expectNextInd = -1;
-                        mind += 2;
-                    }
-                } else if (mv != null) {
-                    mind += 1;
+                if (subtasks != null) {
+                    invokeAll(subtasks);
                 }
             }
-            if (!prefixOnly) {
-                for (int i = mind; i < match.length; ++i) {
-                    if (match[i] != null) {
-                        return false;
-                    }
-                }
+        }
+    }
+
+    /**
+     * Single scan state shared by traversal tasks.
+     * Callbacks are serialized and the first exception
+     * thrown by a callback stops traversal.
+     */
+    private abstract static class ScanContext {
+
+        private volatile IOException failure;
+
+        abstract void file(Path rel, BasicFileAttributes attrs) throws IOException;
+
+        abstract void error(Path rel, IOException exc) throws IOException;
+
+        synchronized void onFile(Path rel, BasicFileAttributes attrs) {
+            if (failure != null) {
+                return;
+            }
+            try {
+                file(rel, attrs);
+            } catch (IOException e) {
+                failure = e;
             }
-            return true;
         }
 
-        private boolean voteAll(String[] val, boolean prefixOnly) {
-            if (!prefixOnly) {
-                for (final Pattern[] p : excludes) {
-                    if (vote(val, p, false)) {
-                        return false;
-                    }
-                }
+        synchronized void onError(Path rel, IOException exc) {
+            if (failure != null) {
+                return;
             }
-            for (final Pattern[] p : includes) {
-                if (vote(val, p, prefixOnly)) {
-                    return true;
-                }
+            try {
+                error(rel, exc);
+            } catch (IOException e) {
+                failure = e;
             }
-            return false;
         }
     }
-
-
 }
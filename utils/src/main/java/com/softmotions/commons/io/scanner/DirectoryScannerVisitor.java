@@ -5,6 +5,9 @@ import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 
 /**
+ * Receives matched files of {@link DirectoryScanner#scan(DirectoryScannerVisitor)}.
+ * All paths are relative to the scanner base directory.
+ *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 public interface DirectoryScannerVisitor {
@@ -0,0 +1,356 @@
+package com.softmotions.commons.io.scanner;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.softmotions.commons.re.Glob;
+import com.softmotions.commons.re.Globs;
+
+/**
+ * Ant-style include/exclude patterns compiled into
+ * a pair of segment tries simulated as NFA.
+ * <p/>
+ * All patterns sharing a prefix share trie nodes, literal segments
+ * are resolved by hash lookup and {@code **} is a self looping node,
+ * so each path segment is tested once against the combined pattern set
+ * instead of once per pattern. Matching is incremental: state of
+ * a directory is computed from the state of its parent, this allows
+ * to prune subtrees which cannot contain matched files.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+final class ScanPatternMatcher {
+
+    private static final Node[] EMPTY = new Node[0];
+
+    private final State root;
+
+    ScanPatternMatcher(List<String> includes, List<String> excludes) {
+        Node iroot = new Node(false);
+        Node eroot = new Node(false);
+        for (String p : includes) {
+            add(iroot, p);
+        }
+        for (String p : excludes) {
+            add(eroot, p);
+        }
+        iroot.complete();
+        eroot.complete();
+        root = new State(closure(new Node[]{iroot}), closure(new Node[]{eroot}));
+    }
+
+    /**
+     * State of the base directory.
+     */
+    State root() {
+        return root;
+    }
+
+    /**
+     * State of the child directory named {@code segment}.
+     */
+    State enter(State parent, String segment) {
+        return new State(step(parent.includes, segment), step(parent.excludes, segment));
+    }
+
+    /**
+     * Returns {@code true} if a file named {@code segment}
+     * within directory in the given state is matched.
+     */
+    boolean matchFile(State parent, String segment) {
+        return accepts(parent.includes, segment) && !accepts(parent.excludes, segment);
+    }
+
+    /**
+     * Checks the path relative to the base directory.
+     */
+    boolean matchFile(Path path) {
+        int nc = path.getNameCount();
+        if (nc == 0 || path.toString().isEmpty()) {
+            return false;
+        }
+        State s = root;
+        for (int i = 0; i < nc - 1; ++i) {
+            s = enter(s, path.getName(i).toString());
+            if (!s.canDescend()) {
+                return false;
+            }
+        }
+        return matchFile(s, path.getName(nc - 1).toString());
+    }
+
+    /**
+     * Returns {@code true} if the directory relative
+     * to the base directory may contain matched files.
+     */
+    boolean canDescend(Path dir) {
+        State s = root;
+        for (int i = 0, nc = dir.getNameCount(); i < nc && s.canDescend(); ++i) {
+            s = enter(s, dir.getName(i).toString());
+        }
+        return s.canDescend();
+    }
+
+    private static void add(Node root, String pattern) {
+        Node n = root;
+        for (String seg : normalizePattern(pattern)) {
+            if (seg == null) {
+                if (n.deep == null) {
+                    n.deep = new Node(true);
+                }
+                n = n.deep;
+            } else if (isLiteral(seg)) {
+                n = n.literals.computeIfAbsent(seg, k -> new Node(false));
+            } else {
+                Node c = n.globIndex.get(seg);
+                if (c == null) {
+                    c = new Node(false);
+                    n.globIndex.put(seg, c);
+                    n.globList.add(new GlobTransition(seg, c));
+                }
+                n = c;
+            }
+        }
+        n.terminal = true;
+    }
+
+    /**
+     * Splits pattern into segments, {@code null} segment stands for {@code **}.
+     */
+    static List<String> normalizePattern(String pattern) {
+        if (StringUtils.isBlank(pattern)) {
+            pattern = "**";
+        }
+        ArrayList<String> parts = new ArrayList<>();
+        pattern = pattern.replace('\\', '/');
+        if ('/' != File.separatorChar) {
+            pattern = pattern.replace(File.separatorChar, '/');
+        }
+        pattern = StringUtils.strip(pattern, "/ ");
+        boolean inmd = false;
+        StringTokenizer st = new StringTokenizer(pattern, "/");
+        while (st.hasMoreElements()) {
+            String pitem = st.nextToken().trim();
+            if ("**".equals(pitem)) {
+                if (inmd) {
+                    continue;
+                }
+                inmd = true;
+                parts.add(null);
+            } else if ("*".equals(pitem) && inmd) {
+                ;//noop
+            } else {
+                inmd = false;
+                parts.add(pitem);
+            }
+        }
+        return parts;
+    }
+
+    private static boolean isLiteral(String seg) {
+        return StringUtils.containsNone(seg, "*?\\{}[] \t");
+    }
+
+    private static Node[] step(Node[] nodes, String seg) {
+        if (nodes.length == 0) {
+            return EMPTY;
+        }
+        ArrayList<Node> res = null;
+        for (Node n : nodes) {
+            if (n.isDeep) {
+                res = addClosure(res, n);
+            }
+            if (!n.literals.isEmpty()) {
+                Node c = n.literals.get(seg);
+                if (c != null) {
+                    res = addClosure(res, c);
+                }
+            }
+            for (GlobTransition gt : n.globs) {
+                if (gt.matches(seg)) {
+                    res = addClosure(res, gt.target);
+                }
+            }
+        }
+        return res != null ? res.toArray(EMPTY) : EMPTY;
+    }
+
+    private static boolean accepts(Node[] nodes, String seg) {
+        for (Node n : nodes) {
+            if (n.isDeep && n.accepting) {
+                return true;
+            }
+            if (!n.literals.isEmpty()) {
+                Node c = n.literals.get(seg);
+                if (c != null && c.accepting) {
+                    return true;
+                }
+            }
+            for (GlobTransition gt : n.globs) {
+                if (gt.target.accepting && gt.matches(seg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Node[] closure(Node[] nodes) {
+        ArrayList<Node> res = null;
+        for (Node n : nodes) {
+            res = addClosure(res, n);
+        }
+        return res != null ? res.toArray(EMPTY) : EMPTY;
+    }
+
+    private static ArrayList<Node> addClosure(ArrayList<Node> res, Node n) {
+        for (; n != null; n = n.deep) {
+            if (res == null) {
+                res = new ArrayList<>(4);
+            } else if (containsNode(res, n)) {
+                continue;
+            }
+            res.add(n);
+        }
+        return res;
+    }
+
+    private static boolean containsNode(List<Node> nodes, Node n) {
+        for (int i = 0, l = nodes.size(); i < l; ++i) {
+            if (nodes.get(i) == n) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Immutable
+    static final class State {
+
+        private final Node[] includes;
+
+        private final Node[] excludes;
+
+        private final boolean canDescend;
+
+        private State(Node[] includes, Node[] excludes) {
+            this.includes = includes;
+            this.excludes = excludes;
+            this.canDescend = computeCanDescend();
+        }
+
+        /**
+         * Returns {@code false} if none of files
+         * in the directory subtree can be matched.
+         */
+        boolean canDescend() {
+            return canDescend;
+        }
+
+        private boolean computeCanDescend() {
+            for (Node n : excludes) {
+                // Trailing `**` of exclude pattern matches any path below
+                if (n.isDeep && n.terminal) {
+                    return false;
+                }
+            }
+            for (Node n : includes) {
+                if (n.hasTransitions()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public String toString() {
+            return "State{" +
+                   "includes=" + Arrays.toString(includes) +
+                   ", excludes=" + Arrays.toString(excludes) +
+                   '}';
+        }
+    }
+
+    private static final class Node {
+
+        private final boolean isDeep;
+
+        private final Map<String, Node> literals = new HashMap<>();
+
+        private final Map<String, Node> globIndex = new HashMap<>();
+
+        private final List<GlobTransition> globList = new ArrayList<>();
+
+        private GlobTransition[] globs;
+
+        private Node deep;
+
+        private boolean terminal;
+
+        /**
+         * Pattern is matched here or after an empty `**`.
+         */
+        private boolean accepting;
+
+        private Node(boolean isDeep) {
+            this.isDeep = isDeep;
+        }
+
+        private boolean hasTransitions() {
+            return isDeep || !literals.isEmpty() || globs.length > 0;
+        }
+
+        private boolean complete() {
+            globs = globList.toArray(new GlobTransition[globList.size()]);
+            boolean acc = terminal;
+            for (Node n : literals.values()) {
+                n.complete();
+            }
+            for (GlobTransition gt : globs) {
+                gt.target.complete();
+            }
+            if (deep != null) {
+                acc |= deep.complete();
+            }
+            accepting = acc;
+            return acc;
+        }
+
+        public String toString() {
+            return "Node{" +
+                   "deep=" + isDeep +
+                   ", literals=" + literals.keySet() +
+                   ", globs=" + globIndex.keySet() +
+                   ", terminal=" + terminal +
+                   '}';
+        }
+    }
+
+    /**
+     * Glob segment transition.
+     */
+    private static final class GlobTransition {
+
+        private final Node target;
+
+        private final Glob glob;
+
+        private GlobTransition(String glob, Node target) {
+            this.target = target;
+            this.glob = Globs.get(glob);
+        }
+
+        private boolean matches(String seg) {
+            return glob.matches(seg);
+        }
+    }
+}
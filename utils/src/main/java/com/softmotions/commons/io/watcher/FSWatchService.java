@@ -0,0 +1,673 @@
+package com.softmotions.commons.io.watcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watch service shared by many {@link FSWatcher} instances.
+ * <p/>
+ * All directories of a file system are watched by the single
+ * {@link WatchService} and the single thread. Each directory is registered
+ * once regardless of the number of watchers interested in it.
+ * Subdirectories of recursive registrations are registered lazily
+ * by the service thread in small chunks interleaved with events processing,
+ * so {@link FSWatcher#register(Path, boolean)} returns immediately.
+ * <p/>
+ * If the file system has no native watch support, the number of natively
+ * watched directories exceeds {@link #setMaxWatchedKeys(int)} or the OS refuses
+ * to watch a directory, the directory is watched by periodic polling instead.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public class FSWatchService implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FSWatchService.class);
+
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    public static final long DEFAULT_POLLING_INTERVAL_MILLIS = 2000;
+
+    public static final int DEFAULT_REGISTRATION_BATCH_SIZE = 256;
+
+    private final Object lock = new Object();
+
+    private final String name;
+
+    private final FileSystem fileSystem;
+
+    private final WatchService ws;
+
+    private final Thread thread;
+
+    private final Set<FSWatcher> watchers = new CopyOnWriteArraySet<>();
+
+    @GuardedBy("lock")
+    private final Map<Path, Registration> registrations = new HashMap<>();
+
+    @GuardedBy("lock")
+    private final Map<WatchKey, Registration> keys = new HashMap<>();
+
+    @GuardedBy("lock")
+    private final ArrayDeque<Job> jobs = new ArrayDeque<>();
+
+    @GuardedBy("lock")
+    private int pollingCount;
+
+    private final LongAdder eventCount = new LongAdder();
+
+    private final LongAdder overflowCount = new LongAdder();
+
+    private volatile int maxWatchedKeys = Integer.MAX_VALUE;
+
+    private volatile long pollingIntervalMillis = DEFAULT_POLLING_INTERVAL_MILLIS;
+
+    private volatile int registrationBatchSize = DEFAULT_REGISTRATION_BATCH_SIZE;
+
+    private volatile double eventRate;
+
+    private volatile boolean closed;
+
+    public FSWatchService(String name) throws IOException {
+        this(name, FileSystems.getDefault(), false);
+    }
+
+    /**
+     * @param polling Use polling instead of native watch service
+     */
+    public FSWatchService(String name, FileSystem fileSystem, boolean polling) throws IOException {
+        this.name = name;
+        this.fileSystem = fileSystem;
+        WatchService s = null;
+        if (!polling) {
+            try {
+                s = fileSystem.newWatchService();
+            } catch (UnsupportedOperationException e) {
+                log.warn("File system of {} has no watch service, polling will be used", name);
+            }
+        }
+        this.ws = s;
+        this.thread = new Thread(this::run, toString());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Service for the default file system shared by the whole application.
+     */
+    public static FSWatchService getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public FileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    public boolean isPolling() {
+        return ws == null;
+    }
+
+    public int getMaxWatchedKeys() {
+        return maxWatchedKeys;
+    }
+
+    /**
+     * Maximum number of directories watched natively,
+     * the rest of directories are polled.
+     */
+    public FSWatchService setMaxWatchedKeys(int maxWatchedKeys) {
+        this.maxWatchedKeys = maxWatchedKeys;
+        return this;
+    }
+
+    public long getPollingIntervalMillis() {
+        return pollingIntervalMillis;
+    }
+
+    public FSWatchService setPollingIntervalMillis(long pollingIntervalMillis) {
+        this.pollingIntervalMillis = pollingIntervalMillis;
+        return this;
+    }
+
+    public int getRegistrationBatchSize() {
+        return registrationBatchSize;
+    }
+
+    /**
+     * Number of directories registered lazily per service loop iteration.
+     */
+    public FSWatchService setRegistrationBatchSize(int registrationBatchSize) {
+        this.registrationBatchSize = Math.max(1, registrationBatchSize);
+        return this;
+    }
+
+    /**
+     * Number of directories watched by native watch service.
+     */
+    public int getWatchedKeys() {
+        synchronized (lock) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Number of directories watched by polling.
+     */
+    public int getPolledDirectories() {
+        synchronized (lock) {
+            return pollingCount;
+        }
+    }
+
+    /**
+     * Number of directories waiting for lazy registration.
+     */
+    public int getPendingRegistrations() {
+        synchronized (lock) {
+            return jobs.size();
+        }
+    }
+
+    public int getWatchers() {
+        return watchers.size();
+    }
+
+    /**
+     * Total number of file system events received.
+     */
+    public long getEventCount() {
+        return eventCount.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    /**
+     * Events per second, exponentially weighted over the last minute.
+     */
+    public double getEventRate() {
+        return eventRate;
+    }
+
+    void attach(FSWatcher watcher) {
+        watchers.add(watcher);
+    }
+
+    void detach(FSWatcher watcher) {
+        watchers.remove(watcher);
+        unregisterAll(watcher);
+    }
+
+    void register(FSWatcher watcher, Path dir, boolean recursive) throws IOException {
+        if (closed) {
+            throw new IOException("Watch service is closed: " + this);
+        }
+        dir = dir.toAbsolutePath().normalize();
+        synchronized (lock) {
+            subscribe(dir, watcher, recursive);
+            if (recursive) {
+                jobs.add(new Job(dir, watcher, true));
+            }
+        }
+        watcher.fireRegister(new FSWatcherRegisterEvent(watcher, dir));
+    }
+
+    boolean unregister(FSWatcher watcher, Path path) {
+        Path dir = path.toAbsolutePath().normalize();
+        synchronized (lock) {
+            Registration reg = registrations.get(dir);
+            Subscription sub = (reg != null) ? reg.find(watcher) : null;
+            if (sub == null) {
+                return false;
+            }
+            unsubscribe(reg, sub);
+            if (sub.recursive) {
+                for (Registration r : new ArrayList<>(registrations.values())) {
+                    if (r.dir.startsWith(dir)) {
+                        Subscription s = r.find(watcher);
+                        if (s != null) {
+                            unsubscribe(r, s);
+                        }
+                    }
+                }
+                jobs.removeIf(j -> j.watcher == watcher && j.dir.startsWith(dir));
+            }
+            return true;
+        }
+    }
+
+    void unregisterAll(FSWatcher watcher) {
+        synchronized (lock) {
+            for (Registration r : new ArrayList<>(registrations.values())) {
+                Subscription s = r.find(watcher);
+                if (s != null) {
+                    unsubscribe(r, s);
+                }
+            }
+            jobs.removeIf(j -> j.watcher == watcher);
+        }
+    }
+
+    @GuardedBy("lock")
+    private void subscribe(Path dir, FSWatcher watcher, boolean recursive) throws IOException {
+        Registration reg = registrations.get(dir);
+        if (reg == null) {
+            reg = new Registration(dir);
+            if (ws != null && keys.size() < maxWatchedKeys) {
+                try {
+                    reg.key = dir.register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                } catch (IOException e) {
+                    if (!Files.isDirectory(dir)) {
+                        throw e;
+                    }
+                    log.warn("Failed to watch: {}, polling will be used. {}", dir, e.toString());
+                }
+            }
+            if (reg.key != null) {
+                Registration prev = keys.put(reg.key, reg);
+                if (prev != null) {
+                    // Same directory by different path
+                    keys.put(reg.key, prev);
+                    reg = prev;
+                }
+            } else {
+                reg.snapshot = list(dir);
+                ++pollingCount;
+            }
+            registrations.put(dir, reg);
+        }
+        Subscription sub = reg.find(watcher);
+        if (sub == null) {
+            reg.subs.add(new Subscription(watcher, recursive));
+        } else if (recursive && !sub.recursive) {
+            reg.subs.remove(sub);
+            reg.subs.add(new Subscription(watcher, true));
+        }
+    }
+
+    @GuardedBy("lock")
+    private void unsubscribe(Registration reg, Subscription sub) {
+        reg.subs.remove(sub);
+        if (reg.subs.isEmpty()) {
+            removeRegistration(reg);
+        }
+    }
+
+    @GuardedBy("lock")
+    private void removeRegistration(Registration reg) {
+        registrations.remove(reg.dir);
+        if (reg.key != null) {
+            if (keys.get(reg.key) == reg) {
+                keys.remove(reg.key);
+                reg.key.cancel();
+            }
+        } else if (reg.snapshot != null) {
+            reg.snapshot = null;
+            --pollingCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        thread.interrupt();
+        synchronized (lock) {
+            for (Registration r : new ArrayList<>(registrations.values())) {
+                removeRegistration(r);
+            }
+            jobs.clear();
+        }
+        if (ws != null) {
+            ws.close();
+        }
+    }
+
+    private void run() {
+        log.info("Starting watch service thread: {}", thread.getName());
+        long nextPolling = System.nanoTime();
+        long rateTime = System.nanoTime();
+        long rateCount = 0;
+        while (!closed && !Thread.currentThread().isInterrupted()) {
+            boolean haveJobs;
+            synchronized (lock) {
+                haveJobs = !jobs.isEmpty();
+            }
+            try {
+                if (ws != null) {
+                    WatchKey key = haveJobs ? ws.poll() : ws.poll(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+                    while (key != null) {
+                        processKey(key);
+                        key = ws.poll();
+                    }
+                } else if (!haveJobs) {
+                    Thread.sleep(DEFAULT_TICK_MILLIS);
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                break;
+            }
+            if (haveJobs) {
+                processJobs();
+            }
+            long now = System.nanoTime();
+            if (now - nextPolling >= 0) {
+                pollDirectories();
+                nextPolling = now + TimeUnit.MILLISECONDS.toNanos(pollingIntervalMillis);
+            }
+            for (FSWatcher w : watchers) {
+                w.checkPollTimeout(now);
+            }
+            long elapsed = now - rateTime;
+            if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                long count = eventCount.sum();
+                double secs = elapsed / 1e9;
+                double alpha = 1 - Math.exp(-secs / 60.0);
+                eventRate += alpha * ((count - rateCount) / secs - eventRate);
+                rateCount = count;
+                rateTime = now;
+            }
+        }
+        log.info("Watch service thread: {} finished", thread.getName());
+    }
+
+    private void processKey(WatchKey key) {
+        Registration reg;
+        List<Subscription> subs;
+        synchronized (lock) {
+            reg = keys.get(key);
+            subs = (reg != null) ? new ArrayList<>(reg.subs) : null;
+        }
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (reg != null) {
+            for (WatchEvent<?> ev : events) {
+                WatchEvent.Kind<?> kind = ev.kind();
+                if (kind == OVERFLOW) {
+                    overflowCount.increment();
+                    dispatchOverflow(reg, subs);
+                } else {
+                    dispatch(reg, subs, kind, (Path) ev.context());
+                }
+            }
+        }
+        if (!key.reset()) {
+            synchronized (lock) {
+                if (reg != null && keys.get(key) == reg) {
+                    keys.remove(key);
+                    registrations.remove(reg.dir);
+                }
+            }
+        }
+    }
+
+    private void dispatch(Registration reg, List<Subscription> subs, WatchEvent.Kind<?> kind, Path child) {
+        eventCount.increment();
+        Path dir = reg.dir;
+        boolean isDir = (kind == ENTRY_CREATE) && Files.isDirectory(dir.resolve(child), LinkOption.NOFOLLOW_LINKS);
+        for (Subscription sub : subs) {
+            FSWatcher w = sub.watcher;
+            w.touch();
+            if (kind == ENTRY_MODIFY) {
+                w.fireModify(new FSWatcherModifyEvent(w, dir, child));
+            } else if (kind == ENTRY_CREATE) {
+                if (isDir && sub.recursive) {
+                    Path cdir = dir.resolve(child);
+                    synchronized (lock) {
+                        try {
+                            subscribe(cdir, w, true);
+                            jobs.add(new Job(cdir, w, true));
+                        } catch (IOException e) {
+                            log.error("", e);
+                        }
+                    }
+                    w.fireRegister(new FSWatcherRegisterEvent(w, cdir));
+                }
+                w.fireCreate(new FSWatcherCreateEvent(w, dir, child));
+            } else if (kind == ENTRY_DELETE) {
+                w.fireDelete(new FSWatcherDeleteEvent(w, dir, child));
+            } else {
+                log.error("Unknown event type: " + kind);
+            }
+        }
+    }
+
+    private void dispatchOverflow(Registration reg, List<Subscription> subs) {
+        for (Subscription sub : subs) {
+            FSWatcher w = sub.watcher;
+            w.touch();
+            if (sub.recursive) {
+                // Register subdirectories created while events were lost
+                synchronized (lock) {
+                    jobs.add(new Job(reg.dir, w, false));
+                }
+            }
+            w.fireOverflow(new FSWatcherOverflowEvent(w, reg.dir));
+        }
+    }
+
+    /**
+     * Lazy registration of subdirectories.
+     */
+    private void processJobs() {
+        for (int i = 0, n = registrationBatchSize; i < n; ++i) {
+            Job job;
+            synchronized (lock) {
+                job = jobs.poll();
+            }
+            if (job == null) {
+                break;
+            }
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(job.dir)) {
+                for (Path p : ds) {
+                    if (Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS)) {
+                        boolean known;
+                        synchronized (lock) {
+                            if (!watchers.contains(job.watcher)) {
+                                break;
+                            }
+                            Registration r = registrations.get(p);
+                            known = (r != null && r.find(job.watcher) != null);
+                            try {
+                                subscribe(p, job.watcher, true);
+                            } catch (IOException e) {
+                                log.warn("Failed to register: {} {}", p, e.toString());
+                                continue;
+                            }
+                            if (!known || job.fireFiles) {
+                                jobs.add(new Job(p, job.watcher, job.fireFiles || !known));
+                            }
+                        }
+                        if (job.fireFiles || !known) {
+                            job.watcher.fireRegister(new FSWatcherRegisterEvent(job.watcher, p));
+                        }
+                    } else if (job.fireFiles) {
+                        job.watcher.fireRegister(new FSWatcherRegisterEvent(job.watcher, p));
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                log.warn("Failed to register: {} {}", job.dir, e.toString());
+            }
+        }
+    }
+
+    private void pollDirectories() {
+        List<Registration> polled = new ArrayList<>();
+        synchronized (lock) {
+            if (pollingCount == 0) {
+                return;
+            }
+            for (Registration r : registrations.values()) {
+                if (r.snapshot != null) {
+                    polled.add(r);
+                }
+            }
+        }
+        for (Registration reg : polled) {
+            Map<String, long[]> prev = reg.snapshot;
+            Map<String, long[]> cur;
+            try {
+                cur = list(reg.dir);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    if (registrations.get(reg.dir) == reg) {
+                        removeRegistration(reg);
+                    }
+                }
+                continue;
+            }
+            List<Subscription> subs;
+            synchronized (lock) {
+                if (reg.snapshot == null) {
+                    continue;
+                }
+                reg.snapshot = cur;
+                subs = new ArrayList<>(reg.subs);
+            }
+            for (Map.Entry<String, long[]> e : cur.entrySet()) {
+                long[] pa = prev.get(e.getKey());
+                if (pa == null) {
+                    dispatch(reg, subs, ENTRY_CREATE, fileSystem.getPath(e.getKey()));
+                } else if (pa[0] != e.getValue()[0] || pa[1] != e.getValue()[1]) {
+                    dispatch(reg, subs, ENTRY_MODIFY, fileSystem.getPath(e.getKey()));
+                }
+            }
+            for (String n : prev.keySet()) {
+                if (!cur.containsKey(n)) {
+                    dispatch(reg, subs, ENTRY_DELETE, fileSystem.getPath(n));
+                }
+            }
+        }
+    }
+
+    /**
+     * Directory listing: name -> [mtime, size].
+     */
+    private static Map<String, long[]> list(Path dir) throws IOException {
+        Map<String, long[]> res = new HashMap<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    res.put(p.getFileName().toString(),
+                            new long[]{attrs.lastModifiedTime().toMillis(), attrs.isDirectory() ? -1 : attrs.size()});
+                } catch (IOException ignored) {
+                    // File has been deleted
+                }
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+        return res;
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + '[' + name + ']';
+    }
+
+    private static final class Registration {
+
+        private final Path dir;
+
+        private final List<Subscription> subs = new ArrayList<>(1);
+
+        private WatchKey key;
+
+        /**
+         * Last listing of polled directory.
+         */
+        private volatile Map<String, long[]> snapshot;
+
+        private Registration(Path dir) {
+            this.dir = dir;
+        }
+
+        private Subscription find(FSWatcher watcher) {
+            for (Subscription s : subs) {
+                if (s.watcher == watcher) {
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Subscription {
+
+        private final FSWatcher watcher;
+
+        private final boolean recursive;
+
+        private Subscription(FSWatcher watcher, boolean recursive) {
+            this.watcher = watcher;
+            this.recursive = recursive;
+        }
+    }
+
+    private static final class Job {
+
+        private final Path dir;
+
+        private final FSWatcher watcher;
+
+        /**
+         * Fire register events for files.
+         */
+        private final boolean fireFiles;
+
+        private Job(Path dir, FSWatcher watcher, boolean fireFiles) {
+            this.dir = dir;
+            this.watcher = watcher;
+            this.fireFiles = fireFiles;
+        }
+    }
+
+    private static final class DefaultHolder {
+
+        private static final FSWatchService INSTANCE;
+
+        static {
+            try {
+                INSTANCE = new FSWatchService("default");
+            } catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+}
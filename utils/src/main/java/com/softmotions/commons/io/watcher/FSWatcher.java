@@ -9,32 +9,18 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
-import java.nio.file.FileVisitResult;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
-import java.nio.file.Watchable;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
-import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
-import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
-import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
-import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
-
 /**
  * File system changes watcher.
+ * <p/>
+ * Watcher is a subscriber of {@link FSWatchService}. Watchers created
+ * with {@link FSWatchService} argument share its thread and watch keys,
+ * other constructors create a private service owned by the watcher.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
@@ -46,19 +32,17 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
 
     private final Object lock = new Object();
 
-    private final WatchService ws;
-
-    private final FileSystem fileSystem;
+    private final FSWatchService service;
 
-    private final Set<WatchKey> keys;
-
-    private final Map<WatchKey, WatchSlot> slots;
+    private final boolean ownService;
 
     private final FSWatcherEventHandler handler;
 
-    private final long pollTimeoutMills;
+    private final long pollTimeoutNanos;
+
+    private final CountDownLatch closeLatch = new CountDownLatch(1);
 
-    private Thread watchThread;
+    private volatile long lastActivity;
 
     private String name;
 
@@ -70,15 +54,25 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
     }
 
     public FSWatcher(String name, FileSystem fileSystem, FSWatcherEventHandler handler, long pollTimeoutMills) throws IOException {
+        this(name, new FSWatchService(name, fileSystem, false), true, handler, pollTimeoutMills);
+    }
+
+    public FSWatcher(String name, FSWatchService service, FSWatcherEventHandler handler, long pollTimeoutMills) {
+        this(name, service, false, handler, pollTimeoutMills);
+    }
+
+    private FSWatcher(String name,
+                      FSWatchService service,
+                      boolean ownService,
+                      FSWatcherEventHandler handler,
+                      long pollTimeoutMills) {
         this.name = name;
-        this.fileSystem = fileSystem;
-        this.keys = new HashSet<>();
-        this.slots = new HashMap<>();
-        this.ws = fileSystem.newWatchService();
+        this.service = service;
+        this.ownService = ownService;
         this.handler = handler;
-        this.pollTimeoutMills = (pollTimeoutMills <= 0) ? Long.MAX_VALUE : pollTimeoutMills;
-        this.watchThread = null;
-        this.initWatchingThread();
+        this.pollTimeoutNanos = (pollTimeoutMills <= 0) ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(pollTimeoutMills);
+        this.lastActivity = System.nanoTime();
+        this.service.attach(this);
         if (this.handler != null) {
             this.handler.init(this);
         }
@@ -99,7 +93,11 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
     }
 
     public FileSystem getFileSystem() {
-        return this.fileSystem;
+        return service.getFileSystem();
+    }
+
+    public FSWatchService getService() {
+        return service;
     }
 
     public void register(File file, boolean recursive) throws IOException {
@@ -107,39 +105,21 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
     }
 
     public void register(String path, boolean recursive) throws IOException {
-        register(Paths.get(path), recursive);
-    }
-
+        register(getFileSystem().getPath(path), recursive);
+    }
+
+    /**
+     * Starts watching of the directory.
+     * <p/>
+     * Recursive registration is asynchronous: the method returns
+     * once the directory itself is watched, its subdirectories are
+     * registered later by the service thread, so changes made in them
+     * right after this call may be missed. {@link FSWatcherRegisterEvent}
+     * is fired for the directory in both modes, recursive registration
+     * also fires it for every registered subdirectory and every file found in them.
+     */
     public void register(Path path, final boolean recursive) throws IOException {
-        if (recursive) {
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    register(dir, new WatchSlot(true));
-                    return FileVisitResult.CONTINUE;
-                }
-
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    fireRegister(new FSWatcherRegisterEvent(FSWatcher.this, file));
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        } else {
-            register(path, new WatchSlot(false));
-        }
-    }
-
-    private void register(Path path, WatchSlot slot) throws IOException {
-        ensureWatchingThread();
-        synchronized (lock) {
-            WatchKey key = path.register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
-            if (!keys.contains(key)) {
-                keys.add(key);
-                slots.put(key, slot);
-            }
-        }
-        fireRegister(new FSWatcherRegisterEvent(this, path));
+        service.register(this, path, recursive);
     }
 
     public void unregister(File path) throws IOException {
@@ -147,108 +127,68 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
     }
 
     public void unregister(String path) throws IOException {
-        unregister(Paths.get(path));
+        unregister(getFileSystem().getPath(path));
     }
 
 
     public void unregister(Path path) throws IOException {
-        WatchSlot slot = unregisterFlat(path);
-        if (slot != null && slot.recursive) {
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                    unregisterFlat(dir);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        }
-    }
-
-    private WatchSlot unregisterFlat(Path path) throws IOException {
-        WatchSlot slot = null;
-        synchronized (lock) {
-            WatchKey found = null;
-            for (WatchKey k : keys) {
-                Watchable w = k.watchable();
-                if (w instanceof Path) {
-                    Path wp = (Path) w;
-                    if (Files.isSameFile(path, wp)) {
-                        found = k;
-                        break;
-                    }
-                }
-            }
-            if (found != null) {
-                found.cancel();
-                keys.remove(found);
-                slot = slots.remove(found);
-            }
-        }
-        return slot;
+        service.unregister(this, path);
     }
 
     public void reset() throws IOException {
-        synchronized (lock) {
-            for (final WatchKey k : keys) {
-                k.cancel();
-            }
-            keys.clear();
-            slots.clear();
-        }
+        service.unregisterAll(this);
     }
 
     @Override
     public void close() throws IOException {
         try {
-            synchronized (lock) {
-                destroyWatchingThread();
-                for (WatchKey k : keys) {
-                    k.cancel();
-                }
-                keys.clear();
-                slots.clear();
+            service.detach(this);
+            if (ownService) {
+                service.close();
             }
         } finally {
-            ws.close();
+            closeLatch.countDown();
         }
     }
 
+    /**
+     * Waits until the watcher is closed.
+     */
     public void join() throws InterruptedException {
-        join(Long.MAX_VALUE);
+        closeLatch.await();
     }
 
-    public void join(long maxWaitMills) throws InterruptedException {
-        Thread wt;
-        synchronized (lock) {
-            wt = this.watchThread;
-        }
-        if (wt != null) {
-            wt.join(maxWaitMills);
+    /**
+     * Blocks the calling thread until the watcher is closed,
+     * events are dispatched by the {@link FSWatchService} thread.
+     *
+     * @deprecated Watcher does not need its own thread, use {@link #join()}
+     */
+    @Override
+    @Deprecated
+    public void run() {
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void ensureWatchingThread() {
-        synchronized (lock) {
-            if (watchThread == null ||
-                !watchThread.isAlive() ||
-                watchThread.isInterrupted()) {
-                initWatchingThread();
-            }
-        }
+    public void join(long maxWaitMills) throws InterruptedException {
+        closeLatch.await(maxWaitMills, TimeUnit.MILLISECONDS);
     }
 
-    private void initWatchingThread() {
-        synchronized (lock) {
-            destroyWatchingThread();
-            watchThread = new Thread(this, toString());
-            watchThread.start();
-        }
+    void touch() {
+        lastActivity = System.nanoTime();
     }
 
-    private void destroyWatchingThread() {
-        synchronized (lock) {
-            if (watchThread != null && watchThread.isAlive()) {
-                watchThread.interrupt();
+    void checkPollTimeout(long now) {
+        if (handler != null && now - lastActivity >= pollTimeoutNanos) {
+            lastActivity = now;
+            try {
+                handler.handlePollTimeout(this);
+            } catch (Exception e) {
+                log.error("", e);
             }
         }
     }
@@ -284,91 +224,28 @@ public class FSWatcher implements Closeable, Runnable, UserDataStore {
     }
 
 
-    protected void fireRegister(FSWatcherRegisterEvent ev) {
+    protected void fireOverflow(FSWatcherOverflowEvent ev) {
         if (handler != null) {
             try {
-                handler.handleRegisterEvent(ev);
+                handler.handleOverflowEvent(ev);
             } catch (Exception e) {
                 log.error("", e);
             }
         }
     }
 
-
-    @Override
-    public void run() {
-        log.info("Starting watcher thread: " + Thread.currentThread().getName());
-        while (!Thread.currentThread().isInterrupted()) {
-            WatchKey key;
+    protected void fireRegister(FSWatcherRegisterEvent ev) {
+        if (handler != null) {
             try {
-                key = ws.poll(pollTimeoutMills, TimeUnit.MILLISECONDS);
-                if (key == null) {
-                    if (handler != null) {
-                        try {
-                            handler.handlePollTimeout(this);
-                        } catch (Exception e) {
-                            log.error("", e);
-                        }
-                    }
-                    continue;
-                }
-            } catch (ClosedWatchServiceException | InterruptedException e) {
-                break;
-            }
-            WatchSlot slot;
-            synchronized (lock) {
-                slot = slots.get(key);
-            }
-            if (slot == null) {
-                continue;
-            }
-            for (WatchEvent ev : key.pollEvents()) {
-                WatchEvent.Kind kind = ev.kind();
-                if (kind == OVERFLOW) {
-                    continue;
-                }
-                Path dir = (Path) key.watchable();
-                Path child = (Path) ev.context();
-                if (kind == ENTRY_MODIFY) {
-                    fireModify(new FSWatcherModifyEvent(this, dir, child));
-                } else if (kind == ENTRY_CREATE) {
-                    if (slot.recursive) {
-                        child = dir.resolve(child);
-                        if (Files.isDirectory(child)) {
-                            try {
-                                register(child, true);
-                            } catch (IOException e) {
-                                log.error("", e);
-                            }
-                        }
-                    }
-                    fireCreate(new FSWatcherCreateEvent(this, dir, child));
-                } else if (kind == ENTRY_DELETE) {
-                    fireDelete(new FSWatcherDeleteEvent(this, dir, child));
-                } else {
-                    log.error("Unknown event type: " + kind);
-                }
-                if (!key.reset()) {
-                    synchronized (lock) {
-                        keys.remove(key);
-                        slots.remove(key);
-                    }
-                }
+                handler.handleRegisterEvent(ev);
+            } catch (Exception e) {
+                log.error("", e);
             }
         }
-        log.warn("Watcher thread: " + Thread.currentThread().getName() + " finished");
     }
 
+
     public String toString() {
         return getClass().getSimpleName() + '[' + name + ']';
     }
-
-    private static final class WatchSlot {
-
-        private final boolean recursive;
-
-        private WatchSlot(boolean recursive) {
-            this.recursive = recursive;
-        }
-    }
 }
@@ -0,0 +1,18 @@
+package com.softmotions.commons.io.watcher;
+
+import java.util.List;
+
+/**
+ * Consumer of coalesced file system changes.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ * @see FSWatcherDebouncer
+ */
+@FunctionalInterface
+public interface FSWatcherBatchHandler {
+
+    /**
+     * Handles batch of net changes, each path occurs in the batch at most once.
+     */
+    void handleBatch(List<FSWatcherChange> batch) throws Exception;
+}
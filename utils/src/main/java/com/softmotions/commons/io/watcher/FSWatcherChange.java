@@ -0,0 +1,69 @@
+package com.softmotions.commons.io.watcher;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Net change of a single path produced by {@link FSWatcherDebouncer}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+public final class FSWatcherChange {
+
+    public enum Kind {
+        /**
+         * Path was found by the watcher registration.
+         */
+        REGISTER,
+        CREATE,
+        MODIFY,
+        DELETE,
+        /**
+         * Events of the directory were lost,
+         * changes of its content must be reconciled by the consumer.
+         */
+        RESCAN
+    }
+
+    private final FSWatcher watcher;
+
+    private final Kind kind;
+
+    private final Path fullPath;
+
+    public FSWatcherChange(FSWatcher watcher, Kind kind, Path fullPath) {
+        this.watcher = watcher;
+        this.kind = kind;
+        this.fullPath = fullPath;
+    }
+
+    public FSWatcher getWatcher() {
+        return watcher;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Path getFullPath() {
+        return fullPath;
+    }
+
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FSWatcherChange that = (FSWatcherChange) o;
+        return kind == that.kind &&
+               Objects.equals(fullPath, that.fullPath);
+    }
+
+    public int hashCode() {
+        return Objects.hash(kind, fullPath);
+    }
+
+    public String toString() {
+        return kind.name() + '[' + fullPath + ']';
+    }
+}
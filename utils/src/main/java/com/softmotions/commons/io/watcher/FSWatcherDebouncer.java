@@ -0,0 +1,312 @@
+package com.softmotions.commons.io.watcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.softmotions.commons.io.watcher.FSWatcherChange.Kind;
+
+/**
+ * {@link FSWatcher} pipeline stage which debounces
+ * raw watcher events per path and delivers net changes
+ * to {@link FSWatcherBatchHandler} in batches.
+ * <p/>
+ * A path is delivered once no events for it were received
+ * during the debounce window. Consequent events are folded:
+ * <ul>
+ * <li>create + modify = create</li>
+ * <li>create + delete = nothing</li>
+ * <li>delete + create = modify</li>
+ * <li>modify + delete = delete</li>
+ * </ul>
+ * At most {@code maxPending} paths are kept in memory. When the limit is reached
+ * pending changes are flushed ahead of the window and the watcher thread
+ * waits until they are consumed. On watch service overflow the affected
+ * directory is rescanned: its files are reported as modified
+ * and the directory itself as {@link Kind#RESCAN}.
+ * <p/>
+ * Batches are delivered sequentially from the single debouncer thread.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public class FSWatcherDebouncer implements FSWatcherEventHandler, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FSWatcherDebouncer.class);
+
+    public static final long DEFAULT_WINDOW_MILLIS = 200;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    public static final int DEFAULT_MAX_PENDING = 65536;
+
+    private final Object lock = new Object();
+
+    private final FSWatcherBatchHandler handler;
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final int maxPending;
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Pending changes ordered by the time of the last event.
+     */
+    @GuardedBy("lock")
+    private final LinkedHashMap<Path, Pending> pending = new LinkedHashMap<>();
+
+    @GuardedBy("lock")
+    private boolean scheduled;
+
+    @GuardedBy("lock")
+    private boolean forceFlush;
+
+    @GuardedBy("lock")
+    private boolean closed;
+
+    public FSWatcherDebouncer(FSWatcherBatchHandler handler) {
+        this(handler, DEFAULT_WINDOW_MILLIS, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_PENDING);
+    }
+
+    public FSWatcherDebouncer(FSWatcherBatchHandler handler,
+                              long windowMillis,
+                              int maxBatchSize,
+                              int maxPending) {
+        if (windowMillis < 0 || maxBatchSize < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("Invalid debouncer configuration");
+        }
+        this.handler = handler;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FSWatcherDebouncer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Number of paths waiting for delivery.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void init(FSWatcher watcher) {
+    }
+
+    @Override
+    public void handlePollTimeout(FSWatcher watcher) {
+    }
+
+    @Override
+    public void handleRegisterEvent(FSWatcherRegisterEvent ev) {
+        fold(ev.getWatcher(), ev.getFullPath(), Kind.REGISTER);
+    }
+
+    @Override
+    public void handleCreateEvent(FSWatcherCreateEvent ev) {
+        fold(ev.getWatcher(), ev.getFullPath(), Kind.CREATE);
+    }
+
+    @Override
+    public void handleDeleteEvent(FSWatcherDeleteEvent ev) {
+        fold(ev.getWatcher(), ev.getFullPath(), Kind.DELETE);
+    }
+
+    @Override
+    public void handleModifyEvent(FSWatcherModifyEvent ev) {
+        fold(ev.getWatcher(), ev.getFullPath(), Kind.MODIFY);
+    }
+
+    @Override
+    public void handleOverflowEvent(FSWatcherOverflowEvent ev) {
+        Path dir = ev.getFullPath();
+        log.warn("Events overflow, rescanning: {}", dir);
+        fold(ev.getWatcher(), dir, Kind.RESCAN);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                if (Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS)) {
+                    fold(ev.getWatcher(), p.toAbsolutePath().normalize(), Kind.MODIFY);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            log.warn("Failed to rescan directory: {}", dir, e);
+        }
+    }
+
+    /**
+     * Delivers all pending changes regardless of the debounce window
+     * and waits for their delivery.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            forceFlush = true;
+        }
+        try {
+            executor.submit(this::drain).get();
+        } catch (ExecutionException e) {
+            log.error("", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes pending changes and stops the debouncer thread.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            forceFlush = true;
+            closed = true;
+            lock.notifyAll();
+        }
+        executor.execute(this::drain);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fold(FSWatcher watcher, Path path, Kind kind) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            while (pending.size() >= maxPending && !pending.containsKey(path)) {
+                // Backpressure: flush ahead of the window and wait for the consumer
+                if (!forceFlush) {
+                    forceFlush = true;
+                    executor.execute(this::drain);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            Pending p = pending.remove(path);
+            Kind nk = (p != null) ? merge(p.kind, kind) : kind;
+            if (nk != null) {
+                if (p == null) {
+                    p = new Pending(watcher, path);
+                }
+                p.kind = nk;
+                p.lastNanos = System.nanoTime();
+                pending.put(path, p); // Moves path to the tail
+            }
+            if (!scheduled && !pending.isEmpty()) {
+                scheduled = true;
+                executor.schedule(this::drain, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Net kind of two consequent changes, {@code null} if changes cancel each other.
+     */
+    static Kind merge(Kind prev, Kind next) {
+        if (prev == Kind.RESCAN || next == Kind.RESCAN) {
+            return Kind.RESCAN;
+        }
+        switch (prev) {
+            case REGISTER:
+            case CREATE:
+                return (next == Kind.DELETE) ? null : prev;
+            case MODIFY:
+                return (next == Kind.DELETE) ? Kind.DELETE : Kind.MODIFY;
+            case DELETE:
+                return (next == Kind.DELETE) ? Kind.DELETE : Kind.MODIFY;
+            default:
+                return next;
+        }
+    }
+
+    private void drain() {
+        for (; ; ) {
+            List<FSWatcherChange> batch;
+            synchronized (lock) {
+                long now = System.nanoTime();
+                batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+                Iterator<Pending> it = pending.values().iterator();
+                while (it.hasNext() && batch.size() < maxBatchSize) {
+                    Pending p = it.next();
+                    if (!forceFlush && now - p.lastNanos < windowNanos) {
+                        break;
+                    }
+                    it.remove();
+                    batch.add(new FSWatcherChange(p.watcher, p.kind, p.path));
+                }
+                if (batch.isEmpty()) {
+                    forceFlush = false;
+                    if (pending.isEmpty() || closed) {
+                        scheduled = false;
+                    } else {
+                        Pending head = pending.values().iterator().next();
+                        long delay = Math.max(0, head.lastNanos + windowNanos - now);
+                        scheduled = true;
+                        executor.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+                    }
+                    return;
+                }
+                lock.notifyAll();
+            }
+            try {
+                handler.handleBatch(batch);
+            } catch (Exception e) {
+                log.error("", e);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final FSWatcher watcher;
+
+        private final Path path;
+
+        private Kind kind;
+
+        private long lastNanos;
+
+        private Pending(FSWatcher watcher, Path path) {
+            this.watcher = watcher;
+            this.path = path;
+        }
+    }
+}
@@ -42,4 +42,9 @@ public class FSWatcherEBusEventHandler implements FSWatcherEventHandler {
     public void handleModifyEvent(FSWatcherModifyEvent ev) {
         ebus.fire(ev);
     }
+
+    @Override
+    public void handleOverflowEvent(FSWatcherOverflowEvent ev) {
+        ebus.fire(ev);
+    }
 }
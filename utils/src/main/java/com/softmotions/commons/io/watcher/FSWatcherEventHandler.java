@@ -16,4 +16,11 @@ public interface FSWatcherEventHandler {
     void handleDeleteEvent(FSWatcherDeleteEvent ev) throws Exception;
 
     void handleModifyEvent(FSWatcherModifyEvent ev) throws Exception;
+
+    /**
+     * Some events of the directory were lost,
+     * its content should be rescanned.
+     */
+    default void handleOverflowEvent(FSWatcherOverflowEvent ev) throws Exception {
+    }
 }
@@ -0,0 +1,22 @@
+package com.softmotions.commons.io.watcher;
+
+import java.nio.file.Path;
+
+/**
+ * Fired when events for the watched directory were lost
+ * because of the watch service queue overflow.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class FSWatcherOverflowEvent extends FSWatcherEventSupport {
+
+    private static final long serialVersionUID = 1L;
+
+    public FSWatcherOverflowEvent(FSWatcher watcher, Path directory) {
+        super(watcher, directory, directory.getFileSystem().getPath(""));
+    }
+
+    public String toString() {
+        return getClass().getSimpleName() + '[' + fullPath + ']';
+    }
+}
@@ -0,0 +1,132 @@
+package com.softmotions.commons.io.watcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.softmotions.commons.io.watcher.FSWatcherChange.Kind;
+import com.softmotions.xconfig.XConfig;
+
+/**
+ * Reloads {@link XConfig} and its master configs
+ * when their files are changed.
+ * <p/>
+ * Parent directories of the config files are watched non-recursively,
+ * changes are debounced by {@link FSWatcherDebouncer} so the configs are
+ * reparsed on the debouncer thread once the file is completely written.
+ * Masters are reloaded before their slaves. A config which
+ * failed to reload keeps its current document.
+ * Configs loaded not from the local files are not watched.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ * @see XConfig#reload()
+ * @see XConfig#addListener(String, com.softmotions.xconfig.XConfigListener)
+ */
+@ThreadSafe
+public class XConfigWatcher implements FSWatcherBatchHandler, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(XConfigWatcher.class);
+
+    /**
+     * Watched configs by their files, masters go first.
+     */
+    private final Map<Path, XConfig> configs = new LinkedHashMap<>();
+
+    private final FSWatcherDebouncer debouncer;
+
+    private final FSWatcher watcher;
+
+    public XConfigWatcher(XConfig xcfg) throws IOException {
+        this(xcfg, FSWatcherDebouncer.DEFAULT_WINDOW_MILLIS);
+    }
+
+    public XConfigWatcher(XConfig xcfg, long windowMillis) throws IOException {
+        List<XConfig> chain = new ArrayList<>();
+        for (XConfig c = xcfg; c != null; c = c.getMaster()) {
+            chain.add(0, c);
+        }
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (XConfig c : chain) {
+            URI uri = c.getUri();
+            if (!"file".equals(uri.getScheme())) {
+                log.warn("Config: {} is not a local file, changes will not be watched", uri);
+                continue;
+            }
+            Path file = Paths.get(uri).toAbsolutePath().normalize();
+            configs.put(file, c);
+            dirs.add(file.getParent());
+        }
+        debouncer = new FSWatcherDebouncer(this, windowMillis,
+                                           FSWatcherDebouncer.DEFAULT_MAX_BATCH_SIZE,
+                                           FSWatcherDebouncer.DEFAULT_MAX_PENDING);
+        watcher = new FSWatcher("XConfigWatcher", debouncer, 0);
+        try {
+            for (Path dir : dirs) {
+                watcher.register(dir, false);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void handleBatch(List<FSWatcherChange> batch) {
+        Set<Path> changed = new LinkedHashSet<>();
+        for (FSWatcherChange c : batch) {
+            Path path = c.getFullPath();
+            if (c.getKind() == Kind.RESCAN) {
+                for (Path file : configs.keySet()) {
+                    if (path.equals(file.getParent())) {
+                        changed.add(file);
+                    }
+                }
+            } else if (c.getKind() == Kind.DELETE) {
+                if (configs.containsKey(path)) {
+                    log.warn("Config file: {} was deleted, keeping the loaded config", path);
+                }
+            } else if (c.getKind() != Kind.REGISTER) {
+                changed.add(path);
+            }
+        }
+        for (Map.Entry<Path, XConfig> e : configs.entrySet()) {
+            if (!changed.contains(e.getKey())) {
+                continue;
+            }
+            try {
+                e.getValue().reload();
+            } catch (Exception ex) {
+                log.error("Failed to reload config: {}, keeping the loaded config", e.getKey(), ex);
+            }
+        }
+    }
+
+    /**
+     * Delivers pending changes of the config files
+     * and waits until the configs are reloaded.
+     */
+    public void flush() throws InterruptedException {
+        debouncer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            watcher.close();
+        } finally {
+            debouncer.close();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.softmotions.commons.json;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.BinaryNode;
@@ -11,6 +14,13 @@ import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.PropertyUtilsBean;
 import org.apache.commons.lang3.ArrayUtils;
 
+import com.softmotions.commons.bean.BeanAccessors;
+import com.softmotions.commons.bean.BeanException;
+import com.softmotions.commons.bean.BeanGetter;
+import com.softmotions.commons.bean.BeanSetter;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -25,6 +35,18 @@ import java.util.Map;
  */
 public class JsonUtils {
 
+    /**
+     * Preferred setter argument types by JSON value types.
+     */
+    private static final Class<?>[] STRING_SETTER_TYPES = {String.class};
+
+    private static final Class<?>[] INT_SETTER_TYPES =
+            {long.class, Long.class, int.class, Integer.class, double.class, Double.class, Date.class};
+
+    private static final Class<?>[] FLOAT_SETTER_TYPES = {double.class, Double.class};
+
+    private static final Class<?>[] BOOLEAN_SETTER_TYPES = {boolean.class, Boolean.class};
+
     private JsonUtils() {
     }
 
@@ -132,4 +154,260 @@ public class JsonUtils {
         }
         return o;
     }
+
+    /**
+     * Streaming counterpart of {@link #populateObjectNode(Object, ObjectNode, String...)}:
+     * writes bean properties or map entries as JSON object
+     * straight to the generator without building a tree.
+     */
+    public static void writeObject(Object bean, JsonGenerator gen, String... keys) throws IOException {
+        if (bean == null) {
+            gen.writeStartObject();
+            gen.writeEndObject();
+            return;
+        }
+        if (bean instanceof Map) {
+            writeObject((Map) bean, gen, keys);
+            return;
+        }
+        PropertyUtilsBean pu = BeanUtilsBean.getInstance().getPropertyUtils();
+        Class<?> clazz = bean.getClass();
+        gen.writeStartObject();
+        for (PropertyDescriptor pd : pu.getPropertyDescriptors(clazz)) {
+            String key = pd.getName();
+            if (pd.getReadMethod() == null
+                || (keys != null && keys.length > 0 && ArrayUtils.indexOf(keys, key) == -1)) {
+                continue;
+            }
+            BeanGetter getter = BeanAccessors.getGetter(clazz, key);
+            if (getter == null) {
+                continue;
+            }
+            Object val;
+            try {
+                val = getter.get(bean);
+            } catch (BeanException e) {
+                throw new RuntimeException(e);
+            }
+            gen.writeFieldName(key);
+            writeValue(val, gen);
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Streaming counterpart of {@link #populateObjectNode(Map, ObjectNode, String...)}.
+     */
+    public static void writeObject(Map map, JsonGenerator gen, String... keys) throws IOException {
+        gen.writeStartObject();
+        if (map != null) {
+            for (final Object oe : map.entrySet()) {
+                Map.Entry e = (Map.Entry) oe;
+                String key = (String) e.getKey();
+                if (keys != null && keys.length > 0 && ArrayUtils.indexOf(keys, key) == -1) {
+                    continue;
+                }
+                gen.writeFieldName(key);
+                writeValue(e.getValue(), gen);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeValue(Object val, JsonGenerator gen) throws IOException {
+        //noinspection IfStatementWithTooManyBranches
+        if (val == null) {
+            gen.writeNull();
+        } else if (val instanceof String) {
+            gen.writeString((String) val);
+        } else if (val instanceof Number) {
+            if (val instanceof Float || val instanceof Double) {
+                gen.writeNumber(((Number) val).doubleValue());
+            } else {
+                gen.writeNumber(((Number) val).longValue());
+            }
+        } else if (val instanceof Date) {
+            gen.writeNumber(((Date) val).getTime());
+        } else if (val instanceof Boolean) {
+            gen.writeBoolean((Boolean) val);
+        } else if (val instanceof Map) {
+            writeObject((Map) val, gen);
+        } else {
+            gen.writeObject(val);
+        }
+    }
+
+    /**
+     * Streaming counterpart of {@link #populateMapByJsonNode(ObjectNode, Map, String...)}:
+     * reads JSON object from the parser directly into the map,
+     * filtered out values are skipped without materializing.
+     * Parser must be positioned before or at the {@code START_OBJECT} token,
+     * it is left at the matching {@code END_OBJECT}.
+     */
+    public static Map populateMapByJsonParser(JsonParser p, Map m, String... keys) throws IOException {
+        startObject(p);
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.getCurrentName();
+            p.nextToken();
+            if (keys != null && keys.length > 0 && ArrayUtils.indexOf(keys, key) == -1) {
+                p.skipChildren();
+                continue;
+            }
+            //noinspection unchecked
+            m.put(key, parserValueAsObject(p));
+        }
+        return m;
+    }
+
+    /**
+     * Reads JSON object from the parser directly into the bean properties
+     * using cached {@link BeanAccessors} setters. Fields without setters
+     * and filtered out fields are skipped. Values are converted
+     * to simple setter types (numbers, booleans, strings, dates as millis),
+     * other types are bound by the parser codec if it is set.
+     * Parser must be positioned before or at the {@code START_OBJECT} token,
+     * it is left at the matching {@code END_OBJECT}.
+     */
+    public static <T> T populateBeanByJsonParser(JsonParser p, T bean, String... keys) throws IOException {
+        if (bean instanceof Map) {
+            populateMapByJsonParser(p, (Map<?, ?>) bean, keys);
+            return bean;
+        }
+        startObject(p);
+        Class<?> clazz = bean.getClass();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String key = p.getCurrentName();
+            JsonToken t = p.nextToken();
+            BeanSetter setter = (keys != null && keys.length > 0 && ArrayUtils.indexOf(keys, key) == -1)
+                                ? null : findSetter(clazz, key, t);
+            if (setter == null) {
+                p.skipChildren();
+                continue;
+            }
+            Class<?> type = setter.getType();
+            if (t == JsonToken.VALUE_NULL && type.isPrimitive()) {
+                continue;
+            }
+            try {
+                setter.set(bean, parserValueAs(p, type));
+            } catch (BeanException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * Streaming counterpart of {@link #nodeAsObject(JsonNode)}:
+     * reads the current value of the parser.
+     */
+    public static Object parserValueAsObject(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == null) {
+            return null;
+        }
+        switch (t) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+                switch (p.getNumberType()) {
+                    case INT:
+                        return p.getIntValue();
+                    case LONG:
+                        return p.getLongValue();
+                    default:
+                        return p.getBigIntegerValue();
+                }
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case START_OBJECT:
+                return populateMapByJsonParser(p, new HashMap<>());
+            case START_ARRAY:
+                List<Object> al = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    al.add(parserValueAsObject(p));
+                }
+                return al;
+            case VALUE_EMBEDDED_OBJECT:
+                return p.getEmbeddedObject();
+            default:
+                throw new IOException("Unexpected JSON token: " + t);
+        }
+    }
+
+    /**
+     * Finds setter of the property accepting the JSON value type,
+     * if there is no such setter the property setter is used
+     * unless it is overloaded.
+     */
+    private static BeanSetter findSetter(Class<?> clazz, String property, JsonToken t) {
+        Class<?>[] types;
+        switch (t) {
+            case VALUE_STRING:
+                types = STRING_SETTER_TYPES;
+                break;
+            case VALUE_NUMBER_INT:
+                types = INT_SETTER_TYPES;
+                break;
+            case VALUE_NUMBER_FLOAT:
+                types = FLOAT_SETTER_TYPES;
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                types = BOOLEAN_SETTER_TYPES;
+                break;
+            default:
+                types = ArrayUtils.EMPTY_CLASS_ARRAY;
+        }
+        for (Class<?> type : types) {
+            BeanSetter setter = BeanAccessors.getSetter(clazz, property, type);
+            if (setter != null) {
+                return setter;
+            }
+        }
+        return BeanAccessors.getSetter(clazz, property, null);
+    }
+
+    private static Object parserValueAs(JsonParser p, Class<?> type) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        //noinspection IfStatementWithTooManyBranches
+        if (t.isScalarValue()) {
+            if (type == String.class) {
+                return p.getValueAsString();
+            } else if (type == Integer.class || type == int.class) {
+                return p.getValueAsInt();
+            } else if (type == Long.class || type == long.class) {
+                return p.getValueAsLong();
+            } else if (type == Double.class || type == double.class) {
+                return p.getValueAsDouble();
+            } else if (type == Boolean.class || type == boolean.class) {
+                return p.getValueAsBoolean();
+            } else if (Date.class.isAssignableFrom(type) && t == JsonToken.VALUE_NUMBER_INT) {
+                return new Date(p.getValueAsLong());
+            }
+        }
+        if (p.getCodec() != null && type != Object.class) {
+            return p.readValueAs(type);
+        }
+        return parserValueAsObject(p);
+    }
+
+    private static void startObject(JsonParser p) throws IOException {
+        JsonToken t = p.currentToken();
+        if (t == null || t == JsonToken.FIELD_NAME) {
+            t = p.nextToken();
+        }
+        if (t != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object start, found: " + t);
+        }
+    }
 }
@@ -6,10 +6,22 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Marks method invoked on {@link LifeCycleService#stop()}.
+ * <p/>
+ * Methods are disposed in stages from the highest {@link #order()}
+ * to the lowest, methods of the same order run concurrently.
+ *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Dispose {
     int order() default 50;
+
+    /**
+     * Time in milliseconds to wait for the method completion
+     * before proceeding to the next methods.
+     * {@code 0} means the default timeout of the lifecycle service.
+     */
+    long timeout() default 0;
 }
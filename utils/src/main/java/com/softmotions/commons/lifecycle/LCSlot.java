@@ -10,17 +10,39 @@ class LCSlot implements Comparable<LCSlot> {
     final Object target;
     final int order;
     final boolean parallel;
+    /**
+     * Types of beans the target depends on, see {@link Start#dependsOn()}.
+     */
+    final Class<?>[] dependsOn;
+    /**
+     * Dispose timeout in milliseconds, {@code 0} for default.
+     */
+    final long timeout;
+    final String name;
 
-    LCSlot(Method method, Object target, int order, boolean parallel) {
+    LCSlot(Method method, Object target, int order, boolean parallel, Class<?>[] dependsOn, long timeout) {
         this.method = method;
         this.target = target;
         this.order = order;
         this.parallel = parallel;
+        this.dependsOn = dependsOn;
+        this.timeout = timeout;
+        String cname = target.getClass().getName();
+        int idx = cname.indexOf("$$"); // Guice enhanced classes
+        if (idx != -1) {
+            cname = cname.substring(0, idx);
+        }
+        this.name = cname.substring(cname.lastIndexOf('.') + 1) + '.' + method.getName();
     }
 
+    /**
+     * Orders slots by {@link #order} then by name
+     * to get the same execution order on every start.
+     */
     @Override
     public int compareTo(LCSlot o) {
-        return order - o.order;
+        int res = Integer.compare(order, o.order);
+        return (res != 0) ? res : name.compareTo(o.name);
     }
 
     public boolean equals(Object o) {
@@ -37,4 +59,8 @@ class LCSlot implements Comparable<LCSlot> {
         result = 31 * result + target.hashCode();
         return result;
     }
+
+    public String toString() {
+        return name;
+    }
 }
@@ -0,0 +1,62 @@
+package com.softmotions.commons.lifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import com.softmotions.commons.lifecycle.LifeCycleTimeline.Status;
+
+/**
+ * Execution of {@link LCSlot} within a single start or stop run.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+final class LCTask {
+    final LCSlot slot;
+    final int stage;
+    /**
+     * Tasks of the same stage which must be completed before this task.
+     */
+    final List<LCTask> deps = new ArrayList<>(2);
+    /**
+     * Completed when task is finished regardless of its status.
+     */
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    volatile Status status = Status.SKIPPED;
+    volatile String thread;
+    volatile long startNanos;
+    volatile long endNanos;
+
+    LCTask(LCSlot slot, int stage) {
+        this.slot = slot;
+        this.stage = stage;
+    }
+
+    void begin() {
+        startNanos = System.nanoTime();
+        thread = Thread.currentThread().getName();
+    }
+
+    void end(Status st) {
+        if (thread != null && endNanos == 0) {
+            endNanos = System.nanoTime();
+        }
+        status = st;
+        done.complete(null);
+    }
+
+    CompletableFuture<Void> depsDone() {
+        if (deps.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?>[] arr = new CompletableFuture<?>[deps.size()];
+        for (int i = 0; i < arr.length; ++i) {
+            arr[i] = deps.get(i).done;
+        }
+        return CompletableFuture.allOf(arr);
+    }
+
+    public String toString() {
+        return slot.name;
+    }
+}
@@ -11,7 +11,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import com.softmotions.commons.ClassUtils;
@@ -62,14 +64,23 @@ public class LifeCycleModule extends AbstractModule {
     }
 
     void registerLifecycle(Object target) {
-        for (final Method method : target.getClass().getMethods()) {
+        Method[] methods = target.getClass().getMethods();
+        Set<Class<?>> dependsOn = new LinkedHashSet<>();
+        for (final Method method : methods) {
             Start start = ClassUtils.getAnnotation(method, Start.class);
             if (start != null) {
-                registerStartSlot(new LCSlot(method, target, start.order(), start.parallel()));
+                Collections.addAll(dependsOn, start.dependsOn());
+            }
+        }
+        Class<?>[] deps = dependsOn.toArray(new Class<?>[dependsOn.size()]);
+        for (final Method method : methods) {
+            Start start = ClassUtils.getAnnotation(method, Start.class);
+            if (start != null) {
+                registerStartSlot(new LCSlot(method, target, start.order(), start.parallel(), start.dependsOn(), 0));
             }
             Dispose dispose = ClassUtils.getAnnotation(method, Dispose.class);
             if (dispose != null) {
-                registerStopSlot(new LCSlot(method, target, dispose.order(), false));
+                registerStopSlot(new LCSlot(method, target, dispose.order(), true, deps, dispose.timeout()));
             }
         }
     }
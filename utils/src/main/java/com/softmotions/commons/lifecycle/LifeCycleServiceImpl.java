@@ -2,10 +2,18 @@ package com.softmotions.commons.lifecycle;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.concurrent.GuardedBy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,8 +27,23 @@ import com.google.inject.Scopes;
 import com.google.inject.internal.ProviderMethod;
 import com.google.inject.spi.DefaultBindingScopingVisitor;
 import com.google.inject.spi.ProviderInstanceBinding;
+import com.softmotions.commons.lifecycle.LifeCycleTimeline.Status;
 
 /**
+ * Staged lifecycle scheduler.
+ * <p/>
+ * {@link Start} methods are grouped into stages by order, each stage
+ * is completed before the next one is started. Within a stage parallel methods
+ * are executed by the service thread pool, other methods are executed one after another
+ * by the calling thread, {@link Start#dependsOn()} dependencies are awaited.
+ * <p/>
+ * {@link Dispose} methods are executed in stages of the reverse order,
+ * all methods of a stage run concurrently, each one is awaited
+ * up to its {@link Dispose#timeout()}.
+ * <p/>
+ * Timelines of the last start and stop are logged
+ * and available by {@link #getStartTimeline()} and {@link #getStopTimeline()}.
+ *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 @SuppressWarnings({"ThrowableResultOfMethodCallIgnored", "unchecked"})
@@ -28,23 +51,67 @@ public class LifeCycleServiceImpl implements LifeCycleService {
 
     private static final Logger log = LoggerFactory.getLogger(LifeCycleServiceImpl.class);
 
+    /**
+     * Default timeout of dispose methods in milliseconds.
+     */
+    public static final long DEFAULT_DISPOSE_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
     private final Injector injector;
 
     private LifeCycleModule lc;
 
+    private volatile long disposeTimeout = DEFAULT_DISPOSE_TIMEOUT;
+
+    private volatile LifeCycleTimeline startTimeline;
+
+    private volatile LifeCycleTimeline stopTimeline;
+
+    @GuardedBy("this")
+    private ExecutorService executor;
+
     @Inject
     public LifeCycleServiceImpl(Injector injector, LifeCycleModule lc) {
         this.injector = injector;
         this.lc = lc;
     }
 
+    public long getDisposeTimeout() {
+        return disposeTimeout;
+    }
+
+    /**
+     * Timeout in milliseconds of dispose methods
+     * without own {@link Dispose#timeout()}.
+     */
+    public void setDisposeTimeout(long disposeTimeout) {
+        this.disposeTimeout = disposeTimeout;
+    }
+
+    /**
+     * Timeline of the last start or {@code null}.
+     */
+    public LifeCycleTimeline getStartTimeline() {
+        return startTimeline;
+    }
+
+    /**
+     * Timeline of the last stop or {@code null}.
+     */
+    public LifeCycleTimeline getStopTimeline() {
+        return stopTimeline;
+    }
+
     @Override
     public void start() {
         start(true);
     }
 
+    /**
+     * @param failFast If {@code true} methods not started yet are skipped
+     *                 after the first failure and the failure is rethrown
+     * @throws IllegalStateException If start dependencies are inconsistent
+     */
     public void start(boolean failFast) {
-        ExecutorService parallelExec = null;
         log.info("Starting");
         for (final Binding binding : injector.getBindings().values()) {
             binding.acceptScopingVisitor(new DefaultBindingScopingVisitor() {
@@ -73,64 +140,62 @@ public class LifeCycleServiceImpl implements LifeCycleService {
             });
         }
 
-        AtomicReference<Exception> lastErrorRef = new AtomicReference<>();
-        List<LCSlot> startList;
+        List<List<LCTask>> stages;
         synchronized (lc.lock) {
             if (lc.started) {
                 log.warn("Lifecycle service was started already");
                 return;
             }
+            List<LCSlot> startList = new ArrayList<>(lc.startSet);
+            Collections.sort(startList);
+            stages = planStart(startList);
             lc.started = true;
-            startList = new ArrayList<>(lc.startSet);
             lc.startSet.clear();
         }
-        Collections.sort(startList);
 
+        AtomicReference<Exception> lastErrorRef = new AtomicReference<>();
+        long startNanos = System.nanoTime();
         try {
-            for (final LCSlot s : startList) {
-
-                if (failFast && lastErrorRef.get() != null) {
-                    break;
-                }
-                if (!s.parallel) {
-                    try {
-                        lc.invokeTarget(s);
-                    } catch (Exception e) {
-                        lastErrorRef.set(e);
-                        log.error("", e);
-                    }
-                } else {
-                    if (parallelExec == null) {
-                        parallelExec = Executors.newFixedThreadPool(
-                                Math.max(1, Runtime.getRuntime().availableProcessors() - 1)
-                        );
+            for (List<LCTask> stage : stages) {
+                for (LCTask t : stage) {
+                    if (t.slot.parallel) {
+                        t.depsDone().whenCompleteAsync((v, e) -> runStart(t, failFast, lastErrorRef), executor());
+                    } else {
+                        t.depsDone().join();
+                        runStart(t, failFast, lastErrorRef);
                     }
-                    parallelExec.execute(() -> {
-                        try {
-                            lc.invokeTarget(s);
-                        } catch (Exception e) {
-                            lastErrorRef.set(e);
-                            log.error("", e);
-                        }
-                    });
                 }
+                // Stage barrier
+                allDone(stage).join();
             }
-
         } finally {
-            Exception lastError = lastErrorRef.get();
-            if (parallelExec != null) {
-                if (failFast && lastError != null) {
-                    parallelExec.shutdownNow();
-                } else {
-                    parallelExec.shutdown();
-                }
-            }
-            if (failFast && lastError != null) {
-                throw new RuntimeException(lastError);
-            }
+            LifeCycleTimeline timeline = new LifeCycleTimeline("start", startNanos, System.nanoTime(), stages);
+            startTimeline = timeline;
+            log.info("{}", timeline.report());
+        }
+        Exception lastError = lastErrorRef.get();
+        if (failFast && lastError != null) {
+            throw new RuntimeException(lastError);
         }
     }
 
+    private void runStart(LCTask t, boolean failFast, AtomicReference<Exception> lastErrorRef) {
+        if (failFast && lastErrorRef.get() != null) {
+            t.end(Status.SKIPPED);
+            return;
+        }
+        Status status = Status.FAILED;
+        t.begin();
+        try {
+            lc.invokeTarget(t.slot);
+            status = Status.OK;
+        } catch (Exception e) {
+            lastErrorRef.set(e);
+            log.error("Failed to start: {}", t.slot, e);
+        } finally {
+            t.end(status);
+        }
+    }
 
     @Override
     public void stop() {
@@ -147,12 +212,51 @@ public class LifeCycleServiceImpl implements LifeCycleService {
         }
         Collections.sort(stopList);
         Collections.reverse(stopList);
-        for (final LCSlot s : stopList) {
-            try {
-                lc.invokeTarget(s);
-            } catch (Exception e) {
-                log.error("", e);
+        List<List<LCTask>> stages = planStop(stopList);
+
+        long startNanos = System.nanoTime();
+        try {
+            for (List<LCTask> stage : stages) {
+                for (LCTask t : stage) {
+                    long timeout = (t.slot.timeout > 0) ? t.slot.timeout : disposeTimeout;
+                    t.depsDone()
+                     .thenCompose(v -> CompletableFuture.runAsync(() -> runDispose(t), executor())
+                                                        .orTimeout(timeout, TimeUnit.MILLISECONDS))
+                     .whenComplete((v, e) -> {
+                         Throwable cause = (e instanceof CompletionException) ? e.getCause() : e;
+                         if (cause == null) {
+                             t.end(Status.OK);
+                         } else if (cause instanceof TimeoutException) {
+                             log.warn("Dispose method: {} has not completed in {} ms", t.slot, timeout);
+                             t.end(Status.TIMEOUT);
+                         } else {
+                             log.error("Failed to dispose: {}", t.slot, cause);
+                             t.end(Status.FAILED);
+                         }
+                     });
+                }
+                // Stage barrier
+                allDone(stage).join();
             }
+        } finally {
+            LifeCycleTimeline timeline = new LifeCycleTimeline("stop", startNanos, System.nanoTime(), stages);
+            stopTimeline = timeline;
+            log.info("{}", timeline.report());
+            synchronized (this) {
+                if (executor != null) {
+                    executor.shutdown();
+                    executor = null;
+                }
+            }
+        }
+    }
+
+    private void runDispose(LCTask t) {
+        t.begin();
+        try {
+            lc.invokeTarget(t.slot);
+        } catch (Exception e) {
+            throw new CompletionException(e);
         }
     }
 
@@ -160,4 +264,158 @@ public class LifeCycleServiceImpl implements LifeCycleService {
     public boolean isStarted() {
         return lc.started;
     }
+
+    /**
+     * Lazily created pool of daemon threads.
+     * Pool is not bounded since lifecycle methods mostly wait for I/O
+     * and dispose timeouts must not include the time spent in queue.
+     */
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            executor = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "LifeCycle-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Groups sorted slots into stages of the same order
+     * and links tasks of the same stage by dependencies.
+     */
+    static List<List<LCTask>> planStart(List<LCSlot> slots) {
+        List<List<LCTask>> stages = toStages(slots);
+        for (List<LCTask> stage : stages) {
+            for (LCTask t : stage) {
+                for (Class<?> dc : t.slot.dependsOn) {
+                    boolean found = false;
+                    for (List<LCTask> ostage : stages) {
+                        for (LCTask o : ostage) {
+                            if (o.slot.target == t.slot.target || !dc.isInstance(o.slot.target)) {
+                                continue;
+                            }
+                            found = true;
+                            if (o.stage > t.stage) {
+                                throw new IllegalStateException(
+                                        "Start method: " + t.slot + " (order " + t.slot.order + ") " +
+                                        "depends on: " + o.slot + " (order " + o.slot.order + ") started later");
+                            }
+                            if (o.stage == t.stage) {
+                                t.deps.add(o);
+                            }
+                        }
+                    }
+                    if (!found) {
+                        log.warn("Start method: {} depends on: {} which has no start methods", t.slot, dc.getName());
+                    }
+                }
+            }
+            // Non parallel methods of a stage are executed one after another
+            LCTask prev = null;
+            for (LCTask t : stage) {
+                if (!t.slot.parallel) {
+                    if (prev != null) {
+                        t.deps.add(prev);
+                    }
+                    prev = t;
+                }
+            }
+        }
+        for (int i = 0; i < stages.size(); ++i) {
+            List<LCTask> sorted = sortTopologically(stages.get(i));
+            if (sorted == null) {
+                throw new IllegalStateException("Cyclic dependencies of start methods: " + stages.get(i));
+            }
+            stages.set(i, sorted);
+        }
+        return stages;
+    }
+
+    /**
+     * Groups sorted slots into stages of the same order. Dispose of a bean
+     * is awaited by dispose methods of its dependencies within the same stage.
+     */
+    static List<List<LCTask>> planStop(List<LCSlot> slots) {
+        List<List<LCTask>> stages = toStages(slots);
+        for (List<LCTask> stage : stages) {
+            for (LCTask t : stage) {
+                for (Class<?> dc : t.slot.dependsOn) {
+                    for (List<LCTask> ostage : stages) {
+                        for (LCTask o : ostage) {
+                            if (o.slot.target == t.slot.target || !dc.isInstance(o.slot.target)) {
+                                continue;
+                            }
+                            if (o.stage == t.stage) {
+                                o.deps.add(t);
+                            } else if (o.stage < t.stage) {
+                                log.warn("Dispose method: {} is called before dispose of dependent bean: {}",
+                                         o.slot, t.slot);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < stages.size(); ++i) {
+            List<LCTask> stage = stages.get(i);
+            List<LCTask> sorted = sortTopologically(stage);
+            if (sorted == null) {
+                log.warn("Cyclic dependencies of dispose methods: {}, dependencies are ignored", stage);
+                for (LCTask t : stage) {
+                    t.deps.clear();
+                }
+                sorted = stage;
+            }
+            stages.set(i, sorted);
+        }
+        return stages;
+    }
+
+    private static List<List<LCTask>> toStages(List<LCSlot> slots) {
+        List<List<LCTask>> stages = new ArrayList<>();
+        List<LCTask> stage = null;
+        int order = 0;
+        for (LCSlot s : slots) {
+            if (stage == null || s.order != order) {
+                stage = new ArrayList<>();
+                stages.add(stage);
+                order = s.order;
+            }
+            stage.add(new LCTask(s, stages.size() - 1));
+        }
+        return stages;
+    }
+
+    /**
+     * Stable topological sort of stage tasks,
+     * returns {@code null} if dependencies are cyclic.
+     */
+    private static List<LCTask> sortTopologically(List<LCTask> stage) {
+        List<LCTask> res = new ArrayList<>(stage.size());
+        Set<LCTask> emitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean progress = true;
+        while (progress && res.size() < stage.size()) {
+            progress = false;
+            for (LCTask t : stage) {
+                if (!emitted.contains(t) && emitted.containsAll(t.deps)) {
+                    emitted.add(t);
+                    res.add(t);
+                    progress = true;
+                    break;
+                }
+            }
+        }
+        return (res.size() == stage.size()) ? res : null;
+    }
+
+    private static CompletableFuture<Void> allDone(List<LCTask> stage) {
+        CompletableFuture<?>[] arr = new CompletableFuture<?>[stage.size()];
+        for (int i = 0; i < arr.length; ++i) {
+            arr[i] = stage.get(i).done;
+        }
+        return CompletableFuture.allOf(arr);
+    }
 }
@@ -0,0 +1,214 @@
+package com.softmotions.commons.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Timeline of the lifecycle start or stop run:
+ * timings of every {@link Start} or {@link Dispose} method
+ * and the critical path, the longest chain of methods
+ * each waiting for the previous one, which bounds the total time.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@Immutable
+public final class LifeCycleTimeline {
+
+    public enum Status {
+        OK,
+        FAILED,
+        TIMEOUT,
+        SKIPPED
+    }
+
+    private final String name;
+
+    private final long totalNanos;
+
+    private final List<Entry> entries;
+
+    private final List<Entry> criticalPath;
+
+    /**
+     * @param stages Tasks grouped by stages in execution order,
+     *               tasks of a stage are topologically sorted
+     */
+    LifeCycleTimeline(String name, long startNanos, long endNanos, List<List<LCTask>> stages) {
+        this.name = name;
+        this.totalNanos = endNanos - startNanos;
+        Map<LCTask, Entry> emap = new IdentityHashMap<>();
+        Map<LCTask, LCTask> pred = new IdentityHashMap<>();
+        Map<LCTask, Long> path = new IdentityHashMap<>();
+        List<Entry> elist = new ArrayList<>();
+        LCTask barrier = null; // Longest path task of the previous stage
+        LCTask last = null;
+        for (List<LCTask> stage : stages) {
+            LCTask stageMax = null;
+            for (LCTask t : stage) {
+                long duration = (t.thread != null) ? t.endNanos - t.startNanos : 0;
+                LCTask p = barrier;
+                for (LCTask d : t.deps) {
+                    if (p == null || path.get(d) > path.get(p)) {
+                        p = d;
+                    }
+                }
+                path.put(t, duration + (p != null ? path.get(p) : 0));
+                if (p != null) {
+                    pred.put(t, p);
+                }
+                if (stageMax == null || path.get(t) > path.get(stageMax)) {
+                    stageMax = t;
+                }
+                Entry e = new Entry(t.slot.name, t.slot.order, t.slot.parallel, t.status, t.thread,
+                                    (t.thread != null) ? t.startNanos - startNanos : 0, duration);
+                emap.put(t, e);
+                elist.add(e);
+            }
+            if (stageMax != null) {
+                barrier = stageMax;
+                last = stageMax;
+            }
+        }
+        List<Entry> cpath = new ArrayList<>();
+        for (LCTask t = last; t != null; t = pred.get(t)) {
+            cpath.add(emap.get(t));
+        }
+        Collections.reverse(cpath);
+        // Skipped entries go last
+        elist.sort((e1, e2) -> Long.compare(e1.thread != null ? e1.startNanos : Long.MAX_VALUE,
+                                            e2.thread != null ? e2.startNanos : Long.MAX_VALUE));
+        this.entries = Collections.unmodifiableList(elist);
+        this.criticalPath = Collections.unmodifiableList(cpath);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Entries ordered by start time.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Entries of the critical path in execution order.
+     */
+    public List<Entry> getCriticalPath() {
+        return criticalPath;
+    }
+
+    public long getTotalTime(TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getCriticalPathTime(TimeUnit unit) {
+        long sum = 0;
+        for (Entry e : criticalPath) {
+            sum += e.durationNanos;
+        }
+        return unit.convert(sum, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Human readable report, critical path entries are marked with {@code *}.
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder(128 + entries.size() * 96);
+        sb.append(String.format("Lifecycle %s: total %d ms, critical path %d ms%n",
+                                name, getTotalTime(TimeUnit.MILLISECONDS),
+                                getCriticalPathTime(TimeUnit.MILLISECONDS)));
+        sb.append(String.format("  %10s %10s %-8s %6s  %s%n", "start ms", "time ms", "status", "order", "method"));
+        for (Entry e : entries) {
+            sb.append(String.format("%s %10d %10d %-8s %6d  %s%s%n",
+                                    criticalPath.contains(e) ? " *" : "  ",
+                                    TimeUnit.NANOSECONDS.toMillis(e.startNanos),
+                                    TimeUnit.NANOSECONDS.toMillis(e.durationNanos),
+                                    e.status,
+                                    e.order,
+                                    e.name,
+                                    e.parallel ? " [parallel]" : ""));
+        }
+        return sb.toString();
+    }
+
+    public String toString() {
+        return report();
+    }
+
+    @Immutable
+    public static final class Entry {
+
+        private final String name;
+
+        private final int order;
+
+        private final boolean parallel;
+
+        private final Status status;
+
+        private final String thread;
+
+        private final long startNanos;
+
+        private final long durationNanos;
+
+        Entry(String name, int order, boolean parallel, Status status,
+              String thread, long startNanos, long durationNanos) {
+            this.name = name;
+            this.order = order;
+            this.parallel = parallel;
+            this.status = status;
+            this.thread = thread;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        /**
+         * Bean class and method name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getOrder() {
+            return order;
+        }
+
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Thread executed the method, {@code null} if it was skipped.
+         */
+        public String getThread() {
+            return thread;
+        }
+
+        /**
+         * Start time relative to the beginning of the run.
+         */
+        public long getStart(TimeUnit unit) {
+            return unit.convert(startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+        }
+
+        public String toString() {
+            return name + '(' + status + ", " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms)";
+        }
+    }
+}
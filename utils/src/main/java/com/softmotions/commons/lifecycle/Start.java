@@ -6,6 +6,13 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
+ * Marks method invoked on {@link LifeCycleService#start()}.
+ * <p/>
+ * Methods are started in stages of the same {@link #order()}, next stage
+ * is started when all methods of the previous stage have completed.
+ * Within a stage {@link #parallel()} methods run concurrently
+ * while other methods run one after another.
+ *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 @Target(ElementType.METHOD)
@@ -14,4 +21,12 @@ public @interface Start {
     int order() default 50;
 
     boolean parallel() default false;
+
+    /**
+     * Types of beans which must be started before this method.
+     * Dependencies must have the same or lower {@link #order()}.
+     * Beans are disposed in the reverse order: dispose methods of this bean
+     * complete before dispose methods of its dependencies of the same dispose order.
+     */
+    Class<?>[] dependsOn() default {};
 }
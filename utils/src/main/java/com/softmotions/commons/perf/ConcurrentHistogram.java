@@ -0,0 +1,167 @@
+package com.softmotions.commons.perf;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two
+ * range is split into {@code 2^SUB_BUCKET_BITS} equal sub buckets,
+ * so the relative error of reported values does not exceed 12.5%.
+ * Recording a value never allocates, bucket counters are striped {@link LongAdder}s.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class ConcurrentHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public ConcurrentHistogram() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a value, negative values are counted as zero.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucketIndex(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Sum of recorded values.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Resets all counters.
+     * Values recorded concurrently with reset may be partially lost.
+     */
+    public void reset() {
+        for (LongAdder c : counts) {
+            c.reset();
+        }
+        sum.reset();
+        max.reset();
+    }
+
+    public Snapshot snapshot() {
+        long[] sc = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            long c = counts[i].sum();
+            sc[i] = c;
+            total += c;
+        }
+        return new Snapshot(sc, total, sum.sum(), max.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return ((shift + 1) << SUB_BUCKET_BITS) + sub;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Point-in-time copy of histogram counters.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value which is greater or equal to
+         * the given percentage of recorded values.
+         *
+         * @param percentile Percentile in range {@code [0, 100]}
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * count);
+            if (target < 1) {
+                target = 1;
+            }
+            long acc = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                acc += counts[i];
+                if (acc >= target) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public String toString() {
+            return "count=" + count +
+                   ", mean=" + String.format("%.1f", getMean()) +
+                   ", p50=" + getValueAtPercentile(50) +
+                   ", p90=" + getValueAtPercentile(90) +
+                   ", p99=" + getValueAtPercentile(99) +
+                   ", max=" + max;
+        }
+    }
+}
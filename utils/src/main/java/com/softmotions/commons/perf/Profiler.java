@@ -0,0 +1,258 @@
+package com.softmotions.commons.perf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical in-process profiler.
+ * <p>
+ * Usage:
+ * <pre>
+ *     try (Profiler.Scope ignored = Profiler.start("render")) {
+ *         ...
+ *     }
+ * </pre>
+ * Scopes started within other scopes of the same thread form the call tree
+ * of {@link ProfilerNode}s. Each node aggregates nanosecond timings from all threads
+ * in the lock-free {@link ConcurrentHistogram}. Scope objects are recycled
+ * per thread, so profiling does not allocate in the steady state.
+ * <p>
+ * Profiler is disabled by default (can be enabled by {@code softmotions.profiler}
+ * system property), when disabled {@link #start(String)} costs a volatile read
+ * and returns the shared no-op scope.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class Profiler {
+
+    private static final Logger log = LoggerFactory.getLogger(Profiler.class);
+
+    private static final ProfilerNode ROOT = new ProfilerNode(null, "");
+
+    private static final ThreadLocal<ThreadState> STATE = ThreadLocal.withInitial(ThreadState::new);
+
+    /**
+     * Scope returned when profiler is disabled.
+     */
+    public static final Scope NOOP = () -> {
+    };
+
+    private static volatile boolean enabled = Boolean.getBoolean("softmotions.profiler");
+
+    private Profiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean val) {
+        enabled = val;
+    }
+
+    /**
+     * Starts timing of the named block nested in
+     * the current block of the calling thread.
+     * The returned scope must be closed by the same thread.
+     */
+    public static Scope start(String name) {
+        if (!enabled) {
+            return NOOP;
+        }
+        return STATE.get().push(name);
+    }
+
+    /**
+     * Closes all scopes opened by the current thread.
+     */
+    public static void closeAll() {
+        STATE.get().popTo(0);
+    }
+
+    /**
+     * Root of the call tree.
+     */
+    public static ProfilerNode getRoot() {
+        return ROOT;
+    }
+
+    /**
+     * Resets collected timings keeping the call tree.
+     */
+    public static void reset() {
+        ROOT.reset();
+    }
+
+    /**
+     * Drops the call tree.
+     * Scopes being open at the moment are recorded to detached nodes.
+     */
+    public static void clear() {
+        ROOT.clear();
+    }
+
+    /**
+     * Call tree report, times are in microseconds.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("%-48s %10s %12s %10s %10s %10s %10s%n",
+                                "block", "count", "total", "mean", "p50", "p99", "max"));
+        for (ProfilerNode n : ROOT.getChildren()) {
+            report(n, 0, sb);
+        }
+        return sb.toString();
+    }
+
+    private static void report(ProfilerNode node, int level, StringBuilder sb) {
+        ConcurrentHistogram.Snapshot s = node.getHistogram().snapshot();
+        char[] indent = new char[level * 2];
+        Arrays.fill(indent, ' ');
+        sb.append(String.format("%-48s %10d %12d %10d %10d %10d %10d%n",
+                                new String(indent) + node.getName(),
+                                s.getCount(),
+                                micros(s.getSum()),
+                                micros((long) s.getMean()),
+                                micros(s.getValueAtPercentile(50)),
+                                micros(s.getValueAtPercentile(99)),
+                                micros(s.getMax())));
+        for (ProfilerNode n : node.getChildren()) {
+            report(n, level + 1, sb);
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    /**
+     * Periodically logs {@link #report()} with INFO level.
+     *
+     * @param reset Reset timings after each report
+     */
+    public static ScheduledFuture<?> scheduleReport(long period, TimeUnit unit, boolean reset) {
+        return scheduleReport(period, unit, reset, root -> {
+            if (log.isInfoEnabled()) {
+                log.info("Profiler report:{}{}", System.lineSeparator(), report());
+            }
+        });
+    }
+
+    /**
+     * Periodically passes call tree to the given reporter.
+     * Reporting is stopped by cancelling the returned future.
+     *
+     * @param reset Reset timings after each report
+     */
+    public static ScheduledFuture<?> scheduleReport(long period, TimeUnit unit, boolean reset,
+                                                    Consumer<ProfilerNode> reporter) {
+        return ReporterHolder.EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                reporter.accept(ROOT);
+            } catch (Exception e) {
+                log.error("", e);
+            }
+            if (reset) {
+                ROOT.reset();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Profiled block.
+     */
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        /**
+         * Records block time. Closing outer scope also closes
+         * inner scopes left open, closing the scope twice has no effect
+         * until it is reused by the next {@link #start(String)}.
+         */
+        @Override
+        void close();
+    }
+
+    @NotThreadSafe
+    private static final class ThreadState {
+
+        private Frame[] frames = new Frame[16];
+
+        private int depth;
+
+        private Scope push(String name) {
+            ProfilerNode parent = (depth == 0) ? ROOT : frames[depth - 1].node;
+            ProfilerNode node = parent.child(name);
+            if (depth == frames.length) {
+                frames = Arrays.copyOf(frames, depth << 1);
+            }
+            Frame f = frames[depth];
+            if (f == null) {
+                f = new Frame(this, depth);
+                frames[depth] = f;
+            }
+            ++depth;
+            f.node = node;
+            f.start = System.nanoTime();
+            return f;
+        }
+
+        private void popTo(int index) {
+            if (index >= depth) {
+                return;
+            }
+            long now = System.nanoTime();
+            while (depth > index) {
+                Frame f = frames[--depth];
+                f.node.getHistogram().record(now - f.start);
+                f.node = null;
+            }
+        }
+    }
+
+    private static final class Frame implements Scope {
+
+        private final ThreadState owner;
+
+        private final int index;
+
+        private ProfilerNode node;
+
+        private long start;
+
+        private Frame(ThreadState owner, int index) {
+            this.owner = owner;
+            this.index = index;
+        }
+
+        @Override
+        public void close() {
+            owner.popTo(index);
+        }
+    }
+
+    private static final class ReporterHolder {
+
+        private static final ScheduledExecutorService EXECUTOR;
+
+        static {
+            ScheduledThreadPoolExecutor ex = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "Profiler reporter");
+                t.setDaemon(true);
+                return t;
+            });
+            ex.setRemoveOnCancelPolicy(true);
+            EXECUTOR = ex;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.softmotions.commons.perf;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Node of {@link Profiler} call tree.
+ * Keeps histogram of nanosecond timings
+ * of the block executed within its parent block.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class ProfilerNode {
+
+    private final ProfilerNode parent;
+
+    private final String name;
+
+    private final ConcurrentMap<String, ProfilerNode> children = new ConcurrentHashMap<>();
+
+    private final ConcurrentHistogram histogram = new ConcurrentHistogram();
+
+    ProfilerNode(ProfilerNode parent, String name) {
+        this.parent = parent;
+        this.name = name;
+    }
+
+    public ProfilerNode getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Slash separated names from the root.
+     */
+    public String getPath() {
+        if (parent == null) {
+            return "";
+        }
+        String pp = parent.getPath();
+        return pp.isEmpty() ? name : pp + '/' + name;
+    }
+
+    /**
+     * Timings in nanoseconds.
+     */
+    public ConcurrentHistogram getHistogram() {
+        return histogram;
+    }
+
+    public ProfilerNode getChild(String name) {
+        return children.get(name);
+    }
+
+    /**
+     * Children ordered by total time descending.
+     */
+    public List<ProfilerNode> getChildren() {
+        // Sums are captured once since they change concurrently
+        List<Map.Entry<ProfilerNode, Long>> sums = new ArrayList<>(children.size());
+        for (ProfilerNode n : children.values()) {
+            sums.add(new AbstractMap.SimpleImmutableEntry<>(n, n.histogram.getSum()));
+        }
+        sums.sort(Map.Entry.<ProfilerNode, Long>comparingByValue().reversed());
+        List<ProfilerNode> res = new ArrayList<>(sums.size());
+        for (Map.Entry<ProfilerNode, Long> e : sums) {
+            res.add(e.getKey());
+        }
+        return res;
+    }
+
+    ProfilerNode child(String name) {
+        ProfilerNode n = children.get(name);
+        if (n == null) {
+            n = children.computeIfAbsent(name, k -> new ProfilerNode(this, k));
+        }
+        return n;
+    }
+
+    void reset() {
+        histogram.reset();
+        for (ProfilerNode n : children.values()) {
+            n.reset();
+        }
+    }
+
+    void clear() {
+        histogram.reset();
+        children.clear();
+    }
+
+    public String toString() {
+        return "ProfilerNode[" + getPath() + ": " + histogram.snapshot() + ']';
+    }
+}
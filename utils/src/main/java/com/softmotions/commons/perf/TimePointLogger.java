@@ -7,6 +7,7 @@
 
 package com.softmotions.commons.perf;
 
+import com.softmotions.commons.ContextCarrier;
 import com.softmotions.commons.cont.Stack;
 
 import org.slf4j.Logger;
@@ -26,10 +27,15 @@ import java.util.Objects;
  * блоков кода в java программе. Что существенно облегчает отладку
  * программ на производительность.
  *
+ * Время измеряется в наносекундах, точки также
+ * записываются в {@link Profiler} если он включен.
+ *
  * @author Adamansky Anton (adamansky@gmail.com)
  * @version $Id: TimePointLogger.java 14910 2010-08-25 04:45:39Z adam $
+ * @deprecated Use {@link Profiler}
  */
 
+@Deprecated
 @NotThreadSafe
 public final class TimePointLogger {
 
@@ -39,7 +45,7 @@ public final class TimePointLogger {
 
     private final Stack<TimePoint> timePoints = new Stack<>();
 
-    private static final ThreadLocal<TimePointLogger> loggerStore = new ThreadLocal<>();
+    private static final ContextCarrier<TimePointLogger> loggerStore = ContextCarrier.create("TimePointLogger");
 
     private TimePointLogger() {
     }
@@ -69,12 +75,12 @@ public final class TimePointLogger {
     public void addTimePoint(String point) {
         TimePoint tp = timePointMap.get(point);
         if (tp == null) {
-            tp = new TimePoint(System.currentTimeMillis(), point);
+            tp = new TimePoint(point);
             timePointMap.put(point, tp);
-        } else {
-            tp.start = System.currentTimeMillis();
-            tp.isFlushed = false;
         }
+        tp.isFlushed = false;
+        tp.scope = Profiler.start(point);
+        tp.start = System.nanoTime();
         timePoints.push(tp);
     }
 
@@ -88,9 +94,7 @@ public final class TimePointLogger {
     public TimePoint flushPoint() {
         TimePoint point = timePoints.pop();
         if (point != null) {
-            point.end = System.currentTimeMillis();
-            point.totalTime += (point.end - point.start);
-            point.isFlushed = true;
+            point.flush(System.nanoTime());
         }
         return point;
     }
@@ -102,6 +106,7 @@ public final class TimePointLogger {
     public void reset() {
         if (!timePoints.isEmpty()) {
             log.warn("Unflashed timepoints: " + timePoints);
+            closeScopes();
         }
         timePoints.clear();
         timePointMap.clear();
@@ -120,10 +125,9 @@ public final class TimePointLogger {
         if (isReset && !timePoints.isEmpty()) {
             log.warn("Unflashed timepoints: " + timePoints);
             log.warn("Forced flushing unflushed timepoints");
+            long now = System.nanoTime();
             for (TimePoint point : timePoints) {
-                point.end = System.currentTimeMillis();
-                point.totalTime += (point.end - point.start);
-                point.isFlushed = true;
+                point.flush(now);
             }
             timePoints.clear();
         }
@@ -152,24 +156,47 @@ public final class TimePointLogger {
         return sb.toString();
     }
 
+    private void closeScopes() {
+        for (int i = timePoints.size() - 1; i >= 0; --i) {
+            timePoints.get(i).scope.close();
+        }
+    }
+
     public static final class TimePoint {
 
-        private long end;
         private long start;
         private String name;
         private long totalTime;
         private boolean isFlushed;
+        private Profiler.Scope scope;
 
-        private TimePoint(long start, String name) {
-            this.start = start;
+        private TimePoint(String name) {
             this.name = name;
         }
 
+        private void flush(long now) {
+            scope.close();
+            totalTime += (now - start);
+            isFlushed = true;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Total time in nanoseconds.
+         */
+        public long getTotalTime() {
+            return totalTime;
+        }
+
         public String toString() {
-            if (end < start) {
-                return "TimePoint: '" + name + "' started in=" + start;
+            if (!isFlushed) {
+                return "TimePoint: '" + name + "' started";
             } else {
-                return "TimePoint: '" + name + "' completed in=" + totalTime + " ms";
+                return "TimePoint: '" + name + "' completed in=" +
+                       String.format("%.3f", totalTime / 1e6) + " ms";
             }
         }
 
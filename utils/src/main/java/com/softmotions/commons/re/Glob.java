@@ -0,0 +1,97 @@
+package com.softmotions.commons.re;
+
+import java.util.Collections;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Compiled glob matched without regular expressions.
+ * <p/>
+ * Globs consisting of literal characters and {@code *} wildcards
+ * are matched by substring search, other globs by {@link GlobAutomaton}.
+ * Syntax is compatible with {@link RegexpHelper#convertGlobToRegEx(String)}
+ * except escaped {@code \[} which stands for the literal character.
+ * <p/>
+ * Compiled globs are shared by {@link Globs#get(String)}.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class Glob {
+
+    private final String pattern;
+
+    /**
+     * Literal parts separated by {@code *} or {@code null}.
+     */
+    private final String[] parts;
+
+    private final GlobAutomaton automaton;
+
+    /**
+     * @throws IllegalArgumentException If glob is malformed
+     */
+    public Glob(String pattern) {
+        this.pattern = pattern;
+        this.parts = GlobAutomaton.simpleParts(GlobAutomaton.parse(pattern));
+        this.automaton = (parts == null) ? new GlobAutomaton(Collections.singletonList(pattern)) : null;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns {@code true} if glob matches the only string.
+     */
+    public boolean isLiteral() {
+        return parts != null && parts.length == 1;
+    }
+
+    /**
+     * Returns {@code true} if glob matches the whole input.
+     */
+    public boolean matches(CharSequence input) {
+        if (parts == null) {
+            return automaton.matches(input);
+        }
+        String s = input.toString();
+        String[] p = parts;
+        int last = p.length - 1;
+        if (last == 0) {
+            return s.equals(p[0]);
+        }
+        if (!s.startsWith(p[0])) {
+            return false;
+        }
+        int pos = p[0].length();
+        int end = s.length() - p[last].length();
+        if (end < pos || !s.endsWith(p[last])) {
+            return false;
+        }
+        for (int i = 1; i < last; ++i) {
+            if (p[i].isEmpty()) {
+                continue;
+            }
+            int idx = s.indexOf(p[i], pos);
+            if (idx < 0 || idx + p[i].length() > end) {
+                return false;
+            }
+            pos = idx + p[i].length();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Glob && pattern.equals(((Glob) o).pattern);
+    }
+
+    @Override
+    public int hashCode() {
+        return pattern.hashCode();
+    }
+
+    public String toString() {
+        return pattern;
+    }
+}
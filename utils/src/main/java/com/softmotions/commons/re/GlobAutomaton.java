@@ -0,0 +1,574 @@
+package com.softmotions.commons.re;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Automaton matching the set of globs.
+ * <p/>
+ * Globs are parsed into the Thompson NFA which is lazily converted to DFA
+ * while matching: each set of NFA states reached by the input
+ * becomes a DFA state with cached transitions, so every input
+ * character costs a single table lookup once the automaton is warmed up.
+ * Number of cached DFA states is bounded by {@link #MAX_DFA_STATES},
+ * beyond it transitions are computed without caching.
+ * <p/>
+ * Glob syntax is the one of {@link RegexpHelper#convertGlobToRegEx(String)}:
+ * <ul>
+ * <li>{@code *} any sequence of characters</li>
+ * <li>{@code ?} any character</li>
+ * <li>{@code [a-z_]} any character of the class</li>
+ * <li>{@code {a,b*}} any of alternatives, groups can be nested</li>
+ * <li>whitespace matches any (possibly empty) sequence of whitespace characters</li>
+ * <li>{@code \} escapes the next character</li>
+ * </ul>
+ * Glob is matched against the whole input, leading and trailing whitespace
+ * of the glob is ignored.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+final class GlobAutomaton {
+
+    static final int MAX_DFA_STATES = 4096;
+
+    private static final int CHAR = 0;
+
+    private static final int ANY = 1;
+
+    private static final int CLASS = 2;
+
+    private static final int SPACE = 3;
+
+    private static final int EPS = 4;
+
+    private static final int MATCH = 5;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int[] kinds;
+
+    private final char[] chars;
+
+    private final char[][] ranges;
+
+    /**
+     * Next state of consuming states, glob index of MATCH states.
+     */
+    private final int[] outs;
+
+    private final int[][] eps;
+
+    /**
+     * Consuming and MATCH states reachable from the state by epsilon moves.
+     */
+    private final int[][] closures;
+
+    private final ConcurrentMap<StateSet, DState> dstates = new ConcurrentHashMap<>();
+
+    private final DState start;
+
+    private final DState dead;
+
+    GlobAutomaton(List<String> globs) {
+        Builder b = new Builder();
+        int[] starts = new int[globs.size()];
+        for (int i = 0; i < starts.length; ++i) {
+            int m = b.add(MATCH);
+            b.outs.set(m, i);
+            starts[i] = b.compile(parse(globs.get(i)), m);
+        }
+        int s = b.add(EPS);
+        b.eps.set(s, starts);
+        int n = b.kinds.size();
+        kinds = new int[n];
+        chars = new char[n];
+        ranges = new char[n][];
+        outs = new int[n];
+        eps = new int[n][];
+        for (int i = 0; i < n; ++i) {
+            kinds[i] = b.kinds.get(i);
+            chars[i] = b.chars.get(i);
+            ranges[i] = b.ranges.get(i);
+            outs[i] = b.outs.get(i);
+            eps[i] = b.eps.get(i);
+        }
+        closures = new int[n][];
+        int[] marks = new int[n];
+        int[] stack = new int[n];
+        for (int i = 0; i < n; ++i) {
+            if (kinds[i] != EPS && kinds[i] != MATCH && closures[outs[i]] == null) {
+                closures[outs[i]] = closure(outs[i], i + 1, marks, stack);
+            }
+        }
+        closures[s] = closure(s, n + 1, marks, stack);
+        dead = new DState(EMPTY, null);
+        start = dstate(closures[s]);
+    }
+
+    /**
+     * Returns {@code true} if any of globs matches the whole input.
+     */
+    boolean matches(CharSequence input) {
+        return run(input).matched != null;
+    }
+
+    /**
+     * Indexes of globs matching the whole input or {@code null}.
+     */
+    BitSet matched(CharSequence input) {
+        BitSet m = run(input).matched;
+        return (m != null) ? (BitSet) m.clone() : null;
+    }
+
+    private DState run(CharSequence input) {
+        DState d = start;
+        for (int i = 0, l = input.length(); i < l && d != dead; ++i) {
+            d = d.next(input.charAt(i));
+        }
+        return d;
+    }
+
+    private DState dstate(int[] states) {
+        if (states.length == 0) {
+            return dead;
+        }
+        StateSet key = new StateSet(states);
+        DState d = dstates.get(key);
+        if (d != null) {
+            return d;
+        }
+        BitSet matched = null;
+        for (int s : states) {
+            if (kinds[s] == MATCH) {
+                if (matched == null) {
+                    matched = new BitSet();
+                }
+                matched.set(outs[s]);
+            }
+        }
+        d = new DState(states, matched);
+        if (dstates.size() < MAX_DFA_STATES) {
+            DState prev = dstates.putIfAbsent(key, d);
+            if (prev != null) {
+                d = prev;
+            }
+        }
+        return d;
+    }
+
+    private DState step(DState from, char c) {
+        int[] res = null;
+        int count = 0;
+        for (int s : from.states) {
+            if (!accepts(s, c)) {
+                continue;
+            }
+            for (int t : closures[outs[s]]) {
+                if (res == null) {
+                    res = new int[from.states.length + 4];
+                } else if (count == res.length) {
+                    res = Arrays.copyOf(res, count << 1);
+                }
+                res[count++] = t;
+            }
+        }
+        if (res == null) {
+            return dead;
+        }
+        Arrays.sort(res, 0, count);
+        int u = 0;
+        for (int i = 0; i < count; ++i) {
+            if (u == 0 || res[u - 1] != res[i]) {
+                res[u++] = res[i];
+            }
+        }
+        return dstate(Arrays.copyOf(res, u));
+    }
+
+    private boolean accepts(int s, char c) {
+        switch (kinds[s]) {
+            case CHAR:
+                return chars[s] == c;
+            case ANY:
+                return true;
+            case SPACE:
+                return isSpace(c);
+            case CLASS:
+                char[] r = ranges[s];
+                for (int i = 0; i < r.length; i += 2) {
+                    if (c >= r[i] && c <= r[i + 1]) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Characters of regexp {@code \s}.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Collects states reachable from {@code s} by epsilon moves.
+     *
+     * @param mark  Unique mark of the traversal
+     * @param marks Marks of visited states
+     */
+    private int[] closure(int s, int mark, int[] marks, int[] stack) {
+        int[] res = new int[4];
+        int count = 0;
+        int sp = 0;
+        stack[sp++] = s;
+        marks[s] = mark;
+        while (sp > 0) {
+            int c = stack[--sp];
+            if (kinds[c] != EPS) {
+                if (count == res.length) {
+                    res = Arrays.copyOf(res, count << 1);
+                }
+                res[count++] = c;
+                continue;
+            }
+            for (int t : eps[c]) {
+                if (marks[t] != mark) {
+                    marks[t] = mark;
+                    stack[sp++] = t;
+                }
+            }
+        }
+        res = Arrays.copyOf(res, count);
+        Arrays.sort(res);
+        return res;
+    }
+
+    /**
+     * Parses the glob.
+     *
+     * @throws IllegalArgumentException If glob is malformed
+     */
+    static Node parse(String glob) {
+        glob = glob.trim();
+        Alt root = new Alt();
+        root.alts.add(new Seq());
+        Alt cur = root;
+        ArrayList<Alt> groups = new ArrayList<>();
+        boolean escaping = false;
+        char pc = 0;
+        for (int i = 0, l = glob.length(); i < l; ++i) {
+            char cc = glob.charAt(i);
+            Seq seq = cur.alts.get(cur.alts.size() - 1);
+            if (escaping) {
+                seq.items.add(new Node(CHAR, cc));
+                escaping = false;
+                pc = cc;
+                continue;
+            }
+            switch (cc) {
+                case '*':
+                    seq.items.add(new Node(ANY, '*'));
+                    break;
+                case '?':
+                    seq.items.add(new Node(ANY, '?'));
+                    break;
+                case '\\':
+                    escaping = true;
+                    break;
+                case '{': {
+                    Alt g = new Alt();
+                    g.alts.add(new Seq());
+                    seq.items.add(g);
+                    groups.add(cur);
+                    cur = g;
+                    break;
+                }
+                case '}':
+                    if (!groups.isEmpty()) {
+                        cur = groups.remove(groups.size() - 1);
+                    } else {
+                        seq.items.add(new Node(CHAR, cc));
+                    }
+                    break;
+                case ',':
+                    if (!groups.isEmpty()) {
+                        cur.alts.add(new Seq());
+                    } else {
+                        seq.items.add(new Node(CHAR, cc));
+                    }
+                    break;
+                case '[': {
+                    int end = parseClass(glob, i, seq);
+                    pc = glob.charAt(end);
+                    i = end;
+                    continue;
+                }
+                default:
+                    if (Character.isWhitespace(cc)) {
+                        if (pc != 0 && !Character.isWhitespace(pc)) {
+                            seq.items.add(new Node(SPACE, cc));
+                        }
+                    } else {
+                        seq.items.add(new Node(CHAR, cc));
+                    }
+            }
+            pc = cc;
+        }
+        if (!groups.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed group in glob: " + glob);
+        }
+        return root;
+    }
+
+    /**
+     * Splits glob consisting only of literal characters
+     * and {@code *} wildcards into literal parts
+     * or returns {@code null} if glob has other features.
+     * Literal glob has the only part.
+     */
+    static String[] simpleParts(Node root) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        if (!collectSimple(root, parts, sb)) {
+            return null;
+        }
+        parts.add(sb.toString());
+        return parts.toArray(new String[parts.size()]);
+    }
+
+    private static boolean collectSimple(Node node, List<String> parts, StringBuilder sb) {
+        if (node instanceof Alt) {
+            List<Seq> alts = ((Alt) node).alts;
+            return alts.size() == 1 && collectSimple(alts.get(0), parts, sb);
+        }
+        if (node instanceof Seq) {
+            for (Node n : ((Seq) node).items) {
+                if (!collectSimple(n, parts, sb)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (node.kind == CHAR) {
+            sb.append(node.ch);
+            return true;
+        }
+        if (node.kind == ANY && node.ch == '*') {
+            parts.add(sb.toString());
+            sb.setLength(0);
+            return true;
+        }
+        return false;
+    }
+
+    private static int parseClass(String glob, int i, Seq seq) {
+        StringBuilder r = new StringBuilder();
+        int l = glob.length();
+        int j = i + 1;
+        for (; j < l && glob.charAt(j) != ']'; ++j) {
+            char c = glob.charAt(j);
+            if (c == '\\' && j + 1 < l) {
+                c = glob.charAt(++j);
+            }
+            if (j + 2 < l && glob.charAt(j + 1) == '-' && glob.charAt(j + 2) != ']') {
+                char e = glob.charAt(j + 2);
+                j += 2;
+                if (e == '\\' && j + 1 < l) {
+                    e = glob.charAt(++j);
+                }
+                if (e < c) {
+                    throw new IllegalArgumentException("Invalid character range in glob: " + glob);
+                }
+                r.append(c).append(e);
+            } else {
+                r.append(c).append(c);
+            }
+        }
+        if (j >= l || r.length() == 0) {
+            throw new IllegalArgumentException("Unclosed character class in glob: " + glob);
+        }
+        Node n = new Node(CLASS, '[');
+        n.ranges = r.toString().toCharArray();
+        seq.items.add(n);
+        return j;
+    }
+
+    static class Node {
+
+        final int kind;
+
+        final char ch;
+
+        char[] ranges;
+
+        Node(int kind, char ch) {
+            this.kind = kind;
+            this.ch = ch;
+        }
+    }
+
+    private static final class Seq extends Node {
+
+        final List<Node> items = new ArrayList<>();
+
+        Seq() {
+            super(EPS, ' ');
+        }
+    }
+
+    private static final class Alt extends Node {
+
+        final List<Seq> alts = new ArrayList<>(2);
+
+        Alt() {
+            super(EPS, '{');
+        }
+    }
+
+    private static final class Builder {
+
+        final List<Integer> kinds = new ArrayList<>();
+
+        final List<Character> chars = new ArrayList<>();
+
+        final List<char[]> ranges = new ArrayList<>();
+
+        final List<Integer> outs = new ArrayList<>();
+
+        final List<int[]> eps = new ArrayList<>();
+
+        int add(int kind) {
+            kinds.add(kind);
+            chars.add((char) 0);
+            ranges.add(null);
+            outs.add(-1);
+            eps.add(EMPTY);
+            return kinds.size() - 1;
+        }
+
+        /**
+         * Compiles node followed by the {@code next} state, returns the entry state.
+         */
+        int compile(Node node, int next) {
+            if (node instanceof Seq) {
+                List<Node> items = ((Seq) node).items;
+                for (int i = items.size() - 1; i >= 0; --i) {
+                    next = compile(items.get(i), next);
+                }
+                return next;
+            }
+            if (node instanceof Alt) {
+                List<Seq> alts = ((Alt) node).alts;
+                if (alts.size() == 1) {
+                    return compile(alts.get(0), next);
+                }
+                int[] targets = new int[alts.size()];
+                for (int i = 0; i < targets.length; ++i) {
+                    targets[i] = compile(alts.get(i), next);
+                }
+                int s = add(EPS);
+                eps.set(s, targets);
+                return s;
+            }
+            switch (node.kind) {
+                case ANY:
+                    if (node.ch == '*') {
+                        return loop(ANY, next);
+                    }
+                    return consume(ANY, next);
+                case SPACE:
+                    return loop(SPACE, next);
+                case CLASS: {
+                    int s = consume(CLASS, next);
+                    ranges.set(s, node.ranges);
+                    return s;
+                }
+                default: {
+                    int s = consume(CHAR, next);
+                    chars.set(s, node.ch);
+                    return s;
+                }
+            }
+        }
+
+        private int consume(int kind, int next) {
+            int s = add(kind);
+            outs.set(s, next);
+            return s;
+        }
+
+        /**
+         * Zero or more characters accepted by the {@code kind} state.
+         */
+        private int loop(int kind, int next) {
+            int split = add(EPS);
+            int c = consume(kind, split);
+            eps.set(split, new int[]{c, next});
+            return split;
+        }
+    }
+
+    /**
+     * Sorted set of NFA states.
+     */
+    private static final class StateSet {
+
+        private final int[] states;
+
+        private final int hash;
+
+        private StateSet(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateSet && Arrays.equals(states, ((StateSet) o).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final class DState {
+
+        private final int[] states;
+
+        private final BitSet matched;
+
+        /**
+         * Transitions by ASCII characters, other characters are not cached.
+         * Filled racily, the same state is computed by concurrent threads.
+         */
+        private final DState[] ascii = new DState[128];
+
+        private DState(int[] states, BitSet matched) {
+            this.states = states;
+            this.matched = matched;
+        }
+
+        private DState next(char c) {
+            if (c < 128) {
+                DState d = ascii[c];
+                if (d == null) {
+                    d = step(this, c);
+                    ascii[c] = d;
+                }
+                return d;
+            }
+            return step(this, c);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.softmotions.commons.re;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Set of globs matched at once.
+ * <p/>
+ * Literal globs are resolved by hash lookup, all other globs
+ * are combined into a single {@link GlobAutomaton}, so the input
+ * is scanned once regardless of number of globs.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@ThreadSafe
+public final class GlobSet {
+
+    private final List<String> patterns;
+
+    private final Map<String, BitSet> literals;
+
+    /**
+     * Indexes in {@link #patterns} of globs in the automaton.
+     */
+    private final int[] indexes;
+
+    private final GlobAutomaton automaton;
+
+    /**
+     * @throws IllegalArgumentException If any of globs is malformed
+     */
+    public GlobSet(Collection<String> globs) {
+        this.patterns = Collections.unmodifiableList(new ArrayList<>(globs));
+        this.literals = new HashMap<>();
+        List<String> complex = new ArrayList<>();
+        List<Integer> cidx = new ArrayList<>();
+        for (int i = 0; i < patterns.size(); ++i) {
+            String p = patterns.get(i);
+            String[] parts = GlobAutomaton.simpleParts(GlobAutomaton.parse(p));
+            if (parts != null && parts.length == 1) {
+                literals.computeIfAbsent(parts[0], k -> new BitSet()).set(i);
+            } else {
+                complex.add(p);
+                cidx.add(i);
+            }
+        }
+        this.indexes = cidx.stream().mapToInt(Integer::intValue).toArray();
+        this.automaton = !complex.isEmpty() ? new GlobAutomaton(complex) : null;
+    }
+
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    public int size() {
+        return patterns.size();
+    }
+
+    public boolean isEmpty() {
+        return patterns.isEmpty();
+    }
+
+    /**
+     * Returns {@code true} if any of globs matches the whole input.
+     */
+    public boolean matchesAny(CharSequence input) {
+        if (!literals.isEmpty() && literals.containsKey(input.toString())) {
+            return true;
+        }
+        return automaton != null && automaton.matches(input);
+    }
+
+    /**
+     * Indexes of globs (in order of {@link #getPatterns()}) matching the whole input.
+     */
+    public BitSet match(CharSequence input) {
+        BitSet res = new BitSet();
+        if (!literals.isEmpty()) {
+            BitSet l = literals.get(input.toString());
+            if (l != null) {
+                res.or(l);
+            }
+        }
+        if (automaton != null) {
+            BitSet m = automaton.matched(input);
+            if (m != null) {
+                for (int i = m.nextSetBit(0); i >= 0; i = m.nextSetBit(i + 1)) {
+                    res.set(indexes[i]);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Globs matching the whole input.
+     */
+    public List<String> matching(CharSequence input) {
+        BitSet m = match(input);
+        List<String> res = new ArrayList<>(m.cardinality());
+        for (int i = m.nextSetBit(0); i >= 0; i = m.nextSetBit(i + 1)) {
+            res.add(patterns.get(i));
+        }
+        return res;
+    }
+
+    public String toString() {
+        return patterns.toString();
+    }
+}
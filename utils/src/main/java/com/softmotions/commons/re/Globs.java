@@ -0,0 +1,55 @@
+package com.softmotions.commons.re;
+
+import java.util.Objects;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Shared registry of compiled {@link Glob}s.
+ * <p>
+ * Globs are kept in a bounded cache, so frequently used
+ * patterns are compiled once and reused by all threads.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public final class Globs {
+
+    public static final int MAX_CACHED_GLOBS = 4096;
+
+    private static final LoadingCache<String, Glob> CACHE =
+            CacheBuilder.newBuilder()
+                        .maximumSize(MAX_CACHED_GLOBS)
+                        .build(new CacheLoader<>() {
+                            @Override
+                            public Glob load(String pattern) {
+                                return new Glob(pattern);
+                            }
+                        });
+
+    private Globs() {
+    }
+
+    /**
+     * @throws IllegalArgumentException If glob is malformed
+     */
+    public static Glob get(String pattern) {
+        try {
+            return CACHE.getUnchecked(Objects.requireNonNull(pattern));
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns {@code true} if glob matches the whole input.
+     */
+    public static boolean matches(String pattern, CharSequence input) {
+        return get(pattern).matches(input);
+    }
+}
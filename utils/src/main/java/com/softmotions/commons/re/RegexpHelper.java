@@ -12,7 +12,9 @@ public class RegexpHelper {
      * to the regular expression counterpart
      *
      * @param glob The glob to be converted
+     * @deprecated Use {@link Globs#get(String)} to match globs without regular expressions
      */
+    @Deprecated
     @Nonnull
     public static String convertGlobToRegEx(String glob) {
         glob = glob.trim();
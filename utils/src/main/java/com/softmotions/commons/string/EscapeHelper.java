@@ -2,13 +2,13 @@ package com.softmotions.commons.string;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.io.Writer;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nonnull;
@@ -16,8 +16,16 @@ import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.softmotions.commons.io.ByteBufferWriter;
+
 /**
  * String escape helper.
+ * <p/>
+ * Escape routines returning {@code String} return the input instance
+ * if nothing needs escaping. Routines accepting {@link Appendable}
+ * ({@link Writer}, {@link StringBuilder}) or {@link ByteBuffer} stream the result
+ * to the target without intermediate strings, runs of characters
+ * which do not need escaping are copied in bulk.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  * @version $Id$
@@ -27,6 +35,47 @@ public final class EscapeHelper {
     private static final String[] URL_FIND = {"%28", "%29", "+", "%27", "%21", "%7E"};
     private static final String[] URL_REPL = {"(", ")", "%20", "'", "!", "~"};
 
+    private static final char[] LOWER_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final char[] UPPER_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Number of characters escaped at once
+     * before writing them to the target.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Entities of XML special characters indexed by character.
+     */
+    private static final String[] XML_ESCAPES = new String['>' + 1];
+
+    /**
+     * JSON escapes of ASCII characters indexed by character.
+     */
+    private static final String[] JSON_ESCAPES = new String[0x80];
+
+    static {
+        XML_ESCAPES['"'] = "&quot;";
+        XML_ESCAPES['&'] = "&amp;";
+        XML_ESCAPES['<'] = "&lt;";
+        XML_ESCAPES['>'] = "&gt;";
+        XML_ESCAPES['\''] = "&apos;";
+
+        for (int c = 0; c < 0x20; ++c) {
+            JSON_ESCAPES[c] = String.format("\\u%04X", c);
+        }
+        JSON_ESCAPES[0x7F] = "\\u007F";
+        JSON_ESCAPES['"'] = "\\\"";
+        JSON_ESCAPES['\\'] = "\\\\";
+        JSON_ESCAPES['\b'] = "\\b";
+        JSON_ESCAPES['\f'] = "\\f";
+        JSON_ESCAPES['\n'] = "\\n";
+        JSON_ESCAPES['\r'] = "\\r";
+        JSON_ESCAPES['\t'] = "\\t";
+        JSON_ESCAPES['/'] = "\\/";
+    }
+
     @Nonnull
     public static String encodeURLComponent(String val) {
         String ret;
@@ -57,81 +106,108 @@ public final class EscapeHelper {
         String src = String.valueOf(val);
         int length = src.length();
         if (length == 0) return src;
-        StringBuilder sb = new StringBuilder(6 * length);
-        for (int i = 0; i < length; ++i) {
-            sb.append("\\u");
-            toUnsignedString((int) src.charAt(i), 4, sb);
+        char[] buf = new char[6 * length];
+        for (int i = 0, j = 0; i < length; ++i, j += 6) {
+            unicodeEscape(src.charAt(i), LOWER_DIGITS, buf, j);
         }
-        return sb.toString();
+        return new String(buf);
     }
 
-    private static void toUnsignedString(int i, int shift, StringBuilder sb) {
-        char[] buf = new char[32];
-        int charPos = 32;
-        int radix = 1 << shift;
-        int mask = radix - 1;
-        do {
-            buf[--charPos] = digits[i & mask];
-            i >>>= shift;
-        } while (i != 0);
-
-        int len = (32 - charPos);
-        if (len < 4) {
-            for (int j = 0; j < 4 - len; ++j) {
-                sb.append(0);
+    /**
+     * Writes every character of {@code val} as {@code \\uXXXX} escape.
+     */
+    public static void toUnicodeEscape(Object val, Appendable out) throws IOException {
+        String src = String.valueOf(val);
+        int length = src.length();
+        char[] buf = new char[6 * Math.min(length, CHUNK_SIZE)];
+        for (int i = 0; i < length; ) {
+            int j = 0;
+            for (; i < length && j < buf.length; ++i, j += 6) {
+                unicodeEscape(src.charAt(i), LOWER_DIGITS, buf, j);
             }
+            appendChars(out, buf, j);
         }
-        sb.append(buf, charPos, len);
     }
 
-    private static final char[] digits = {
-            '0', '1', '2', '3', '4', '5',
-            '6', '7', '8', '9', 'a', 'b',
-            'c', 'd', 'e', 'f', 'g', 'h',
-            'i', 'j', 'k', 'l', 'm', 'n',
-            'o', 'p', 'q', 'r', 's', 't',
-            'u', 'v', 'w', 'x', 'y', 'z'
-    };
-
     @Nonnull
     public static String escapeVelocity(Object val) {
         String src = String.valueOf(val);
-        if (src.contains(".")) return StringUtils.replace(src, ".", "_");
+        if (src.indexOf('.') != -1) return src.replace('.', '_');
         return src;
     }
 
-    private static final Map<Integer, String> XML_ENTRY_MAP;
-
-    static {
-        XML_ENTRY_MAP = new HashMap<Integer, String>(5);
-        XML_ENTRY_MAP.put(34, "quot");
-        XML_ENTRY_MAP.put(38, "amp");
-        XML_ENTRY_MAP.put(60, "lt");
-        XML_ENTRY_MAP.put(62, "gt");
-        XML_ENTRY_MAP.put(39, "apos");
+    public static void escapeVelocity(Object val, Appendable out) throws IOException {
+        String src = String.valueOf(val);
+        int start = 0;
+        for (int i = src.indexOf('.'); i != -1; i = src.indexOf('.', start)) {
+            appendRun(out, src, start, i);
+            out.append('_');
+            start = i + 1;
+        }
+        appendRun(out, src, start, src.length());
     }
 
+    /**
+     * Returns the input itself if it contains no XML special characters.
+     */
     @Nullable
     public static String escapeXML(String str) {
         if (str == null) {
             return null;
         }
-        final StringBuilder buf = new StringBuilder((int) (str.length() * 1.2));
-        final int length = str.length();
-        for (int i = 0; i < length; ++i) {
-            final int ch = str.charAt(i);
-            final String entityName = XML_ENTRY_MAP.get(ch);
-            if (entityName == null) {
-                buf.append((char) ch);
-            } else {
-                buf.append('&');
-                buf.append(entityName);
-                buf.append(';');
-            }
+        int idx = indexOfXmlEscape(str, 0);
+        if (idx == -1) {
+            return str;
+        }
+        StringBuilder sb = new StringBuilder(str.length() + 16 + (str.length() >> 4));
+        sb.append(str, 0, idx);
+        try {
+            escapeXML(str, idx, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
+
+    public static void escapeXML(CharSequence str, Appendable out) throws IOException {
+        if (str == null) {
+            return;
+        }
+        escapeXML(str, 0, out);
+    }
+
+    /**
+     * Writes escaped XML as UTF-8 into the given buffer.
+     *
+     * @throws java.nio.BufferOverflowException If the buffer has not enough space
+     */
+    public static void escapeXML(CharSequence str, ByteBuffer out) {
+        try (ByteBufferWriter w = new ByteBufferWriter(out)) {
+            escapeXML(str, w);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void escapeXML(CharSequence str, int from, Appendable out) throws IOException {
+        int start = from;
+        for (int i = indexOfXmlEscape(str, from); i != -1; i = indexOfXmlEscape(str, start)) {
+            appendRun(out, str, start, i);
+            out.append(XML_ESCAPES[str.charAt(i)]);
+            start = i + 1;
         }
-        return buf.toString();
+        appendRun(out, str, start, str.length());
     }
 
+    private static int indexOfXmlEscape(CharSequence str, int from) {
+        for (int i = from, length = str.length(); i < length; ++i) {
+            char c = str.charAt(i);
+            if (c < XML_ESCAPES.length && XML_ESCAPES[c] != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
     /**
      * Translates the given String into ASCII code.
@@ -144,23 +220,50 @@ public final class EscapeHelper {
         if (input == null) {
             return null;
         }
-        StringBuilder buffer = new StringBuilder(input.length() + 60);
-        for (int i = 0; i < input.length(); i++) {
-            char c = input.charAt(i);
-            if (c <= 0x7E) {
-                buffer.append(c);
-            } else {
-                buffer.append("\\u");
-                String hex = Integer.toHexString(c);
-                for (int j = hex.length(); j < 4; j++) {
-                    buffer.append('0');
-                }
-                buffer.append(hex);
-            }
+        int idx = indexOfNonAscii(input, 0);
+        if (idx == -1) {
+            return input;
         }
-        return buffer.toString();
+        StringBuilder sb = new StringBuilder(input.length() + 60);
+        sb.append(input, 0, idx);
+        try {
+            nativeToAscii(input, idx, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the input replacing native characters by {@code \\uXXXX} escapes.
+     */
+    public static void nativeToAscii(CharSequence input, Appendable out) throws IOException {
+        if (input == null) {
+            return;
+        }
+        nativeToAscii(input, 0, out);
+    }
+
+    private static void nativeToAscii(CharSequence input, int from, Appendable out) throws IOException {
+        char[] esc = new char[6];
+        int start = from;
+        for (int i = indexOfNonAscii(input, from); i != -1; i = indexOfNonAscii(input, start)) {
+            appendRun(out, input, start, i);
+            unicodeEscape(input.charAt(i), LOWER_DIGITS, esc, 0);
+            appendChars(out, esc, 6);
+            start = i + 1;
+        }
+        appendRun(out, input, start, input.length());
     }
 
+    private static int indexOfNonAscii(CharSequence input, int from) {
+        for (int i = from, length = input.length(); i < length; ++i) {
+            if (input.charAt(i) > 0x7E) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
     /**
      * Translates the given String into ASCII code.
@@ -207,56 +310,117 @@ public final class EscapeHelper {
         return buffer.toString();
     }
 
+    /**
+     * Returns the input itself if it contains no characters to escape.
+     */
     @Nonnull
     public static String escapeJSON(String input) {
         if (input == null) {
             return "null";
         }
-        StringWriter sw = (!input.isEmpty()) ? new StringWriter(input.length()) : new StringWriter();
-        int length = input.length();
-        for (int i = 0; i < length; i++) {
+        int idx = indexOfJsonEscape(input, 0);
+        if (idx == -1) {
+            return input;
+        }
+        StringBuilder sb = new StringBuilder(input.length() + 16 + (input.length() >> 4));
+        sb.append(input, 0, idx);
+        try {
+            escapeJSON(input, idx, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
+
+    public static void escapeJSON(CharSequence input, Appendable out) throws IOException {
+        if (input == null) {
+            out.append("null");
+            return;
+        }
+        escapeJSON(input, 0, out);
+    }
+
+    /**
+     * Writes escaped JSON as UTF-8 into the given buffer.
+     *
+     * @throws java.nio.BufferOverflowException If the buffer has not enough space
+     */
+    public static void escapeJSON(CharSequence input, ByteBuffer out) {
+        try (ByteBufferWriter w = new ByteBufferWriter(out)) {
+            escapeJSON(input, w);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void escapeJSON(CharSequence input, int from, Appendable out) throws IOException {
+        char[] esc = new char[6];
+        int start = from;
+        for (int i = indexOfJsonEscape(input, from); i != -1; i = indexOfJsonEscape(input, start)) {
+            appendRun(out, input, start, i);
+            char c = input.charAt(i);
+            String e = (c < JSON_ESCAPES.length) ? JSON_ESCAPES[c] : null;
+            if (e != null) {
+                out.append(e);
+            } else {
+                unicodeEscape(c, UPPER_DIGITS, esc, 0);
+                appendChars(out, esc, 6);
+            }
+            start = i + 1;
+        }
+        appendRun(out, input, start, input.length());
+    }
+
+    private static int indexOfJsonEscape(CharSequence input, int from) {
+        for (int i = from, length = input.length(); i < length; ++i) {
             char c = input.charAt(i);
-            switch (c) {
-                case '"':
-                    sw.write("\\\"");
-                    break;
-                case '\\':
-                    sw.write("\\\\");
-                    break;
-                case '\b':
-                    sw.write("\\b");
-                    break;
-                case '\f':
-                    sw.write("\\f");
-                    break;
-                case '\n':
-                    sw.write("\\n");
-                    break;
-                case '\r':
-                    sw.write("\\r");
-                    break;
-                case '\t':
-                    sw.write("\\t");
-                    break;
-                case '/':
-                    sw.write("\\/");
-                    break;
-                default:
-                    //Reference: http://www.unicode.org/versions/Unicode5.1.0/
-                    if ((c >= '\u0000' && c <= '\u001F') || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
-                        String ss = Integer.toHexString(c);
-                        sw.write("\\u");
-                        for (int k = 0; k < 4 - ss.length(); k++) {
-                            sw.write('0');
-                        }
-                        sw.write(ss.toUpperCase());
-                    } else {
-                        sw.write(c);
-                    }
+            if (c < 0x80) {
+                if (JSON_ESCAPES[c] != null) {
+                    return i;
+                }
+            } else if (c <= '\u009F' || (c >= '\u2000' && c <= '\u20FF')) {
+                //Reference: http://www.unicode.org/versions/Unicode5.1.0/
+                return i;
             }
         }
+        return -1;
+    }
+
+    private static void unicodeEscape(char c, char[] digits, char[] buf, int off) {
+        buf[off] = '\\';
+        buf[off + 1] = 'u';
+        buf[off + 2] = digits[(c >> 12) & 0xF];
+        buf[off + 3] = digits[(c >> 8) & 0xF];
+        buf[off + 4] = digits[(c >> 4) & 0xF];
+        buf[off + 5] = digits[c & 0xF];
+    }
+
+    /**
+     * Copies the run of unescaped characters using
+     * the cheapest bulk operation of the target.
+     */
+    private static void appendRun(Appendable out, CharSequence s, int start, int end) throws IOException {
+        if (start >= end) {
+            return;
+        }
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(s, start, end);
+        } else if (out instanceof Writer && s instanceof String) {
+            // Writer.append(CharSequence, int, int) creates a substring
+            ((Writer) out).write((String) s, start, end - start);
+        } else {
+            out.append(s, start, end);
+        }
+    }
 
-        return sw.toString();
+    private static void appendChars(Appendable out, char[] buf, int len) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(buf, 0, len);
+        } else if (out instanceof Writer) {
+            ((Writer) out).write(buf, 0, len);
+        } else {
+            out.append(CharBuffer.wrap(buf, 0, len));
+        }
     }
 
     /**
@@ -0,0 +1,106 @@
+package com.softmotions.commons;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class ContextCarrierTest {
+
+    private static final ContextCarrier<String> USER = ContextCarrier.create("user", true);
+
+    private static final ContextCarrier<Integer> TENANT = ContextCarrier.create("tenant", true);
+
+    @Test
+    public void testBindings() throws Exception {
+        Assert.assertNull(USER.get());
+        USER.run("a", () -> {
+            Assert.assertEquals(USER.get(), "a");
+            USER.run("b", () -> Assert.assertEquals(USER.get(), "b"));
+            Assert.assertEquals(USER.get(), "a");
+        });
+        Assert.assertNull(USER.get());
+        Assert.assertEquals(USER.call("c", USER::get), "c");
+        Assert.assertEquals(USER.supply("s", USER::get), "s");
+        Assert.expectThrows(IllegalStateException.class, () -> USER.call("c", () -> {
+            throw new IllegalStateException();
+        }));
+
+        USER.set("d");
+        try {
+            Assert.assertEquals(USER.get(), "d");
+            USER.run("e", () -> Assert.assertEquals(USER.get(), "e"));
+            Assert.assertEquals(USER.get(), "d");
+        } finally {
+            USER.remove();
+        }
+        Assert.assertNull(USER.get());
+
+        USER.run("f", () -> {
+            USER.set("g");
+            Assert.assertEquals(USER.get(), "g");
+            USER.remove();
+            Assert.assertEquals(USER.get(), "f");
+        });
+    }
+
+    @Test
+    public void testPropagation() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Executor executor = ContextCarrier.propagating(pool);
+            CompletableFuture<String> f = new CompletableFuture<>();
+            USER.run("a", () -> TENANT.run(1, () -> executor.execute(
+                    () -> f.complete(USER.get() + TENANT.get()))));
+            Assert.assertEquals(f.get(5, TimeUnit.SECONDS), "a1");
+
+            // Nothing is left in the pool thread and nothing is inherited
+            Assert.assertEquals(pool.submit(() -> String.valueOf(USER.get())).get(), "null");
+
+            USER.set("b");
+            try {
+                Assert.assertEquals(pool.submit(ContextCarrier.wrap(USER::get)).get(), "b");
+            } finally {
+                USER.remove();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnregister() throws Exception {
+        ContextCarrier<String> local = ContextCarrier.create("local", true);
+        local.run("a", () -> Assert.assertFalse(ContextCarrier.capture().isEmpty()));
+        local.unregister();
+        local.run("a", () -> {
+            Assert.assertEquals(local.get(), "a");
+            Assert.assertTrue(ContextCarrier.capture().isEmpty());
+        });
+    }
+
+    @Test
+    public void testThreadConfined() throws Exception {
+        ContextCarrier<String> session = ContextCarrier.create("session");
+        Assert.assertFalse(session.isInheritable());
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            session.set("s");
+            try {
+                Assert.assertTrue(ContextCarrier.capture().isEmpty());
+                Assert.assertEquals(pool.submit(ContextCarrier.wrap(() -> String.valueOf(session.get()))).get(), "null");
+            } finally {
+                session.remove();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
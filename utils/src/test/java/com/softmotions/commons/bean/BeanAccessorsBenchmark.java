@@ -0,0 +1,82 @@
+package com.softmotions.commons.bean;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Property read cost: method lookup with reflective call per access
+ * (the former {@link BeanUtils#getProperty(Object, String)}),
+ * cached {@link Method#invoke(Object, Object...)}
+ * and compiled {@link BeanGetter}.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.bean.BeanAccessorsBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanAccessorsBenchmark {
+
+    private BeanAccessorsTest.Bean bean;
+
+    private Method method;
+
+    private BeanGetter getter;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        bean = new BeanAccessorsTest.Bean();
+        bean.setName("name");
+        method = BeanAccessorsTest.Bean.class.getMethod("getName");
+        getter = BeanAccessors.getGetter(BeanAccessorsTest.Bean.class, "name");
+    }
+
+    @Benchmark
+    public Object lookupAndInvoke() throws Exception {
+        return bean.getClass().getMethod("getName").invoke(bean);
+    }
+
+    @Benchmark
+    public Object reflective() throws Exception {
+        return method.invoke(bean);
+    }
+
+    @Benchmark
+    public Object compiled() throws Exception {
+        return getter.get(bean);
+    }
+
+    @Benchmark
+    public Object beanUtils() throws Exception {
+        return BeanUtils.getProperty(bean, "name");
+    }
+
+    @Benchmark
+    public Object direct() {
+        return bean.getName();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(BeanAccessorsBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
@@ -0,0 +1,103 @@
+package com.softmotions.commons.bean;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class BeanAccessorsTest {
+
+    @Test
+    public void testGetters() throws Exception {
+        Bean b = new Bean();
+        b.setName("foo");
+        b.setCount(3);
+        b.setActive(true);
+
+        BeanGetter g = BeanAccessors.getGetter(Bean.class, "name");
+        Assert.assertNotNull(g);
+        Assert.assertSame(BeanAccessors.getGetter(Bean.class, "name"), g);
+        Assert.assertEquals(g.getType(), String.class);
+        Assert.assertEquals(g.get(b), "foo");
+
+        g = BeanAccessors.getGetter(Bean.class, "count");
+        Assert.assertEquals(g.getType(), int.class);
+        Assert.assertEquals(g.get(b), 3);
+
+        Assert.assertEquals(BeanAccessors.getGetter(Bean.class, "active").get(b), Boolean.TRUE);
+        Assert.assertNull(BeanAccessors.getGetter(Bean.class, "missing"));
+        Assert.assertNull(BeanAccessors.getGetter(Bean.class, "missing"));
+
+        // Package private class with public getter
+        Assert.assertEquals(BeanAccessors.getGetter(Hidden.class, "value").get(new Hidden()), "hidden");
+
+        Assert.assertEquals(BeanUtils.getProperty(b, "name"), "foo");
+        Assert.assertEquals(BeanUtils.getPropertyType(Bean.class, "count", false), int.class);
+        Assert.assertNull(BeanUtils.getProperty(b, "missing", true));
+        Assert.expectThrows(BeanException.class, () -> BeanUtils.getProperty(b, "missing"));
+        Assert.expectThrows(BeanException.class, () -> BeanAccessors.getGetter(Bean.class, "broken").get(b));
+    }
+
+    @Test
+    public void testSetters() throws Exception {
+        Bean b = new Bean();
+        BeanSetter s = BeanAccessors.getSetter(Bean.class, "name", String.class);
+        Assert.assertNotNull(s);
+        s.set(b, "bar");
+        Assert.assertEquals(b.getName(), "bar");
+
+        BeanUtils.setProperty(b, "name", null);
+        Assert.assertNull(b.getName());
+        BeanUtils.setProperty(b, "count", 5);
+        Assert.assertEquals(b.getCount(), 5);
+
+        Assert.assertNull(BeanAccessors.getSetter(Bean.class, "name", Integer.class));
+        Assert.expectThrows(BeanException.class, () -> BeanUtils.setProperty(b, "name", 1));
+        Assert.expectThrows(BeanException.class, () -> BeanUtils.setProperty(b, "missing", "x"));
+    }
+
+    public static class Bean {
+
+        private String name;
+
+        private int count;
+
+        private boolean active;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+
+        public String getBroken() {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    static class Hidden {
+
+        public String getValue() {
+            return "hidden";
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.softmotions.commons.cont;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.ref.Reference;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Lookup throughput and heap footprint of {@link LongIndexedCollection}
+ * versus boxed {@link AbstractIndexedCollection}.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.cont.LongIndexedCollectionBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LongIndexedCollectionBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private BoxedCollection boxed;
+
+    private PrimitiveCollection primitive;
+
+    private long[] probes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        boxed = fillBoxed(size);
+        primitive = fillPrimitive(size);
+        probes = new long[1024];
+        for (int i = 0; i < probes.length; ++i) {
+            probes[i] = ThreadLocalRandom.current().nextLong(size * 2L);
+        }
+    }
+
+    @Benchmark
+    public Entity boxedLookup() {
+        return boxed.getIndex().get(probes[ThreadLocalRandom.current().nextInt(probes.length)]);
+    }
+
+    @Benchmark
+    public Entity primitiveLookup() {
+        return primitive.getByKey(probes[ThreadLocalRandom.current().nextInt(probes.length)]);
+    }
+
+    static BoxedCollection fillBoxed(int size) {
+        BoxedCollection c = new BoxedCollection(size);
+        for (long i = 0; i < size; ++i) {
+            c.add(new Entity(i * 2));
+        }
+        return c;
+    }
+
+    static PrimitiveCollection fillPrimitive(int size) {
+        PrimitiveCollection c = new PrimitiveCollection(size);
+        for (long i = 0; i < size; ++i) {
+            c.add(new Entity(i * 2));
+        }
+        return c;
+    }
+
+    /**
+     * Prints approximate retained heap of both collections.
+     */
+    static void printFootprint(int size) {
+        long boxed = measure(() -> fillBoxed(size));
+        long primitive = measure(() -> fillPrimitive(size));
+        System.out.printf("Footprint of %d elements: boxed=%,d bytes, primitive=%,d bytes%n",
+                          size, boxed, primitive);
+    }
+
+    private static long measure(Supplier<Object> factory) {
+        Runtime rt = Runtime.getRuntime();
+        gc();
+        long before = rt.totalMemory() - rt.freeMemory();
+        Object holder = factory.get();
+        gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+        Reference.reachabilityFence(holder);
+        return after - before;
+    }
+
+    private static void gc() {
+        for (int i = 0; i < 4; ++i) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        printFootprint(1_000_000);
+        new Runner(new OptionsBuilder()
+                           .include(LongIndexedCollectionBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+
+    public static final class Entity {
+
+        final long id;
+
+        Entity(long id) {
+            this.id = id;
+        }
+    }
+
+    static final class BoxedCollection extends AbstractIndexedCollection<Long, Entity> {
+
+        BoxedCollection(int size) {
+            super(size);
+        }
+
+        @Override
+        protected Long getElementKey(Entity el) {
+            return el.id;
+        }
+    }
+
+    static final class PrimitiveCollection extends LongIndexedCollection<Entity> {
+
+        PrimitiveCollection(int size) {
+            super(size);
+        }
+
+        @Override
+        protected long getElementKey(Entity el) {
+            return el.id;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.softmotions.commons.cont;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class LongObjectHashMapTest {
+
+    @Test
+    public void testRandomOperations() {
+        Random rnd = new Random(42);
+        LongObjectHashMap<String> map = new LongObjectHashMap<>(4);
+        IntObjectHashMap<String> imap = new IntObjectHashMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < 200000; ++i) {
+            // Narrow key range to produce collisions and long probe chains
+            long key = rnd.nextInt(2048) * 1024L;
+            String val = String.valueOf(i);
+            switch (rnd.nextInt(3)) {
+                case 0:
+                case 1:
+                    Assert.assertEquals(map.put(key, val), expected.put(key, val));
+                    imap.put((int) key, val);
+                    break;
+                default:
+                    Assert.assertEquals(map.remove(key), expected.remove(key));
+                    imap.remove((int) key);
+            }
+        }
+        Assert.assertEquals(map.size(), expected.size());
+        Assert.assertEquals(imap.size(), expected.size());
+        for (Map.Entry<Long, String> e : expected.entrySet()) {
+            Assert.assertEquals(map.get(e.getKey()), e.getValue());
+            Assert.assertEquals(imap.get(e.getKey().intValue()), e.getValue());
+        }
+        Assert.assertEquals(map.keys().length, expected.size());
+        Assert.assertEquals(map.values().size(), expected.size());
+        Assert.assertTrue(expected.values().containsAll(map.values()));
+        map.forEach((k, v) -> Assert.assertEquals(v, expected.get(k)));
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(0));
+    }
+
+    @Test
+    public void testIndexedCollection() {
+        LongIndexedCollection<long[]> coll = new LongIndexedCollection<>() {
+            @Override
+            protected long getElementKey(long[] el) {
+                return el[0];
+            }
+        };
+        long[] a = {1L};
+        long[] b = {Long.MIN_VALUE};
+        coll.add(a);
+        coll.add(b);
+        Assert.assertSame(coll.getByKey(1L), a);
+        Assert.assertSame(coll.getByKey(Long.MIN_VALUE), b);
+        coll.remove(a);
+        Assert.assertNull(coll.getByKey(1L));
+        Assert.assertEquals(coll.size(), 1);
+
+        // Wrapped elements are indexed by the initialized subclass
+        class OffsetCollection extends LongIndexedCollection<long[]> {
+
+            private final long offset;
+
+            OffsetCollection(Collection<long[]> wrapped, long offset) {
+                super(wrapped);
+                this.offset = offset;
+            }
+
+            @Override
+            protected long getElementKey(long[] el) {
+                return el[0] + offset;
+            }
+        }
+        OffsetCollection oc = new OffsetCollection(new ArrayList<>(List.of(a, b)), 10);
+        Assert.assertSame(oc.getByKey(11L), a);
+        oc.retainAll(List.of(b));
+        Assert.assertNull(oc.getByKey(11L));
+        Assert.assertSame(oc.getByKey(Long.MIN_VALUE + 10), b);
+    }
+}
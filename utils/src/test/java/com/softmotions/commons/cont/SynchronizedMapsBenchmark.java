@@ -0,0 +1,139 @@
+package com.softmotions.commons.cont;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compares {@link CollectionUtils.FastSynchronizedMap} and {@link CollectionUtils.FastSynchronizedSet}
+ * with striped, stamped and copy-on-write variants at different read/write ratios.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.cont.SynchronizedMapsBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class SynchronizedMapsBenchmark {
+
+    private static final int KEYS = 4096;
+
+    @Param({"fast", "striped", "stamped", "cow"})
+    public String impl;
+
+    @Param({"50", "90", "99", "100"})
+    public int readPercent;
+
+    private Map<Integer, Integer> map;
+
+    private Set<Integer> set;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (impl) {
+            case "fast":
+                map = CollectionUtils.fastSynchronizedMap(new HashMap<>());
+                set = CollectionUtils.fastSynchronizedSet(new HashSet<>());
+                break;
+            case "striped":
+                map = CollectionUtils.stripedSynchronizedMap(HashMap::new, 64);
+                set = Collections.newSetFromMap(CollectionUtils.stripedSynchronizedMap(HashMap::new, 64));
+                break;
+            case "stamped":
+                map = CollectionUtils.stampedSynchronizedMap(new ConcurrentHashMap<>());
+                set = Collections.newSetFromMap(CollectionUtils.stampedSynchronizedMap(new ConcurrentHashMap<>()));
+                break;
+            case "cow":
+                map = CollectionUtils.copyOnWriteMap(Collections.emptyMap());
+                set = Collections.newSetFromMap(CollectionUtils.copyOnWriteMap(Collections.emptyMap()));
+                break;
+            default:
+                throw new IllegalArgumentException(impl);
+        }
+        for (int i = 0; i < KEYS; ++i) {
+            map.put(i, i);
+            set.add(i);
+        }
+    }
+
+    @Benchmark
+    public void map(Blackhole bh) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Integer key = rnd.nextInt(KEYS);
+        if (rnd.nextInt(100) < readPercent) {
+            bh.consume(map.get(key));
+        } else {
+            bh.consume(map.put(key, key));
+        }
+    }
+
+    @Benchmark
+    public void set(Blackhole bh) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Integer key = rnd.nextInt(KEYS);
+        if (rnd.nextInt(100) < readPercent) {
+            bh.consume(set.contains(key));
+        } else if (!set.remove(key)) {
+            set.add(key);
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        if (ThreadLocalRandom.current().nextInt(100) < readPercent) {
+            if (map instanceof CollectionUtils.FastSynchronizedMap) {
+                // Iterators of FastSynchronizedMap are not protected from concurrent modifications
+                ReentrantReadWriteLock lock = ((CollectionUtils.FastSynchronizedMap<Integer, Integer>) map).getLock();
+                lock.readLock().lock();
+                try {
+                    for (Map.Entry<Integer, Integer> e : map.entrySet()) {
+                        bh.consume(e.getValue());
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            } else {
+                for (Map.Entry<Integer, Integer> e : map.entrySet()) {
+                    bh.consume(e.getValue());
+                }
+            }
+        } else {
+            Integer key = ThreadLocalRandom.current().nextInt(KEYS);
+            bh.consume(map.put(key, key));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(SynchronizedMapsBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
@@ -0,0 +1,171 @@
+package com.softmotions.commons.cont;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Compound operations and views of striped, stamped and copy-on-write maps.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class SynchronizedMapsTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITERATIONS = 2000;
+
+    private static final int KEYS = 16;
+
+    @DataProvider(name = "maps")
+    public Object[][] maps() {
+        return new Object[][]{
+                {"striped", (Supplier<Map<String, Integer>>) () -> CollectionUtils.stripedSynchronizedMap(HashMap::new, 4)},
+                {"stamped", (Supplier<Map<String, Integer>>) () -> CollectionUtils.stampedSynchronizedMap(new HashMap<>())},
+                {"stamped-chm", (Supplier<Map<String, Integer>>) () -> new StampedSynchronizedMap<>()},
+                {"stamped-lru", (Supplier<Map<String, Integer>>) () ->
+                        CollectionUtils.stampedSynchronizedMap(new LinkedHashMap<>(16, 0.75f, true))},
+                {"cow", (Supplier<Map<String, Integer>>) () -> CollectionUtils.copyOnWriteMap(Collections.emptyMap())}
+        };
+    }
+
+    @Test(dataProvider = "maps")
+    public void testCompoundOperations(String name, Supplier<Map<String, Integer>> factory) {
+        Map<String, Integer> map = factory.get();
+        Assert.assertNull(map.putIfAbsent("a", 1), name);
+        Assert.assertEquals(map.putIfAbsent("a", 2), Integer.valueOf(1), name);
+        Assert.assertNull(map.replace("b", 1), name);
+        Assert.assertFalse(map.containsKey("b"), name);
+        Assert.assertEquals(map.replace("a", 3), Integer.valueOf(1), name);
+        Assert.assertFalse(map.replace("a", 1, 4), name);
+        Assert.assertTrue(map.replace("a", 3, 4), name);
+        Assert.assertEquals(map.merge("a", 10, Integer::sum), Integer.valueOf(14), name);
+        Assert.assertEquals(map.merge("b", 10, Integer::sum), Integer.valueOf(10), name);
+        Assert.assertNull(map.merge("b", 10, (v1, v2) -> null), name);
+        Assert.assertFalse(map.containsKey("b"), name);
+        Assert.assertNull(map.computeIfPresent("b", (k, v) -> v + 1), name);
+        Assert.assertEquals(map.computeIfPresent("a", (k, v) -> v + 1), Integer.valueOf(15), name);
+        Assert.assertEquals(map.compute("c", (k, v) -> v == null ? 1 : v + 1), Integer.valueOf(1), name);
+        Assert.assertEquals(map.compute("c", (k, v) -> v == null ? 1 : v + 1), Integer.valueOf(2), name);
+        Assert.assertNull(map.compute("c", (k, v) -> null), name);
+        Assert.assertEquals(map.computeIfAbsent("d", k -> 7), Integer.valueOf(7), name);
+        map.replaceAll((k, v) -> v * 2);
+        Assert.assertEquals(map, Map.of("a", 30, "d", 14), name);
+        Assert.assertFalse(map.remove("a", 1), name);
+        Assert.assertTrue(map.remove("a", 30), name);
+        Assert.assertEquals(map.size(), 1, name);
+    }
+
+    @Test(dataProvider = "maps")
+    public void testConcurrentCompoundOperations(String name, Supplier<Map<String, Integer>> factory) throws Exception {
+        Map<String, Integer> merged = factory.get();
+        Map<String, Integer> computed = factory.get();
+        Map<String, Integer> replaced = factory.get();
+        for (int k = 0; k < KEYS; ++k) {
+            replaced.put("k" + k, 0);
+        }
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; ++t) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < ITERATIONS; ++i) {
+                        String key = "k" + (i % KEYS);
+                        merged.merge(key, 1, Integer::sum);
+                        computed.compute(key, (k, v) -> v == null ? 1 : v + 1);
+                        computed.computeIfPresent(key, (k, v) -> v + 1);
+                        while (true) {
+                            Integer v = replaced.get(key);
+                            if (replaced.replace(key, v, v + 1)) {
+                                break;
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(error.get(), name);
+        int expected = THREADS * ITERATIONS / KEYS;
+        for (int k = 0; k < KEYS; ++k) {
+            String key = "k" + k;
+            Assert.assertEquals(merged.get(key), Integer.valueOf(expected), name);
+            Assert.assertEquals(computed.get(key), Integer.valueOf(2 * expected), name);
+            Assert.assertEquals(replaced.get(key), Integer.valueOf(expected), name);
+        }
+    }
+
+    @Test(dataProvider = "maps")
+    public void testViews(String name, Supplier<Map<String, Integer>> factory) {
+        Map<String, Integer> map = factory.get();
+        for (int i = 0; i < 10; ++i) {
+            map.put("k" + i, i);
+        }
+        // Modifications during iteration do not break it, striped map
+        // takes snapshots per segment so it may see keys added to next segments
+        Set<String> visited = new HashSet<>();
+        for (String key : map.keySet()) {
+            if (!key.startsWith("n")) {
+                map.put("n" + key, 0);
+            }
+            visited.add(key);
+        }
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertTrue(visited.contains("k" + i), name);
+        }
+        Assert.assertEquals(map.size(), 20, name);
+
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> e = it.next();
+            if (e.getKey().startsWith("n")) {
+                it.remove();
+            }
+        }
+        Assert.assertEquals(map.size(), 10, name);
+        try {
+            map.entrySet().iterator().next().setValue(1);
+            Assert.fail(name);
+        } catch (UnsupportedOperationException ignored) {
+        }
+
+        Assert.assertTrue(map.entrySet().contains(Map.entry("k1", 1)), name);
+        Assert.assertFalse(map.entrySet().contains(Map.entry("k1", 2)), name);
+        Assert.assertFalse(map.entrySet().remove(Map.entry("k1", 2)), name);
+        Assert.assertTrue(map.entrySet().remove(Map.entry("k1", 1)), name);
+        Assert.assertTrue(map.keySet().remove("k2"), name);
+        Assert.assertTrue(map.values().remove(3), name);
+        Assert.assertFalse(map.containsKey("k3"), name);
+        Assert.assertEquals(map.keySet().size(), 7, name);
+
+        int sum = 0;
+        for (Integer v : map.values()) {
+            sum += v;
+        }
+        Assert.assertEquals(sum, 45 - 1 - 2 - 3, name);
+        map.keySet().clear();
+        Assert.assertTrue(map.isEmpty(), name);
+    }
+}
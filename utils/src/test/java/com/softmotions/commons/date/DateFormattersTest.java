@@ -0,0 +1,69 @@
+package com.softmotions.commons.date;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class DateFormattersTest {
+
+    @Test
+    public void testSimpleDateFormatCompatibility() throws Exception {
+        Date date = new Date(1603029600123L);
+        ZoneId zone = ZoneId.of("Europe/Moscow");
+        String[] patterns = {
+                "dd.MM.yyyy", "dd MMMM yyyy", "HH:mm dd MMMM yyyy", "MMMMM",
+                "EEE, dd MMM yyyy HH:mm:ss zzz", "yyyy-MM-dd'T'HH:mm:ss.SSSZ", "hh:mm a", "'['yyyy']'",
+                "u EEE", "uu", "ss.S", "ss.SS", "ss.SSSSS", "HHmmssSSS"
+        };
+        for (Locale locale : new Locale[]{Locale.US, new Locale("ru")}) {
+            for (String p : patterns) {
+                SimpleDateFormat sdf = new SimpleDateFormat(p, locale);
+                sdf.setTimeZone(TimeZone.getTimeZone(zone));
+                DateFormatter df = DateFormatters.get(p, locale, zone);
+                Assert.assertEquals(df.format(date), sdf.format(date), p + " " + locale);
+                Assert.assertSame(DateFormatters.get(p, locale, zone), df);
+            }
+        }
+        DateFormatter df = DateFormatters.get("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.US, zone);
+        Assert.assertEquals(df.parse(df.format(date)), date);
+        Assert.assertEquals(df.formatTo(date, new StringBuilder("at ")).toString(), "at " + df.format(date));
+        Assert.assertEquals(DateFormatters.get("dd.MM.yyyy", Locale.US, ZoneOffset.UTC).parse("01.02.2020").getTime(),
+                            1580515200000L);
+        Assert.assertNull(df.parseOrNull("garbage"));
+    }
+
+    @Test
+    public void testHttpDates() throws Exception {
+        long expected = 784111777000L;
+        Assert.assertEquals(DateFormatters.get("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US, ZoneOffset.UTC)
+                                          .parse("Sun, 06 Nov 1994 08:49:37 GMT").getTime(), expected);
+        Assert.assertEquals(DateFormatters.get("EEEEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US, ZoneOffset.UTC)
+                                          .parse("Sunday, 06-Nov-94 08:49:37 GMT").getTime(), expected);
+        Assert.assertEquals(DateFormatters.get("EEE MMMM d HH:mm:ss yyyy", Locale.US, ZoneOffset.UTC)
+                                          .parse("Sun Nov 6 08:49:37 1994").getTime(), expected);
+    }
+
+    @Test
+    public void testDayOfWeekAndMillis() throws Exception {
+        // 2020-10-18 is Sunday, ISO day number 7 in any locale
+        Date date = new Date(1603029600045L);
+        for (Locale locale : new Locale[]{Locale.US, new Locale("ru")}) {
+            Assert.assertEquals(DateFormatters.get("u", locale, ZoneOffset.UTC).format(date), "7");
+        }
+        DateFormatter df = DateFormatters.get("HH:mm:ss.S", Locale.US, ZoneOffset.UTC);
+        Assert.assertEquals(df.format(date), "14:00:00.45");
+        Assert.assertEquals(df.parse("14:00:00.45").getTime(), 14 * 3600_000L + 45);
+        df = DateFormatters.get("yyyyMMddHHmmssSSS", Locale.US, ZoneOffset.UTC);
+        Assert.assertEquals(df.format(date), "20201018140000045");
+        Assert.assertEquals(df.parse("20201018140000045"), date);
+    }
+}
@@ -0,0 +1,166 @@
+package com.softmotions.commons.db;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Database-less {@link ConnectionPoolDataSource} used by pool tests and benchmarks.
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class InMemoryConnectionPoolDataSource implements ConnectionPoolDataSource {
+
+    private final CopyOnWriteArrayList<InMemoryPooledConnection> connections = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private volatile boolean valid = true;
+
+    private PrintWriter logWriter;
+
+    public int getOpened() {
+        return opened.get();
+    }
+
+    public int getClosed() {
+        return closed.get();
+    }
+
+    public List<InMemoryPooledConnection> getConnections() {
+        return connections;
+    }
+
+    /**
+     * Result of {@link Connection#isValid(int)} for all connections.
+     */
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        opened.incrementAndGet();
+        InMemoryPooledConnection pc = new InMemoryPooledConnection();
+        connections.add(pc);
+        return pc;
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+        return getPooledConnection();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    public class InMemoryPooledConnection implements PooledConnection {
+
+        private final CopyOnWriteArrayList<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+
+        private volatile boolean physicallyClosed;
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (physicallyClosed) {
+                throw new SQLException("Connection is closed");
+            }
+            return (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                fireClosed();
+                                return null;
+                            case "isValid":
+                                return valid;
+                            case "isClosed":
+                                return physicallyClosed;
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "equals":
+                                return proxy == args[0];
+                            case "toString":
+                                return "InMemoryConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+                            default:
+                                throw new SQLFeatureNotSupportedException(method.getName());
+                        }
+                    });
+        }
+
+        public void fireError() {
+            ConnectionEvent ev = new ConnectionEvent(this, new SQLException("Fatal"));
+            for (ConnectionEventListener l : listeners) {
+                l.connectionErrorOccurred(ev);
+            }
+        }
+
+        private void fireClosed() {
+            ConnectionEvent ev = new ConnectionEvent(this);
+            for (ConnectionEventListener l : listeners) {
+                l.connectionClosed(ev);
+            }
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!physicallyClosed) {
+                physicallyClosed = true;
+                closed.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void addConnectionEventListener(ConnectionEventListener listener) {
+            listeners.addIfAbsent(listener);
+        }
+
+        @Override
+        public void removeConnectionEventListener(ConnectionEventListener listener) {
+            listeners.remove(listener);
+        }
+
+        @Override
+        public void addStatementEventListener(StatementEventListener listener) {
+        }
+
+        @Override
+        public void removeStatementEventListener(StatementEventListener listener) {
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.softmotions.commons.db;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout/return throughput of {@link JdbcConnectionPool}
+ * over {@link InMemoryConnectionPoolDataSource}.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.db.JdbcConnectionPoolBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcConnectionPoolBenchmark {
+
+    @Param({"8", "20", "64"})
+    public int maxConnections;
+
+    private JdbcConnectionPool pool;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        pool = new JdbcConnectionPool(new InMemoryConnectionPoolDataSource());
+        pool.setMaxConnections(maxConnections);
+        pool.setLoginTimeout(60);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.close();
+    }
+
+    @Benchmark
+    public void checkoutReturn() throws Exception {
+        Connection conn = pool.getConnection();
+        conn.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : new int[]{1, 4, 16, 64, 256}) {
+            Options opts = new OptionsBuilder()
+                    .include(JdbcConnectionPoolBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(opts).run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.softmotions.commons.db;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class JdbcConnectionPoolTest {
+
+    @Test
+    public void testCheckoutReturn() throws Exception {
+        InMemoryConnectionPoolDataSource ds = new InMemoryConnectionPoolDataSource();
+        JdbcConnectionPool pool = new JdbcConnectionPool(ds);
+        pool.setMaxConnections(2);
+        Connection c1 = pool.getConnection();
+        Connection c2 = pool.getConnection();
+        Assert.assertEquals(pool.getActiveConnections(), 2);
+        Assert.assertEquals(ds.getOpened(), 2);
+        c1.close();
+        c2.close();
+        Assert.assertEquals(pool.getActiveConnections(), 0);
+        Assert.assertEquals(pool.getIdleConnections(), 2);
+        pool.getConnection().close();
+        Assert.assertEquals(ds.getOpened(), 2);
+        pool.close();
+        Assert.assertEquals(ds.getClosed(), 2);
+    }
+
+    @Test
+    public void testDuplicateReturn() throws Exception {
+        InMemoryConnectionPoolDataSource ds = new InMemoryConnectionPoolDataSource();
+        JdbcConnectionPool pool = new JdbcConnectionPool(ds);
+        pool.setMaxConnections(1);
+        pool.setLoginTimeout(1);
+        Connection c1 = pool.getConnection();
+        c1.close();
+        c1.close();
+        Assert.assertEquals(pool.getActiveConnections(), 0);
+        Assert.assertEquals(pool.getIdleConnections(), 1);
+        Connection c2 = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Login timeout expected");
+        } catch (SQLException ignored) {
+        }
+        c2.close();
+        pool.close();
+        Assert.assertEquals(ds.getClosed(), 1);
+    }
+
+    @Test
+    public void testHandoffAndTimeout() throws Exception {
+        InMemoryConnectionPoolDataSource ds = new InMemoryConnectionPoolDataSource();
+        JdbcConnectionPool pool = new JdbcConnectionPool(ds);
+        pool.setMaxConnections(1);
+        pool.setLoginTimeout(1);
+        Connection c1 = pool.getConnection();
+        long start = System.nanoTime();
+        try {
+            pool.getConnection();
+            Assert.fail("Login timeout expected");
+        } catch (SQLException ignored) {
+        }
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+
+        CompletableFuture<Connection> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getConnection();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        while (pool.getPendingConnections() == 0) {
+            Thread.sleep(1);
+        }
+        start = System.nanoTime();
+        c1.close();
+        Connection c2 = waiter.get(1, TimeUnit.SECONDS);
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        c2.close();
+        Assert.assertEquals(ds.getOpened(), 1);
+        pool.close();
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        InMemoryConnectionPoolDataSource ds = new InMemoryConnectionPoolDataSource();
+        JdbcConnectionPool pool = new JdbcConnectionPool(ds);
+        Connection c1 = pool.getConnection();
+        ds.getConnections().get(0).fireError();
+        c1.close();
+        Assert.assertEquals(ds.getClosed(), 1);
+        Assert.assertEquals(pool.getIdleConnections(), 0);
+
+        pool.setValidationBypassMillis(0);
+        pool.getConnection().close();
+        Thread.sleep(2);
+        ds.setValid(false);
+        pool.getConnection().close();
+        Assert.assertEquals(ds.getOpened(), 3);
+        Assert.assertEquals(ds.getClosed(), 2);
+
+        pool.setIdleTimeoutMillis(1);
+        ds.setValid(true);
+        Connection c3 = pool.getConnection();
+        Connection c4 = pool.getConnection();
+        c3.close();
+        Thread.sleep(5);
+        c4.close();
+        Assert.assertEquals(pool.getIdleConnections(), 1);
+        pool.close();
+    }
+
+    @Test
+    public void testMetricsAndLeaks() throws Exception {
+        InMemoryConnectionPoolDataSource ds = new InMemoryConnectionPoolDataSource();
+        JdbcConnectionPool pool = new JdbcConnectionPool(ds);
+        pool.setMaxConnections(1);
+        pool.setLoginTimeout(1);
+        AtomicReference<Throwable> leak = new AtomicReference<>();
+        pool.setLeakListener((p, held, trace) -> leak.set(trace));
+        pool.setLeakDetectionThresholdMillis(100);
+
+        Connection c1 = pool.getConnection();
+        try {
+            pool.getConnection();
+            Assert.fail("Login timeout expected");
+        } catch (SQLException ignored) {
+        }
+        Thread.sleep(300);
+        Assert.assertNotNull(leak.get());
+        Assert.assertTrue(leak.get().getStackTrace()[0].getClassName().startsWith(JdbcConnectionPool.class.getName()));
+        c1.close();
+        pool.getConnection().close();
+
+        JdbcConnectionPoolMetrics metrics = pool.getMetrics();
+        Assert.assertEquals(metrics.getCheckouts(), 2);
+        Assert.assertEquals(metrics.getCreated(), 1);
+        Assert.assertEquals(metrics.getTimeouts(), 1);
+        Assert.assertEquals(metrics.getLeaks(), 1);
+        Assert.assertEquals(metrics.getActive(), 0);
+        Assert.assertEquals(metrics.getIdle(), 1);
+        Assert.assertEquals(metrics.getHoldTime().getCount(), 2);
+        Assert.assertTrue(metrics.getHoldTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(300));
+        pool.close();
+    }
+}
@@ -0,0 +1,100 @@
+package com.softmotions.commons.ebus;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class AsyncEBusTest {
+
+    @Test
+    public void testOrderedDelivery() throws Exception {
+        try (AsyncEBus ebus = new AsyncEBus()) {
+            List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch done = new CountDownLatch(1);
+            ebus.register(new Object() {
+                @Subscribe
+                public void onEvent(Integer ev) {
+                    received.add(ev);
+                    if (ev == 9999) {
+                        done.countDown();
+                    }
+                }
+            });
+            for (int i = 0; i < 10000; ++i) {
+                ebus.fire(i);
+            }
+            ebus.fire("not delivered");
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            Assert.assertEquals(received.size(), 10000);
+            for (int i = 0; i < 10000; ++i) {
+                Assert.assertEquals(received.get(i).intValue(), i);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchingAndCoalescing() throws Exception {
+        try (AsyncEBus ebus = new AsyncEBus()) {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(1);
+            List<List<KeyedEvent>> batches = Collections.synchronizedList(new ArrayList<>());
+            ebus.register(new Object() {
+                @Subscribe
+                @SubscriberOptions(overflow = OverflowPolicy.COALESCE, maxBatchSize = 100)
+                public void onEvents(List<KeyedEvent> events) throws InterruptedException {
+                    entered.countDown();
+                    gate.await();
+                    batches.add(events);
+                    for (KeyedEvent ev : events) {
+                        if (ev.value == -1) {
+                            done.countDown();
+                        }
+                    }
+                }
+            });
+            ebus.fire(new KeyedEvent("first", 0));
+            Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 1000; ++i) {
+                ebus.fire(new KeyedEvent("k" + (i % 10), i));
+            }
+            ebus.fire(new KeyedEvent("last", -1));
+            gate.countDown();
+            Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+            List<KeyedEvent> all = new ArrayList<>();
+            batches.forEach(all::addAll);
+            // Events fired while subscriber is busy are folded to the latest value per key
+            Assert.assertEquals(batches.size(), 2);
+            Assert.assertEquals(all.size(), 12);
+            Assert.assertEquals(all.get(all.size() - 1).key, "last");
+            Assert.assertEquals(all.get(all.size() - 2).value, 999);
+        }
+    }
+
+    public static class KeyedEvent implements CoalescingEvent {
+
+        final String key;
+
+        final int value;
+
+        KeyedEvent(String key, int value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return key;
+        }
+    }
+}
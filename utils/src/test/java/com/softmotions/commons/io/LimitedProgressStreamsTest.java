@@ -0,0 +1,115 @@
+package com.softmotions.commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class LimitedProgressStreamsTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    @Test
+    public void testLimitedInputStream() throws Exception {
+        byte[] data = data(1000);
+        LimitedInputStream is = new LimitedInputStream(1000, "limit", new ByteArrayInputStream(data));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(is.transferTo(out), 1000);
+        Assert.assertEquals(out.toByteArray(), data);
+        Assert.assertEquals(is.getCount(), 1000);
+
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        LimitationIOException e = Assert.expectThrows(
+                LimitationIOException.class,
+                () -> new LimitedInputStream(999, "limit", new ByteArrayInputStream(data)).transferTo(out2));
+        Assert.assertEquals(e.getLimit(), 999);
+        Assert.assertEquals(out2.size(), 0);
+
+        LimitedInputStream is2 = new LimitedInputStream(10, "limit", new ByteArrayInputStream(data));
+        Assert.assertEquals(is2.read(new byte[10]), 10);
+        Assert.expectThrows(LimitationIOException.class, () -> is2.read(new byte[100]));
+    }
+
+    @Test
+    public void testProgressInputStream() throws Exception {
+        byte[] data = data(100_000);
+        List<Long> events = new ArrayList<>();
+        ProgressInputStream is = new ProgressInputStream(new ByteArrayInputStream(data),
+                                                         (n, t) -> events.add(n),
+                                                         data.length, 30_000, 0);
+        byte[] buf = new byte[1000];
+        while (is.read(buf) != -1) {
+        }
+        Assert.assertEquals(events, List.of(30_000L, 60_000L, 90_000L, 100_000L));
+
+        events.clear();
+        is = new ProgressInputStream(new ByteArrayInputStream(data), (n, t) -> events.add(n), data.length);
+        Assert.assertEquals(is.transferTo(new ByteArrayOutputStream()), data.length);
+        Assert.assertEquals(events.get(events.size() - 1), Long.valueOf(data.length));
+        Assert.assertEquals(is.getTotalRead(), data.length);
+    }
+
+    @Test
+    public void testChannels() throws Exception {
+        byte[] data = data(300_000);
+        Path src = Files.createTempFile("lps-", null);
+        Path dst = Files.createTempFile("lps-", null);
+        try {
+            Files.write(src, data);
+            List<Long> events = new ArrayList<>();
+            try (FileChannel in = FileChannel.open(src);
+                 FileChannel out = FileChannel.open(dst, StandardOpenOption.WRITE)) {
+                ProgressReadableByteChannel ch = new ProgressReadableByteChannel(
+                        new LimitedReadableByteChannel(data.length, "limit", in),
+                        (n, t) -> events.add(n), data.length, 0, 0);
+                Assert.assertEquals(ch.transferTo(out), data.length);
+                Assert.assertEquals(in.position(), data.length);
+            }
+            Assert.assertEquals(Files.readAllBytes(dst), data);
+            Assert.assertEquals(events.get(events.size() - 1), Long.valueOf(data.length));
+
+            // Direct FileChannel transfer is checked before sending data
+            try (FileChannel in = FileChannel.open(src)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                Assert.expectThrows(LimitationIOException.class,
+                                    () -> new LimitedReadableByteChannel(1000, "limit", in)
+                                            .transferTo(Channels.newChannel(out)));
+                Assert.assertEquals(out.size(), 0);
+            }
+        } finally {
+            Files.deleteIfExists(src);
+            Files.deleteIfExists(dst);
+        }
+
+        LimitedReadableByteChannel ch = new LimitedReadableByteChannel(
+                100, "limit", Channels.newChannel(new ByteArrayInputStream(data)));
+        ByteBuffer buf = ByteBuffer.allocate(60);
+        Assert.assertEquals(ch.read(buf), 60);
+        buf.clear();
+        // Data beyond the limit is detected by reading one extra byte
+        Assert.expectThrows(LimitationIOException.class, () -> ch.read(buf));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LimitedReadableByteChannel ch2 = new LimitedReadableByteChannel(
+                data.length, "limit", Channels.newChannel(new ByteArrayInputStream(data)));
+        Assert.assertEquals(ch2.transferTo(Channels.newChannel(out)), data.length);
+        Assert.assertEquals(out.toByteArray(), data);
+    }
+}
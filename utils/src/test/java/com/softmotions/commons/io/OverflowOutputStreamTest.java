@@ -0,0 +1,124 @@
+package com.softmotions.commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class OverflowOutputStreamTest {
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] drain(OverflowOutputStream ovf) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(ovf.transferTo(Channels.newChannel(out)), ovf.getLength());
+        byte[] viaChannel = out.toByteArray();
+        out.reset();
+        try (InputStream is = ovf.toInputStream()) {
+            is.transferTo(out);
+        }
+        Assert.assertEquals(out.toByteArray(), viaChannel);
+        return viaChannel;
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(16, 4);
+        byte[] data = data(50);
+        try (OverflowOutputStream ovf = new OverflowOutputStream(64, pool)) {
+            ovf.write(data, 0, 20);
+            ovf.write(data[20]);
+            ovf.write(data, 21, 29);
+            Assert.assertTrue(ovf.isInMemory());
+            Assert.assertEquals(ovf.getLength(), 50);
+            Assert.assertEquals(pool.getInUseCount(), 4);
+            Assert.assertEquals(drain(ovf), data);
+        }
+        Assert.assertEquals(pool.getInUseCount(), 0);
+        Assert.assertEquals(pool.getPooledCount(), 4);
+
+        // Reuse after close, chunks are taken from the pool
+        try (OverflowOutputStream ovf = new OverflowOutputStream(64, pool)) {
+            ovf.write(data);
+            Assert.assertEquals(drain(ovf), data);
+        }
+        Assert.assertEquals(pool.getAllocateCount(), 4);
+        Assert.assertEquals(pool.getAcquireCount(), 8);
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(1024, 16);
+        byte[] data = data(100_000);
+        OverflowOutputStream ovf = new OverflowOutputStream(4096, pool);
+        for (int i = 0; i < data.length; i += 777) {
+            ovf.write(data, i, Math.min(777, data.length - i));
+        }
+        Assert.assertFalse(ovf.isInMemory());
+        Assert.assertEquals(ovf.getLength(), data.length);
+        // Only the buffer of data not yet written to the spill file
+        Assert.assertEquals(pool.getInUseCount(), 1);
+        Assert.assertEquals(drain(ovf), data);
+
+        InputStream is = ovf.toInputStream();
+        Assert.assertTrue(is.markSupported());
+        Assert.assertEquals(is.skip(20_000), 20_000);
+        is.mark(0);
+        int b = is.read();
+        Assert.assertEquals(is.skip(50_000), 50_000);
+        is.reset();
+        Assert.assertEquals(is.read(), b);
+        Assert.assertEquals(is.available(), data.length - 20_001);
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        for (int n; (n = is.read(buf)) != -1; ) {
+            rest.write(buf, 0, n);
+        }
+        Assert.assertEquals(rest.toByteArray(), Arrays.copyOfRange(data, 20_001, data.length));
+
+        ovf.write(data, 0, 10);
+        Assert.assertEquals(ovf.getLength(), data.length + 10);
+        Assert.assertEquals(ovf.toInputStream().skip(Long.MAX_VALUE), data.length + 10);
+
+        ovf.close();
+        Assert.assertEquals(ovf.getLength(), 0);
+        Assert.assertTrue(ovf.isInMemory());
+        Assert.assertEquals(pool.getInUseCount(), 0);
+    }
+
+    @Test
+    public void testReadFrom() throws Exception {
+        byte[] data = data(200_000);
+        try (OverflowOutputStream ovf = new OverflowOutputStream(10_000)) {
+            Assert.assertEquals(ovf.readFrom(Channels.newChannel(new ByteArrayInputStream(data))), data.length);
+            Assert.assertFalse(ovf.isInMemory());
+            Assert.assertEquals(drain(ovf), data);
+        }
+    }
+
+    @Test
+    public void testLegacyOverflowStream() throws Exception {
+        byte[] data = data(1000);
+        ByteArrayOutputStream overflow = new ByteArrayOutputStream();
+        try (OverflowOutputStream ovf = new OverflowOutputStream(100, () -> overflow)) {
+            ovf.write(data, 0, 100);
+            Assert.assertTrue(ovf.isInMemory());
+            ovf.write(data, 100, 900);
+            Assert.assertFalse(ovf.isInMemory());
+            Assert.expectThrows(IllegalStateException.class, ovf::toInputStream);
+        }
+        Assert.assertEquals(overflow.toByteArray(), data);
+    }
+}
@@ -1,9 +1,13 @@
 package com.softmotions.commons.io.scanner;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -185,4 +189,116 @@ public class ScannerTest {
         FileUtils.deleteDirectory(tdir.toFile());
     }
 
+
+    @Test
+    public void testParallelScanner() throws Exception {
+        final Path baseDir = Paths.get(System.getProperty("project.basedir"), "src/test/test-data");
+        DirectoryScannerFactory dsf = new DirectoryScannerFactory(baseDir).setParallel(true);
+        dsf.include("com/softmotions/**/dat?/*/{b,c}.txt");
+        dsf.include("**/ef*.txt");
+        dsf.include("com/**/a/*.cp?");
+        dsf.exclude("**/data/b/b.txt");
+        try (DirectoryScanner scanner = dsf.createScanner()) {
+            DirectoryScannerCollectVisitor cv = new DirectoryScannerCollectVisitor();
+            scanner.scan(cv);
+            Assert.assertEquals(0, cv.getErrors().size());
+            Set<String> matched = new HashSet<>();
+            for (Pair<Path, BasicFileAttributes> p : cv.getMatches()) {
+                matched.add(p.getOne().toString().replaceAll("\\\\", "/"));
+            }
+            Assert.assertEquals(matched, new HashSet<>(Arrays.asList(
+                    "com/softmotions/commons/io/scanner/data/b/c.txt",
+                    "com/softmotions/commons/io/scanner/data/b/c/efg.txt",
+                    "com/softmotions/commons/io/scanner/data/a/b.cpp")));
+        }
+    }
+
+    @Test
+    public void testScanDelta() throws Exception {
+        Path tdir = Files.createTempDirectory("ScannerTest-");
+        Path snapshot = Files.createTempDirectory("ScannerTestSnapshot-").resolve("scan.snapshot");
+        try {
+            Files.createDirectories(tdir.resolve("a/b"));
+            Files.createDirectories(tdir.resolve("a/.git"));
+            Files.write(tdir.resolve("a/b/one.txt"), "one".getBytes());
+            Files.write(tdir.resolve("a/b/two.txt"), "two".getBytes());
+            Files.write(tdir.resolve("a/.git/config"), "git".getBytes());
+
+            DirectoryScannerFactory dsf = new DirectoryScannerFactory(tdir)
+                    .setParallel(true)
+                    .setSnapshotFile(snapshot);
+            DeltaCollector dc = new DeltaCollector();
+            try (DirectoryScanner scanner = dsf.createScanner()) {
+                scanner.scanDelta(dc);
+                Assert.assertEquals(dc.created, Set.of("a/b/one.txt", "a/b/two.txt"));
+                Assert.assertTrue(dc.modified.isEmpty());
+                Assert.assertTrue(dc.deleted.isEmpty());
+
+                dc.clear();
+                scanner.scanDelta(dc);
+                Assert.assertTrue(dc.created.isEmpty() && dc.modified.isEmpty() && dc.deleted.isEmpty());
+            }
+
+            Files.write(tdir.resolve("a/b/one.txt"), "one more".getBytes());
+            Files.delete(tdir.resolve("a/b/two.txt"));
+            Files.write(tdir.resolve("a/three.txt"), "three".getBytes());
+
+            // New scanner picks up the previous state from the snapshot file
+            dc.clear();
+            try (DirectoryScanner scanner = dsf.createScanner()) {
+                scanner.scanDelta(dc);
+            }
+            Assert.assertEquals(dc.created, Set.of("a/three.txt"));
+            Assert.assertEquals(dc.modified, Set.of("a/b/one.txt"));
+            Assert.assertEquals(dc.deleted, Set.of("a/b/two.txt"));
+
+            // Truncated snapshot file causes full scan
+            byte[] data = Files.readAllBytes(snapshot);
+            Files.write(snapshot, Arrays.copyOf(data, data.length - 3));
+            dc.clear();
+            try (DirectoryScanner scanner = dsf.createScanner()) {
+                scanner.scanDelta(dc);
+            }
+            Assert.assertEquals(dc.created, Set.of("a/b/one.txt", "a/three.txt"));
+            Assert.assertTrue(dc.modified.isEmpty() && dc.deleted.isEmpty());
+        } finally {
+            FileUtils.deleteDirectory(tdir.toFile());
+            FileUtils.deleteDirectory(snapshot.getParent().toFile());
+        }
+    }
+
+    private static final class DeltaCollector implements DirectoryScannerDeltaVisitor {
+
+        final Set<String> created = new HashSet<>();
+
+        final Set<String> modified = new HashSet<>();
+
+        final Set<String> deleted = new HashSet<>();
+
+        @Override
+        public void created(Path file, BasicFileAttributes attrs) {
+            created.add(file.toString().replace('\\', '/'));
+        }
+
+        @Override
+        public void modified(Path file, BasicFileAttributes attrs) {
+            modified.add(file.toString().replace('\\', '/'));
+        }
+
+        @Override
+        public void deleted(Path file) {
+            deleted.add(file.toString().replace('\\', '/'));
+        }
+
+        @Override
+        public void error(Path file, IOException exc) throws IOException {
+            throw exc;
+        }
+
+        void clear() {
+            created.clear();
+            modified.clear();
+            deleted.clear();
+        }
+    }
 }
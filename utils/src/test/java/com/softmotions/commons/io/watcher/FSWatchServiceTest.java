@@ -0,0 +1,107 @@
+package com.softmotions.commons.io.watcher;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class FSWatchServiceTest {
+
+    private Path tdir;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        tdir = Files.createTempDirectory("FSWatchServiceTest-").toRealPath();
+        Files.createDirectories(tdir.resolve("a/b/c"));
+        Files.write(tdir.resolve("a/b/c/one.txt"), "one".getBytes());
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(tdir.toFile());
+    }
+
+    @Test
+    public void testSharedService() throws Exception {
+        try (FSWatchService service = new FSWatchService("test")) {
+            FSWatcherCollectEventHandler h1 = new FSWatcherCollectEventHandler(tdir);
+            FSWatcherCollectEventHandler h2 = new FSWatcherCollectEventHandler(tdir);
+            try (FSWatcher w1 = new FSWatcher("w1", service, h1, 0);
+                 FSWatcher w2 = new FSWatcher("w2", service, h2, 0)) {
+                w1.register(tdir, true);
+                w2.register(tdir.resolve("a"), false);
+                Assert.assertEquals(service.getWatchers(), 2);
+                // Subdirectories are registered by the service thread
+                await(() -> service.getWatchedKeys() == 4 && service.getPendingRegistrations() == 0);
+                await(() -> h1.getRegistered().contains(tdir.relativize(tdir.resolve("a/b/c/one.txt"))));
+
+                Files.write(tdir.resolve("a/two.txt"), "two".getBytes());
+                Files.write(tdir.resolve("a/b/c/three.txt"), "three".getBytes());
+                await(() -> h1.getCreated().contains(tdir.relativize(tdir.resolve("a/b/c/three.txt")))
+                            && h2.getCreated().contains(tdir.relativize(tdir.resolve("a/two.txt"))));
+                Assert.assertFalse(h2.getCreated().contains(tdir.relativize(tdir.resolve("a/b/c/three.txt"))));
+                Assert.assertTrue(service.getEventCount() >= 2);
+
+                w1.unregister(tdir);
+                Assert.assertEquals(service.getWatchedKeys(), 1);
+            }
+            Assert.assertEquals(service.getWatchedKeys(), 0);
+            Assert.assertEquals(service.getWatchers(), 0);
+        }
+    }
+
+    @Test
+    public void testPolling() throws Exception {
+        try (FSWatchService service = new FSWatchService("test", FileSystems.getDefault(), true)
+                .setPollingIntervalMillis(50)) {
+            FSWatcherCollectEventHandler h = new FSWatcherCollectEventHandler(tdir);
+            try (FSWatcher w = new FSWatcher("w", service, h, 0)) {
+                w.register(tdir, true);
+                await(() -> service.getPolledDirectories() == 4);
+                Assert.assertEquals(service.getWatchedKeys(), 0);
+
+                Path one = tdir.resolve("a/b/c/one.txt");
+                Files.createDirectories(tdir.resolve("a/d"));
+                Files.write(one, "one more".getBytes());
+                await(() -> h.getModified().contains(tdir.relativize(one)) && service.getPolledDirectories() == 5);
+                Files.write(tdir.resolve("a/d/new.txt"), "new".getBytes());
+                Files.delete(one);
+                await(() -> h.getCreated().contains(tdir.relativize(tdir.resolve("a/d/new.txt")))
+                            && h.getDeleted().contains(tdir.relativize(one)));
+            }
+        }
+    }
+
+    @Test
+    public void testWatchedKeysLimit() throws Exception {
+        try (FSWatchService service = new FSWatchService("test")
+                .setMaxWatchedKeys(2)
+                .setPollingIntervalMillis(50)) {
+            FSWatcherCollectEventHandler h = new FSWatcherCollectEventHandler(tdir);
+            try (FSWatcher w = new FSWatcher("w", service, h, 0)) {
+                w.register(tdir, true);
+                await(() -> service.getWatchedKeys() + service.getPolledDirectories() == 4);
+                Assert.assertEquals(service.getWatchedKeys(), 2);
+                Files.write(tdir.resolve("a/b/c/two.txt"), "two".getBytes());
+                await(() -> h.getCreated().contains(tdir.relativize(tdir.resolve("a/b/c/two.txt"))));
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier cond) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!cond.getAsBoolean()) {
+            Assert.assertTrue(System.currentTimeMillis() < deadline, "Condition timeout");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.softmotions.commons.io.watcher;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.softmotions.commons.io.watcher.FSWatcherChange.Kind;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class FSWatcherDebouncerTest {
+
+    private final Path dir = Paths.get("/tmp/debouncer").toAbsolutePath();
+
+    @Test
+    public void testFolding() throws Exception {
+        List<List<FSWatcherChange>> batches = new CopyOnWriteArrayList<>();
+        try (FSWatcherDebouncer d = new FSWatcherDebouncer(batches::add, 10_000, 1024, 1024)) {
+            d.handleCreateEvent(new FSWatcherCreateEvent(null, dir, Paths.get("a")));
+            d.handleModifyEvent(new FSWatcherModifyEvent(null, dir, Paths.get("a")));
+            d.handleModifyEvent(new FSWatcherModifyEvent(null, dir, Paths.get("a")));
+            d.handleCreateEvent(new FSWatcherCreateEvent(null, dir, Paths.get("b")));
+            d.handleDeleteEvent(new FSWatcherDeleteEvent(null, dir, Paths.get("b")));
+            d.handleDeleteEvent(new FSWatcherDeleteEvent(null, dir, Paths.get("c")));
+            d.handleCreateEvent(new FSWatcherCreateEvent(null, dir, Paths.get("c")));
+            d.handleModifyEvent(new FSWatcherModifyEvent(null, dir, Paths.get("d")));
+            d.handleDeleteEvent(new FSWatcherDeleteEvent(null, dir, Paths.get("d")));
+            Assert.assertEquals(d.getPendingCount(), 3);
+            Assert.assertTrue(batches.isEmpty());
+            d.flush();
+            Assert.assertEquals(d.getPendingCount(), 0);
+        }
+        Assert.assertEquals(batches.size(), 1);
+        List<FSWatcherChange> expected = new ArrayList<>();
+        expected.add(new FSWatcherChange(null, Kind.CREATE, dir.resolve("a")));
+        expected.add(new FSWatcherChange(null, Kind.MODIFY, dir.resolve("c")));
+        expected.add(new FSWatcherChange(null, Kind.DELETE, dir.resolve("d")));
+        Assert.assertEquals(batches.get(0), expected);
+    }
+
+    @Test
+    public void testWindowAndBatches() throws Exception {
+        List<List<FSWatcherChange>> batches = new CopyOnWriteArrayList<>();
+        try (FSWatcherDebouncer d = new FSWatcherDebouncer(batches::add, 50, 4, 8)) {
+            for (int i = 0; i < 20; ++i) {
+                d.handleModifyEvent(new FSWatcherModifyEvent(null, dir, Paths.get("f" + i)));
+                Assert.assertTrue(d.getPendingCount() <= 8);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (d.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+        }
+        int total = 0;
+        for (List<FSWatcherChange> b : batches) {
+            Assert.assertTrue(b.size() <= 4);
+            total += b.size();
+        }
+        Assert.assertEquals(total, 20);
+    }
+
+    @Test
+    public void testOverflowRescan() throws Exception {
+        Path tdir = Files.createTempDirectory("FSWatcherDebouncerTest-").toAbsolutePath();
+        try {
+            Files.write(tdir.resolve("one.txt"), "one".getBytes());
+            Files.createDirectory(tdir.resolve("sub"));
+            List<FSWatcherChange> changes = new CopyOnWriteArrayList<>();
+            try (FSWatcherDebouncer d = new FSWatcherDebouncer(changes::addAll)) {
+                d.handleOverflowEvent(new FSWatcherOverflowEvent(null, tdir));
+                d.flush();
+            }
+            Assert.assertEquals(changes.size(), 2);
+            Assert.assertTrue(changes.contains(new FSWatcherChange(null, Kind.RESCAN, tdir)));
+            Assert.assertTrue(changes.contains(new FSWatcherChange(null, Kind.MODIFY, tdir.resolve("one.txt"))));
+        } finally {
+            FileUtils.deleteDirectory(tdir.toFile());
+        }
+    }
+}
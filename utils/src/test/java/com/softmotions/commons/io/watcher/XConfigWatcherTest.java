@@ -0,0 +1,68 @@
+package com.softmotions.commons.io.watcher;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.softmotions.xconfig.XConfig;
+import com.softmotions.xconfig.XConfigBuilder;
+import com.softmotions.xconfig.XConfigChange;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class XConfigWatcherTest {
+
+    @Test
+    public void testReload() throws Exception {
+        Path dir = Files.createTempDirectory("XConfigWatcherTest-").toAbsolutePath();
+        try {
+            Path master = dir.resolve("master.xml");
+            Path slave = dir.resolve("slave.xml");
+            write(master, "<configuration><pool size=\"4\"/><cache><ttl>60</ttl></cache></configuration>");
+            write(slave, "<configuration><pool size=\"8\"/></configuration>");
+            XConfig mcfg = new XConfigBuilder(master.toFile()).create();
+            XConfig cfg = new XConfigBuilder(slave.toFile()).master(mcfg).create();
+            List<XConfigChange> changes = new CopyOnWriteArrayList<>();
+            cfg.addListener("cache", changes::add);
+            try (XConfigWatcher w = new XConfigWatcher(cfg, 50)) {
+                write(master, "<configuration><pool size=\"4\"/><cache><ttl>120</ttl></cache></configuration>");
+                waitFor(w, () -> !changes.isEmpty());
+                Assert.assertEquals(cfg.numberPattern("cache.ttl", null), Long.valueOf(120));
+                Assert.assertEquals(changes.get(0).getPaths(), List.of("cache.ttl"));
+
+                // Broken file keeps the loaded config
+                write(slave, "<configuration><pool size=");
+                w.flush();
+                Thread.sleep(200);
+                w.flush();
+                Assert.assertEquals(cfg.numberPattern("pool[@size]", null), Long.valueOf(8));
+
+                write(slave, "<configuration><pool size=\"16\"/></configuration>");
+                waitFor(w, () -> Long.valueOf(16).equals(cfg.numberPattern("pool[@size]", null)));
+                Assert.assertEquals(changes.size(), 1);
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir.toFile());
+        }
+    }
+
+    private static void write(Path file, String data) throws Exception {
+        Files.write(file, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void waitFor(XConfigWatcher w, java.util.function.BooleanSupplier cond) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!cond.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            w.flush();
+        }
+        Assert.assertTrue(cond.getAsBoolean());
+    }
+}
@@ -0,0 +1,160 @@
+package com.softmotions.commons.json;
+
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class JsonUtilsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public static class Bean {
+
+        private String name;
+
+        private int count;
+
+        private Long size;
+
+        private Date created;
+
+        private Map<String, Object> attrs;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public Long getSize() {
+            return size;
+        }
+
+        public void setSize(Long size) {
+            this.size = size;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date created) {
+            this.created = created;
+        }
+
+        public Map<String, Object> getAttrs() {
+            return attrs;
+        }
+
+        public void setAttrs(Map<String, Object> attrs) {
+            this.attrs = attrs;
+        }
+    }
+
+    public static class OverloadedBean extends Bean {
+
+        public void setSize(String size) {
+            setSize(Long.valueOf(size.trim()));
+        }
+    }
+
+    private String write(Object bean, String... keys) throws Exception {
+        StringWriter sw = new StringWriter();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(sw)) {
+            JsonUtils.writeObject(bean, gen, keys);
+        }
+        return sw.toString();
+    }
+
+    @Test
+    public void testWriteObject() throws Exception {
+        Bean bean = new Bean();
+        bean.setName("foo");
+        bean.setCount(3);
+        bean.setCreated(new Date(1000L));
+        Map<String, Object> attrs = new LinkedHashMap<>();
+        attrs.put("a", 1.5);
+        attrs.put("b", null);
+        bean.setAttrs(attrs);
+
+        // Same output as the tree based population
+        ObjectNode expected = JsonUtils.populateObjectNode(bean, mapper.createObjectNode(),
+                                                           "name", "count", "size", "created", "attrs");
+        Assert.assertEquals(mapper.readTree(write(bean, "name", "count", "size", "created", "attrs")),
+                            mapper.readTree(mapper.writeValueAsString(expected)));
+        Assert.assertEquals(write(bean, "name"), "{\"name\":\"foo\"}");
+        Assert.assertEquals(write(attrs), "{\"a\":1.5,\"b\":null}");
+        Assert.assertEquals(write(null), "{}");
+    }
+
+    @Test
+    public void testPopulateByParser() throws Exception {
+        String json = "{\"name\":\"foo\",\"count\":\"7\",\"size\":12,\"created\":1000," +
+                      "\"attrs\":{\"x\":[1,2.5,true,null,{\"y\":\"z\"}]},\"unknown\":{\"deep\":[1,2]}}";
+
+        Map<?, ?> m;
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            m = JsonUtils.populateMapByJsonParser(p, new HashMap<>());
+        }
+        Assert.assertEquals(m, JsonUtils.populateMapByJsonNode((ObjectNode) mapper.readTree(json), new HashMap<>()));
+
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            m = JsonUtils.populateMapByJsonParser(p, new HashMap<>(), "name", "size");
+        }
+        Assert.assertEquals(m, Map.of("name", "foo", "size", 12));
+
+        Bean bean;
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            bean = JsonUtils.populateBeanByJsonParser(p, new Bean());
+        }
+        Assert.assertEquals(bean.getName(), "foo");
+        Assert.assertEquals(bean.getCount(), 7);
+        Assert.assertEquals(bean.getSize(), Long.valueOf(12));
+        Assert.assertEquals(bean.getCreated(), new Date(1000L));
+        Assert.assertEquals(((List<?>) bean.getAttrs().get("x")).size(), 5);
+
+        try (JsonParser p = mapper.getFactory().createParser(json)) {
+            bean = JsonUtils.populateBeanByJsonParser(p, new Bean(), "count");
+        }
+        Assert.assertNull(bean.getName());
+        Assert.assertEquals(bean.getCount(), 7);
+
+        // Overloaded setter is chosen by the JSON value type
+        try (JsonParser p = mapper.getFactory().createParser("{\"size\":12}")) {
+            bean = JsonUtils.populateBeanByJsonParser(p, new OverloadedBean());
+        }
+        Assert.assertEquals(bean.getSize(), Long.valueOf(12));
+        try (JsonParser p = mapper.getFactory().createParser("{\"size\":\" 13 \"}")) {
+            bean = JsonUtils.populateBeanByJsonParser(p, new OverloadedBean());
+        }
+        Assert.assertEquals(bean.getSize(), Long.valueOf(13));
+        try (JsonParser p = mapper.getFactory().createParser("{\"size\":true}")) {
+            bean = JsonUtils.populateBeanByJsonParser(p, new OverloadedBean());
+        }
+        Assert.assertNull(bean.getSize());
+    }
+}
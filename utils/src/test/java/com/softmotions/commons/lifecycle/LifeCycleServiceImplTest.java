@@ -0,0 +1,156 @@
+package com.softmotions.commons.lifecycle;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.inject.Injector;
+import com.softmotions.commons.lifecycle.LifeCycleTimeline.Status;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class LifeCycleServiceImplTest {
+
+    static final Queue<String> events = new ConcurrentLinkedQueue<>();
+
+    static final CountDownLatch searchStarted = new CountDownLatch(1);
+
+    @Test
+    public void testStartStop() throws Exception {
+        events.clear();
+        // Beans are registered directly since Guice class generation
+        // is not permitted on recent JDKs without --add-opens
+        LifeCycleModule lc = new LifeCycleModule();
+        for (Object bean : new Object[]{new Web(), new Index(), new Search(), new Cache(), new Db()}) {
+            lc.registerLifecycle(bean);
+        }
+        Injector injector = (Injector) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Injector.class},
+                (proxy, method, args) -> "getBindings".equals(method.getName()) ? Collections.emptyMap() : null);
+        LifeCycleServiceImpl lcs = new LifeCycleServiceImpl(injector, lc);
+        lcs.start();
+        Assert.assertTrue(lcs.isStarted());
+
+        List<String> started = Arrays.asList(events.toArray(new String[0]));
+        Assert.assertEquals(started.get(0), "db");
+        Assert.assertEquals(started.get(started.size() - 1), "web");
+        Assert.assertTrue(started.indexOf("search") < started.indexOf("index"));
+
+        LifeCycleTimeline timeline = lcs.getStartTimeline();
+        Assert.assertEquals(timeline.getEntries().size(), 5);
+        for (LifeCycleTimeline.Entry e : timeline.getEntries()) {
+            Assert.assertEquals(e.getStatus(), Status.OK, e.getName());
+        }
+        List<LifeCycleTimeline.Entry> cpath = timeline.getCriticalPath();
+        Assert.assertTrue(cpath.get(0).getName().endsWith("$Db.start"));
+        Assert.assertTrue(cpath.get(cpath.size() - 1).getName().endsWith("$Web.start"));
+        Assert.assertTrue(timeline.report().contains("Index.start"));
+
+        events.clear();
+        lcs.setDisposeTimeout(TimeUnit.SECONDS.toMillis(30));
+        long t0 = System.nanoTime();
+        lcs.stop();
+        Assert.assertTrue(System.nanoTime() - t0 < TimeUnit.SECONDS.toNanos(10));
+        Assert.assertFalse(lcs.isStarted());
+        List<String> stopped = Arrays.asList(events.toArray(new String[0]));
+        Assert.assertTrue(stopped.indexOf("index") < stopped.indexOf("search"), stopped.toString());
+        Assert.assertEquals(stopped.get(stopped.size() - 1), "db");
+        boolean timeout = false;
+        for (LifeCycleTimeline.Entry e : lcs.getStopTimeline().getEntries()) {
+            if (e.getName().endsWith("$Cache.dispose")) {
+                Assert.assertEquals(e.getStatus(), Status.TIMEOUT);
+                timeout = true;
+            }
+        }
+        Assert.assertTrue(timeout);
+    }
+
+    @Test
+    public void testInvalidDependencies() throws Exception {
+        Method m = Db.class.getMethod("start");
+        Object a = new Db();
+        Object b = new Web();
+        Assert.expectThrows(IllegalStateException.class, () -> LifeCycleServiceImpl.planStart(Arrays.asList(
+                new LCSlot(m, a, 10, true, new Class<?>[]{Web.class}, 0),
+                new LCSlot(m, b, 10, true, new Class<?>[]{Db.class}, 0))));
+        Assert.expectThrows(IllegalStateException.class, () -> LifeCycleServiceImpl.planStart(Arrays.asList(
+                new LCSlot(m, a, 10, true, new Class<?>[]{Web.class}, 0),
+                new LCSlot(m, b, 20, true, new Class<?>[0], 0))));
+    }
+
+    public static class Db {
+
+        @Start(order = 10)
+        public void start() throws Exception {
+            Thread.sleep(50);
+            events.add("db");
+        }
+
+        @Dispose(order = 10)
+        public void dispose() {
+            events.add("db");
+        }
+    }
+
+    public static class Cache {
+
+        @Start(order = 20, parallel = true)
+        public void start() throws Exception {
+            // Runs concurrently with Search.start
+            Assert.assertTrue(searchStarted.await(10, TimeUnit.SECONDS));
+            events.add("cache");
+        }
+
+        @Dispose(timeout = 100)
+        public void dispose() throws Exception {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(20));
+        }
+    }
+
+    public static class Search {
+
+        @Start(order = 20, parallel = true)
+        public void start() throws Exception {
+            searchStarted.countDown();
+            Thread.sleep(50);
+            events.add("search");
+        }
+
+        @Dispose
+        public void dispose() throws Exception {
+            events.add("search");
+        }
+    }
+
+    public static class Index {
+
+        @Start(order = 20, parallel = true, dependsOn = Search.class)
+        public void start() {
+            events.add("index");
+        }
+
+        @Dispose
+        public void dispose() throws Exception {
+            Thread.sleep(50);
+            events.add("index");
+        }
+    }
+
+    public static class Web {
+
+        @Start(order = 30)
+        public void start() {
+            events.add("web");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.softmotions.commons.perf;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class ProfilerTest {
+
+    @BeforeMethod
+    public void setUp() {
+        Profiler.clear();
+        Profiler.setEnabled(true);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        Profiler.setEnabled(false);
+        Profiler.clear();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testNesting() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; ++j) {
+                    try (Profiler.Scope outer = Profiler.start("outer")) {
+                        try (Profiler.Scope inner = Profiler.start("inner")) {
+                            Thread.yield();
+                        }
+                        // Left open, closed with the outer scope
+                        Profiler.start("leaked");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        ProfilerNode outer = Profiler.getRoot().getChild("outer");
+        Assert.assertNotNull(outer);
+        Assert.assertEquals(outer.getPath(), "outer");
+        Assert.assertEquals(outer.getHistogram().snapshot().getCount(), 400);
+        ProfilerNode inner = outer.getChild("inner");
+        Assert.assertEquals(inner.getPath(), "outer/inner");
+        Assert.assertEquals(inner.getHistogram().snapshot().getCount(), 400);
+        Assert.assertEquals(outer.getChild("leaked").getHistogram().snapshot().getCount(), 400);
+        Assert.assertTrue(outer.getHistogram().getSum() >= inner.getHistogram().getSum());
+        Assert.assertEquals(Profiler.getRoot().getChildren().size(), 1);
+        Assert.assertTrue(Profiler.report().contains("  inner"));
+
+        Profiler.reset();
+        Assert.assertEquals(outer.getHistogram().snapshot().getCount(), 0);
+    }
+
+    @Test
+    public void testDisabled() {
+        Profiler.setEnabled(false);
+        try (Profiler.Scope s = Profiler.start("disabled")) {
+            Assert.assertSame(s, Profiler.NOOP);
+        }
+        Assert.assertNull(Profiler.getRoot().getChild("disabled"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testTimePointLogger() {
+        TimePointLogger tpl = TimePointLogger.getInstance();
+        tpl.addTimePoint("a");
+        tpl.addTimePoint("b");
+        Assert.assertEquals(tpl.flushPoint().getName(), "b");
+        Assert.assertEquals(tpl.flushPoint().getName(), "a");
+        Assert.assertTrue(tpl.printFlushedPoints(true).contains("TimePoint: 'a' completed"));
+        Assert.assertEquals(Profiler.getRoot().getChild("a").getChild("b").getHistogram().snapshot().getCount(), 1);
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testScheduledReport() throws Exception {
+        try (Profiler.Scope s = Profiler.start("scheduled")) {
+            Thread.yield();
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        long[] count = new long[1];
+        ScheduledFuture<?> f = Profiler.scheduleReport(10, TimeUnit.MILLISECONDS, true, root -> {
+            count[0] = root.getChild("scheduled").getHistogram().snapshot().getCount();
+            latch.countDown();
+        });
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        f.cancel(false);
+        Assert.assertEquals(count[0], 1);
+    }
+}
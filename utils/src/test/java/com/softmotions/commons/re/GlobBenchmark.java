@@ -0,0 +1,117 @@
+package com.softmotions.commons.re;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Matching 100K paths against a set of globs:
+ * regexps produced by {@link RegexpHelper#convertGlobToRegEx(String)}
+ * versus {@link Glob}s and a single {@link GlobSet}.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.re.GlobBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlobBenchmark {
+
+    private static final List<String> GLOBS = Arrays.asList(
+            "*.java", "*.kt", "*Test*.java", "*.{xml,xsd,xsl}", "**/target/**",
+            "src/**/resources/**/*.properties", "*-[0-9]*.jar", "{README,LICENSE}*",
+            "*.min.js", "**/node_modules/**");
+
+    private String[] paths;
+
+    private Pattern[] patterns;
+
+    private Glob[] globs;
+
+    private GlobSet globSet;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("deprecation")
+    public void setup() {
+        String[] dirs = {"src", "main", "java", "com", "softmotions", "resources", "target", "test", "node_modules", "lib"};
+        String[] files = {"Foo.java", "FooTest.java", "Bar.kt", "pom.xml", "app.min.js", "app.js", "README.md",
+                          "lib-1.2.jar", "messages.properties", "schema.xsd"};
+        Random rnd = new Random(42);
+        paths = new String[100_000];
+        for (int i = 0; i < paths.length; ++i) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0, d = 1 + rnd.nextInt(8); j < d; ++j) {
+                sb.append(dirs[rnd.nextInt(dirs.length)]).append('/');
+            }
+            paths[i] = sb.append(files[rnd.nextInt(files.length)]).toString();
+        }
+        patterns = new Pattern[GLOBS.size()];
+        globs = new Glob[GLOBS.size()];
+        for (int i = 0; i < globs.length; ++i) {
+            patterns[i] = Pattern.compile(RegexpHelper.convertGlobToRegEx(GLOBS.get(i)));
+            globs[i] = Globs.get(GLOBS.get(i));
+        }
+        globSet = new GlobSet(GLOBS);
+    }
+
+    @Benchmark
+    public int regexp() {
+        int res = 0;
+        for (String p : paths) {
+            for (Pattern pt : patterns) {
+                if (pt.matcher(p).matches()) {
+                    ++res;
+                }
+            }
+        }
+        return res;
+    }
+
+    @Benchmark
+    public int glob() {
+        int res = 0;
+        for (String p : paths) {
+            for (Glob g : globs) {
+                if (g.matches(p)) {
+                    ++res;
+                }
+            }
+        }
+        return res;
+    }
+
+    @Benchmark
+    public int globSet() {
+        int res = 0;
+        for (String p : paths) {
+            res += globSet.match(p).cardinality();
+        }
+        return res;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(GlobBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
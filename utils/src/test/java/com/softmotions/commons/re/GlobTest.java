@@ -0,0 +1,68 @@
+package com.softmotions.commons.re;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class GlobTest {
+
+    private static final String[] GLOBS = {
+            "", "*", "?", "*.java", "Foo*.java", "*Test*", "a*b*c", "a?c", "**/*.xml",
+            "{foo,bar}.txt", "*.{java,kt}", "{a{b,c},d}*", "[a-c]x", "file[0-9_].log",
+            "hello world", "a\\*b", "a\\?b", "x\\{y\\}", "a,b", "}", "1+1=2", "^(x)$.@%|",
+            "src/**/main/*.java", "  trim  "
+    };
+
+    private static final String[] INPUTS = {
+            "", "a", "abc", "Foo.java", "FooBar.java", "Bar.java", "MyTestCase", "aXbYc", "ab", "axc",
+            "a/b/c.xml", "foo.txt", "bar.txt", "baz.txt", "X.kt", "abzz", "aczz", "dq", "bx", "cx", "dx",
+            "file7.log", "file_.log", "filex.log", "hello world", "helloworld", "hello \t world",
+            "a*b", "aXb", "a?b", "x{y}", "a,b", "}", "1+1=2", "^(x)$.@%|", "src/x/y/main/A.java",
+            "trim", "?", "*"
+    };
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testRegexpCompatibility() {
+        for (String g : GLOBS) {
+            Pattern re = Pattern.compile(RegexpHelper.convertGlobToRegEx(g));
+            Glob glob = Globs.get(g);
+            for (String in : INPUTS) {
+                Assert.assertEquals(glob.matches(in), re.matcher(in).matches(),
+                                    "glob: '" + g + "' input: '" + in + "'");
+            }
+        }
+    }
+
+    @Test
+    public void testGlob() {
+        Assert.assertTrue(Globs.get("Foo.java").isLiteral());
+        Assert.assertFalse(Globs.get("*.java").isLiteral());
+        Assert.assertSame(Globs.get("*.java"), Globs.get("*.java"));
+        Assert.assertTrue(Globs.matches("[a-z]*[!]", "abc!"));
+        Assert.assertFalse(Globs.matches("[a-z]", "A"));
+        Assert.assertTrue(Globs.matches("\\[x]", "[x]"));
+        Assert.assertTrue(Globs.matches("*привет?", "мир привет!"));
+        Assert.expectThrows(IllegalArgumentException.class, () -> Globs.get("{a,b"));
+        Assert.expectThrows(IllegalArgumentException.class, () -> Globs.get("[a-"));
+        Assert.expectThrows(IllegalArgumentException.class, () -> new Glob("[z-a]"));
+    }
+
+    @Test
+    public void testGlobSet() {
+        GlobSet set = new GlobSet(Arrays.asList("*.java", "Foo.java", "{Foo,Bar}*", "*.kt", "Foo.java"));
+        Assert.assertEquals(set.size(), 5);
+        BitSet m = set.match("Foo.java");
+        Assert.assertEquals(m.toString(), "{0, 1, 2, 4}");
+        Assert.assertEquals(set.matching("Bar.kt"), Arrays.asList("{Foo,Bar}*", "*.kt"));
+        Assert.assertTrue(set.matchesAny("Baz.java"));
+        Assert.assertFalse(set.matchesAny("Baz.txt"));
+        Assert.assertTrue(set.match("Baz.txt").isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+package com.softmotions.commons.string;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Escaping throughput of {@link EscapeHelper} over payloads of 1KB - 10MB:
+ * string results versus streaming into a {@link Writer} and a {@link ByteBuffer},
+ * and the former per character {@link StringWriter} based JSON escaping.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.commons.string.EscapeHelperBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class EscapeHelperBenchmark {
+
+    @Param({"1024", "65536", "1048576", "10485760"})
+    public int size;
+
+    /**
+     * Mostly text with markup, quotes and line breaks.
+     */
+    private String payload;
+
+    /**
+     * Text without characters to escape.
+     */
+    private String plain;
+
+    private ByteBuffer buffer;
+
+    private final Writer sink = new NullWriter();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] words = {"lorem", "ipsum", "dolor", "sit", "amet", "данные", "<b>", "\"quoted\"", "a/b", "&", "\n"};
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder(size + 16);
+        StringBuilder psb = new StringBuilder(size + 16);
+        while (sb.length() < size) {
+            sb.append(words[rnd.nextInt(words.length)]).append(' ');
+            psb.append(words[rnd.nextInt(6)]).append(' ');
+        }
+        payload = sb.substring(0, size);
+        plain = psb.substring(0, size);
+        buffer = ByteBuffer.allocateDirect(size * 8);
+    }
+
+    @Benchmark
+    public String jsonLegacy() {
+        return legacyEscapeJSON(payload);
+    }
+
+    @Benchmark
+    public String jsonString() {
+        return EscapeHelper.escapeJSON(payload);
+    }
+
+    @Benchmark
+    public String jsonPlain() {
+        return EscapeHelper.escapeJSON(plain);
+    }
+
+    @Benchmark
+    public Writer jsonWriter() throws IOException {
+        EscapeHelper.escapeJSON(payload, sink);
+        return sink;
+    }
+
+    @Benchmark
+    public ByteBuffer jsonByteBuffer() {
+        buffer.clear();
+        EscapeHelper.escapeJSON(payload, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public String xmlString() {
+        return EscapeHelper.escapeXML(payload);
+    }
+
+    @Benchmark
+    public Writer xmlWriter() throws IOException {
+        EscapeHelper.escapeXML(payload, sink);
+        return sink;
+    }
+
+    @Benchmark
+    public String nativeToAscii() {
+        return EscapeHelper.nativeToAscii(payload);
+    }
+
+    static String legacyEscapeJSON(String input) {
+        StringWriter sw = new StringWriter(input.length());
+        for (int i = 0, length = input.length(); i < length; i++) {
+            char c = input.charAt(i);
+            switch (c) {
+                case '"':
+                    sw.write("\\\"");
+                    break;
+                case '\\':
+                    sw.write("\\\\");
+                    break;
+                case '\b':
+                    sw.write("\\b");
+                    break;
+                case '\f':
+                    sw.write("\\f");
+                    break;
+                case '\n':
+                    sw.write("\\n");
+                    break;
+                case '\r':
+                    sw.write("\\r");
+                    break;
+                case '\t':
+                    sw.write("\\t");
+                    break;
+                case '/':
+                    sw.write("\\/");
+                    break;
+                default:
+                    if (c <= '\u001F' || (c >= '\u007F' && c <= '\u009F') || (c >= '\u2000' && c <= '\u20FF')) {
+                        String ss = Integer.toHexString(c);
+                        sw.write("\\u");
+                        for (int k = 0; k < 4 - ss.length(); k++) {
+                            sw.write('0');
+                        }
+                        sw.write(ss.toUpperCase());
+                    } else {
+                        sw.write(c);
+                    }
+            }
+        }
+        return sw.toString();
+    }
+
+    private static final class NullWriter extends Writer {
+
+        private long count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(EscapeHelperBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.softmotions.commons.string;
+
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Adamansky Anton (adamansky@gmail.com)
+ */
+public class EscapeHelperTest {
+
+    @Test
+    public void testJSON() throws Exception {
+        String plain = "Hello world, привет мир";
+        Assert.assertSame(EscapeHelper.escapeJSON(plain), plain);
+        Assert.assertEquals(EscapeHelper.escapeJSON(null), "null");
+        Assert.assertEquals(EscapeHelper.escapeJSON("a\"b\\c/d\n\t\u0001\u007f\u2028e"),
+                            "a\\\"b\\\\c\\/d\\n\\t\\u0001\\u007F\\u2028e");
+
+        StringWriter sw = new StringWriter();
+        EscapeHelper.escapeJSON("<\"мир\">", sw);
+        Assert.assertEquals(sw.toString(), "<\\\"мир\\\">");
+
+        StringBuilder sb = new StringBuilder("[");
+        EscapeHelper.escapeJSON(new StringBuilder("x\ny"), sb);
+        Assert.assertEquals(sb.toString(), "[x\\ny");
+
+        ByteBuffer bb = ByteBuffer.allocate(64);
+        EscapeHelper.escapeJSON("\"мир\" 😀", bb);
+        bb.flip();
+        Assert.assertEquals(StandardCharsets.UTF_8.decode(bb).toString(), "\\\"мир\\\" 😀");
+
+        Assert.expectThrows(BufferOverflowException.class,
+                            () -> EscapeHelper.escapeJSON("0123456789", ByteBuffer.allocate(4)));
+    }
+
+    @Test
+    public void testXML() throws Exception {
+        String plain = "no special chars";
+        Assert.assertSame(EscapeHelper.escapeXML(plain), plain);
+        Assert.assertNull(EscapeHelper.escapeXML(null));
+        Assert.assertEquals(EscapeHelper.escapeXML("<a href=\"x\">'&'</a>"),
+                            "&lt;a href=&quot;x&quot;&gt;&apos;&amp;&apos;&lt;/a&gt;");
+        StringWriter sw = new StringWriter();
+        EscapeHelper.escapeXML("a<b", sw);
+        Assert.assertEquals(sw.toString(), "a&lt;b");
+    }
+
+    @Test
+    public void testUnicode() throws Exception {
+        String plain = "ascii ~";
+        Assert.assertSame(EscapeHelper.nativeToAscii(plain), plain);
+        Assert.assertEquals(EscapeHelper.nativeToAscii("ä b\u007f"), "\\u00e4 b\\u007f");
+        Assert.assertEquals(EscapeHelper.asciiToNative(EscapeHelper.nativeToAscii("привет")), "привет");
+        Assert.assertEquals(EscapeHelper.toUnicodeEscape("aЯ"), "\\u0061\\u042f");
+
+        StringBuilder sb = new StringBuilder();
+        EscapeHelper.toUnicodeEscape("aЯ", sb);
+        Assert.assertEquals(sb.toString(), "\\u0061\\u042f");
+
+        sb.setLength(0);
+        EscapeHelper.escapeVelocity("a.b.c", sb);
+        Assert.assertEquals(sb.toString(), "a_b_c");
+        Assert.assertEquals(EscapeHelper.escapeVelocity("a.b"), "a_b");
+    }
+}
@@ -68,6 +68,29 @@ public class BeanUtils {
         return null;
     }
 
+    /**
+     * Finds a getter method ({@code getNnnn} or {@code isNnnn}) of the property.
+     * Resolved method can be reused by {@link #invokeGetter(Object, Method)}
+     * for many beans of the same class.
+     *
+     * @param clazz        The class to find the getter in.
+     * @param propertyName The name of the property.
+     * @return The getter method.
+     * @throws RuntimeException If no matching getter method is defined.
+     */
+    public static Method getGetterMethod(Class clazz, String propertyName) {
+        String suffix = Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+        try {
+            try {
+                return clazz.getMethod("get" + suffix, GETTER_ARG_TYPES);
+            } catch (NoSuchMethodException ignored) {
+                return clazz.getMethod("is" + suffix, GETTER_ARG_TYPES);
+            }
+        } catch (NoSuchMethodException ex) {
+            throw new RuntimeException("Property '" + propertyName + "' is undefined for given bean from class " + clazz.getName() + ".");
+        }
+    }
+
     /**
      * Gets a property from the given bean.
      *
@@ -3,6 +3,7 @@ package com.softmotions.web.security;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
+import java.lang.reflect.Method;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.MessageDigest;
@@ -262,26 +263,39 @@ public class XMLWSUserDatabase implements WSUserDatabase {
         if (orderProperty != null) { //sort users
             try {
                 final Collator coll = Collator.getInstance();
-                final Class pclazz = BeanUtils.getPropertyType(WSUser.class, orderProperty, false);
-                final boolean comparable = Comparable.class.isAssignableFrom(pclazz);
-                Arrays.sort(uarr, (u1, u2) -> {
-                    int res = 0;
+                // Getter is resolved once and property values are
+                // extracted once per user instead of once per comparison
+                final Method getter = BeanUtils.getGetterMethod(WSUser.class, orderProperty);
+                final boolean comparable = Comparable.class.isAssignableFrom(getter.getReturnType());
+                final Object[] keys = new Object[uarr.length];
+                final boolean[] failed = new boolean[uarr.length];
+                final Integer[] order = new Integer[uarr.length];
+                for (int j = 0; j < uarr.length; ++j) {
+                    order[j] = j;
                     try {
-                        Object v1 = BeanUtils.getProperty(u1, orderProperty);
-                        Object v2 = BeanUtils.getProperty(u2, orderProperty);
-                        if (comparable) {
-                            res = Helpers.compare((Comparable) v1, (Comparable) v2);
-                        } else {
-                            res = coll.compare(String.valueOf(v1), String.valueOf(v2));
-                        }
+                        Object v = BeanUtils.invokeGetter(uarr[j], getter);
+                        keys[j] = comparable ? v : coll.getCollationKey(String.valueOf(v));
                     } catch (Exception e) {
+                        // Users with failed keys are placed last
                         log.error("", e);
+                        failed[j] = true;
+                    }
+                }
+                Arrays.sort(order, (i1, i2) -> {
+                    if (failed[i1] || failed[i2]) {
+                        return Boolean.compare(failed[i1], failed[i2]);
                     }
+                    int res = Helpers.compare((Comparable) keys[i1], (Comparable) keys[i2]);
                     if (desc) {
                         res *= -1;
                     }
                     return res;
                 });
+                WSUser[] sorted = new WSUser[uarr.length];
+                for (int j = 0; j < order.length; ++j) {
+                    sorted[j] = uarr[order[j]];
+                }
+                System.arraycopy(sorted, 0, uarr, 0, sorted.length);
             } catch (Exception e) {
                 log.error("", e);
                 throw new RuntimeException(e);
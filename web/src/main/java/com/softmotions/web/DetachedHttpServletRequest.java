@@ -3,9 +3,7 @@ package com.softmotions.web;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.security.Principal;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -33,15 +31,18 @@ import javax.servlet.http.Part;
 import org.apache.commons.collections4.EnumerationUtils;
 import org.apache.commons.collections4.iterators.IteratorEnumeration;
 
+import com.softmotions.commons.date.DateFormatter;
+import com.softmotions.commons.date.DateFormatters;
+
 /**
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 public class DetachedHttpServletRequest implements HttpServletRequest {
 
-    private static final SimpleDateFormat[] formatsTemplate = {
-            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US),
-            new SimpleDateFormat("EEEEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US),
-            new SimpleDateFormat("EEE MMMM d HH:mm:ss yyyy", Locale.US)
+    private static final DateFormatter[] formatsTemplate = {
+            DateFormatters.get("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US, ZoneOffset.UTC),
+            DateFormatters.get("EEEEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US, ZoneOffset.UTC),
+            DateFormatters.get("EEE MMMM d HH:mm:ss yyyy", Locale.US, ZoneOffset.UTC)
     };
 
     private final HttpServletRequest req;
@@ -295,14 +296,10 @@ public class DetachedHttpServletRequest implements HttpServletRequest {
     }
 
     @Nullable
-    private static Long internalParseDate(String value, DateFormat[] formats) {
+    private static Long internalParseDate(String value, DateFormatter[] formats) {
         Date date = null;
         for (int i = 0; (date == null) && (i < formats.length); i++) {
-            try {
-                date = formats[i].parse(value);
-            } catch (ParseException ignored) {
-                // Ignore
-            }
+            date = formats[i].parseOrNull(value);
         }
         if (date == null) {
             return null;
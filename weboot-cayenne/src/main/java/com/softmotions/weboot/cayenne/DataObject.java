@@ -1,9 +1,9 @@
 package com.softmotions.weboot.cayenne;
 
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import javax.annotation.Nullable;
@@ -16,6 +16,9 @@ import org.apache.cayenne.PersistentObject;
 import org.apache.commons.beanutils.BeanUtilsBean;
 import org.apache.commons.beanutils.PropertyUtilsBean;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.softmotions.commons.json.JsonUtils;
 
@@ -78,13 +81,15 @@ public abstract class DataObject extends CayenneDataObject {
 
     /**
      * Merge current object with specified sources object.
-     * Source object can be either of POJO bean, Map or ObjectNode
+     * Source object can be either of POJO bean, Map, ObjectNode
+     * or JsonParser positioned before or at the object start
      */
     public void mergeAllPlain(Object src) throws Exception {
         if (src instanceof ObjectNode) {
-            src = JsonUtils.populateMapByJsonNode((ObjectNode) src, new HashMap<>());
-        }
-        if (src instanceof Map) {
+            copyNotNullJson(this, (ObjectNode) src, true, false);
+        } else if (src instanceof JsonParser) {
+            copyNotNullJson(this, (JsonParser) src, true, false);
+        } else if (src instanceof Map) {
             //noinspection unchecked
             copyNotNullMap(this, (Map<String, Object>) src, true, false);
         } else {
@@ -94,13 +99,15 @@ public abstract class DataObject extends CayenneDataObject {
 
     /**
      * Merge current object with specified sources object.
-     * Source object can be either of POJO bean, Map or ObjectNode
+     * Source object can be either of POJO bean, Map, ObjectNode
+     * or JsonParser positioned before or at the object start
      */
     public void mergeNotNullPlain(Object src) throws Exception {
         if (src instanceof ObjectNode) {
-            src = JsonUtils.populateMapByJsonNode((ObjectNode) src, new HashMap<>());
-        }
-        if (src instanceof Map) {
+            copyNotNullJson(this, (ObjectNode) src, false, false);
+        } else if (src instanceof JsonParser) {
+            copyNotNullJson(this, (JsonParser) src, false, false);
+        } else if (src instanceof Map) {
             copyNotNullMap(this, (Map<String, Object>) src, false, false);
         } else {
             copyNotNullProperties(this, src, false, false);
@@ -182,47 +189,91 @@ public abstract class DataObject extends CayenneDataObject {
         }
     }
 
-    @SuppressWarnings("OverlyNestedMethod")
     private void copyNotNullMap(Object dest, Map<String, Object> orig, boolean allowNulls, boolean allowRelations) throws Exception {
         if (orig == null) {
             return;
         }
         PropertyUtilsBean propertyUtils = BeanUtilsBean.getInstance().getPropertyUtils();
         for (Map.Entry<String, Object> entry : orig.entrySet()) {
-            String name = entry.getKey();
-            PropertyDescriptor destDescriptor = propertyUtils.getPropertyDescriptor(dest, name);
-            Class<?> destType = destDescriptor != null ? destDescriptor.getPropertyType() : null;
+            copyNotNullValue(propertyUtils, dest, entry.getKey(), entry.getValue(), allowNulls, allowRelations);
+        }
+    }
+
+    /**
+     * Copies fields of JSON object to the dest properties
+     * converting values one by one, no intermediate map is built.
+     */
+    private void copyNotNullJson(Object dest, ObjectNode orig, boolean allowNulls, boolean allowRelations) throws Exception {
+        PropertyUtilsBean propertyUtils = BeanUtilsBean.getInstance().getPropertyUtils();
+        Iterator<Map.Entry<String, JsonNode>> fields = orig.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> f = fields.next();
+            if (propertyUtils.isWriteable(dest, f.getKey())) {
+                copyNotNullValue(propertyUtils, dest, f.getKey(), JsonUtils.nodeAsObject(f.getValue()),
+                                 allowNulls, allowRelations);
+            }
+        }
+    }
+
+    /**
+     * Reads JSON object from the parser straight into the dest properties,
+     * values of fields not writable in dest are skipped without parsing into objects.
+     */
+    private void copyNotNullJson(Object dest, JsonParser orig, boolean allowNulls, boolean allowRelations) throws Exception {
+        PropertyUtilsBean propertyUtils = BeanUtilsBean.getInstance().getPropertyUtils();
+        JsonToken t = orig.currentToken();
+        if (t == null) {
+            t = orig.nextToken();
+        }
+        if (t != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object start, found: " + t);
+        }
+        while (orig.nextToken() == JsonToken.FIELD_NAME) {
+            String name = orig.getCurrentName();
+            orig.nextToken();
             if (propertyUtils.isWriteable(dest, name)) {
-                try {
-                    Method writeMethod = propertyUtils.getWriteMethod(destDescriptor);
-                    Class dc = writeMethod.getDeclaringClass();
-                    //noinspection ObjectEquality
-                    if (dc == CayenneDataObject.class || dc == PersistentObject.class || dc == DataObject.class) {
-                        continue;
+                copyNotNullValue(propertyUtils, dest, name, JsonUtils.parserValueAsObject(orig),
+                                 allowNulls, allowRelations);
+            } else {
+                orig.skipChildren();
+            }
+        }
+    }
+
+    @SuppressWarnings("OverlyNestedMethod")
+    private void copyNotNullValue(PropertyUtilsBean propertyUtils, Object dest, String name, Object value,
+                                  boolean allowNulls, boolean allowRelations) throws Exception {
+        PropertyDescriptor destDescriptor = propertyUtils.getPropertyDescriptor(dest, name);
+        Class<?> destType = destDescriptor != null ? destDescriptor.getPropertyType() : null;
+        if (propertyUtils.isWriteable(dest, name)) {
+            try {
+                Method writeMethod = propertyUtils.getWriteMethod(destDescriptor);
+                Class dc = writeMethod.getDeclaringClass();
+                //noinspection ObjectEquality
+                if (dc == CayenneDataObject.class || dc == PersistentObject.class || dc == DataObject.class) {
+                    return;
+                }
+                if (!allowNulls && value == null) {
+                    return;
+                }
+                if (!allowRelations) {
+                    if ((destType != null && Persistent.class.isAssignableFrom(destType)) || value instanceof Persistent) {
+                        return;
                     }
-                    Object value = orig.get(name);
-                    if (!allowNulls && value == null) {
-                        continue;
+                    if (value instanceof Map
+                        && !((Map) value).isEmpty()
+                        && (((Map) value).values().iterator().next()) instanceof Persistent) {
+                        return;
                     }
-                    if (!allowRelations) {
-                        if ((destType != null && Persistent.class.isAssignableFrom(destType)) || value instanceof Persistent) {
-                            continue;
-                        }
-                        if (value instanceof Map
-                            && !((Map) value).isEmpty()
-                            && (((Map) value).values().iterator().next()) instanceof Persistent) {
-                            continue;
-                        }
-                        if (value instanceof Iterable) {
-                            Iterator iter = ((Iterable) value).iterator();
-                            if (iter.hasNext() && iter.next() instanceof Persistent) {
-                                continue;
-                            }
+                    if (value instanceof Iterable) {
+                        Iterator iter = ((Iterable) value).iterator();
+                        if (iter.hasNext() && iter.next() instanceof Persistent) {
+                            return;
                         }
                     }
-                    propertyUtils.setSimpleProperty(dest, name, preprocessPropValue(value, destType));
-                } catch (NoSuchMethodException ignored) {
                 }
+                propertyUtils.setSimpleProperty(dest, name, preprocessPropValue(value, destType));
+            } catch (NoSuchMethodException ignored) {
             }
         }
     }
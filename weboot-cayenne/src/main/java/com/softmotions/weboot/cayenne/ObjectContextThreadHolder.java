@@ -6,16 +6,18 @@ import javax.annotation.Nullable;
 import org.apache.cayenne.ObjectContext;
 import org.apache.cayenne.configuration.server.ServerRuntime;
 
-import com.softmotions.commons.ThreadUtils;
+import com.softmotions.commons.ContextCarrier;
 
 /**
  * Placeholder for the current thread object context.
+ * Context is not thread safe, so it is confined to the thread
+ * and never passed by {@link ContextCarrier#wrap(Runnable)}.
  *
  * @author Adamansky Anton (adamansky@gmail.com)
  */
 public class ObjectContextThreadHolder {
 
-    static final ThreadLocal<ObjectContext> contextStore = ThreadUtils.createInheritableThreadLocal();
+    static final ContextCarrier<ObjectContext> contextStore = ContextCarrier.create("ObjectContext");
 
     private ObjectContextThreadHolder() {
     }
@@ -1,6 +1,5 @@
 package com.softmotions.weboot.i18n;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -25,7 +24,7 @@ import org.w3c.dom.Node;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import com.softmotions.commons.ThreadUtils;
+import com.softmotions.commons.date.DateFormatters;
 import com.softmotions.xconfig.XConfig;
 
 /**
@@ -43,8 +42,6 @@ public class I18n {
 
     public static final String REQ_LOCALE_PARAM_NAME = "lang";
 
-    private static final ThreadLocal<Map<String, SimpleDateFormat>> LOCAL_SDF_CACHE = ThreadUtils.createThreadLocal();
-
     @SuppressWarnings("StaticCollection")
     private static final Map<String, String[]> LNG_MONTHS = new HashMap<>();
 
@@ -244,18 +241,7 @@ public class I18n {
         if ("LMMMMM".equals(format)) {
             return getLocaleAwareMonth(date, locale);
         }
-        Map<String, SimpleDateFormat> formatters = LOCAL_SDF_CACHE.get();
-        if (formatters == null) {
-            formatters = new HashMap<>();
-            LOCAL_SDF_CACHE.set(formatters);
-        }
-        String key = locale.toString() + '@' + format;
-        SimpleDateFormat sdf = formatters.get(key);
-        if (sdf == null) {
-            sdf = new SimpleDateFormat(format, locale);
-            formatters.put(key, sdf);
-        }
-        return sdf.format(date);
+        return DateFormatters.get(format, locale).format(date);
     }
 
     private String getLocaleAwareMonth(Date date,
@@ -3,6 +3,7 @@ package com.softmotions.weboot.mail;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -19,6 +20,7 @@ import com.google.inject.name.Names;
 import com.softmotions.commons.ServicesConfiguration;
 import com.softmotions.commons.cont.Stack;
 import com.softmotions.xconfig.XConfig;
+import com.softmotions.xconfig.XConfigBinding;
 
 /**
  * Mail service module.
@@ -61,10 +63,35 @@ public class MailModule extends AbstractModule {
     }
 
 
+    /**
+     * Settings of {@code <mail>} config read on every mail.
+     */
+    interface MailSettings {
+
+        default int keepHistory() {
+            return 0;
+        }
+
+        default boolean emulation() {
+            return false;
+        }
+
+        @Nullable
+        String from();
+
+        @Nullable
+        String subject();
+
+        @Nullable
+        String bcc();
+    }
+
     static class MailServiceImpl implements MailService {
 
         final XConfig xcfg;
 
+        final XConfigBinding<MailSettings> settings;
+
         final Executor executor;
 
         final Provider<SmtpServer> smtpServer;
@@ -78,12 +105,14 @@ public class MailModule extends AbstractModule {
                         Executor executor,
                         @Named("com.softmotions.weboot.mail.MailModule") Provider<SmtpServer> smtpServer) {
             this.xcfg = xcfg;
+            // Invalid optional settings fall back to defaults
+            this.settings = XConfigBinding.bind(xcfg, MailSettings.class, "mail", true);
             this.executor = executor;
             this.smtpServer = smtpServer;
         }
 
         void onMailSent(Mail mail) {
-            int numHist = xcfg.numberPattern("mail.keep-history", 0L).intValue();
+            int numHist = settings.get().keepHistory();
             if (numHist < 1) {
                 return;
             }
@@ -102,18 +131,19 @@ public class MailModule extends AbstractModule {
 
         @Override
         public Mail newMail() {
+            MailSettings ms = settings.get();
             Mail mail = new Mail(this,
                                  smtpServer, executor,
-                                 xcfg.boolPattern("mail.emulation", false));
-            String val = xcfg.text("mail.from");
+                                 ms.emulation());
+            String val = ms.from();
             if (!StringUtils.isBlank(val)) {
                 mail.from(val);
             }
-            val = xcfg.text("mail.subject");
+            val = ms.subject();
             if (!StringUtils.isBlank(val)) {
                 mail.subject(val);
             }
-            val = xcfg.text("mail.bcc");
+            val = ms.bcc();
             if (!StringUtils.isBlank(val)) {
                 mail.bcc(val);
             }
@@ -22,7 +22,7 @@ import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.softmotions.commons.ThreadUtils;
+import com.softmotions.commons.ContextCarrier;
 
 /**
  * @author Adamansky Anton (adamansky@gmail.com)
@@ -32,8 +32,9 @@ public class MBSqlSessionManager implements SqlSessionFactory, SqlSession {
     private static final Logger log = LoggerFactory.getLogger(MBSqlSessionManager.class);
     private final SqlSessionFactory sqlSessionFactory;
     private final SqlSession sqlSessionProxy;
-    private final ThreadLocal<SqlSession> localSqlSession = ThreadUtils.createThreadLocal();
-    private final ThreadLocal<ArrayList<MBSqlSessionListener>> localSqlSessionListeners = ThreadUtils.createThreadLocal();
+    private final ContextCarrier<SqlSession> localSqlSession = ContextCarrier.create("MBSqlSession");
+    private final ContextCarrier<ArrayList<MBSqlSessionListener>> localSqlSessionListeners =
+            ContextCarrier.create("MBSqlSessionListeners");
 
 
     public static MBSqlSessionManager newInstance(SqlSessionFactory sqlSessionFactory) {
@@ -10,6 +10,7 @@ import com.amazonaws.services.s3.AmazonS3ClientBuilder
 import com.amazonaws.services.s3.model.Bucket
 import com.amazonaws.services.s3.model.ObjectMetadata
 import com.amazonaws.services.s3.model.S3ObjectInputStream
+import com.softmotions.commons.io.ByteBufferPool
 import com.softmotions.commons.io.OverflowOutputStream
 import com.softmotions.kotlin.loggerFor
 import com.softmotions.kotlin.toFile
@@ -24,6 +25,8 @@ constructor(cfg: XConfig) : WBRepository {
 
     companion object {
         private val log = loggerFor()
+
+        private const val MIN_CHUNK_SIZE = 1024L
     }
 
     private var s3: AmazonS3
@@ -32,6 +35,14 @@ constructor(cfg: XConfig) : WBRepository {
 
     private val bufferSize = cfg.number("persist-buffer-size", 1024)!!
 
+    /**
+     * Chunks are sized to the buffer, so small buffers
+     * do not take the default pool chunks.
+     */
+    private val bufferPool = ByteBufferPool(
+            bufferSize.coerceIn(MIN_CHUNK_SIZE, ByteBufferPool.DEFAULT_CHUNK_SIZE.toLong()).toInt(),
+            ByteBufferPool.DEFAULT_MAX_POOLED)
+
 
     /**
      * Init s3 client and bucket
@@ -92,24 +103,11 @@ constructor(cfg: XConfig) : WBRepository {
      * "s3://<bucket name>/<object key>"
      */
     override fun persist(input: InputStream, fname: String): URI {
-        var tmpFile: File? = null
-        try {
-            OverflowOutputStream(bufferSize) {
-                tmpFile = File.createTempFile("ovf-", null)
-                tmpFile!!.outputStream()
-            }.use { ovf ->
-                input.transferTo(ovf)
-                ovf.flush()
-                if (tmpFile != null) {
-                    s3.putObject(bucket.name, fname, tmpFile)
-                } else {
-                    s3.putObject(bucket.name, fname, ovf.memoryToByteArrayInputStream(), ObjectMetadata().apply {
-                        contentLength = ovf.length
-                    })
-                }
-            }
-        } finally {
-            tmpFile?.delete()
+        OverflowOutputStream(bufferSize, bufferPool).use { ovf ->
+            input.transferTo(ovf)
+            s3.putObject(bucket.name, fname, ovf.toInputStream(), ObjectMetadata().apply {
+                contentLength = ovf.length
+            })
         }
         return URI("s3", bucket.name, "/$fname", null)
     }
@@ -22,7 +22,7 @@ import org.apache.velocity.runtime.log.LogChute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.softmotions.commons.ThreadUtils;
+import com.softmotions.commons.ContextCarrier;
 import com.softmotions.commons.cont.CollectionUtils;
 import com.softmotions.commons.lifecycle.Start;
 import com.softmotions.weboot.i18n.I18n;
@@ -43,7 +43,7 @@ public class TemplateServiceImpl implements TemplateService, LogChute {
 
     private String templatesBase;
 
-    private static final ThreadLocal<Boolean> SUPPRESS_NOTFOUND_ERROR = ThreadUtils.createThreadLocal();
+    private static final ContextCarrier<Boolean> SUPPRESS_NOTFOUND_ERROR = ContextCarrier.create("SuppressNotFoundError");
 
     @Inject
     public TemplateServiceImpl(I18n i18n, XConfig xcfg) {
@@ -108,14 +108,12 @@ public class TemplateServiceImpl implements TemplateService, LogChute {
         }
         try {
             Template template;
+            String lang = locale.getLanguage();
             try {
-                SUPPRESS_NOTFOUND_ERROR.set(Boolean.TRUE);
-                template = engine.getTemplate(getTemplateLocation(templateName, locale.getLanguage()));
+                template = SUPPRESS_NOTFOUND_ERROR.supply(Boolean.TRUE, () ->
+                        engine.getTemplate(getTemplateLocation(templateName, lang)));
             } catch (ResourceNotFoundException e) {
-                SUPPRESS_NOTFOUND_ERROR.set(Boolean.FALSE);
                 template = engine.getTemplate(getTemplateLocation(templateName, null));
-            } finally {
-                SUPPRESS_NOTFOUND_ERROR.set(Boolean.FALSE);
             }
             return new TemplateContextImpl(template);
         } catch (ResourceNotFoundException e) {
@@ -0,0 +1,16 @@
+package com.softmotions.xconfig
+
+/**
+ * Config pattern of the bound value relative to the bound subtree,
+ * eg: `keep-history` or `[@enabled]`.
+ * By default the property name in kebab case is used.
+ *
+ * @see XConfigBinding
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+@Target(AnnotationTarget.VALUE_PARAMETER,
+        AnnotationTarget.PROPERTY,
+        AnnotationTarget.FUNCTION)
+@Retention(AnnotationRetention.RUNTIME)
+@MustBeDocumented
+annotation class XCKey(val value: String)
@@ -18,10 +18,20 @@ interface XConfig {
 
     val uri: URI
 
+    /**
+     * Config document. Pattern lookups are served by a read snapshot
+     * of the document and XPath lookup results are cached,
+     * call [refresh] after modifying the document nodes directly.
+     */
     val document: Document
 
     val parent: XConfig?
 
+    /**
+     * Config consulted for the values missing in this config.
+     */
+    val master: XConfig?
+
     val node: Element
 
     val lock: ReentrantLock
@@ -126,4 +136,35 @@ interface XConfig {
     fun nodesXPath(expr: String): List<Node>
 
     fun nodesPattern(expr: String): List<Node>
+
+    /**
+     * Publishes the read snapshot and drops cached lookups
+     * of the document modified bypassing the config methods.
+     */
+    fun refresh()
+
+    /**
+     * Reparses the config source and replaces the document of the root config
+     * if the source differs from the current document. Readers are served
+     * by the previous read snapshot until the new one is published.
+     * Sub configs follow the reloaded document while the elements
+     * they are bound to exist. Unsaved modifications are discarded.
+     *
+     * Listeners of changed subtrees, including listeners of slave configs,
+     * are notified on the calling thread.
+     *
+     * @return Dotted patterns of the changed subtrees relative to the document element
+     * @see XConfigChange.paths
+     */
+    fun reload(): List<String>
+
+    /**
+     * Registers listener of the subtree changes made by [reload].
+     *
+     * @param pattern Dotted pattern of the subtree relative to this config node,
+     *                 `.` or blank pattern listens the whole config node.
+     */
+    fun addListener(pattern: String, listener: XConfigListener)
+
+    fun removeListener(listener: XConfigListener)
 }
\ No newline at end of file
@@ -0,0 +1,497 @@
+package com.softmotions.xconfig
+
+import org.apache.commons.lang3.BooleanUtils
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.reflect.*
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.net.URI
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Supplier
+import kotlin.concurrent.withLock
+import kotlin.reflect.KClass
+import kotlin.reflect.KFunction
+import kotlin.reflect.KParameter
+import kotlin.reflect.full.findAnnotation
+import kotlin.reflect.full.memberProperties
+import kotlin.reflect.full.primaryConstructor
+import kotlin.reflect.jvm.isAccessible
+import kotlin.reflect.jvm.javaGetter
+import kotlin.reflect.jvm.javaType
+
+/**
+ * Config subtree bound to an immutable object.
+ *
+ * Bound type is analyzed once by [bind], then config values
+ * are converted and stored in a new instance every time
+ * the config document is changed, [get] returns the instance
+ * for the current config state. Supported types:
+ *
+ * - Kotlin classes with primary constructor, eg: data classes.
+ *   Constructor parameters are bound, missing optional parameters
+ *   keep their default values.
+ * - Java records, record components are bound.
+ * - Interfaces, getters (`getX()`, `isX()` or `x()`) are bound
+ *   and served by a proxy from the precomputed values. Getters having
+ *   a body provide the default values of missing config values,
+ *   they are evaluated once when the instance is bound.
+ *
+ * Bound values are: strings, primitives and their wrappers, big numbers,
+ * enums, [File], [Path], [URI], nested bound types read from subtrees
+ * and lists of any of them. Config key of value is the property name in
+ * kebab case (`keepHistory` is bound to `keep-history`) or pattern
+ * given by [XCKey]. Missing value of not nullable type without default
+ * fails the binding by [XConfigException]. Lenient binding treats
+ * invalid scalar values having default or nullable type as missing.
+ *
+ * ```
+ * data class MailSettings(val keepHistory: Int = 0,
+ *                         val emulation: Boolean = false,
+ *                         val from: String?)
+ *
+ * val settings = XConfigBinding.bind<MailSettings>(xcfg, "mail")
+ * settings.get().keepHistory
+ * ```
+ *
+ * Instance is read under the config locks, so it never mixes
+ * values of the documents before and after a concurrent [XConfig.reload].
+ * If the changed config cannot be bound the error is logged
+ * and the previous instance is kept.
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+class XConfigBinding<T : Any>
+private constructor(private val cfg: XConfig,
+                    private val prefix: String,
+                    private val binder: ObjectBinder) : Supplier<T> {
+
+    companion object {
+
+        private val log = LoggerFactory.getLogger(XConfigBinding::class.java)
+
+        /**
+         * Binds config subtree to the given type.
+         *
+         * @param prefix Pattern of the bound subtree, the whole config if blank
+         * @param lenient If `true` invalid values having defaults or nullable types
+         *                are logged and treated as missing
+         * @throws IllegalArgumentException if the type cannot be bound
+         * @throws XConfigException if the config cannot be bound
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun <T : Any> bind(cfg: XConfig, type: Class<T>, prefix: String = "", lenient: Boolean = false): XConfigBinding<T> {
+            return XConfigBinding(cfg, prefix, BinderFactory(lenient).objectBinder(type))
+        }
+
+        inline fun <reified T : Any> bind(cfg: XConfig, prefix: String = "", lenient: Boolean = false): XConfigBinding<T> {
+            return bind(cfg, T::class.java, prefix, lenient)
+        }
+    }
+
+    @Volatile
+    private var state: State<T>
+
+    init {
+        state = readState()
+    }
+
+    /**
+     * Returns the instance bound to the current config state.
+     */
+    override fun get(): T {
+        val s = state
+        val v = version()
+        return if (s.version == v) s.value else refresh(v)
+    }
+
+    @Synchronized
+    private fun refresh(v: Long): T {
+        val s = state
+        if (s.version == v) {
+            return s.value
+        }
+        val ns = try {
+            readState()
+        } catch (e: Exception) {
+            log.error("Failed to bind config of type: {}", binder.type.name, e)
+            State(v, s.value)
+        }
+        state = ns
+        return ns.value
+    }
+
+    private fun version(): Long = (cfg as? XConfigBuilder.XConfigImpl)?.version() ?: 0L
+
+    /**
+     * Reads the instance and the version of the document it is read from
+     * holding the locks of the config and its masters.
+     */
+    private fun readState(): State<T> = withLocks(cfg) { State(version(), read()) }
+
+    private fun <R> withLocks(c: XConfig?, action: () -> R): R {
+        return if (c == null) action() else c.lock.withLock { withLocks(c.master, action) }
+    }
+
+    private fun read(): T {
+        val ctx = if (prefix.isBlank()) cfg else cfg.subPattern(prefix).firstOrNull()
+        @Suppress("UNCHECKED_CAST")
+        return (if (ctx != null) binder.read(ctx) else binder.missing(prefix)) as T
+    }
+
+    private class State<T>(val version: Long, val value: T)
+
+    /**
+     * Reads value from the config.
+     */
+    internal abstract class Binder {
+
+        /**
+         * @return Value or `null` if missing
+         */
+        abstract fun read(ctx: XConfig, key: String): Any?
+    }
+
+    private class ScalarBinder(val convert: (String) -> Any) : Binder() {
+
+        override fun read(ctx: XConfig, key: String): Any? {
+            val text = ctx.text(key) ?: return null
+            return try {
+                convert(text)
+            } catch (e: IllegalArgumentException) {
+                XConfigException.throwInvalidParameterValue(key, text, e)
+            }
+        }
+    }
+
+    private class ListBinder(val element: Binder) : Binder() {
+
+        override fun read(ctx: XConfig, key: String): Any? {
+            return when (element) {
+                is ScalarBinder -> ctx.listPattern(key).map { text ->
+                    try {
+                        element.convert(text)
+                    } catch (e: IllegalArgumentException) {
+                        XConfigException.throwInvalidParameterValue(key, text, e)
+                    }
+                }
+                is ObjectBinder -> ctx.subPattern(key).map { element.read(it) }
+                else -> throw IllegalStateException()
+            }
+        }
+    }
+
+    internal class Member(val name: String,
+                          val key: String,
+                          val binder: Binder,
+                          val nullable: Boolean,
+                          val optional: Boolean,
+                          val parameter: KParameter? = null,
+                          val method: Method? = null)
+
+    internal abstract class ObjectBinder(val type: Class<*>) : Binder() {
+
+        lateinit var members: List<Member>
+
+        var lenient = false
+
+        override fun read(ctx: XConfig, key: String): Any? {
+            return ctx.subPattern(key).firstOrNull()?.let(::read)
+        }
+
+        /**
+         * Reads the instance from the config subtree.
+         */
+        fun read(ctx: XConfig): Any {
+            val values = arrayOfNulls<Any>(members.size)
+            val present = BooleanArray(members.size)
+            members.forEachIndexed { i, m ->
+                val v = if (lenient && m.binder is ScalarBinder && (m.optional || m.nullable)) {
+                    try {
+                        m.binder.read(ctx, m.key)
+                    } catch (e: XConfigException) {
+                        log.warn("Invalid value of {} is ignored: {}", type.name, e.message)
+                        null
+                    }
+                } else {
+                    m.binder.read(ctx, m.key)
+                }
+                if (v == null && !m.nullable && !m.optional) {
+                    XConfigException.throwMissingParameter(ctx, m.key)
+                }
+                values[i] = v
+                present[i] = v != null
+            }
+            return create(values, present)
+        }
+
+        /**
+         * Called if the bound subtree is missing.
+         */
+        fun missing(key: String): Any {
+            if (members.any { !it.nullable && !it.optional }) {
+                XConfigException.throwMissingParameter(key)
+            }
+            return create(arrayOfNulls(members.size), BooleanArray(members.size))
+        }
+
+        abstract fun create(values: Array<Any?>, present: BooleanArray): Any
+    }
+
+    private class KotlinBinder(type: Class<*>, val ctor: KFunction<*>) : ObjectBinder(type) {
+
+        override fun create(values: Array<Any?>, present: BooleanArray): Any {
+            val args = HashMap<KParameter, Any?>(members.size * 2)
+            members.forEachIndexed { i, m ->
+                if (present[i] || !m.optional) {
+                    args[m.parameter!!] = values[i]
+                }
+            }
+            return try {
+                ctor.callBy(args)!!
+            } catch (e: InvocationTargetException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    private class RecordBinder(type: Class<*>, val ctor: Constructor<*>) : ObjectBinder(type) {
+
+        override fun create(values: Array<Any?>, present: BooleanArray): Any {
+            return try {
+                ctor.newInstance(*values)
+            } catch (e: InvocationTargetException) {
+                throw e.cause ?: e
+            }
+        }
+    }
+
+    private class InterfaceBinder(type: Class<*>) : ObjectBinder(type) {
+
+        /**
+         * Method handles of getters having a body.
+         */
+        private val defaults = ConcurrentHashMap<Method, MethodHandle>()
+
+        override fun create(values: Array<Any?>, present: BooleanArray): Any {
+            val vmap = HashMap<Method, Any?>(members.size * 2)
+            members.forEachIndexed { i, m ->
+                if (present[i] || !m.optional) {
+                    vmap[m.method!!] = values[i]
+                }
+            }
+            val handler = BoundHandler(type, vmap, defaults)
+            val proxy = Proxy.newProxyInstance(type.classLoader, arrayOf(type), handler)
+            // Default getters are evaluated once per bound instance
+            members.forEachIndexed { i, m ->
+                if (!present[i] && m.optional) {
+                    vmap[m.method!!] = handler.invokeDefault(proxy, m.method, null)
+                }
+            }
+            return proxy
+        }
+    }
+
+    private class BoundHandler(val type: Class<*>,
+                               val values: Map<Method, Any?>,
+                               val defaults: ConcurrentHashMap<Method, MethodHandle>) : InvocationHandler {
+
+        override fun invoke(proxy: Any, method: Method, args: Array<out Any?>?): Any? {
+            if (values.containsKey(method)) {
+                return values[method]
+            }
+            return when (method.name) {
+                "equals" -> proxy === args?.get(0)
+                "hashCode" -> System.identityHashCode(proxy)
+                "toString" -> values.entries.joinToString(prefix = "${type.simpleName}(", postfix = ")") {
+                    "${it.key.name}=${it.value}"
+                }
+                else -> invokeDefault(proxy, method, args)
+            }
+        }
+
+        fun invokeDefault(proxy: Any, method: Method, args: Array<out Any?>?): Any? {
+            val handle = defaults.computeIfAbsent(method, ::defaultMethodHandle)
+            return handle.bindTo(proxy).invokeWithArguments(*(args ?: emptyArray()))
+        }
+
+        /**
+         * Handle of Java default method or Kotlin interface member with body
+         * compiled into static method of `DefaultImpls` class.
+         */
+        private fun defaultMethodHandle(method: Method): MethodHandle {
+            val lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+            if (method.isDefault) {
+                return lookup.unreflectSpecial(method, type)
+            }
+            val impls = try {
+                Class.forName(type.name + "\$DefaultImpls", true, type.classLoader)
+            } catch (e: ClassNotFoundException) {
+                throw UnsupportedOperationException(method.toString())
+            }
+            val impl = try {
+                impls.getMethod(method.name, type, *method.parameterTypes)
+            } catch (e: NoSuchMethodException) {
+                throw UnsupportedOperationException(method.toString())
+            }
+            return lookup.unreflect(impl)
+        }
+    }
+
+    /**
+     * Analyzes bound types.
+     */
+    private class BinderFactory(val lenient: Boolean) {
+
+        private val objects = HashMap<Class<*>, ObjectBinder>()
+
+        fun objectBinder(type: Class<*>): ObjectBinder {
+            objects[type]?.let { return it }
+            val kclass = type.kotlin
+            val binder: ObjectBinder
+            val members = ArrayList<Member>()
+            when {
+                type.isInterface -> {
+                    binder = InterfaceBinder(type)
+                    objects[type] = binder
+                    interfaceMembers(type, kclass, members)
+                }
+                isRecord(type) -> {
+                    val comps = Class::class.java.getMethod("getRecordComponents").invoke(type) as Array<*>
+                    val ctypes = comps.map { it!!.javaClass.getMethod("getType").invoke(it) as Class<*> }
+                    val ctor = type.getDeclaredConstructor(*ctypes.toTypedArray())
+                    ctor.isAccessible = true
+                    binder = RecordBinder(type, ctor)
+                    objects[type] = binder
+                    ctor.parameters.forEachIndexed { i, p ->
+                        val name = comps[i]!!.javaClass.getMethod("getName").invoke(comps[i]) as String
+                        members += Member(name,
+                                          p.getAnnotation(XCKey::class.java)?.value ?: keyOf(name),
+                                          binderOf(p.parameterizedType, "$type.$name"),
+                                          nullable = !p.type.isPrimitive,
+                                          optional = false)
+                    }
+                }
+                isKotlin(type) && kclass.primaryConstructor != null && !kclass.isAbstract -> {
+                    val ctor = kclass.primaryConstructor!!
+                    ctor.isAccessible = true
+                    binder = KotlinBinder(type, ctor)
+                    objects[type] = binder
+                    ctor.parameters.forEach { p ->
+                        val name = p.name ?: throw IllegalArgumentException("Unnamed parameter of $type")
+                        members += Member(name,
+                                          p.findAnnotation<XCKey>()?.value ?: keyOf(name),
+                                          binderOf(p.type.javaType, "$type.$name"),
+                                          nullable = p.type.isMarkedNullable,
+                                          optional = p.isOptional,
+                                          parameter = p)
+                    }
+                }
+                else -> throw IllegalArgumentException("Type cannot be bound to config: $type")
+            }
+            binder.members = members
+            binder.lenient = lenient
+            return binder
+        }
+
+        private fun interfaceMembers(type: Class<*>, kclass: KClass<*>, members: MutableList<Member>) {
+            val props = if (isKotlin(type)) kclass.memberProperties.associateBy { it.javaGetter } else emptyMap()
+            type.methods.filter {
+                !Modifier.isStatic(it.modifiers) && it.parameterCount == 0 && it.returnType != Void.TYPE
+            }.sortedBy { it.name }.forEach { m ->
+                val prop = props[m]
+                val name = prop?.name ?: propertyName(m)
+                members += Member(name,
+                                  prop?.findAnnotation<XCKey>()?.value
+                                          ?: m.getAnnotation(XCKey::class.java)?.value
+                                          ?: keyOf(name),
+                                  binderOf(m.genericReturnType, "$type.${m.name}"),
+                                  nullable = prop?.returnType?.isMarkedNullable ?: !m.returnType.isPrimitive,
+                                  optional = m.isDefault || prop?.isAbstract == false,
+                                  method = m)
+            }
+        }
+
+        private fun binderOf(gtype: Type, where: String): Binder {
+            val type = rawType(gtype) ?: throw IllegalArgumentException("Unsupported type $gtype of $where")
+            if (type == List::class.java || type == Collection::class.java || type == Iterable::class.java) {
+                val etype = (gtype as? ParameterizedType)?.actualTypeArguments?.firstOrNull()
+                        ?: throw IllegalArgumentException("Unknown element type of $where")
+                val element = binderOf(etype, where)
+                if (element is ListBinder) {
+                    throw IllegalArgumentException("Nested lists are not supported: $where")
+                }
+                return ListBinder(element)
+            }
+            return scalarConverter(type)?.let { ScalarBinder(it) } ?: objectBinder(type)
+        }
+
+        private fun rawType(type: Type): Class<*>? = when (type) {
+            is Class<*> -> type
+            is ParameterizedType -> type.rawType as? Class<*>
+            is WildcardType -> type.upperBounds.firstOrNull()?.let(::rawType)
+            else -> null
+        }
+
+        private fun scalarConverter(type: Class<*>): ((String) -> Any)? = when (type) {
+            String::class.java, CharSequence::class.java -> { s -> s }
+            java.lang.Boolean.TYPE, java.lang.Boolean::class.java -> { s -> BooleanUtils.toBoolean(s) }
+            java.lang.Integer.TYPE, java.lang.Integer::class.java -> { s -> s.toInt() }
+            java.lang.Long.TYPE, java.lang.Long::class.java -> { s -> s.toLong() }
+            java.lang.Short.TYPE, java.lang.Short::class.java -> { s -> s.toShort() }
+            java.lang.Byte.TYPE, java.lang.Byte::class.java -> { s -> s.toByte() }
+            java.lang.Double.TYPE, java.lang.Double::class.java -> { s -> s.toDouble() }
+            java.lang.Float.TYPE, java.lang.Float::class.java -> { s -> s.toFloat() }
+            BigDecimal::class.java -> { s -> BigDecimal(s) }
+            BigInteger::class.java -> { s -> BigInteger(s) }
+            File::class.java -> { s -> File(s) }
+            Path::class.java -> { s -> Paths.get(s) }
+            URI::class.java -> { s -> URI.create(s) }
+            else -> if (type.isEnum) enumConverter(type) else null
+        }
+
+        private fun enumConverter(type: Class<*>): (String) -> Any {
+            val constants = type.enumConstants.map { it as Enum<*> }
+            return { s ->
+                constants.find { it.name == s }
+                        ?: constants.find { it.name.equals(s.replace('-', '_'), true) }
+                        ?: throw IllegalArgumentException("Unknown constant of $type: $s")
+            }
+        }
+
+        private fun isKotlin(type: Class<*>) = type.isAnnotationPresent(Metadata::class.java)
+
+        private fun isRecord(type: Class<*>): Boolean {
+            return try {
+                Class::class.java.getMethod("isRecord").invoke(type) as Boolean
+            } catch (ignored: NoSuchMethodException) {
+                false
+            }
+        }
+
+        private fun propertyName(m: Method): String {
+            val n = m.name
+            val bare = when {
+                n.length > 3 && n.startsWith("get") && n[3].isUpperCase() -> n.substring(3)
+                n.length > 2 && n.startsWith("is") && n[2].isUpperCase() &&
+                        (m.returnType == java.lang.Boolean.TYPE || m.returnType == java.lang.Boolean::class.java) -> n.substring(2)
+                else -> return n
+            }
+            return bare[0].toLowerCase() + bare.substring(1)
+        }
+
+        /**
+         * `keepHistory` to `keep-history`, `smtpURL` to `smtp-url`.
+         */
+        private fun keyOf(name: String): String {
+            return name.replace(Regex("([a-z0-9])([A-Z])"), "$1-$2")
+                    .replace(Regex("([A-Z])([A-Z][a-z])"), "$1-$2")
+                    .toLowerCase()
+        }
+    }
+}
@@ -18,8 +18,6 @@ import javax.xml.transform.Transformer
 import javax.xml.transform.TransformerFactory
 import javax.xml.transform.dom.DOMSource
 import javax.xml.transform.stream.StreamResult
-import javax.xml.xpath.XPathConstants
-import javax.xml.xpath.XPathFactory
 import kotlin.concurrent.withLock
 
 
@@ -33,6 +31,8 @@ constructor(private val mUrl: URL) {
 
         private val log = LoggerFactory.getLogger("com.softmotions.aconfig")
 
+        private val SUBSTITUTION_PATTERN = Pattern.compile("(.)?\\{(((env|sys):)?[A-Za-z_.]+)}")
+
         fun basicSubstitutor(key: String): String? = when (key) {
             "cwd" -> System.getProperty("user.dir")
             "home" -> System.getProperty("user.home")
@@ -56,6 +56,8 @@ constructor(private val mUrl: URL) {
 
     private var mMaster: XConfigImpl? = null
 
+    private var mCache: XConfigCache? = null
+
     fun substitutor(substitutor: Function1<String, String?>): XConfigBuilder {
         mSubstitutor = substitutor
         return this
@@ -74,6 +76,17 @@ constructor(private val mUrl: URL) {
         return master(mcb.create())
     }
 
+    /**
+     * Enables the cache of the parsed and substituted config document
+     * in the given directory. Config is loaded from the cache without
+     * parsing if neither the config source nor the substituted values
+     * are changed since the cache entry was stored.
+     */
+    fun cache(dir: File): XConfigBuilder {
+        mCache = XConfigCache(dir)
+        return this
+    }
+
     fun autosave(autosave: Boolean): XConfigBuilder {
         if (autosave) allowWrites()
         mAutosave = autosave
@@ -125,9 +138,12 @@ constructor(private val mUrl: URL) {
 
         private var noSave = false
 
-        private val master = mMaster
+        override val master: XConfigImpl? = mMaster
 
-        private val xpf = XPathFactory.newInstance()
+        /**
+         * Substitutor of the root config kept for [reload].
+         */
+        private val substitutor = mSubstitutor
 
         private var file: File? = if (mUrl.protocol == "file") File(mUrl.toURI()) else null
 
@@ -135,39 +151,146 @@ constructor(private val mUrl: URL) {
 
         override val uri: URI = mUrl.toURI()
 
-        override val document: Document = parent?.document ?: DocumentBuilderFactory.newInstance().let { f ->
-            f.isNamespaceAware = true
-            val substitutor = mSubstitutor
-            if (substitutor != null) {
-                mUrl.openStream().buffered().use {
-                    val data = preprocessConfigData(it.readAllBytes().toString(Charsets.UTF_8), substitutor)
-                    if (log.isDebugEnabled) {
-                        log.debug("Preprocessed config:\n{}", data)
-                    }
-                    f.newDocumentBuilder().parse(InputSource(StringReader(data)))
-                }
-            } else {
-                mUrl.openStream().buffered().use {
-                    f.newDocumentBuilder().parse(InputSource(it))
-                }
-            }
+        /**
+         * Read snapshot shared by the root config and all its sub configs.
+         */
+        private val snapshots: SnapshotRef = parent?.snapshots ?: SnapshotRef().also {
+            it.document = parseDocument()
         }
 
+        override val document: Document
+            get() = snapshots.document!!
+
         override val slaves = CopyOnWriteArrayList<XConfig>()
 
+        private val exprCache: XConfigExprCache = parent?.exprCache ?: XConfigExprCache()
+
+        private val listeners: MutableList<ListenerRef> = parent?.listeners ?: CopyOnWriteArrayList()
+
+        /**
+         * Position of the sub config element in the document used
+         * to find it in the reloaded document, `null` for the root config
+         * or if element does not belong to the config document.
+         */
+        private val contextSteps: List<Step>? =
+                contextNode?.takeIf { it.ownerDocument === document }?.let { stepsOf(it) }
+
+        @Volatile
+        private var contextElement: Element? = contextNode
+
         override fun throwMissing(name: String): Nothing {
             XConfigException.throwMissingParameter(this, name)
         }
 
-        override val node: Element = contextNode ?: document.documentElement
+        override val node: Element
+            get() {
+                val doc = document
+                val el = contextElement ?: return doc.documentElement
+                if (el.ownerDocument === doc || contextSteps == null) {
+                    return el
+                }
+                val located = locate(doc, contextSteps)
+                if (located == null) {
+                    log.warn("Config element '{}' is removed or its siblings are changed in the reloaded '{}', " +
+                             "sub config is empty until the element is restored",
+                             contextSteps.joinToString("/") { "${it.name}[${it.index}]" }, mUrl)
+                    // Empty detached element of the new document, located again on the next reload
+                    return doc.createElementNS(el.namespaceURI, el.nodeName).also { contextElement = it }
+                }
+                return located.also { contextElement = it }
+            }
 
         init {
             master?.slaves?.add(this)
         }
 
+        private fun parseDocument(): Document {
+            val substitutor = this.substitutor
+            val data = mUrl.openStream().use { it.readAllBytes() }
+            mCache?.load(mUrl, data, substitutor)?.let {
+                if (log.isDebugEnabled) {
+                    log.debug("Config '{}' loaded from cache", mUrl)
+                }
+                return it
+            }
+            val f = DocumentBuilderFactory.newInstance()
+            f.isNamespaceAware = true
+            // Substituted keys with their values are the cache entry inputs
+            val inputs = LinkedHashMap<String, String?>()
+            val doc = if (substitutor != null) {
+                val pdata = preprocessConfigData(data.toString(Charsets.UTF_8)) { key ->
+                    substitutor(key).also { inputs[key] = it }
+                }
+                if (log.isDebugEnabled) {
+                    log.debug("Preprocessed config:\n{}", pdata)
+                }
+                f.newDocumentBuilder().parse(InputSource(StringReader(pdata)))
+            } else {
+                f.newDocumentBuilder().parse(InputSource(ByteArrayInputStream(data)))
+            }
+            mCache?.store(mUrl, data, inputs, doc)
+            return doc
+        }
+
+        /**
+         * Path of the element from the document element:
+         * names of the elements with their indexes among same named siblings
+         * and number of these siblings.
+         * `null` if element is not attached to the document.
+         */
+        private fun stepsOf(el: Element): List<Step>? {
+            val steps = ArrayList<Step>()
+            var n: Element = el
+            while (n !== n.ownerDocument.documentElement) {
+                val parent = n.parentNode as? Element ?: return null
+                var idx = 0
+                var s = n.previousSibling
+                while (s != null) {
+                    if (s is Element && s.nodeName == n.nodeName) idx++
+                    s = s.previousSibling
+                }
+                steps += Step(n.nodeName, idx, parent.countChildElements(n.nodeName))
+                n = parent
+            }
+            steps.reverse()
+            return steps
+        }
+
+        /**
+         * Finds the element by its [steps] in the reloaded document.
+         * Element is matched only by names and sibling indexes, so relocation is refused
+         * (`null` is returned) if number of same named siblings at any step is changed:
+         * an element inserted or removed before it would shift the index to a different element.
+         */
+        private fun locate(doc: Document, steps: List<Step>): Element? {
+            var n = doc.documentElement
+            steps.forEach { (name, idx, count) ->
+                if (n.countChildElements(name) != count) return null
+                var i = 0
+                n = n.firstChildElement { it.nodeName == name && i++ == idx } ?: return null
+            }
+            return n
+        }
+
+        private fun Element.countChildElements(name: String): Int {
+            var cnt = 0
+            var s = firstChild
+            while (s != null) {
+                if (s is Element && s.nodeName == name) cnt++
+                s = s.nextSibling
+            }
+            return cnt
+        }
+
+        /**
+         * Dotted pattern of this config node relative to the document element.
+         */
+        private fun nodePath(): String {
+            return contextSteps?.joinToString(".") { it.name } ?: ""
+        }
+
         private fun preprocessConfigData(cdata: String, substitutor: Function1<String, String?>): String {
-            val p = Pattern.compile("(.)?\\{(((env|sys):)?[A-Za-z_.]+)}")
-            val m = p.matcher(cdata)
+            val m = SUBSTITUTION_PATTERN.matcher(cdata)
             val sb = StringBuffer(cdata.length)
             while (m.find()) {
                 val mg = m.group()
@@ -191,8 +314,16 @@ constructor(private val mUrl: URL) {
             return sb.toString()
         }
 
-        override operator fun get(expr: String, require: Boolean, type: XCPath): String? = lock.withLock {
-            nodesBy(expr, type, false, true).firstOrNull()?.text() ?: run {
+        override operator fun get(expr: String, require: Boolean, type: XCPath): String? {
+            // Missing key is served by the snapshot as well,
+            // the document is walked only if the snapshot can not be used
+            val nodes = snapshotNodes(expr, type, true)
+            val text = if (nodes != null) {
+                nodes.firstOrNull()?.text
+            } else {
+                lock.withLock { nodesBy(expr, type, false, true).firstOrNull()?.text() }
+            }
+            return text ?: run {
                 if (require) {
                     XConfigException.throwMissingParameter(expr)
                 } else {
@@ -202,20 +333,12 @@ constructor(private val mUrl: URL) {
         }
 
         override operator fun <T> set(expr: String, v: T): Unit = lock.withLock {
-            var path = expr
-            val idx = expr.indexOf("[@")
-            val attrName = if (expr.endsWith(']') && idx != -1) {
-                path = expr.substring(0, idx)
-                expr.substring(idx + 2, expr.length - 1)
-            } else {
-                null
-            }
+            val pattern = exprCache.pattern(expr)
+            val attrName = pattern.attr
             var n = node
-            if (path != "." && !path.isBlank()) {
-                StringUtils.split(path, '.').forEach { s ->
-                    n = n.firstChildElement { it.nodeName == s }
-                            ?: n.appendChild(document.createElementNS(n.namespaceURI, s)) as Element
-                }
+            pattern.steps.forEach { s ->
+                n = n.firstChildElement { it.nodeName == s }
+                        ?: n.appendChild(document.createElementNS(n.namespaceURI, s)) as Element
             }
             if (attrName != null) {
                 when (v) {
@@ -226,6 +349,7 @@ constructor(private val mUrl: URL) {
             } else {
                 n.set(v)
             }
+            publish()
             if (mAutosave) {
                 save()
             }
@@ -240,6 +364,7 @@ constructor(private val mUrl: URL) {
                     c++
                 }
             }
+            publish()
             if (mAutosave) {
                 save()
             }
@@ -260,8 +385,9 @@ constructor(private val mUrl: URL) {
             }
         }
 
-        override fun has(expr: String, type: XCPath): Boolean = lock.withLock {
-            !nodesBy(expr, type, false, true).isEmpty()
+        override fun has(expr: String, type: XCPath): Boolean {
+            return snapshotNodes(expr, type, true)?.isNotEmpty()
+                    ?: lock.withLock { nodesBy(expr, type, false, true).isNotEmpty() }
         }
 
         override fun detach(expr: String, type: XCPath) = lock.withLock {
@@ -270,25 +396,26 @@ constructor(private val mUrl: URL) {
                 return
             }
             nodes.forEach { it.detach() }
+            publish()
             if (mAutosave) {
                 save()
             }
         }
 
-        override fun text(expr: String, dval: String?, type: XCPath): String? = lock.withLock {
-            get(expr, false, type) ?: dval
+        override fun text(expr: String, dval: String?, type: XCPath): String? {
+            return get(expr, false, type) ?: dval
         }
 
-        override fun bool(expr: String, dval: Boolean?, type: XCPath): Boolean = lock.withLock {
-            BooleanUtils.toBoolean(text(expr, dval?.toString() ?: "false", type))
+        override fun bool(expr: String, dval: Boolean?, type: XCPath): Boolean {
+            return BooleanUtils.toBoolean(text(expr, dval?.toString() ?: "false", type))
         }
 
-        override fun number(expr: String, dval: Long?, type: XCPath): Long? = lock.withLock {
-            text(expr, null, type)?.toLongOrNull() ?: dval
+        override fun number(expr: String, dval: Long?, type: XCPath): Long? {
+            return text(expr, null, type)?.toLongOrNull() ?: dval
         }
 
-        override fun sub(expr: String, type: XCPath): List<XConfig> = lock.withLock {
-            nodesBy(expr, type, false, false)
+        override fun sub(expr: String, type: XCPath): List<XConfig> {
+            return nodes(expr, type)
                     .filter { it is Element }
                     .map { XConfigImpl(this, it as Element) }
         }
@@ -298,7 +425,8 @@ constructor(private val mUrl: URL) {
         }
 
         override fun list(expr: String, type: XCPath): List<String> {
-            return nodes(expr, type).mapNotNull { it.text() }.toList()
+            return snapshotNodes(expr, type, false)?.mapNotNull { it.text }
+                    ?: nodes(expr, type).mapNotNull { it.text() }
         }
 
         override fun <T> setPattern(expr: String, v: T) = set(expr, v)
@@ -347,8 +475,74 @@ constructor(private val mUrl: URL) {
 
         override fun nodesPattern(expr: String): List<Node> = nodes(expr, XCPath.PATTERN)
 
-        override fun nodes(expr: String, type: XCPath): List<Node> = lock.withLock {
-            nodesBy(expr, type, false, false)
+        override fun nodes(expr: String, type: XCPath): List<Node> {
+            return snapshotNodes(expr, type, false)?.map { it.node }
+                    ?: lock.withLock { nodesBy(expr, type, false, false) }
+        }
+
+        override fun refresh() = lock.withLock {
+            publish()
+        }
+
+        override fun reload(): List<String> {
+            if (parent != null) {
+                return parent.reload()
+            }
+            // Parsing is performed without the lock, readers
+            // are served by the current snapshot meanwhile
+            val doc = parseDocument()
+            val snap = XConfigSnapshot.build(doc)
+            val changes = lock.withLock {
+                val changes = XConfigSnapshot.diff(snapshot(), snap)
+                if (changes.isNotEmpty()) {
+                    snapshots.document = doc
+                    exprCache.invalidate()
+                    snapshots.publish(snap)
+                }
+                changes
+            }
+            if (changes.isNotEmpty()) {
+                log.info("Config '{}' reloaded, changed: {}", uri, changes)
+                notifyListeners(changes, HashSet())
+            }
+            return changes
+        }
+
+        private fun notifyListeners(changes: List<String>, visited: MutableSet<XConfigImpl>) {
+            if (!visited.add(this)) {
+                return
+            }
+            listeners.forEach { lr ->
+                val paths = changes.filter { XConfigChange.affects(it, lr.pattern) }
+                if (paths.isNotEmpty()) {
+                    try {
+                        lr.listener.onChange(XConfigChange(lr.config, paths))
+                    } catch (e: Exception) {
+                        log.error("Config listener failed: ${lr.listener}", e)
+                    }
+                }
+            }
+            // Slaves fall back to the values of this config
+            slaves.forEach { s ->
+                if (s is XConfigImpl && s.parent == null) {
+                    s.notifyListeners(changes, visited)
+                }
+            }
+        }
+
+        override fun addListener(pattern: String, listener: XConfigListener) {
+            val p = exprCache.pattern(pattern)
+            val path = nodePath()
+            val abs = when {
+                p.self -> path + (p.attr?.let { "[@$it]" } ?: "")
+                path == "" -> pattern
+                else -> "$path.$pattern"
+            }
+            listeners += ListenerRef(abs, listener, this)
+        }
+
+        override fun removeListener(listener: XConfigListener) {
+            listeners.removeIf { it.listener === listener }
         }
 
         private fun openOutputStream(): OutputStream {
@@ -362,6 +556,7 @@ constructor(private val mUrl: URL) {
                     action(this)
                 } finally {
                     noSave = false
+                    publish()
                 }
             }
             if (!mReadOnly && mAutosave) {
@@ -394,16 +589,95 @@ constructor(private val mUrl: URL) {
             }
         }
 
-        private fun nodesByPattern(expr: String, skipMaster: Boolean, first: Boolean): List<Node> {
-            var path = expr
-            val idx = expr.indexOf("[@")
-            val attrName = if (expr.endsWith(']') && idx != -1) {
-                path = expr.substring(0, idx)
-                expr.substring(idx + 2, expr.length - 1)
+        /**
+         * Publishes a new read snapshot after the document is modified.
+         * Nested modifications, eg: within [batch], only mark the snapshot
+         * as stale, the outermost one publishes the new snapshot so readers
+         * never observe a half done batch. Must be called with the [lock] held.
+         */
+        private fun publish() {
+            exprCache.invalidate()
+            if (lock.holdCount > 1) {
+                snapshots.stale = true
             } else {
-                null
+                snapshots.publish(XConfigSnapshot.build(document))
+            }
+        }
+
+        /**
+         * Current read snapshot. Stale snapshot is rebuilt
+         * if no one modifies the document at the moment.
+         */
+        private fun snapshot(): XConfigSnapshot {
+            val s = snapshots.value
+            if (s != null && !snapshots.stale) {
+                return s
+            }
+            if (s == null) {
+                lock.lock()
+            } else if (!lock.tryLock()) {
+                return s
+            }
+            try {
+                return snapshots.value?.takeIf { !snapshots.stale }
+                        ?: XConfigSnapshot.build(document).also { snapshots.publish(it) }
+            } finally {
+                lock.unlock()
+            }
+        }
+
+        /**
+         * Version of the document increased on every snapshot publication,
+         * includes versions of the master configs.
+         */
+        internal fun version(): Long {
+            snapshot()
+            return snapshots.version + (master?.version() ?: 0L)
+        }
+
+        /**
+         * Pattern lookup served by the read snapshot without locking.
+         *
+         * @return `null` if the lookup must be performed on the document:
+         *          for XPath expressions, if the current thread holds the [lock]
+         *          so it sees its own not yet published modifications,
+         *          or if the config node is detached from the document
+         */
+        private fun snapshotNodes(expr: String, type: XCPath, first: Boolean): List<XConfigSnapshot.SNode>? {
+            if (type != XCPath.PATTERN || lock.isHeldByCurrentThread) {
+                return null
             }
-            if (path == "." || path.isBlank()) {
+            val ctx = snapshot().nodeOf(node) ?: return null
+            return snapshotNodesByPattern(ctx, exprCache.pattern(expr), first)
+        }
+
+        private fun snapshotNodesByPattern(ctx: XConfigSnapshot.SNode,
+                                           pattern: XCPattern,
+                                           first: Boolean): List<XConfigSnapshot.SNode>? {
+            val attrName = pattern.attr
+            if (pattern.self) {
+                return if (attrName != null) listOfNotNull(ctx.attr(attrName)) else listOf(ctx)
+            }
+            var n = ctx
+            var siblings: List<XConfigSnapshot.SNode> = listOf(ctx)
+            pattern.steps.forEach { s ->
+                siblings = n.children(s)
+                n = siblings.firstOrNull()
+                        ?: return if (parent == null && master != null) {
+                            master.snapshotNodes(pattern.path, XCPath.PATTERN, first)
+                        } else emptyList()
+            }
+            if (first) {
+                siblings = listOf(n)
+            }
+            return if (attrName != null) siblings.mapNotNull { it.attr(attrName) } else siblings
+        }
+
+        private fun nodesByPattern(expr: String, skipMaster: Boolean, first: Boolean): List<Node> {
+            val pattern = exprCache.pattern(expr)
+            val path = pattern.path
+            val attrName = pattern.attr
+            if (pattern.self) {
                 return if (attrName != null) {
                     val an = node.getAttributeNode(attrName);
                     if (an != null) listOf(an) else emptyList()
@@ -412,10 +686,10 @@ constructor(private val mUrl: URL) {
                 }
             }
             var n = node
-            StringUtils.split(path, '.').forEach { s ->
+            pattern.steps.forEach { s ->
                 n = n.firstChildElement { it.nodeName == s }
                         ?: return if (parent == null && master != null && !skipMaster) {
-                            master.nodesByPattern(path, false, first)
+                            master.lock.withLock { master.nodesByPattern(path, false, first) }
                         } else emptyList()
             }
             val ret = ArrayList<Node>()
@@ -441,15 +715,12 @@ constructor(private val mUrl: URL) {
         }
 
         private fun nodesByXPath(expr: String, skipMaster: Boolean): List<Node> {
-            return (xpf.newXPath().evaluate(expr, node, XPathConstants.NODESET) as? NodeList)?.let {
-                if (it.length < 1 && parent == null && master != null) {
-                    master.nodesByXPath(expr, skipMaster)
-                } else {
-                    ArrayList<Node>(it.length).apply {
-                        (0 until it.length).forEach { idx -> add(it.item(idx)) }
-                    }
-                }
-            } ?: emptyList()
+            val nodes = exprCache.evaluate(expr, node)
+            return if (nodes.isEmpty() && parent == null && master != null) {
+                master.lock.withLock { master.nodesByXPath(expr, skipMaster) }
+            } else {
+                ArrayList(nodes)
+            }
         }
 
         private fun nodesBy(expr: String, type: XCPath, skipMaster: Boolean, first: Boolean): List<Node> {
@@ -463,4 +734,41 @@ constructor(private val mUrl: URL) {
             return "XConfig(uri=$uri, node=$node)"
         }
     }
+
+    private class ListenerRef(val pattern: String,
+                              val listener: XConfigListener,
+                              val config: XConfig)
+
+    /**
+     * Step of the element path: element [name], its [index] among same named siblings
+     * and [count] of these siblings.
+     */
+    private data class Step(val name: String, val index: Int, val count: Int)
+
+    private class SnapshotRef {
+
+        /**
+         * Current document of the config, replaced by [XConfig.reload].
+         */
+        @Volatile
+        var document: Document? = null
+
+        @Volatile
+        var value: XConfigSnapshot? = null
+
+        @Volatile
+        var stale = false
+
+        @Volatile
+        var version = 0L
+
+        /**
+         * Must be called with the config lock held.
+         */
+        fun publish(s: XConfigSnapshot) {
+            value = s
+            stale = false
+            version++
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.softmotions.xconfig
+
+import org.slf4j.LoggerFactory
+import org.w3c.dom.*
+import java.io.*
+import java.net.URL
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import javax.xml.parsers.DocumentBuilderFactory
+
+/**
+ * Cache of the parsed and substituted config documents
+ * stored in the compact binary form.
+ *
+ * Cache entry of the config source is valid if the hash of the source
+ * data is not changed and the substitutor returns the same values for
+ * all keys substituted in the cached document, eg: environment variables.
+ * Invalid or broken entries are ignored, so config is parsed as usual
+ * and the entry is rewritten.
+ *
+ * Entry layout: magic, format version, source hash,
+ * substituted keys with their values and the document nodes.
+ * Node names are written once and then referenced by index.
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+internal class XConfigCache(private val dir: File) {
+
+    companion object {
+
+        private val log = LoggerFactory.getLogger(XConfigCache::class.java)
+
+        private const val MAGIC = 0x58434647 // XCFG
+
+        private const val FORMAT_VERSION = 1
+
+        private const val ELEMENT: Byte = 1
+        private const val TEXT: Byte = 2
+        private const val CDATA: Byte = 3
+        private const val COMMENT: Byte = 4
+        private const val PI: Byte = 5
+
+        private val dbf = DocumentBuilderFactory.newInstance().apply {
+            isNamespaceAware = true
+        }
+
+        private fun sha256(data: ByteArray): ByteArray = MessageDigest.getInstance("SHA-256").digest(data)
+
+        private fun hex(data: ByteArray): String {
+            val sb = StringBuilder(data.size * 2)
+            data.forEach {
+                sb.append(Character.forDigit(it.toInt() shr 4 and 0xf, 16))
+                sb.append(Character.forDigit(it.toInt() and 0xf, 16))
+            }
+            return sb.toString()
+        }
+    }
+
+    private fun entryFile(url: URL): File {
+        return File(dir, hex(sha256(url.toString().toByteArray(Charsets.UTF_8))).substring(0, 32) + ".xcb")
+    }
+
+    /**
+     * Loads the cached document of the config source.
+     *
+     * @return `null` if there is no valid cache entry for the given source data and substitutor
+     */
+    fun load(url: URL, data: ByteArray, substitutor: Function1<String, String?>?): Document? {
+        val file = entryFile(url)
+        if (!file.isFile) {
+            return null
+        }
+        try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+                    return null
+                }
+                val hash = ByteArray(input.readUnsignedByte())
+                input.readFully(hash)
+                if (!hash.contentEquals(sha256(data))) {
+                    return null
+                }
+                for (i in 0 until input.readInt()) {
+                    val key = input.readString()!!
+                    val value = input.readString()
+                    if (substitutor == null || substitutor(key) != value) {
+                        if (log.isDebugEnabled) {
+                            log.debug("Config cache of '{}' is invalidated by the changed key: {}", url, key)
+                        }
+                        return null
+                    }
+                }
+                val doc = synchronized(dbf) { dbf.newDocumentBuilder() }.newDocument()
+                val names = ArrayList<String?>()
+                for (i in 0 until input.readInt()) {
+                    doc.appendChild(input.readNode(doc, names))
+                }
+                return doc
+            }
+        } catch (e: Exception) {
+            log.warn("Failed to load config cache: {} of '{}'", file, url, e)
+            return null
+        }
+    }
+
+    /**
+     * Stores the document parsed from the config source.
+     *
+     * @param inputs Keys substituted in the source data with their values
+     */
+    fun store(url: URL, data: ByteArray, inputs: Map<String, String?>, doc: Document) {
+        val file = entryFile(url)
+        try {
+            dir.mkdirs()
+            val tmp = File.createTempFile(file.name, ".tmp", dir)
+            try {
+                DataOutputStream(tmp.outputStream().buffered()).use { out ->
+                    out.writeInt(MAGIC)
+                    out.writeInt(FORMAT_VERSION)
+                    val hash = sha256(data)
+                    out.writeByte(hash.size)
+                    out.write(hash)
+                    out.writeInt(inputs.size)
+                    inputs.forEach { (k, v) ->
+                        out.writeString(k)
+                        out.writeString(v)
+                    }
+                    val names = HashMap<String?, Int>()
+                    val nodes = doc.childNodes
+                    out.writeInt(nodes.length)
+                    for (i in 0 until nodes.length) {
+                        out.writeNode(nodes.item(i), names)
+                    }
+                }
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            } finally {
+                tmp.delete()
+            }
+        } catch (e: Exception) {
+            log.warn("Failed to store config cache: {} of '{}'", file, url, e)
+        }
+    }
+
+    private fun DataOutputStream.writeString(s: String?) {
+        if (s == null) {
+            writeInt(-1)
+        } else {
+            val b = s.toByteArray(Charsets.UTF_8)
+            writeInt(b.size)
+            write(b)
+        }
+    }
+
+    private fun DataInputStream.readString(): String? {
+        val len = readInt()
+        if (len < 0) {
+            return null
+        }
+        val b = ByteArray(len)
+        readFully(b)
+        return String(b, Charsets.UTF_8)
+    }
+
+    private fun DataOutputStream.writeName(name: String?, names: MutableMap<String?, Int>) {
+        val idx = names[name]
+        if (idx != null) {
+            writeInt(idx)
+        } else {
+            names[name] = names.size
+            writeInt(-1)
+            writeString(name)
+        }
+    }
+
+    private fun DataInputStream.readName(names: MutableList<String?>): String? {
+        val idx = readInt()
+        return if (idx >= 0) names[idx] else readString().also { names += it }
+    }
+
+    private fun DataOutputStream.writeNode(n: Node, names: MutableMap<String?, Int>) {
+        when (n) {
+            is Element -> {
+                writeByte(ELEMENT.toInt())
+                writeName(n.namespaceURI, names)
+                writeName(n.nodeName, names)
+                val attrs = n.attributes
+                writeInt(attrs.length)
+                for (i in 0 until attrs.length) {
+                    val a = attrs.item(i) as Attr
+                    writeName(a.namespaceURI, names)
+                    writeName(a.name, names)
+                    writeString(a.value)
+                }
+                val children = n.childNodes
+                writeInt(children.length)
+                for (i in 0 until children.length) {
+                    writeNode(children.item(i), names)
+                }
+            }
+            is CDATASection -> {
+                writeByte(CDATA.toInt())
+                writeString(n.data)
+            }
+            is Text -> {
+                writeByte(TEXT.toInt())
+                writeString(n.data)
+            }
+            is Comment -> {
+                writeByte(COMMENT.toInt())
+                writeString(n.data)
+            }
+            is ProcessingInstruction -> {
+                writeByte(PI.toInt())
+                writeString(n.target)
+                writeString(n.data)
+            }
+            else -> throw IOException("Unsupported node: $n")
+        }
+    }
+
+    private fun DataInputStream.readNode(doc: Document, names: MutableList<String?>): Node {
+        return when (val type = readByte()) {
+            ELEMENT -> {
+                val el = doc.createElementNS(readName(names), readName(names))
+                for (i in 0 until readInt()) {
+                    el.setAttributeNS(readName(names), readName(names), readString())
+                }
+                for (i in 0 until readInt()) {
+                    el.appendChild(readNode(doc, names))
+                }
+                el
+            }
+            TEXT -> doc.createTextNode(readString())
+            CDATA -> doc.createCDATASection(readString())
+            COMMENT -> doc.createComment(readString())
+            PI -> doc.createProcessingInstruction(readString(), readString())
+            else -> throw IOException("Unknown node type: $type")
+        }
+    }
+}
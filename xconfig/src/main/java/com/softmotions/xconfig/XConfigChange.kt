@@ -0,0 +1,42 @@
+package com.softmotions.xconfig
+
+/**
+ * Changes of the config subtree made by [XConfig.reload].
+ *
+ * @property config Config the listener is registered on
+ * @property paths Dotted patterns of the changed subtrees relative to the document element,
+ *                  eg: `mail.smtp[@host]`, `.` stands for the document element itself.
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+class XConfigChange(val config: XConfig, val paths: List<String>) {
+
+    companion object {
+
+        /**
+         * Checks if changes of the `path` subtree
+         * affect the subtree of the given listener `pattern`.
+         */
+        internal fun affects(path: String, pattern: String): Boolean {
+            return path == "." || covers(pattern, path) || covers(path, pattern)
+        }
+
+        private fun covers(prefix: String, path: String): Boolean {
+            return prefix == ""
+                    || path == prefix
+                    || (path.startsWith(prefix) && (path[prefix.length] == '.' || path.startsWith("[@", prefix.length)))
+        }
+    }
+
+    /**
+     * Checks if the subtree of the given pattern
+     * relative to the document element was changed.
+     */
+    fun affects(pattern: String): Boolean {
+        return paths.any { affects(it, pattern) }
+    }
+
+    override fun toString(): String {
+        return "XConfigChange(config=$config, paths=$paths)"
+    }
+}
@@ -20,6 +20,12 @@ class XConfigException(msg: String) : RuntimeException(msg) {
             throw XConfigException("Configuration substitutor cannot be set for writable config")
         }
 
+        fun throwInvalidParameterValue(name: String, value: String, cause: Throwable? = null): Nothing {
+            throw XConfigException("Invalid value '${value}' of configuration parameter: ${name}").also {
+                if (cause != null) it.initCause(cause)
+            }
+        }
+
         fun throwReadOnlyConfiguration(): Nothing {
             throw XConfigException("Read-only configuration")
         }
@@ -0,0 +1,113 @@
+package com.softmotions.xconfig
+
+import org.apache.commons.lang3.StringUtils
+import org.w3c.dom.Node
+import org.w3c.dom.NodeList
+import java.util.concurrent.ConcurrentHashMap
+import javax.xml.xpath.XPathConstants
+import javax.xml.xpath.XPathExpression
+import javax.xml.xpath.XPathFactory
+
+/**
+ * Compiled lookup expressions of the config
+ * shared by the root config and all its sub configs.
+ *
+ * Parsed patterns do not depend on the document and are cached
+ * for lock free snapshot reads. XPath expressions are compiled once
+ * and their results are cached per context node until the document
+ * is modified, JAXP objects are not thread safe so they are used
+ * only with the config lock held.
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+internal class XConfigExprCache(private val maxSize: Int = 1024) {
+
+    private val patterns = ConcurrentHashMap<String, XCPattern>()
+
+    // Guarded by the config lock
+
+    private val xpf = XPathFactory.newInstance()
+
+    private val xpaths = lruMap<String, XPathExpression>()
+
+    private val results = lruMap<XPathKey, List<Node>>()
+
+    private fun <K, V> lruMap() = object : LinkedHashMap<K, V>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>?) = size > maxSize
+    }
+
+    fun pattern(expr: String): XCPattern {
+        return patterns[expr] ?: XCPattern.parse(expr).also {
+            if (patterns.size >= maxSize) {
+                patterns.clear()
+            }
+            patterns[expr] = it
+        }
+    }
+
+    /**
+     * Evaluates XPath expression, must be called with the config lock held.
+     * @return Read only list of matched nodes
+     */
+    fun evaluate(expr: String, context: Node): List<Node> {
+        val key = XPathKey(expr, context)
+        return results[key] ?: run {
+            val xpath = xpaths.getOrPut(expr) { xpf.newXPath().compile(expr) }
+            val nl = xpath.evaluate(context, XPathConstants.NODESET) as? NodeList
+            val ret: List<Node> = if (nl == null || nl.length == 0) emptyList() else {
+                ArrayList<Node>(nl.length).apply {
+                    (0 until nl.length).forEach { idx -> add(nl.item(idx)) }
+                }
+            }
+            results[key] = ret
+            ret
+        }
+    }
+
+    /**
+     * Drops evaluation results after the document is modified,
+     * must be called with the config lock held.
+     */
+    fun invalidate() {
+        results.clear()
+    }
+
+    private class XPathKey(val expr: String, val context: Node) {
+
+        override fun equals(other: Any?): Boolean {
+            return other is XPathKey && other.context === context && other.expr == expr
+        }
+
+        override fun hashCode(): Int = 31 * expr.hashCode() + System.identityHashCode(context)
+    }
+}
+
+/**
+ * Parsed dotted pattern: `foo.bar[@attr]`.
+ *
+ * @property path Dotted path without the attribute part
+ * @property self `true` if path is `.` or blank and refers the context node
+ * @property steps Path elements
+ * @property attr Attribute name or `null`
+ */
+internal class XCPattern private constructor(val path: String,
+                                             val self: Boolean,
+                                             val steps: Array<String>,
+                                             val attr: String?) {
+
+    companion object {
+
+        fun parse(expr: String): XCPattern {
+            var path = expr
+            val idx = expr.indexOf("[@")
+            val attr = if (expr.endsWith(']') && idx != -1) {
+                path = expr.substring(0, idx)
+                expr.substring(idx + 2, expr.length - 1)
+            } else {
+                null
+            }
+            val self = path == "." || path.isBlank()
+            return XCPattern(path, self, if (self) emptyArray() else StringUtils.split(path, '.'), attr)
+        }
+    }
+}
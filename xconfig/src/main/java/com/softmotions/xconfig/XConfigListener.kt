@@ -0,0 +1,16 @@
+package com.softmotions.xconfig
+
+/**
+ * Listener of the config subtree changed by [XConfig.reload].
+ *
+ * @see XConfig.addListener
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+fun interface XConfigListener {
+
+    /**
+     * Called after the reloaded document is published
+     * on the thread performed the reload.
+     */
+    fun onChange(change: XConfigChange)
+}
@@ -0,0 +1,127 @@
+package com.softmotions.xconfig
+
+import org.apache.commons.lang3.StringUtils
+import org.w3c.dom.Attr
+import org.w3c.dom.Document
+import org.w3c.dom.Element
+import org.w3c.dom.Node
+import org.w3c.dom.Text
+import java.util.*
+
+/**
+ * Immutable read only view of the config document
+ * indexed for pattern lookups without locking.
+ *
+ * Snapshot is built from the document under the config lock
+ * and published to readers as a whole, it is never modified.
+ * It refers the document nodes only to serve [XConfig.nodes]
+ * and [XConfig.sub], texts are precomputed.
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+internal class XConfigSnapshot private constructor(val root: SNode,
+                                                   private val index: IdentityHashMap<Element, SNode>) {
+
+    companion object {
+
+        fun build(document: Document): XConfigSnapshot {
+            val index = IdentityHashMap<Element, SNode>()
+            return XConfigSnapshot(SNode.build(document.documentElement, index), index)
+        }
+
+        /**
+         * Structural diff of two snapshots of the same config.
+         *
+         * @return Dotted patterns of the changed subtrees, eg: `mail.smtp[@host]`.
+         *          If number of same named elements differs the whole element
+         *          group is reported. `.` stands for the document element itself.
+         *          Changes are listed in the document order.
+         */
+        fun diff(old: XConfigSnapshot, new: XConfigSnapshot): List<String> {
+            if (old.root.node.nodeName != new.root.node.nodeName) {
+                return listOf(".")
+            }
+            val changes = LinkedHashSet<String>()
+            diff(old.root, new.root, "", changes)
+            return ArrayList(changes)
+        }
+
+        private fun diff(o: SNode, n: SNode, path: String, changes: MutableSet<String>) {
+            if (o.ownText != n.ownText) {
+                changes += if (path == "") "." else path
+            }
+            (o.attrs.keys + n.attrs.keys).forEach { name ->
+                if (o.attr(name)?.text != n.attr(name)?.text) {
+                    changes += "$path[@$name]"
+                }
+            }
+            (o.children.keys + n.children.keys).forEach { name ->
+                val cpath = if (path == "") name else "$path.$name"
+                val oc = o.children(name)
+                val nc = n.children(name)
+                if (oc.size != nc.size) {
+                    changes += cpath
+                } else {
+                    oc.indices.forEach { diff(oc[it], nc[it], cpath, changes) }
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot node of the document element or `null`
+     * if element is not attached to the document.
+     */
+    fun nodeOf(el: Element): SNode? = index[el]
+
+    /**
+     * Element or attribute snapshot.
+     *
+     * @property text Trimmed text content of the node
+     * @property ownText Trimmed text of the element without texts of its child elements
+     */
+    internal class SNode private constructor(val node: Node,
+                                             val text: String?,
+                                             val ownText: String?,
+                                             internal val attrs: Map<String, SNode>,
+                                             internal val children: Map<String, List<SNode>>) {
+
+        companion object {
+
+            fun build(el: Element, index: IdentityHashMap<Element, SNode>): SNode {
+                val amap = el.attributes
+                val attrs = if (amap.length == 0) emptyMap() else HashMap<String, SNode>(amap.length * 2).apply {
+                    for (i in 0 until amap.length) {
+                        val a = amap.item(i) as Attr
+                        val text = StringUtils.trimToNull(a.value)
+                        put(a.name, SNode(a, text, text, emptyMap(), emptyMap()))
+                    }
+                }
+                var children: MutableMap<String, MutableList<SNode>>? = null
+                var ownText: StringBuilder? = null
+                var n = el.firstChild
+                while (n != null) {
+                    if (n is Element) {
+                        if (children == null) children = LinkedHashMap()
+                        children.getOrPut(n.nodeName) { ArrayList(1) } += build(n, index)
+                    } else if (n is Text) {
+                        if (ownText == null) ownText = StringBuilder()
+                        ownText.append(n.data)
+                    }
+                    n = n.nextSibling
+                }
+                return SNode(el, el.text(), StringUtils.trimToNull(ownText?.toString()),
+                             attrs, children ?: emptyMap()).also {
+                    index[el] = it
+                }
+            }
+        }
+
+        fun attr(name: String): SNode? = attrs[name]
+
+        /**
+         * Child elements with the given name in document order.
+         */
+        fun children(name: String): List<SNode> = children[name] ?: emptyList()
+    }
+}
@@ -3,7 +3,13 @@ package com.softmotions.xconfig
 import org.slf4j.LoggerFactory
 import org.testng.Assert
 import org.testng.annotations.Test
+import org.w3c.dom.Element
+import java.io.StringWriter
 import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
 
 /**
  * @author Adamansky Anton (adamansky@softmotions.com)
@@ -13,6 +19,8 @@ class TestXConfig {
 
     companion object {
         val log = LoggerFactory.getLogger(TestXConfig::class.java)
+
+        val defaultCalls = AtomicInteger()
     }
 
     @Test
@@ -92,4 +100,354 @@ class TestXConfig {
         Assert.assertEquals(lp[0], "one")
         Assert.assertEquals(lp[1], "two")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testSnapshot() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        val cfg = XConfigBuilder(f.toURI().toURL())
+                .allowWrites()
+                .create()
+        cfg.batch {
+            it["pair.a"] = 0
+            it["pair.b"] = 0
+        }
+        val sub = cfg.sub("pair").first()
+        val stop = AtomicBoolean()
+        val errors = AtomicInteger()
+        val readers = (1..4).map {
+            thread {
+                while (!stop.get()) {
+                    // Batch is published as a whole: b read after a is never behind
+                    val a = cfg.number("pair.a")!!
+                    if (sub.number("b")!! < a) {
+                        errors.incrementAndGet()
+                    }
+                }
+            }
+        }
+        for (i in 1L..200L) {
+            cfg.batch {
+                it["pair.a"] = i
+                // Own modifications are visible inside the batch
+                Assert.assertEquals(it.number("pair.a"), i)
+                it["pair.b"] = i
+            }
+            Assert.assertEquals(sub.number("b"), i)
+        }
+        stop.set(true)
+        readers.forEach { it.join() }
+        Assert.assertEquals(errors.get(), 0)
+
+        cfg.detach("pair.b")
+        Assert.assertFalse(cfg.has("pair.b"))
+        Assert.assertNull(sub.text("b"))
+
+        (cfg.nodes("pair.a").first() as Element).textContent = "direct"
+        Assert.assertEquals(cfg.text("pair.a"), "200")
+        cfg.refresh()
+        Assert.assertEquals(cfg.text("pair.a"), "direct")
+    }
+
+    @Test
+    fun testMissingKeyReads() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        f.writeText("<configuration><mail><from>a@example.com</from></mail></configuration>")
+        val cfg = XConfigBuilder(f).create()
+        val mail = cfg.subPattern("mail").first()
+        val locked = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val holder = thread {
+            cfg.lock.lock()
+            try {
+                locked.countDown()
+                release.await()
+            } finally {
+                cfg.lock.unlock()
+            }
+        }
+        locked.await()
+        try {
+            // Served by the snapshot while other thread holds the config lock
+            Assert.assertEquals(cfg.numberPattern("mail.max-retries", 3L), 3L)
+            Assert.assertEquals(mail.textPattern("reply-to", "b@example.com"), "b@example.com")
+            Assert.assertFalse(cfg.boolPattern("mail.emulation", false))
+            Assert.assertEquals(mail.text("from"), "a@example.com")
+        } finally {
+            release.countDown()
+            holder.join()
+        }
+    }
+
+    @Test
+    fun testExprCache() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        val cfg = XConfigBuilder(f.toURI().toURL())
+                .allowWrites()
+                .create()
+        cfg["foo.bar"] = "one"
+        Assert.assertEquals(cfg.listXPath("foo/bar"), listOf("one"))
+        cfg.set("foo.bar", cfg.attr("a", "1"))
+        Assert.assertEquals(cfg.textXPath("foo/bar/@a"), "1")
+        cfg.batch {
+            it.nodes("foo").first().appendChild(it.document.createElement("bar").apply { textContent = "two" })
+            it.refresh()
+            Assert.assertEquals(it.listXPath("foo/bar"), listOf("one", "two"))
+        }
+        Assert.assertEquals(cfg.listXPath("foo/bar"), listOf("one", "two"))
+        Assert.assertEquals(cfg.listPattern("foo.bar"), listOf("one", "two"))
+        val sub = cfg.subXPath("foo").first()
+        Assert.assertEquals(sub.listXPath("bar"), listOf("one", "two"))
+        Assert.assertEquals(sub.listPattern("bar[@a]"), listOf("1"))
+
+        cfg.detachXPath("foo/bar[2]")
+        Assert.assertEquals(cfg.listXPath("foo/bar"), listOf("one"))
+        Assert.assertEquals(sub.listXPath("bar"), listOf("one"))
+        Assert.assertTrue(cfg.nodesXPath("foo/baz").isEmpty())
+        cfg["foo.baz"] = "three"
+        Assert.assertEquals(cfg.textXPath("foo/baz"), "three")
+    }
+
+    enum class Mode {
+        FAST,
+        SAFE_MODE
+    }
+
+    data class Server(val host: String,
+                      val port: Int = 25,
+                      @XCKey("[@secure]") val secure: Boolean = false)
+
+    data class MailSettings(val keepHistory: Int = 0,
+                            val emulation: Boolean = false,
+                            val from: String?,
+                            val mode: Mode = Mode.FAST,
+                            val server: Server?,
+                            val mirrors: List<Server> = emptyList(),
+                            val admins: List<String>)
+
+    data class Range(val min: Int, val max: Int)
+
+    interface MailLimits {
+
+        val maxSize: Long
+
+        val rate: Double?
+
+        @XCKey("[@name]")
+        fun name(): String
+
+        val burst: Int
+            get() = 5.also { defaultCalls.incrementAndGet() }
+    }
+
+    @Test
+    fun testBinding() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        val cfg = XConfigBuilder(f.toURI().toURL())
+                .allowWrites()
+                .create()
+        cfg.batch {
+            it["mail.keep-history"] = 10
+            it["mail.mode"] = "safe-mode"
+            it["mail.server.host"] = "smtp.example.com"
+            it["mail"] = listOf(it.document.createElement("admins").apply { textContent = "a" },
+                                it.document.createElement("admins").apply { textContent = "b" })
+            it["mail.server"] = it.attr("secure", "true")
+            it["mail.limits.max-size"] = 1024
+            it["mail.limits[@name]"] = "default"
+        }
+        val binding = XConfigBinding.bind<MailSettings>(cfg, "mail")
+        val settings = binding.get()
+        Assert.assertSame(binding.get(), settings)
+        Assert.assertEquals(settings, MailSettings(keepHistory = 10,
+                                                   from = null,
+                                                   mode = Mode.SAFE_MODE,
+                                                   server = Server("smtp.example.com", 25, true),
+                                                   admins = listOf("a", "b")))
+
+        // Atomically refreshed on change
+        cfg.batch {
+            it["mail.keep-history"] = 20
+            it["mail.from"] = "noreply@example.com"
+        }
+        Assert.assertEquals(binding.get().keepHistory, 20)
+        Assert.assertEquals(binding.get().from, "noreply@example.com")
+
+        // Invalid config keeps the previous value
+        cfg["mail.keep-history"] = "many"
+        Assert.assertEquals(binding.get().keepHistory, 20)
+        try {
+            XConfigBinding.bind<MailSettings>(cfg, "mail")
+            Assert.fail()
+        } catch (e: XConfigException) {
+            log.info(e.message)
+        }
+        // Lenient binding applies the default
+        Assert.assertEquals(XConfigBinding.bind<MailSettings>(cfg, "mail", lenient = true).get().keepHistory, 0)
+        // Missing not nullable value
+        try {
+            XConfigBinding.bind<Server>(cfg, "mail.limits")
+            Assert.fail()
+        } catch (e: XConfigException) {
+            log.info(e.message)
+        }
+
+        val limits = XConfigBinding.bind(cfg, MailLimits::class.java, "mail.limits").get()
+        Assert.assertEquals(limits.maxSize, 1024L)
+        Assert.assertNull(limits.rate)
+        Assert.assertEquals(limits.name(), "default")
+        Assert.assertEquals(limits.burst, 5)
+        Assert.assertEquals(limits.burst, 5)
+        // Default getter is evaluated once by binding
+        Assert.assertEquals(defaultCalls.get(), 1)
+        log.info("Limits: {}", limits)
+    }
+
+    @Test
+    fun testBindingReload() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        f.writeText("<configuration><range><min>0</min><max>0</max></range></configuration>")
+        val cfg = XConfigBuilder(f).create()
+        val binding = XConfigBinding.bind<Range>(cfg, "range")
+        val done = AtomicBoolean()
+        val reader = thread {
+            while (!done.get()) {
+                val r = binding.get()
+                // Instance is never mixed from different documents
+                if (r.min != r.max) {
+                    throw AssertionError(r.toString())
+                }
+            }
+        }
+        var error: Throwable? = null
+        reader.setUncaughtExceptionHandler { _, e -> error = e }
+        for (i in 1..200) {
+            f.writeText("<configuration><range><min>$i</min><max>$i</max></range></configuration>")
+            cfg.reload()
+        }
+        done.set(true)
+        reader.join()
+        Assert.assertNull(error)
+        Assert.assertEquals(binding.get(), Range(200, 200))
+    }
+
+    @Test
+    fun testReload() {
+        val f = Files.createTempFile(null, null).toFile()
+        f.deleteOnExit()
+        f.writeText("""
+            <configuration>
+                <pool size="4"/>
+                <cache><ttl>60</ttl></cache>
+                <mail><from>a@example.com</from></mail>
+            </configuration>
+        """.trimIndent())
+        val cfg = XConfigBuilder(f).create()
+        val mail = cfg.subPattern("mail").first()
+        val pool = ArrayList<XConfigChange>()
+        val all = ArrayList<XConfigChange>()
+        val mailListener = XConfigListener { throw IllegalStateException("Failed mail listener") }
+        cfg.addListener("pool", XConfigListener { pool += it })
+        cfg.addListener(".", XConfigListener { all += it })
+        mail.addListener("from", mailListener)
+
+        Assert.assertEquals(cfg.reload(), emptyList<String>())
+        Assert.assertTrue(all.isEmpty())
+
+        f.writeText("""
+            <configuration>
+                <pool size="8"/>
+                <cache><ttl>120</ttl><max>10</max></cache>
+                <mail><from>b@example.com</from></mail>
+            </configuration>
+        """.trimIndent())
+        Assert.assertEquals(mail.reload(), listOf("pool[@size]", "cache.ttl", "cache.max", "mail.from"))
+        Assert.assertEquals(cfg.number("pool[@size]"), 8L)
+        Assert.assertEquals(cfg.textXPath("cache/max"), "10")
+        Assert.assertEquals(mail.text("from"), "b@example.com")
+        Assert.assertEquals(pool.single().paths, listOf("pool[@size]"))
+        Assert.assertSame(pool.single().config, cfg)
+        Assert.assertEquals(all.single().paths.size, 4)
+        Assert.assertTrue(all.single().affects("cache"))
+        Assert.assertFalse(all.single().affects("pool[@min]"))
+
+        // Changes of the master are propagated to the slave listeners
+        val sf = Files.createTempFile(null, null).toFile()
+        sf.deleteOnExit()
+        sf.writeText("<configuration><pool size=\"16\"/></configuration>")
+        val slave = XConfigBuilder(sf).master(cfg).create()
+        val slaveChanges = ArrayList<XConfigChange>()
+        slave.addListener("cache", XConfigListener { slaveChanges += it })
+        mail.removeListener(mailListener)
+        f.writeText(f.readText().replace("120", "30"))
+        Assert.assertEquals(cfg.reload(), listOf("cache.ttl"))
+        Assert.assertEquals(slave.number("cache.ttl"), 30L)
+        Assert.assertEquals(slave.number("pool[@size]"), 16L)
+        Assert.assertEquals(slaveChanges.single().paths, listOf("cache.ttl"))
+        Assert.assertEquals(pool.size, 1)
+
+        // Removed or shifted elements are not relocated
+        f.writeText(f.readText().replace(Regex("<mail>.*</mail>"), ""))
+        cfg.reload()
+        Assert.assertNull(mail.text("from"))
+        f.writeText(f.readText().replace("<pool", "<mail><from>c@example.com</from></mail><pool"))
+        cfg.reload()
+        Assert.assertEquals(mail.text("from"), "c@example.com")
+        f.writeText(f.readText().replace("<pool", "<mail><from>d@example.com</from></mail><pool"))
+        cfg.reload()
+        Assert.assertNull(mail.text("from"))
+    }
+
+    @Test
+    fun testCache() {
+        val f = Files.createTempFile(null, ".xml").toFile()
+        val dir = Files.createTempDirectory("xconfig-cache").toFile()
+        f.deleteOnExit()
+        dir.deleteOnExit()
+        f.writeText("""
+            <?xml version="1.0" encoding="UTF-8"?>
+            <!-- Cached config -->
+            <configuration xmlns:x="urn:x">
+                <home>{home}</home>
+                <data x:attr="v"><![CDATA[<raw>]]></data>
+                <missing>{unknown}</missing>
+            </configuration>
+        """.trimIndent())
+        val env = HashMap<String, String>()
+        env["home"] = "/home/a"
+        val create = { XConfigBuilder(f).substitutor { env[it] }.cache(dir).create() }
+
+        val parsed = create()
+        val entry = dir.listFiles()!!.single()
+        entry.setLastModified(1000)
+        val cached = create()
+        Assert.assertEquals(entry.lastModified(), 1000L)
+        Assert.assertEquals(cached.text("home"), "/home/a")
+        Assert.assertEquals(cached.text("data"), "<raw>")
+        Assert.assertEquals(cached.text("missing"), "{unknown}")
+        Assert.assertEquals(cached.textXPath("data/@*[local-name()='attr' and namespace-uri()='urn:x']"), "v")
+        Assert.assertEquals(XConfigSnapshot.diff(XConfigSnapshot.build(parsed.document),
+                                                 XConfigSnapshot.build(cached.document)), emptyList<String>())
+        Assert.assertEquals(StringWriter().also { parsed.writeTo(it) }.toString(),
+                            StringWriter().also { cached.writeTo(it) }.toString())
+
+        // Changed substitution value
+        env["home"] = "/home/b"
+        Assert.assertEquals(create().text("home"), "/home/b")
+        Assert.assertNotEquals(entry.lastModified(), 1000L)
+
+        // Changed source
+        f.writeText(f.readText().replace("{home}", "{home}/c"))
+        Assert.assertEquals(create().text("home"), "/home/b/c")
+
+        // Broken entry falls back to parsing
+        entry.writeBytes(entry.readBytes().copyOf(64))
+        Assert.assertEquals(create().text("home"), "/home/b/c")
+        Assert.assertEquals(create().text("data"), "<raw>")
+        entry.delete()
+    }
+}
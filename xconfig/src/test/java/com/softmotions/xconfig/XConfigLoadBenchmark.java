@@ -0,0 +1,89 @@
+package com.softmotions.xconfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Loading of the substituted config: full parse
+ * versus load from the {@link XConfigBuilder#cache(File)} entry.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.xconfig.XConfigLoadBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XConfigLoadBenchmark {
+
+    private File file;
+
+    private File cacheDir;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<configuration>\n");
+        for (int i = 0; i < 100; ++i) {
+            sb.append("  <section").append(i).append(" enabled=\"true\" dir=\"{home}/s").append(i).append("\">\n");
+            for (int j = 0; j < 10; ++j) {
+                sb.append("    <param").append(j).append('>').append("{env:PATH}/").append(i * j)
+                  .append("</param").append(j).append(">\n");
+            }
+            sb.append("  </section").append(i).append(">\n");
+        }
+        sb.append("</configuration>\n");
+        file = File.createTempFile("xconfig", ".xml");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        cacheDir = Files.createTempDirectory("xconfig-cache").toFile();
+        cached();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        for (File f : cacheDir.listFiles()) {
+            f.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Benchmark
+    public XConfig parse() {
+        return new XConfigBuilder(file)
+                .substitutor(XConfigBuilder.Companion::basicSubstitutor)
+                .create();
+    }
+
+    @Benchmark
+    public XConfig cached() {
+        return new XConfigBuilder(file)
+                .substitutor(XConfigBuilder.Companion::basicSubstitutor)
+                .cache(cacheDir)
+                .create();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                           .include(XConfigLoadBenchmark.class.getSimpleName())
+                           .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.softmotions.xconfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Concurrent pattern reads of {@link XConfig} served by the read snapshot
+ * versus reads on the document under the config lock. {@code locked}
+ * holds the config lock around the read, so the read is performed
+ * on the document the same way it was done before snapshots.
+ * <p>
+ * Run: {@code java -cp <test classpath> com.softmotions.xconfig.XConfigReadBenchmark}
+ *
+ * @author Adamansky Anton (adamansky@softmotions.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XConfigReadBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    private File file;
+
+    private XConfig cfg;
+
+    private XConfig mailCfg;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<configuration>\n");
+        for (int i = 0; i < 50; ++i) {
+            sb.append("  <section").append(i).append(" enabled=\"true\">\n");
+            for (int j = 0; j < 10; ++j) {
+                sb.append("    <param").append(j).append('>').append(i * j).append("</param").append(j).append(">\n");
+            }
+            sb.append("  </section").append(i).append(">\n");
+        }
+        sb.append("  <mail>\n    <keep-history>100</keep-history>\n    <emulation>false</emulation>\n")
+          .append("    <from>noreply@example.com</from>\n  </mail>\n</configuration>\n");
+        file = File.createTempFile("xconfig", ".xml");
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        cfg = new XConfigBuilder(file).create();
+        mailCfg = cfg.subPattern("mail").get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    private void read(Blackhole bh) {
+        bh.consume(cfg.numberPattern("mail.keep-history", 0L));
+        bh.consume(cfg.boolPattern("mail.emulation", false));
+        bh.consume(cfg.text("section42.param7"));
+        bh.consume(cfg.text("section42[@enabled]"));
+        bh.consume(mailCfg.text("from"));
+        // Missing keys read with defaults
+        bh.consume(cfg.numberPattern("mail.max-retries", 3L));
+        bh.consume(mailCfg.textPattern("reply-to", "noreply@example.com"));
+    }
+
+    @Benchmark
+    public void snapshot(Blackhole bh) {
+        read(bh);
+    }
+
+    @Benchmark
+    public void locked(Blackhole bh) {
+        cfg.getLock().lock();
+        try {
+            read(bh);
+        } finally {
+            cfg.getLock().unlock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int threads : THREADS) {
+            new Runner(new OptionsBuilder()
+                               .include(XConfigReadBenchmark.class.getSimpleName())
+                               .threads(threads)
+                               .build()).run();
+        }
+    }
+}